@@ -0,0 +1,144 @@
+package com.cachecraft.benchmark;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.InvalidationMessage;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.service.AdaptiveTTLEngine;
+import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.simulation.InMemoryRedisTemplate;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Time to serve a burst of concurrent L2 hits through the blocking path and
+ * through the non-blocking one, with a simulated Redis round trip.
+ *
+ * <ul>
+ *   <li>{@code blocking}: each request takes a thread from a pool the size of
+ *       Tomcat's default and holds it for the Redis round trip, so a burst larger
+ *       than the pool queues behind it.</li>
+ *   <li>{@code async}: every request is issued from one thread with
+ *       {@code getAsync}; none holds a thread while Redis answers.</li>
+ * </ul>
+ *
+ * L1 is emptied before each burst so every request goes to Redis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingVsAsyncBenchmark {
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int REQUEST_THREADS = 200;
+
+    @Param({"0", "1000"})
+    private long redisLatencyMicros;
+
+    @Param({"1000"})
+    private int concurrentRequests;
+
+    private CacheManagerService service;
+    private ExecutorService requestThreads;
+    private String[] keys;
+
+    // Delivers invalidations as if they came from another node
+    private Consumer<InvalidationMessage> peer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Per-miss INFO logging would dominate the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.cachecraft"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        CacheProperties properties = new CacheProperties();
+        properties.getL1().setMaxMemory(DataSize.ofGigabytes(1));
+        properties.getInvalidation().setEnabled(true);
+        // The simulated round trip must not count as a slow call
+        properties.getCircuitBreaker().setEnabled(false);
+
+        MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        redis.setLatency(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(redisLatencyMicros)));
+        RedisL2Store l2Store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        InvalidationBus bus = new InvalidationBus() {
+            @Override
+            public void publish(InvalidationMessage message) {
+            }
+
+            @Override
+            public void subscribe(Consumer<InvalidationMessage> listener) {
+                peer = listener;
+            }
+        };
+        service = new CacheManagerService(l2Store, metricsCollector, new AdaptiveTTLEngine(l2Store, properties, metricsCollector),
+                properties, new NearCacheInvalidator(bus, properties, metricsCollector), ValueSerializer.raw(metricsCollector));
+        service.init();
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+
+        keys = new String[concurrentRequests];
+        for (int i = 0; i < concurrentRequests; i++) {
+            keys[i] = "bench:" + i;
+            redis.seed(keys[i], "v".repeat(100));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void dropL1() {
+        peer.accept(new InvalidationMessage("benchmark-peer", true, List.of()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestThreads.shutdownNow();
+        service.shutdown();
+    }
+
+    @Benchmark
+    public void blocking(Blackhole blackhole) {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            requests[i] = CompletableFuture.runAsync(() -> blackhole.consume(service.get(key)), requestThreads);
+        }
+        CompletableFuture.allOf(requests).join();
+    }
+
+    @Benchmark
+    public void async(Blackhole blackhole) {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            requests[i] = service.getAsync(keys[i]).thenAccept(blackhole::consume);
+        }
+        CompletableFuture.allOf(requests).join();
+    }
+}
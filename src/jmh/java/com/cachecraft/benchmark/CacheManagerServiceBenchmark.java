@@ -0,0 +1,169 @@
+package com.cachecraft.benchmark;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.InvalidationMessage;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheEntry;
+import com.cachecraft.service.AdaptiveTTLEngine;
+import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.simulation.InMemoryRedisTemplate;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Throughput of {@link CacheManagerService} on each tier, against an in-process
+ * Redis stand-in. Thread count comes from the JMH command line ({@code -t}).
+ *
+ * <ul>
+ *   <li>{@code l1Hit}: every key is resident in L1.</li>
+ *   <li>{@code l2Hit}: the key is dropped from L1 first, the way a peer
+ *       invalidation does, so the read is served from Redis and re-fills L1.
+ *       Includes the cost of that L1 invalidation.</li>
+ *   <li>{@code databaseLoad}: the key is dropped from L1 and Redis first, so the
+ *       read loads from the backing store and writes Redis back.</li>
+ *   <li>{@code put} and {@code evict}: synchronous writes through both tiers.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheManagerServiceBenchmark {
+
+    // Only these keys exist in the simulated database
+    private static final String[] DATABASE_KEYS = {"key1", "key2", "key3"};
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private KeyDistribution distribution;
+
+    @Param({"10000"})
+    private int keyCount;
+
+    private CacheManagerService service;
+    private InMemoryRedisTemplate redis;
+    private String[] keys;
+    private String value;
+
+    // Delivers invalidations as if they came from another node
+    private Consumer<InvalidationMessage> peer;
+
+    private final AtomicInteger threadSeeds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int[] sequence;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(CacheManagerServiceBenchmark benchmark) {
+            sequence = benchmark.distribution.sequence(benchmark.keyCount, 1 << 16,
+                    benchmark.threadSeeds.incrementAndGet());
+        }
+
+        String nextKey(String[] keys) {
+            String key = keys[sequence[next] % keys.length];
+            next = (next + 1) & (sequence.length - 1);
+            return key;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Per-miss INFO logging would dominate every path but the L1 hit
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.cachecraft"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        CacheProperties properties = new CacheProperties();
+        properties.getL1().setMaxMemory(DataSize.ofGigabytes(1));
+        properties.getInvalidation().setEnabled(true);
+
+        MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        redis = new InMemoryRedisTemplate();
+        RedisL2Store l2Store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        InvalidationBus bus = new InvalidationBus() {
+            @Override
+            public void publish(InvalidationMessage message) {
+            }
+
+            @Override
+            public void subscribe(Consumer<InvalidationMessage> listener) {
+                peer = listener;
+            }
+        };
+        service = new CacheManagerService(l2Store, metricsCollector, new AdaptiveTTLEngine(l2Store, properties, metricsCollector),
+                properties, new NearCacheInvalidator(bus, properties, metricsCollector), ValueSerializer.raw(metricsCollector));
+        service.init();
+
+        keys = new String[keyCount];
+        value = "v".repeat(100);
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "bench:" + i;
+            redis.seed(keys[i], value);
+            service.get(keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public CacheEntry l1Hit(Cursor cursor) {
+        return service.get(cursor.nextKey(keys));
+    }
+
+    @Benchmark
+    public CacheEntry l2Hit(Cursor cursor) {
+        String key = cursor.nextKey(keys);
+        dropFromL1(key);
+        return service.get(key);
+    }
+
+    @Benchmark
+    public CacheEntry databaseLoad(Cursor cursor) {
+        String key = cursor.nextKey(DATABASE_KEYS);
+        dropFromL1(key);
+        redis.remove(key);
+        return service.get(key);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        service.put(cursor.nextKey(keys), value);
+    }
+
+    @Benchmark
+    public void evict(Cursor cursor) {
+        service.evict(cursor.nextKey(keys));
+    }
+
+    private void dropFromL1(String key) {
+        peer.accept(new InvalidationMessage("benchmark-peer", false, List.of(key)));
+    }
+}
@@ -0,0 +1,47 @@
+package com.cachecraft.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * How benchmark threads pick keys. Sequences are precomputed so drawing a key
+ * costs an array read, not a random number generation inside the measurement.
+ */
+public enum KeyDistribution {
+
+    UNIFORM {
+        @Override
+        int[] sequence(int keyCount, int length, long seed) {
+            Random random = new Random(seed);
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                sequence[i] = random.nextInt(keyCount);
+            }
+            return sequence;
+        }
+    },
+
+    /**
+     * Zipf with exponent 0.99, the skew YCSB uses: a few keys take most of the traffic.
+     */
+    ZIPFIAN {
+        @Override
+        int[] sequence(int keyCount, int length, long seed) {
+            double[] cumulative = new double[keyCount];
+            double sum = 0;
+            for (int rank = 0; rank < keyCount; rank++) {
+                sum += 1 / Math.pow(rank + 1, 0.99);
+                cumulative[rank] = sum;
+            }
+            Random random = new Random(seed);
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                sequence[i] = rank >= 0 ? rank : Math.min(-rank - 1, keyCount - 1);
+            }
+            return sequence;
+        }
+    };
+
+    abstract int[] sequence(int keyCount, int length, long seed);
+}
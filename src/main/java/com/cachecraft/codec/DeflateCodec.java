@@ -0,0 +1,88 @@
+package com.cachecraft.codec;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DEFLATE at its fastest level, from {@code java.util.zip}, so no extra
+ * dependency is needed. An encoding is the value's UTF-8 length followed by the
+ * zlib stream, which lets decoding allocate its output exactly once.
+ */
+@Component
+public class DeflateCodec implements ValueCodec {
+
+    public static final String NAME = "deflate";
+
+    // Deflater and Inflater hold native zlib state; one of each per thread, reset after every use
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int id() {
+        return 1;
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer utf8) {
+        int length = utf8.remaining();
+        // Sized to the input: running out of room means the encoding would not be smaller
+        ByteBuffer out = ByteBuffer.allocate(length);
+        if (out.remaining() < Integer.BYTES) {
+            return null;
+        }
+        out.putInt(length);
+        Deflater deflater = DEFLATERS.get();
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!out.hasRemaining()) {
+                    return null;
+                }
+                deflater.deflate(out);
+            }
+            return out.flip();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer encoded) {
+        if (encoded.remaining() < Integer.BYTES) {
+            throw new IllegalArgumentException("Truncated deflate value");
+        }
+        int length = encoded.getInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Corrupt deflate value: length " + length);
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(encoded);
+            while (!inflater.finished()) {
+                if (inflater.inflate(out) == 0 && !inflater.finished()
+                        && (inflater.needsInput() || inflater.needsDictionary() || !out.hasRemaining())) {
+                    throw new IllegalArgumentException("Corrupt deflate value: stream does not match its length");
+                }
+            }
+            if (out.hasRemaining()) {
+                throw new IllegalArgumentException("Corrupt deflate value: stream does not match its length");
+            }
+            return out.flip();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflate value: " + e.getMessage(), e);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.cachecraft.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns the UTF-8 bytes of a cache value into a more compact encoding and back.
+ * Codecs are Spring beans: {@code cachecraft.codec.name} picks the one new values
+ * are written with, and every registered codec can still read back the values
+ * it wrote earlier. Both directions work on {@link ByteBuffer}s, so callers can
+ * hand over a slice of a larger buffer without copying it first.
+ */
+public interface ValueCodec {
+
+    /**
+     * Name used in configuration and as the metrics tag.
+     */
+    String name();
+
+    /**
+     * Tag stored ahead of every value this codec encoded, unique among codecs (1..255).
+     */
+    int id();
+
+    /**
+     * Encodes the remaining bytes of {@code utf8}.
+     *
+     * @return the encoding, or {@code null} if it would not be smaller than the input
+     */
+    ByteBuffer encode(ByteBuffer utf8);
+
+    /**
+     * Decodes the remaining bytes of an encoding this codec produced back to UTF-8.
+     *
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    ByteBuffer decode(ByteBuffer encoded);
+}
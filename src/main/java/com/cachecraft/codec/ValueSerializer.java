@@ -0,0 +1,160 @@
+package com.cachecraft.codec;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes cache values for Redis and off-heap L1 with the configured
+ * {@link ValueCodec}. Values below the compression threshold, and every value
+ * with the {@code raw} codec, are stored as plain UTF-8. An encoded value starts
+ * with a byte that never occurs in UTF-8 and the id of its codec, so values
+ * written before codecs existed, or with another registered codec, still read
+ * back whichever codec is configured now.
+ */
+@Component
+public class ValueSerializer implements RedisSerializer<Object> {
+
+    /**
+     * Codec name that stores every value as plain UTF-8.
+     */
+    public static final String RAW = "raw";
+
+    // 0xFF is not a valid byte anywhere in UTF-8
+    private static final byte ENCODED_MARKER = (byte) 0xFF;
+    private static final int FRAME_BYTES = 2;
+
+    private final ValueCodec[] codecsById = new ValueCodec[256];
+    // Codec new values are written with, or null for raw
+    private final ValueCodec codec;
+    private final String codecName;
+    private final int thresholdBytes;
+    private final MetricsCollector metricsCollector;
+
+    @Autowired
+    public ValueSerializer(List<ValueCodec> codecs, CacheProperties properties, MetricsCollector metricsCollector) {
+        this(codecs, properties.getCodec().getName(), properties.getCodec().getCompressionThreshold(), metricsCollector);
+    }
+
+    /**
+     * @throws IllegalArgumentException if no codec has the given name or two codecs share an id
+     */
+    public ValueSerializer(List<ValueCodec> codecs, String name, DataSize compressionThreshold,
+                           MetricsCollector metricsCollector) {
+        ValueCodec selected = null;
+        for (ValueCodec candidate : codecs) {
+            int id = candidate.id();
+            if (id < 1 || id > 255 || codecsById[id] != null) {
+                throw new IllegalArgumentException("Codec " + candidate.name() + " needs an unused id between 1 and 255, not " + id);
+            }
+            codecsById[id] = candidate;
+            if (candidate.name().equals(name)) {
+                selected = candidate;
+            }
+        }
+        if (selected == null && !RAW.equals(name)) {
+            throw new IllegalArgumentException("Unknown value codec " + name + ", expected " + RAW + " or one of "
+                    + Arrays.stream(codecsById).filter(c -> c != null).map(ValueCodec::name).toList());
+        }
+        this.codec = selected;
+        this.codecName = name;
+        this.thresholdBytes = (int) Math.min(Integer.MAX_VALUE, compressionThreshold.toBytes());
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Plain UTF-8, without any codec.
+     */
+    public static ValueSerializer raw(MetricsCollector metricsCollector) {
+        return new ValueSerializer(List.of(), RAW, DataSize.ofBytes(0), metricsCollector);
+    }
+
+    public String codecName() {
+        return codecName;
+    }
+
+    /**
+     * The stored form of a value. The returned buffer wraps a fresh array from
+     * its start, so callers that need a {@code byte[]} can take it as is.
+     */
+    public ByteBuffer encode(String value) {
+        long start = System.nanoTime();
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer stored = ByteBuffer.wrap(utf8);
+        if (codec != null && utf8.length >= thresholdBytes) {
+            ByteBuffer encoded = codec.encode(ByteBuffer.wrap(utf8));
+            if (encoded != null && encoded.remaining() + FRAME_BYTES < utf8.length) {
+                stored = ByteBuffer.allocate(FRAME_BYTES + encoded.remaining())
+                        .put(ENCODED_MARKER)
+                        .put((byte) codec.id())
+                        .put(encoded)
+                        .flip();
+            }
+        }
+        metricsCollector.recordCodecEncode(codecName, System.nanoTime() - start, utf8.length, stored.remaining());
+        return stored;
+    }
+
+    /**
+     * Reads back a value from the remaining bytes of its stored form, without
+     * copying them first when they are plain UTF-8.
+     *
+     * @throws SerializationException if the value was encoded by an unknown codec or is corrupt
+     */
+    public String decode(ByteBuffer stored) {
+        if (!stored.hasRemaining() || stored.get(stored.position()) != ENCODED_MARKER) {
+            return utf8(stored);
+        }
+        // Only encoded values are timed: plain ones are decoded on every off-heap L1 hit
+        long start = System.nanoTime();
+        ByteBuffer frame = stored.duplicate();
+        frame.get();
+        int id = frame.remaining() > 0 ? frame.get() & 0xFF : 0;
+        ValueCodec decoder = codecsById[id];
+        if (decoder == null) {
+            throw new SerializationException("Value encoded by an unknown codec, id " + id);
+        }
+        try {
+            String value = utf8(decoder.decode(frame));
+            metricsCollector.recordCodecDecode(decoder.name(), System.nanoTime() - start);
+            return value;
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Unreadable " + decoder.name() + " value: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        return value != null ? encode((String) value).array() : null;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        return bytes != null ? decode(ByteBuffer.wrap(bytes)) : null;
+    }
+
+    /**
+     * Value serialization for the reactive template: values are decoded straight
+     * from the buffers the Redis client hands over and written from the encoded buffer.
+     */
+    public RedisSerializationContext.SerializationPair<String> serializationPair() {
+        return RedisSerializationContext.SerializationPair.just(this::decode, this::encode);
+    }
+
+    private static String utf8(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), StandardCharsets.UTF_8);
+        }
+        return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.cachecraft.coherence;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport that carries {@link InvalidationMessage}s between CacheCraft nodes.
+ */
+public interface InvalidationBus {
+
+    void publish(InvalidationMessage message);
+
+    /**
+     * Registers a listener for every message published on the bus, including
+     * the subscriber's own.
+     */
+    void subscribe(Consumer<InvalidationMessage> listener);
+}
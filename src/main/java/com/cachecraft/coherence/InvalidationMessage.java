@@ -0,0 +1,23 @@
+package com.cachecraft.coherence;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A batch of L1 invalidations published by one node for its peers.
+ *
+ * @param origin    node that made the change; it ignores its own messages
+ * @param all       drop every L1 entry, {@code keys} is empty
+ * @param keys      keys to drop from L1
+ * @param namespace cache namespace the keys belong to, or {@code null} for the
+ *                  default namespace, which keeps its messages readable by nodes
+ *                  that predate namespaces
+ */
+public record InvalidationMessage(String origin, boolean all, List<String> keys,
+                                  @JsonInclude(JsonInclude.Include.NON_NULL) String namespace) {
+
+    public InvalidationMessage(String origin, boolean all, List<String> keys) {
+        this(origin, all, keys, null);
+    }
+}
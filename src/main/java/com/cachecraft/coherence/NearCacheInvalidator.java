@@ -0,0 +1,157 @@
+package com.cachecraft.coherence;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.L1Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the L1 caches of all nodes sharing a Redis coherent. Local writes and
+ * evictions queue their keys here; the queue is deduplicated and published as
+ * one message per batch on a short interval, and peers drop those keys from L1
+ * so their next read goes to Redis.
+ *
+ * <p>Each cache namespace has its own invalidator; they share the bus and tell
+ * their messages apart by namespace.
+ */
+@Component
+public class NearCacheInvalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheInvalidator.class);
+
+    private final InvalidationBus bus;
+    private final CacheProperties.Invalidation config;
+    private final MetricsCollector metricsCollector;
+    // Null for the default namespace
+    private final String namespace;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Keys changed locally since the last flush
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingClear = new AtomicBoolean();
+
+    @Autowired
+    public NearCacheInvalidator(InvalidationBus bus, CacheProperties properties, MetricsCollector metricsCollector) {
+        this(bus, properties.getInvalidation(), metricsCollector, null);
+    }
+
+    private NearCacheInvalidator(InvalidationBus bus, CacheProperties.Invalidation config,
+                                 MetricsCollector metricsCollector, String namespace) {
+        this.bus = bus;
+        this.config = config;
+        this.metricsCollector = metricsCollector;
+        this.namespace = namespace;
+    }
+
+    /**
+     * An invalidator for another cache namespace, on the same bus. It is not a
+     * Spring bean; whoever creates it runs its {@link #flush()} and {@link #shutdown()}.
+     */
+    public NearCacheInvalidator forNamespace(String namespace) {
+        return new NearCacheInvalidator(bus, config, metricsCollector, namespace);
+    }
+
+    /**
+     * Drops the keys peers report as changed from the given L1.
+     */
+    public void bind(L1Store l1) {
+        bind(l1, key -> { }, () -> { });
+    }
+
+    /**
+     * Drops the keys peers report as changed from the given L1 and passes each of
+     * them to {@code onPeerChange}. When a peer clears the cache,
+     * {@code onPeerClear} runs before L1 is emptied.
+     */
+    public void bind(L1Store l1, Consumer<String> onPeerChange, Runnable onPeerClear) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        bus.subscribe(message -> {
+            if (nodeId.equals(message.origin()) || !Objects.equals(namespace, message.namespace())) {
+                return;
+            }
+            if (message.all()) {
+                // First, so nothing is reloaded into the emptied L1 from keys the clear hid
+                onPeerClear.run();
+                l1.invalidateAll();
+                metricsCollector.recordInvalidationsReceived(1);
+            } else {
+                for (String key : message.keys()) {
+                    l1.invalidate(key);
+                    onPeerChange.accept(key);
+                }
+                metricsCollector.recordInvalidationsReceived(message.keys().size());
+            }
+        });
+        logger.info("L1 invalidation enabled on channel {} as node {}{}", config.getChannel(), nodeId,
+                namespace != null ? " for namespace " + namespace : "");
+    }
+
+    public void invalidate(String key) {
+        if (config.isEnabled()) {
+            pending.add(key);
+        }
+    }
+
+    public void invalidateAll() {
+        if (config.isEnabled()) {
+            pendingClear.set(true);
+        }
+    }
+
+    /**
+     * Publishes everything queued since the last flush.
+     */
+    @Scheduled(fixedDelayString = "${cachecraft.invalidation.flush-interval:PT0.05S}")
+    public void flush() {
+        if (pendingClear.getAndSet(false)) {
+            // A full clear supersedes every key queued before it
+            pending.clear();
+            bus.publish(new InvalidationMessage(nodeId, true, List.of(), namespace));
+            metricsCollector.recordInvalidationsPublished(1);
+        }
+
+        List<String> batch = new ArrayList<>();
+        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+            if (batch.size() == config.getMaxBatchSize()) {
+                publish(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            publish(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void publish(List<String> keys) {
+        bus.publish(new InvalidationMessage(nodeId, false, keys, namespace));
+        metricsCollector.recordInvalidationsPublished(keys.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.cachecraft.coherence;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.store.RedisL2Store;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus over a Redis pub/sub channel shared by every node using the same Redis.
+ *
+ * <p>The subscription is (re)established from a scheduled check rather than at
+ * context startup, so a node whose Redis is down still starts and serves from
+ * L1 and the backing store, and picks up peer invalidations once Redis is back.
+ */
+@Component
+public class RedisInvalidationBus implements InvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisInvalidationBus.class);
+
+    private final RedisL2Store l2Store;
+    private final RedisConnectionFactory connectionFactory;
+    private final ChannelTopic topic;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+
+    private RedisMessageListenerContainer container;
+
+    @Autowired
+    public RedisInvalidationBus(RedisL2Store l2Store,
+                                RedisConnectionFactory connectionFactory,
+                                CacheProperties properties) {
+        this.l2Store = l2Store;
+        this.connectionFactory = connectionFactory;
+        this.topic = new ChannelTopic(properties.getInvalidation().getChannel());
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        try {
+            l2Store.publish(topic.getTopic(), objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize L1 invalidation message", e);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationMessage> listener) {
+        listeners.add((message, pattern) -> {
+            try {
+                listener.accept(objectMapper.readValue(message.getBody(), InvalidationMessage.class));
+            } catch (IOException e) {
+                logger.warn("Ignoring malformed L1 invalidation message", e);
+            }
+        });
+    }
+
+    /**
+     * Starts a listener container for the registered subscribers unless one is
+     * already listening. A failed container is discarded and retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${cachecraft.invalidation.resubscribe-interval:PT10S}")
+    public synchronized void ensureSubscribed() {
+        if (listeners.isEmpty() || (container != null && container.isListening())) {
+            return;
+        }
+        stopContainer();
+
+        RedisMessageListenerContainer candidate = new RedisMessageListenerContainer();
+        candidate.setConnectionFactory(connectionFactory);
+        listeners.forEach(listener -> candidate.addMessageListener(listener, topic));
+        try {
+            candidate.afterPropertiesSet();
+            candidate.start();
+            container = candidate;
+            logger.info("Subscribed to L1 invalidation channel {}", topic.getTopic());
+        } catch (Exception e) {
+            logger.warn("Redis is not available, L1 invalidation subscription will be retried: {}", e.getMessage());
+            destroyQuietly(candidate);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stopContainer() {
+        if (container != null) {
+            destroyQuietly(container);
+            container = null;
+        }
+    }
+
+    private static void destroyQuietly(RedisMessageListenerContainer container) {
+        try {
+            container.destroy();
+        } catch (Exception e) {
+            logger.debug("Error while stopping listener container", e);
+        }
+    }
+}
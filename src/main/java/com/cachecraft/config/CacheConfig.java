@@ -1,40 +1,54 @@
 package com.cachecraft.config;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
+import com.cachecraft.codec.ValueSerializer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import java.util.concurrent.TimeUnit;
-
 @Configuration
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
 
     @Bean
-    public Caffeine<Object, Object> caffeineConfig() {
-        return Caffeine.newBuilder()
-                .initialCapacity(100)
-                .maximumSize(500)
-                .expireAfterWrite(10, TimeUnit.MINUTES);
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                       ValueSerializer valueSerializer) {
+        return createRedisTemplate(redisConnectionFactory, valueSerializer);
     }
 
+    // Replaces Spring Boot's, whose values are plain strings
     @Bean
-    public CacheManager cacheManager(Caffeine<Object, Object> caffeine) {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(caffeine);
-        return cacheManager;
+    public ReactiveStringRedisTemplate reactiveStringRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                   ValueSerializer valueSerializer) {
+        return createReactiveTemplate(connectionFactory, valueSerializer);
     }
 
-    @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    /**
+     * The template the cache uses for blocking Redis calls, also for connections
+     * made outside Spring, such as to Redis shards added at runtime. Call
+     * {@code afterPropertiesSet()} on those.
+     */
+    public static RedisTemplate<String, Object> createRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                                    ValueSerializer valueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(redisConnectionFactory);
+        template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new StringRedisSerializer());
+        template.setValueSerializer(valueSerializer);
         return template;
     }
-}
\ No newline at end of file
+
+    public static ReactiveStringRedisTemplate createReactiveTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                     ValueSerializer valueSerializer) {
+        RedisSerializationContext<String, String> context = RedisSerializationContext
+                .<String, String>newSerializationContext(RedisSerializer.string())
+                .value(valueSerializer.serializationPair())
+                .build();
+        return new ReactiveStringRedisTemplate(connectionFactory, context);
+    }
+}
@@ -0,0 +1,294 @@
+package com.cachecraft.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tunables for the tiered cache, bound from the {@code cachecraft.*} section of application.yml.
+ */
+@Data
+@ConfigurationProperties(prefix = "cachecraft")
+public class CacheProperties {
+
+    private L1 l1 = new L1();
+    private Ttl ttl = new Ttl();
+    private Frequency frequency = new Frequency();
+    private Invalidation invalidation = new Invalidation();
+    private WriteBehind writeBehind = new WriteBehind();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Negative negative = new Negative();
+    private Snapshot snapshot = new Snapshot();
+    private Codec codec = new Codec();
+    private Keyspace keyspace = new Keyspace();
+    private Sharding sharding = new Sharding();
+    private AccessLog accessLog = new AccessLog();
+    private HotKeys hotKeys = new HotKeys();
+    private Chunking chunking = new Chunking();
+    private Tags tags = new Tags();
+    private Batch batch = new Batch();
+    // Named namespaces besides the default one, each with its own L1, TTL policy and Redis keys
+    private Map<String, Namespace> namespaces = new LinkedHashMap<>();
+
+    public enum L1Mode {
+        // CacheEntry objects in a Caffeine cache on the Java heap
+        ON_HEAP,
+        // Serialized entries in off-heap slabs, Caffeine keeps only handles
+        OFF_HEAP
+    }
+
+    public enum Backpressure {
+        // Wait up to the block timeout for room, then write through
+        BLOCK,
+        // Write through to Redis on the caller's thread
+        CALLER_RUNS,
+        // Skip the Redis write; the value stays in L1 only
+        DISCARD
+    }
+
+    @Data
+    public static class L1 {
+        private L1Mode mode = L1Mode.ON_HEAP;
+        private int initialCapacity = 100;
+        // Bound on the estimated heap bytes of cached entries in the on-heap mode
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+        private OffHeap offHeap = new OffHeap();
+    }
+
+    @Data
+    public static class OffHeap {
+        // Total off-heap memory for entry data; also the L1 weight bound in this mode
+        private DataSize maxMemory = DataSize.ofMegabytes(256);
+        // Size of one slab and of the largest entry L1 will hold
+        private DataSize slabSize = DataSize.ofMegabytes(4);
+        // Put slabs in memory-mapped files here instead of direct buffers
+        private Path mappedDirectory;
+    }
+
+    @Data
+    public static class Ttl {
+        // L1 TTL given to a key whose decayed access rate equals the hot threshold
+        private Duration base = Duration.ofMinutes(10);
+        // Lower bound, used for one-hit and cold keys
+        private Duration min = Duration.ofMinutes(1);
+        // Upper bound for the hottest keys
+        private Duration max = Duration.ofHours(1);
+        // Length of one access-counting window
+        private Duration window = Duration.ofMinutes(1);
+        // Weight kept from the previous windows when a window closes (0..1)
+        private double decay = 0.5;
+        // Decayed accesses per window at or below which a key counts as cold
+        private double coldThreshold = 1.0;
+        // Decayed accesses per window at which a key earns the base TTL
+        private double hotThreshold = 10.0;
+        // Redis keeps entries this many times longer than L1
+        private double redisMultiplier = 3.0;
+        // Max keys per pipelined PEXPIRE round trip
+        private int redisBatchSize = 256;
+        // Max keys whose Redis TTL is renewed per window; accesses to further keys leave their TTL as written
+        private int renewalLimit = 100_000;
+        // Fraction of an entry's L1 TTL after which a read reloads it in the background; 0 turns this off
+        private double refreshAhead = 0.8;
+        // How long past its L1 TTL an entry may still be served while a background reload runs
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        // How long past its L1 TTL an entry may still be served while Redis or the database is failing
+        private Duration staleIfError = Duration.ZERO;
+        // Threads running background reloads
+        private int refreshThreads = 2;
+    }
+
+    @Data
+    public static class Frequency {
+        // Counters per row of the access-frequency sketch
+        private int sketchWidth = 1 << 16;
+    }
+
+    @Data
+    public static class Invalidation {
+        // Broadcast L1 invalidations to other nodes sharing the same Redis
+        private boolean enabled = false;
+        private String channel = "cachecraft:invalidations";
+        // How long local changes are collected before they are published
+        private Duration flushInterval = Duration.ofMillis(50);
+        // Max keys per published message
+        private int maxBatchSize = 500;
+        // How often a lost pub/sub subscription is re-established
+        private Duration resubscribeInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class WriteBehind {
+        // Queue Redis writes and flush them in the background instead of on the request thread
+        private boolean enabled = false;
+        // Max distinct keys waiting to be flushed
+        private int capacity = 10_000;
+        // Max operations per pipelined flush
+        private int batchSize = 256;
+        // Longest a queued write waits before a partial batch is flushed
+        private Duration flushInterval = Duration.ofMillis(100);
+        // What a write does when the queue is full
+        private Backpressure backpressure = Backpressure.BLOCK;
+        private Duration blockTimeout = Duration.ofMillis(100);
+        // How long shutdown waits for the queue to drain
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        // Guard every Redis call; when off, failures are still logged but never skip Redis
+        private boolean enabled = true;
+        // Number of recent Redis calls the failure rate is computed over
+        private int slidingWindowSize = 20;
+        // Calls needed in the window before the breaker may open
+        private int minimumCalls = 10;
+        // Failure rate, in percent, at which the breaker opens
+        private float failureRateThreshold = 50;
+        // Calls at least this slow count as failures
+        private Duration slowCallThreshold = Duration.ofMillis(500);
+        // How long Redis is bypassed before probing it again
+        private Duration waitInOpenState = Duration.ofSeconds(10);
+        // Probe calls allowed while half-open; all must succeed to close the breaker
+        private int permittedCallsInHalfOpen = 3;
+    }
+
+    @Data
+    public static class Negative {
+        // Cache "not found" as a tombstone in L1 and Redis, so repeated lookups of an absent key stop there
+        private boolean enabled = true;
+        // How long a tombstone answers for its key, in L1 and in Redis
+        private Duration ttl = Duration.ofSeconds(30);
+        private Bloom bloomFilter = new Bloom();
+    }
+
+    @Data
+    public static class Bloom {
+        // Reject keys neither the backing store nor any write has seen without asking Redis.
+        // Writes by other nodes are only learned from their invalidations, so run several nodes
+        // with cachecraft.invalidation.enabled
+        private boolean enabled = false;
+        // Number of keys the filter is sized for
+        private int expectedInsertions = 100_000;
+        // Chance that an absent key gets past the filter at that many keys
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Data
+    public static class Snapshot {
+        // Write the hottest L1 entries to a file and load them back into L1 on startup
+        private boolean enabled = false;
+        private Path path = Path.of("cachecraft-l1.snapshot");
+        // How often the snapshot is rewritten while running; it is also written on shutdown
+        private Duration interval = Duration.ofMinutes(5);
+        // Most entries one snapshot holds, ranked by decayed access frequency
+        private int maxEntries = 10_000;
+    }
+
+    @Data
+    public static class Codec {
+        // Codec values are written to Redis and off-heap L1 with: raw (plain UTF-8) or deflate.
+        // Nodes on a release without codecs cannot read encoded values
+        private String name = "raw";
+        // Values smaller than this are stored as plain UTF-8 whatever the codec
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+    }
+
+    @Data
+    public static class Keyspace {
+        // Redis keys are <prefix>:<generation>:<cache key>; a clear moves every node to a new generation
+        private String prefix = "cachecraft";
+        // How often the current generation is re-read, in case the broadcast of a clear was missed
+        private Duration generationCheckInterval = Duration.ofSeconds(10);
+        // Keys per SCAN and UNLINK round when an old generation is reclaimed after a clear
+        private int reclaimBatchSize = 500;
+        // Most keys unlinked per second while reclaiming, so a clear does not compete with live traffic
+        private int reclaimRate = 5_000;
+    }
+
+    @Data
+    public static class AccessLog {
+        // Records lookups, puts and evictions of sampled keys to a compact trace the simulator replays
+        private boolean enabled = false;
+        private Path path = Path.of("cachecraft-access.trace");
+        // Fraction of keys recorded, picked by key hash so that every access to a sampled key is kept
+        private double sampleRate = 1.0;
+        // Accesses buffered for the writer thread; accesses that find it full are dropped and counted
+        private int bufferSize = 65_536;
+        // Recording stops once the trace reaches this size
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+    }
+
+    @Data
+    public static class HotKeys {
+        // Track the most accessed keys of each namespace and report them under /api/cache/hot-keys
+        private boolean enabled = true;
+        // Keys tracked; any key accessed more often than the least counted of them is among them
+        private int capacity = 100;
+        // How often counts decay and pins are brought up to date
+        private Duration interval = Duration.ofSeconds(10);
+        // Weight kept from earlier intervals when one closes (0..1)
+        private double decay = 0.5;
+        // Accesses per second at which a tracked key is pinned in L1, exempt from size and TTL eviction; 0 pins nothing
+        private double pinRate = 100.0;
+    }
+
+    @Data
+    public static class Chunking {
+        // Size of the pieces values uploaded through the stream endpoints are stored in, in L1 and Redis
+        private DataSize chunkSize = DataSize.ofKilobytes(256);
+        // Largest streamed value whose chunks are cached in L1 as well; larger ones are read from Redis each time
+        private DataSize maxL1Value = DataSize.ofMegabytes(8);
+        // Largest value a streaming upload may store
+        private DataSize maxValue = DataSize.ofGigabytes(1);
+        // How long streamed values stay in Redis after their upload; reads do not extend it
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Tags {
+        // How often the tag indexes drop keys that expired or were evicted since they were tagged
+        private Duration cleanupInterval = Duration.ofMinutes(5);
+        // Keys per SSCAN, EXISTS pipeline and UNLINK round when a tag is evicted or its index cleaned up
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Batch {
+        // Most keys one batch read or write may name; larger batches are rejected
+        private int maxKeys = 1000;
+    }
+
+    @Data
+    public static class Namespace {
+        // L1 weight bound, in place of cachecraft.l1.max-memory (or l1.off-heap.max-memory off heap)
+        private DataSize maxMemory;
+        // TTL policy, in place of cachecraft.ttl; settings left out take their built-in defaults
+        private Ttl ttl;
+        // Start of the namespace's Redis keys; defaults to <cachecraft.keyspace.prefix>:<namespace name>
+        private String keyPrefix;
+    }
+
+    @Data
+    public static class Sharding {
+        // Redis nodes the L2 tier is spread over by consistent hashing; none means spring.data.redis alone
+        private List<ShardNode> nodes = new ArrayList<>();
+        // Points each node takes on the hash ring; more spread keys more evenly
+        private int virtualNodes = 160;
+    }
+
+    @Data
+    public static class ShardNode {
+        // Places the node on the hash ring, so every application node must give it the same name
+        private String name;
+        private String host = "localhost";
+        private int port = 6379;
+        // Command timeout on this node
+        private Duration timeout = Duration.ofSeconds(2);
+    }
+}
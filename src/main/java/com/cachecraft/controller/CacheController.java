@@ -1,40 +1,115 @@
 package com.cachecraft.controller;
 
+import com.cachecraft.config.CacheProperties;
 import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheConfigUpdate;
 import com.cachecraft.model.CacheEntry;
 import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.service.ChunkedValue;
+import com.cachecraft.service.CacheNamespaces;
+import com.cachecraft.service.InvalidKeyException;
+import com.cachecraft.store.L2UnavailableException;
+import com.cachecraft.store.RedisShard;
+import com.cachecraft.store.RedisShards;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * REST API of the cache. Routes without a namespace address the default one;
+ * those under {@code /api/{namespace}} address a named namespace and answer 404
+ * for a name that is not configured.
+ */
 @RestController
 @RequestMapping("/api")
 public class CacheController {
 
     private final CacheManagerService cacheManagerService;
+    private final CacheNamespaces cacheNamespaces;
+    private final RedisShards redisShards;
     private final MetricsCollector metricsCollector;
 
     @Autowired
-    public CacheController(CacheManagerService cacheManagerService, MetricsCollector metricsCollector) {
+    public CacheController(CacheManagerService cacheManagerService, CacheNamespaces cacheNamespaces,
+                           RedisShards redisShards, MetricsCollector metricsCollector) {
         this.cacheManagerService = cacheManagerService;
+        this.cacheNamespaces = cacheNamespaces;
+        this.redisShards = redisShards;
         this.metricsCollector = metricsCollector;
     }
 
+    /**
+     * Writes the entry's pre-encoded JSON straight to the response, so a hit only
+     * costs writing the cached bytes plus the current frequency count. The body is
+     * the same JSON Jackson would produce for {@link CacheEntry}.
+     */
     @GetMapping("/data/{key}")
-    public ResponseEntity<CacheEntry> getData(@PathVariable String key) {
-        CacheEntry entry = cacheManagerService.get(key);
-        if (entry != null) {
-            return ResponseEntity.ok(entry);
-        } else {
-            return ResponseEntity.notFound().build();
+    public void getData(@PathVariable String key, HttpServletResponse response) throws IOException {
+        writeEntry(cacheManagerService, key, response);
+    }
+
+    @GetMapping("/{namespace}/data/{key}")
+    public void getNamespaceData(@PathVariable String namespace, @PathVariable String key,
+                                 HttpServletResponse response) throws IOException {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        writeEntry(service, key, response);
+    }
+
+    private static void writeEntry(CacheManagerService service, String key, HttpServletResponse response) throws IOException {
+        CacheEntry entry = service.getShared(key);
+        if (entry == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        byte[] prefix = entry.getJsonPrefix();
+        int frequencyCount = service.frequency(key);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(prefix.length + digits(frequencyCount) + 1);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(prefix);
+        writeDigits(out, frequencyCount);
+        out.write('}');
     }
 
     @PostMapping("/data")
     public ResponseEntity<String> addData(@RequestBody Map<String, String> requestData) {
+        return addData(cacheManagerService, requestData);
+    }
+
+    @PostMapping("/{namespace}/data")
+    public ResponseEntity<String> addNamespaceData(@PathVariable String namespace,
+                                                   @RequestBody Map<String, String> requestData) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return unknownNamespace(namespace);
+        }
+        return addData(service, requestData);
+    }
+
+    /**
+     * Stores a value, tagged with the comma-separated tags in the optional
+     * {@code tags} field.
+     */
+    private static ResponseEntity<String> addData(CacheManagerService service, Map<String, String> requestData) {
         String key = requestData.get("key");
         String value = requestData.get("value");
         
@@ -42,25 +117,273 @@ public class CacheController {
             return ResponseEntity.badRequest().body("Key and value are required");
         }
         
-        cacheManagerService.put(key, value);
+        String tags = requestData.get("tags");
+        if (tags == null) {
+            service.put(key, value);
+        } else {
+            List<String> parsed = Arrays.stream(tags.split(",")).map(String::trim).filter(tag -> !tag.isEmpty()).toList();
+            service.put(key, value, parsed);
+        }
         return ResponseEntity.ok("Data added successfully for key: " + key);
     }
 
+    /**
+     * Stores the raw request body as the key's value in fixed-size chunks,
+     * reading it one chunk at a time, so an upload of any size holds one chunk
+     * of heap. Answers 413 above {@code cachecraft.chunking.max-value} and 503
+     * when Redis could not take it.
+     */
+    @PutMapping("/data/{key}/stream")
+    public ResponseEntity<String> putStream(@PathVariable String key, HttpServletRequest request) throws IOException {
+        return putStream(cacheManagerService, key, request);
+    }
+
+    @PutMapping("/{namespace}/data/{key}/stream")
+    public ResponseEntity<String> putNamespaceStream(@PathVariable String namespace, @PathVariable String key,
+                                                     HttpServletRequest request) throws IOException {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return unknownNamespace(namespace);
+        }
+        return putStream(service, key, request);
+    }
+
+    private static ResponseEntity<String> putStream(CacheManagerService service, String key,
+                                                    HttpServletRequest request) throws IOException {
+        ChunkedValue value;
+        try {
+            value = service.putStream(key, request.getInputStream());
+        } catch (InvalidKeyException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (L2UnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+        return ResponseEntity.ok("Data streamed successfully for key: " + key + " (" + value.getLength()
+                + " bytes in " + value.getChunkCount() + " chunks)");
+    }
+
+    /**
+     * Streams the key's value as raw bytes, one chunk at a time: whole with
+     * chunked transfer encoding, or the single byte range a {@code Range} header
+     * asks for with 206. A value that was not uploaded as a stream is served
+     * from its UTF-8 bytes.
+     */
+    @GetMapping("/data/{key}/stream")
+    public void getStream(@PathVariable String key, @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                          HttpServletResponse response) throws IOException {
+        writeStream(cacheManagerService, key, range, response);
+    }
+
+    @GetMapping("/{namespace}/data/{key}/stream")
+    public void getNamespaceStream(@PathVariable String namespace, @PathVariable String key,
+                                   @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                   HttpServletResponse response) throws IOException {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        writeStream(service, key, range, response);
+    }
+
+    private static void writeStream(CacheManagerService service, String key, String range,
+                                    HttpServletResponse response) throws IOException {
+        ChunkedValue value = service.getStream(key);
+        if (value == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = value.getLength();
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        List<HttpRange> ranges = parseRanges(range);
+        // Several ranges would need a multipart body; the whole value is a valid answer to them
+        if (ranges.size() != 1) {
+            value.writeTo(response.getOutputStream(), 0, length);
+            return;
+        }
+        long start = ranges.get(0).getRangeStart(length);
+        long end = ranges.get(0).getRangeEnd(length);
+        if (start >= length) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        response.setContentLengthLong(end - start + 1);
+        value.writeTo(response.getOutputStream(), start, end + 1);
+    }
+
+    // A malformed Range header is ignored, as RFC 9110 allows
+    private static List<HttpRange> parseRanges(String range) {
+        if (range == null) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@code GET /data/{key}}: the request thread is
+     * released while Redis is queried, and the response is written when the
+     * lookup completes.
+     */
+    @GetMapping("/async/data/{key}")
+    public CompletableFuture<ResponseEntity<CacheEntry>> getDataAsync(@PathVariable String key) {
+        return cacheManagerService.getAsync(key)
+                .thenApply(entry -> entry != null ? ResponseEntity.ok(entry) : ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/async/data")
+    public CompletableFuture<ResponseEntity<String>> addDataAsync(@RequestBody Map<String, String> requestData) {
+        String key = requestData.get("key");
+        String value = requestData.get("value");
+
+        if (key == null || value == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Key and value are required"));
+        }
+
+        return cacheManagerService.putAsync(key, value)
+                .thenApply(done -> ResponseEntity.ok("Data added successfully for key: " + key));
+    }
+
+    @GetMapping("/data")
+    public ResponseEntity<Map<String, CacheEntry>> getDataBatch(@RequestParam List<String> keys) {
+        return ResponseEntity.ok(cacheManagerService.getAll(keys));
+    }
+
+    @PostMapping("/data/batch")
+    public ResponseEntity<String> addDataBatch(@RequestBody Map<String, String> requestData) {
+        if (requestData.isEmpty() || requestData.containsKey(null) || requestData.containsValue(null)) {
+            return ResponseEntity.badRequest().body("At least one key and value pair is required");
+        }
+        
+        cacheManagerService.putAll(requestData);
+        return ResponseEntity.ok("Data added successfully for " + requestData.size() + " keys");
+    }
+
     @GetMapping("/cache/stats")
     public ResponseEntity<Map<String, Object>> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("hits", metricsCollector.getCacheHitCount());
+        stats.put("l1Hits", metricsCollector.getL1HitCount());
+        stats.put("l2Hits", metricsCollector.getL2HitCount());
         stats.put("misses", metricsCollector.getCacheMissCount());
         stats.put("evictions", metricsCollector.getCacheEvictionCount());
+        stats.put("tagEvictions", metricsCollector.getTagEvictionCount());
+        stats.put("l1Evictions", metricsCollector.getL1EvictionCounts());
         stats.put("memoryUsage", metricsCollector.getMemoryUsage());
+        stats.put("l1Entries", cacheManagerService.getCaffeineCacheSize());
+        stats.put("l1MaxMemory", cacheManagerService.getL1MaximumBytes());
+        stats.put("l1PinnedKeys", cacheManagerService.getPinnedKeyCount());
+        stats.put("l1Tags", cacheManagerService.getTagCount());
+        stats.put("codecCompressionRatio", metricsCollector.getCodecCompressionRatios());
+        stats.put("latencyMs", metricsCollector.getTierLatencyMillis());
+        stats.put("loads", metricsCollector.getLoadCount());
+        stats.put("coalescedLoads", metricsCollector.getCoalescedLoadCount());
+        stats.put("refreshes", metricsCollector.getRefreshCount());
+        stats.put("staleWhileRevalidate", metricsCollector.getStaleWhileRevalidateCount());
+        stats.put("staleOnError", metricsCollector.getStaleOnErrorCount());
+        stats.put("negativeHits", metricsCollector.getNegativeHitCount());
+        stats.put("bloomFalsePositives", metricsCollector.getBloomFalsePositiveCount());
+        stats.put("invalidationsPublished", metricsCollector.getInvalidationsPublishedCount());
+        stats.put("invalidationsReceived", metricsCollector.getInvalidationsReceivedCount());
+        stats.put("ttlRenewalsSkipped", metricsCollector.getTtlRenewalsSkippedCount());
+        stats.put("writeBehindQueueDepth", metricsCollector.getWriteBehindQueueDepth());
+        stats.put("writeBehindCoalesced", metricsCollector.getWriteBehindCoalescedCount());
+        stats.put("writeBehindDropped", metricsCollector.getWriteBehindDroppedCount());
+        stats.put("writeBehindFlushMeanMs", metricsCollector.getWriteBehindFlushMeanMillis());
+        stats.put("redisCircuitState", metricsCollector.getRedisCircuitState());
+        stats.put("redisShardCircuitStates", metricsCollector.getRedisShardCircuitStates());
+        stats.put("redisRejected", metricsCollector.getRedisRejectedCount());
+        stats.put("redisReclaimedKeys", metricsCollector.getReclaimedKeyCount());
+        stats.put("chunkReads", metricsCollector.getChunkReadCounts());
+        Map<String, Object> namespaces = new LinkedHashMap<>();
+        cacheNamespaces.all().forEach((name, service) -> namespaces.put(name, namespaceStats(service)));
+        stats.put("namespaces", namespaces);
         return ResponseEntity.ok(stats);
     }
 
+    @GetMapping("/{namespace}/cache/stats")
+    public ResponseEntity<Map<String, Object>> getNamespaceStats(@PathVariable String namespace) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(namespaceStats(service));
+    }
+
+    private Map<String, Object> namespaceStats(CacheManagerService service) {
+        Map<String, Object> stats = metricsCollector.getNamespaceStats(service.getNamespace());
+        stats.put("l1Entries", service.getCaffeineCacheSize());
+        stats.put("l1MaxMemory", service.getL1MaximumBytes());
+        return stats;
+    }
+
+    /**
+     * The most accessed keys of the default namespace, hottest first, and whether each is pinned in L1.
+     */
+    @GetMapping("/cache/hot-keys")
+    public ResponseEntity<List<Map<String, Object>>> getHotKeys() {
+        return ResponseEntity.ok(cacheManagerService.getHotKeys());
+    }
+
+    @GetMapping("/{namespace}/cache/hot-keys")
+    public ResponseEntity<List<Map<String, Object>>> getNamespaceHotKeys(@PathVariable String namespace) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(service.getHotKeys());
+    }
+
     @PutMapping("/cache/config")
-    public ResponseEntity<String> updateTTLConfig(@RequestBody Map<String, Object> config) {
-        // In a real implementation, this would update the TTL policy
-        // For now, we'll just return a success message
-        return ResponseEntity.ok("TTL policy updated successfully");
+    public ResponseEntity<String> updateConfig(@RequestBody CacheConfigUpdate update) {
+        return updateConfig(cacheManagerService, update);
+    }
+
+    @PutMapping("/{namespace}/cache/config")
+    public ResponseEntity<String> updateNamespaceConfig(@PathVariable String namespace,
+                                                        @RequestBody CacheConfigUpdate update) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return unknownNamespace(namespace);
+        }
+        return updateConfig(service, update);
+    }
+
+    private static ResponseEntity<String> updateConfig(CacheManagerService service, CacheConfigUpdate update) {
+        try {
+            service.reconfigure(update);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.ok("Cache configuration updated successfully");
+    }
+
+    /**
+     * Evicts every key put with the tag, from both tiers and on every node.
+     */
+    @DeleteMapping("/cache/tags/{tag}")
+    public ResponseEntity<String> evictTag(@PathVariable String tag) {
+        int evicted = cacheManagerService.evictByTag(tag);
+        return ResponseEntity.ok("Evicted " + evicted + " keys tagged " + tag);
+    }
+
+    @DeleteMapping("/{namespace}/cache/tags/{tag}")
+    public ResponseEntity<String> evictNamespaceTag(@PathVariable String namespace, @PathVariable String tag) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return unknownNamespace(namespace);
+        }
+        int evicted = service.evictByTag(tag);
+        return ResponseEntity.ok("Evicted " + evicted + " keys tagged " + tag + " in cache namespace " + namespace);
     }
 
     @DeleteMapping("/cache/clear")
@@ -68,4 +391,92 @@ public class CacheController {
         cacheManagerService.clearAll();
         return ResponseEntity.ok("All cache cleared successfully");
     }
-}
\ No newline at end of file
+
+    @DeleteMapping("/{namespace}/cache/clear")
+    public ResponseEntity<String> clearNamespace(@PathVariable String namespace) {
+        CacheManagerService service = cacheNamespaces.get(namespace);
+        if (service == null) {
+            return unknownNamespace(namespace);
+        }
+        service.clearAll();
+        return ResponseEntity.ok("Cache namespace " + namespace + " cleared successfully");
+    }
+
+    /**
+     * The Redis shards on the hash ring of this application node.
+     */
+    @GetMapping("/cache/shards")
+    public ResponseEntity<List<Map<String, Object>>> getShards() {
+        return ResponseEntity.ok(redisShards.all().stream().map(CacheController::shardInfo).toList());
+    }
+
+    /**
+     * Puts a Redis node on this application node's hash ring; other application
+     * nodes have to be told too.
+     */
+    @PostMapping("/cache/shards")
+    public ResponseEntity<?> addShard(@RequestBody CacheProperties.ShardNode node) {
+        try {
+            return ResponseEntity.ok(shardInfo(redisShards.add(node)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/cache/shards/{name}")
+    public ResponseEntity<String> removeShard(@PathVariable String name) {
+        try {
+            if (!redisShards.remove(name)) {
+                return ResponseEntity.status(HttpServletResponse.SC_NOT_FOUND).body("Unknown Redis shard: " + name);
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.ok("Redis shard " + name + " removed successfully");
+    }
+
+    /**
+     * Answers 400 for a key or value the cache does not accept, whichever route it came in on.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> invalidInput(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static Map<String, Object> shardInfo(RedisShard shard) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", shard.getName());
+        info.put("address", shard.getAddress());
+        info.put("state", shard.getBreaker().getState());
+        info.put("failureRate", shard.getBreaker().getFailureRate());
+        return info;
+    }
+
+    private static ResponseEntity<String> unknownNamespace(String namespace) {
+        return ResponseEntity.status(HttpServletResponse.SC_NOT_FOUND).body("Unknown cache namespace: " + namespace);
+    }
+
+    private static int digits(int n) {
+        int digits = 1;
+        while (n >= 10) {
+            n /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    // Frequency counts are never negative
+    private static void writeDigits(ServletOutputStream out, int n) throws IOException {
+        for (int divisor = pow10(digits(n) - 1); divisor > 0; divisor /= 10) {
+            out.write('0' + (n / divisor) % 10);
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -1,14 +1,26 @@
 package com.cachecraft.metrics;
 
+import com.cachecraft.store.CircuitBreaker;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Supplier;
+import java.util.function.LongSupplier;
 
 @Component
 public class MetricsCollector {
@@ -16,24 +28,84 @@ public class MetricsCollector {
     private final MeterRegistry meterRegistry;
     
     // Cache metrics
-    private final Counter cacheHits;
+    private final Counter l1Hits;
+    private final Counter l2Hits;
     private final Counter cacheMisses;
     private final Counter cacheEvictions;
+    // Tags evicted; their keys count as evictions too
+    private final Counter tagEvictions;
     
-    // Timing metrics
-    private final Timer cacheOperationTimer;
+    // Load coalescing metrics
+    private final Counter cacheLoads;
+    private final Counter coalescedLoads;
     
-    // Memory usage simulation
-    private final AtomicLong memoryUsage;
+    // Refresh-ahead and stale serving metrics
+    private final Counter refreshes;
+    private final Counter staleRevalidating;
+    private final Counter staleOnError;
+    
+    // Negative caching metrics
+    private final Counter negativeL1Hits;
+    private final Counter negativeL2Hits;
+    private final Counter bloomRejections;
+    private final Counter bloomFalsePositives;
+    
+    // L1 coherence metrics
+    private final Counter invalidationsPublished;
+    private final Counter invalidationsReceived;
+    
+    // Accesses whose key missed the window's Redis TTL renewal because the window was full
+    private final Counter ttlRenewalsSkipped;
+    
+    // Write-behind metrics
+    private final Counter writeBehindCoalesced;
+    private final Counter writeBehindOverflow;
+    private final Counter writeBehindDropped;
+    private final Timer writeBehindFlushTimer;
+    private final AtomicLong writeBehindQueueDepth;
+    
+    // Redis circuit breaker metrics
+    private final Counter redisRejected;
+    
+    // Keys of old Redis generations unlinked after a clear
+    private final Counter reclaimedKeys;
+    // Breaker state of each Redis shard, 0 = closed, 1 = half-open, 2 = open
+    private final Map<String, ShardCircuit> redisCircuitStates = new ConcurrentHashMap<>();
+    
+    // Access log metrics
+    private final Counter accessLogWritten;
+    private final Counter accessLogDropped;
+    
+    // Chunks of streamed values read, by where they came from
+    private final Map<String, Counter> chunkReads = new LinkedHashMap<>();
+    
+    // Per-tier lookup latency
+    private final Timer l1Latency;
+    private final Timer redisLatency;
+    private final Timer databaseLatency;
+    
+    // Value codec metrics, registered per codec on first use
+    private final Map<String, CodecMeters> codecMeters = new ConcurrentHashMap<>();
+    
+    // Hits, misses, latency and L1 memory of each cache namespace, registered on first use;
+    // the cache-wide meters above count every namespace
+    private final Map<String, NamespaceMeters> namespaceMeters = new ConcurrentHashMap<>();
+    
+    private final Map<RemovalCause, Counter> l1Evictions = new EnumMap<>(RemovalCause.class);
 
     @Autowired
     public MetricsCollector(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
-        this.memoryUsage = new AtomicLong(0);
         
         // Initialize counters
-        this.cacheHits = Counter.builder("cache.hits")
+        this.l1Hits = Counter.builder("cache.hits")
+                .description("Number of cache hits")
+                .tag("tier", "l1")
+                .register(meterRegistry);
+        
+        this.l2Hits = Counter.builder("cache.hits")
                 .description("Number of cache hits")
+                .tag("tier", "l2")
                 .register(meterRegistry);
         
         this.cacheMisses = Counter.builder("cache.misses")
@@ -44,56 +116,449 @@ public class MetricsCollector {
                 .description("Number of cache evictions")
                 .register(meterRegistry);
         
-        // Initialize timer
-        this.cacheOperationTimer = Timer.builder("cache.operations")
-                .description("Timing of cache operations")
+        this.tagEvictions = Counter.builder("cache.tag.evictions")
+                .description("Number of tags whose keys were evicted together")
+                .register(meterRegistry);
+        
+        this.cacheLoads = Counter.builder("cache.loads")
+                .description("Number of L2/backing store loads started on an L1 miss")
+                .register(meterRegistry);
+        
+        this.coalescedLoads = Counter.builder("cache.loads.coalesced")
+                .description("Number of L1 misses that joined a load already in flight")
+                .register(meterRegistry);
+        
+        this.refreshes = Counter.builder("cache.refreshes")
+                .description("Number of background reloads started for entries close to or past their TTL")
+                .register(meterRegistry);
+        
+        this.staleRevalidating = Counter.builder("cache.stale.served")
+                .description("Number of expired entries served from L1")
+                .tag("reason", "revalidate")
+                .register(meterRegistry);
+        
+        this.staleOnError = Counter.builder("cache.stale.served")
+                .description("Number of expired entries served from L1")
+                .tag("reason", "error")
+                .register(meterRegistry);
+        
+        this.negativeL1Hits = negativeHits("l1");
+        this.negativeL2Hits = negativeHits("l2");
+        this.bloomRejections = negativeHits("filter");
+        
+        this.bloomFalsePositives = Counter.builder("cache.bloom.false.positives")
+                .description("Number of absent keys the Bloom filter let through to Redis and the backing store")
+                .register(meterRegistry);
+        
+        this.invalidationsPublished = Counter.builder("cache.invalidations.published")
+                .description("Number of L1 invalidations broadcast to other nodes")
+                .register(meterRegistry);
+        
+        this.invalidationsReceived = Counter.builder("cache.invalidations.received")
+                .description("Number of L1 invalidations applied on behalf of other nodes")
+                .register(meterRegistry);
+        
+        this.ttlRenewalsSkipped = Counter.builder("cache.ttl.renewals.skipped")
+                .description("Number of accesses left out of the Redis TTL renewal because the window held its limit of keys")
+                .register(meterRegistry);
+        
+        this.writeBehindCoalesced = Counter.builder("cache.writebehind.coalesced")
+                .description("Number of queued Redis writes replaced by a newer write to the same key")
+                .register(meterRegistry);
+        
+        this.writeBehindOverflow = Counter.builder("cache.writebehind.overflow")
+                .description("Number of Redis writes made on the caller's thread because the queue was full")
+                .register(meterRegistry);
+        
+        this.writeBehindDropped = Counter.builder("cache.writebehind.dropped")
+                .description("Number of Redis writes dropped because the queue was full or Redis failed at shutdown")
+                .register(meterRegistry);
+        
+        this.writeBehindFlushTimer = Timer.builder("cache.writebehind.flush")
+                .description("Latency of pipelined write-behind flushes to Redis")
+                .register(meterRegistry);
+        
+        this.writeBehindQueueDepth = new AtomicLong(0);
+        meterRegistry.gauge("cache.writebehind.queue.depth", writeBehindQueueDepth, AtomicLong::doubleValue);
+        
+        this.redisRejected = Counter.builder("cache.redis.rejected")
+                .description("Number of Redis calls skipped because the circuit breaker was open")
+                .register(meterRegistry);
+        
+        this.reclaimedKeys = Counter.builder("cache.redis.reclaimed")
+                .description("Number of keys of cleared Redis generations unlinked in the background")
+                .register(meterRegistry);
+        
+        this.accessLogWritten = Counter.builder("cache.accesslog.written")
+                .description("Number of accesses written to the access trace")
+                .register(meterRegistry);
+        
+        this.accessLogDropped = Counter.builder("cache.accesslog.dropped")
+                .description("Number of sampled accesses left out of the access trace because its buffer was full")
+                .register(meterRegistry);
+        
+        for (String source : List.of("l1", "redis", "missing")) {
+            chunkReads.put(source, Counter.builder("cache.chunks.read")
+                    .description("Number of chunks of streamed values read, by the tier that had them")
+                    .tag("source", source)
+                    .register(meterRegistry));
+        }
+        
+        // The worst state of any shard: 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("cache.redis.circuit.state", this, collector -> collector.getRedisCircuitState())
                 .register(meterRegistry);
         
-        // Register gauge for memory usage using the registry method
-        meterRegistry.gauge("cache.memory.usage", memoryUsage, AtomicLong::doubleValue);
+        this.l1Latency = tierLatency("l1");
+        this.redisLatency = tierLatency("redis");
+        this.databaseLatency = tierLatency("database");
+        
+        for (RemovalCause cause : RemovalCause.values()) {
+            if (cause.wasEvicted()) {
+                l1Evictions.put(cause, Counter.builder("cache.l1.evictions")
+                        .description("Number of entries L1 evicted on its own, by cause")
+                        .tag("cause", cause.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry));
+            }
+        }
+        
+        Gauge.builder("cache.memory.usage", this, MetricsCollector::getMemoryUsage)
+                .description("Memory held by L1 entries")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private Counter negativeHits(String tier) {
+        return Counter.builder("cache.negative.hits")
+                .description("Number of lookups answered as not found without reaching the backing store")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private record ShardCircuit(AtomicLong state, Gauge gauge) {
+    }
+
+    private record CodecMeters(Counter valueBytes, Counter storedBytes, Timer encodeTime, Timer decodeTime) {
+
+        double compressionRatio() {
+            double value = valueBytes.count();
+            return value > 0 ? storedBytes.count() / value : 1.0;
+        }
+    }
+
+    private CodecMeters codecMeters(String codec) {
+        return codecMeters.computeIfAbsent(codec, name -> {
+            CodecMeters meters = new CodecMeters(
+                    codecBytes(name, "value"),
+                    codecBytes(name, "stored"),
+                    codecTime(name, "encode"),
+                    codecTime(name, "decode"));
+            Gauge.builder("cache.codec.compression.ratio", meters, CodecMeters::compressionRatio)
+                    .description("Stored bytes per value byte written with a codec; below 1 when it saves space")
+                    .tag("codec", name)
+                    .register(meterRegistry);
+            return meters;
+        });
+    }
+
+    private Counter codecBytes(String codec, String form) {
+        return Counter.builder("cache.codec.bytes")
+                .description("Bytes written with a value codec, as UTF-8 values and as stored")
+                .baseUnit("bytes")
+                .tag("codec", codec)
+                .tag("form", form)
+                .register(meterRegistry);
+    }
+
+    private Timer codecTime(String codec, String operation) {
+        return Timer.builder("cache.codec.time")
+                .description("Time to encode or decode a value with a codec")
+                .tag("codec", codec)
+                .tag("operation", operation)
+                .register(meterRegistry);
     }
 
-    @PostConstruct
-    public void init() {
-        // Set initial memory usage
-        memoryUsage.set(1024); // Initial memory in KB
+    private static final class NamespaceMeters {
+        private final Counter l1Hits;
+        private final Counter l2Hits;
+        private final Counter misses;
+        private final Timer latency;
+        // L1 memory, read from the namespace's L1 store
+        private volatile LongSupplier l1Bytes = () -> 0;
+        // Keys pinned in the namespace's L1
+        private volatile LongSupplier pinnedKeys = () -> 0;
+
+        private NamespaceMeters(Counter l1Hits, Counter l2Hits, Counter misses, Timer latency) {
+            this.l1Hits = l1Hits;
+            this.l2Hits = l2Hits;
+            this.misses = misses;
+            this.latency = latency;
+        }
+
+        long memoryUsage() {
+            return l1Bytes.getAsLong();
+        }
+
+        long pinnedKeys() {
+            return pinnedKeys.getAsLong();
+        }
     }
 
-    public void recordHit() {
-        cacheHits.increment();
-        memoryUsage.incrementAndGet(); // Simple simulation
+    private NamespaceMeters namespaceMeters(String namespace) {
+        return namespaceMeters.computeIfAbsent(namespace, name -> {
+            NamespaceMeters meters = new NamespaceMeters(
+                    namespaceHits(name, "l1"),
+                    namespaceHits(name, "l2"),
+                    Counter.builder("cache.namespace.misses")
+                            .description("Number of cache misses in one namespace")
+                            .tag("namespace", name)
+                            .register(meterRegistry),
+                    Timer.builder("cache.namespace.latency")
+                            .description("Latency of lookups in one namespace, across all tiers")
+                            .tag("namespace", name)
+                            .publishPercentiles(0.5, 0.95, 0.99)
+                            .register(meterRegistry));
+            Gauge.builder("cache.namespace.memory", meters, NamespaceMeters::memoryUsage)
+                    .description("Memory held by the L1 entries of one namespace")
+                    .baseUnit("bytes")
+                    .tag("namespace", name)
+                    .register(meterRegistry);
+            Gauge.builder("cache.namespace.pinned", meters, NamespaceMeters::pinnedKeys)
+                    .description("Hot keys pinned in the L1 of one namespace")
+                    .tag("namespace", name)
+                    .register(meterRegistry);
+            return meters;
+        });
     }
 
-    public void recordMiss() {
+    private Counter namespaceHits(String namespace, String tier) {
+        return Counter.builder("cache.namespace.hits")
+                .description("Number of cache hits in one namespace")
+                .tag("namespace", namespace)
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private Timer tierLatency(String tier) {
+        return Timer.builder("cache.tier.latency")
+                .description("Latency of lookups in one cache tier")
+                .tag("tier", tier)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    public void recordL1Hit(String namespace) {
+        l1Hits.increment();
+        namespaceMeters(namespace).l1Hits.increment();
+    }
+
+    public void recordL2Hit(String namespace) {
+        l2Hits.increment();
+        namespaceMeters(namespace).l2Hits.increment();
+    }
+
+    public void recordMiss(String namespace) {
         cacheMisses.increment();
+        namespaceMeters(namespace).misses.increment();
+    }
+
+    /**
+     * Records how long one lookup in the namespace took, whichever tier answered it.
+     */
+    public void recordNamespaceLatency(String namespace, long nanos) {
+        namespaceMeters(namespace).latency.record(nanos, TimeUnit.NANOSECONDS);
     }
 
     public void recordEviction() {
         cacheEvictions.increment();
-        memoryUsage.decrementAndGet(); // Simple simulation
     }
 
-    public <T> T recordOperationTime(Supplier<T> operation) {
-        Timer.Sample sample = Timer.start(meterRegistry);
-        try {
-            return operation.get();
-        } finally {
-            sample.stop(cacheOperationTimer);
-        }
+    public void recordTagEviction(int keys) {
+        tagEvictions.increment();
+        cacheEvictions.increment(keys);
+    }
+
+    public void recordL1Eviction(RemovalCause cause) {
+        l1Evictions.get(cause).increment();
+    }
+
+    /**
+     * Reports the namespace's L1 memory from the given source, normally its L1
+     * store's weighted size. {@code cache.memory.usage} is the sum over all namespaces.
+     */
+    public void bindMemoryUsage(String namespace, LongSupplier bytes) {
+        namespaceMeters(namespace).l1Bytes = bytes;
+    }
+
+    /**
+     * Reports the number of hot keys pinned in the namespace's L1 from the given source.
+     */
+    public void bindPinnedKeys(String namespace, LongSupplier count) {
+        namespaceMeters(namespace).pinnedKeys = count;
+    }
+
+    public void recordL1Latency(long nanos) {
+        l1Latency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedisLatency(long nanos) {
+        redisLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDatabaseLatency(long nanos) {
+        databaseLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLoad() {
+        cacheLoads.increment();
+    }
+
+    public void recordCoalescedLoad() {
+        coalescedLoads.increment();
+    }
+
+    public void recordRefresh() {
+        refreshes.increment();
+    }
+
+    /**
+     * Counts an expired entry served while it is being reloaded.
+     */
+    public void recordStaleWhileRevalidate() {
+        staleRevalidating.increment();
+    }
+
+    /**
+     * Counts an expired entry served because Redis or the database failed to reload it.
+     */
+    public void recordStaleOnError() {
+        staleOnError.increment();
+    }
+
+    public void recordNegativeL1Hit() {
+        negativeL1Hits.increment();
+    }
+
+    public void recordNegativeL2Hit() {
+        negativeL2Hits.increment();
+    }
+
+    public void recordBloomRejection() {
+        bloomRejections.increment();
+    }
+
+    public void recordBloomFalsePositive() {
+        bloomFalsePositives.increment();
+    }
+
+    /**
+     * Counts one value written with the codec: its UTF-8 size, its stored size and the encoding time.
+     */
+    public void recordCodecEncode(String codec, long nanos, int valueBytes, int storedBytes) {
+        CodecMeters meters = codecMeters(codec);
+        meters.valueBytes().increment(valueBytes);
+        meters.storedBytes().increment(storedBytes);
+        meters.encodeTime().record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCodecDecode(String codec, long nanos) {
+        codecMeters(codec).decodeTime().record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInvalidationsPublished(int count) {
+        invalidationsPublished.increment(count);
     }
 
-    public void recordOperationTime(Runnable operation) {
-        Timer.Sample sample = Timer.start(meterRegistry);
-        try {
-            operation.run();
-        } finally {
-            sample.stop(cacheOperationTimer);
+    public void recordInvalidationsReceived(int count) {
+        invalidationsReceived.increment(count);
+    }
+
+    public void recordTtlRenewalSkipped() {
+        ttlRenewalsSkipped.increment();
+    }
+
+    public void recordWriteBehindCoalesced() {
+        writeBehindCoalesced.increment();
+    }
+
+    public void recordWriteBehindOverflow() {
+        writeBehindOverflow.increment();
+    }
+
+    public void recordWriteBehindDropped(int count) {
+        writeBehindDropped.increment(count);
+    }
+
+    public void recordWriteBehindFlush(Duration duration) {
+        writeBehindFlushTimer.record(duration);
+    }
+
+    /**
+     * Adds a change in one write-behind queue's depth to the total over all namespaces.
+     */
+    public void addWriteBehindQueueDepth(long delta) {
+        writeBehindQueueDepth.addAndGet(delta);
+    }
+
+    public void recordRedisRejected() {
+        redisRejected.increment();
+    }
+
+    public void recordReclaimedKeys(long count) {
+        reclaimedKeys.increment(count);
+    }
+
+    public void recordAccessLogWritten(long count) {
+        accessLogWritten.increment(count);
+    }
+
+    public void recordAccessLogDropped() {
+        accessLogDropped.increment();
+    }
+
+    /**
+     * Counts a chunk of a streamed value read from {@code l1} or {@code redis},
+     * or found {@code missing} in both.
+     */
+    public void recordChunkRead(String source) {
+        chunkReads.get(source).increment();
+    }
+
+    public void setRedisCircuitState(String shard, CircuitBreaker.State state) {
+        redisCircuitStates.computeIfAbsent(shard, name -> {
+            AtomicLong value = new AtomicLong();
+            Gauge gauge = Gauge.builder("cache.redis.shard.circuit.state", value, AtomicLong::doubleValue)
+                    .description("Circuit breaker state of one Redis shard: 0 = closed, 1 = half-open, 2 = open")
+                    .tag("shard", name)
+                    .register(meterRegistry);
+            return new ShardCircuit(value, gauge);
+        }).state().set(switch (state) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        });
+    }
+
+    /**
+     * Drops the gauge of a shard taken out of the ring.
+     */
+    public void removeRedisShard(String shard) {
+        ShardCircuit circuit = redisCircuitStates.remove(shard);
+        if (circuit != null) {
+            meterRegistry.remove(circuit.gauge());
         }
     }
 
     // Getters for metrics
     public double getCacheHitCount() {
-        return cacheHits.count();
+        return l1Hits.count() + l2Hits.count();
+    }
+
+    public double getL1HitCount() {
+        return l1Hits.count();
+    }
+
+    public double getL2HitCount() {
+        return l2Hits.count();
     }
 
     public double getCacheMissCount() {
@@ -104,7 +569,163 @@ public class MetricsCollector {
         return cacheEvictions.count();
     }
 
-    public double getMemoryUsage() {
-        return memoryUsage.get();
+    public double getTagEvictionCount() {
+        return tagEvictions.count();
+    }
+
+    public double getLoadCount() {
+        return cacheLoads.count();
+    }
+
+    public double getCoalescedLoadCount() {
+        return coalescedLoads.count();
+    }
+
+    public double getRefreshCount() {
+        return refreshes.count();
+    }
+
+    public double getStaleWhileRevalidateCount() {
+        return staleRevalidating.count();
+    }
+
+    public double getStaleOnErrorCount() {
+        return staleOnError.count();
+    }
+
+    public double getNegativeHitCount() {
+        return negativeL1Hits.count() + negativeL2Hits.count() + bloomRejections.count();
+    }
+
+    public double getBloomRejectionCount() {
+        return bloomRejections.count();
+    }
+
+    public double getBloomFalsePositiveCount() {
+        return bloomFalsePositives.count();
+    }
+
+    public double getInvalidationsPublishedCount() {
+        return invalidationsPublished.count();
+    }
+
+    public double getInvalidationsReceivedCount() {
+        return invalidationsReceived.count();
+    }
+
+    public double getTtlRenewalsSkippedCount() {
+        return ttlRenewalsSkipped.count();
+    }
+
+    public long getWriteBehindQueueDepth() {
+        return writeBehindQueueDepth.get();
+    }
+
+    public double getWriteBehindCoalescedCount() {
+        return writeBehindCoalesced.count();
+    }
+
+    public double getWriteBehindDroppedCount() {
+        return writeBehindDropped.count();
+    }
+
+    public double getWriteBehindFlushMeanMillis() {
+        return writeBehindFlushTimer.mean(TimeUnit.MILLISECONDS);
+    }
+
+    public long getRedisCircuitState() {
+        long worst = 0;
+        for (ShardCircuit circuit : redisCircuitStates.values()) {
+            worst = Math.max(worst, circuit.state().get());
+        }
+        return worst;
+    }
+
+    public Map<String, Long> getRedisShardCircuitStates() {
+        Map<String, Long> states = new TreeMap<>();
+        redisCircuitStates.forEach((shard, circuit) -> states.put(shard, circuit.state().get()));
+        return states;
+    }
+
+    public double getRedisRejectedCount() {
+        return redisRejected.count();
+    }
+
+    public double getReclaimedKeyCount() {
+        return reclaimedKeys.count();
+    }
+
+    public double getAccessLogWrittenCount() {
+        return accessLogWritten.count();
+    }
+
+    public double getAccessLogDroppedCount() {
+        return accessLogDropped.count();
+    }
+
+    public Map<String, Double> getChunkReadCounts() {
+        Map<String, Double> counts = new LinkedHashMap<>();
+        chunkReads.forEach((source, counter) -> counts.put(source, counter.count()));
+        return counts;
+    }
+
+    /**
+     * Stored bytes per value byte for each codec values were written with.
+     */
+    public Map<String, Double> getCodecCompressionRatios() {
+        Map<String, Double> ratios = new TreeMap<>();
+        codecMeters.forEach((codec, meters) -> ratios.put(codec, meters.compressionRatio()));
+        return ratios;
+    }
+
+    public Map<String, Double> getL1EvictionCounts() {
+        Map<String, Double> counts = new LinkedHashMap<>();
+        l1Evictions.forEach((cause, counter) -> counts.put(cause.name().toLowerCase(Locale.ROOT), counter.count()));
+        return counts;
+    }
+
+    /**
+     * p50, p95 and p99 lookup latency in milliseconds for each tier, over the
+     * recent window Micrometer keeps for percentiles.
+     */
+    public Map<String, Map<String, Double>> getTierLatencyMillis() {
+        Map<String, Map<String, Double>> tiers = new LinkedHashMap<>();
+        tiers.put("l1", percentilesMillis(l1Latency));
+        tiers.put("redis", percentilesMillis(redisLatency));
+        tiers.put("database", percentilesMillis(databaseLatency));
+        return tiers;
+    }
+
+    private static Map<String, Double> percentilesMillis(Timer timer) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            percentiles.put("p" + Math.round(value.percentile() * 100), value.value(TimeUnit.MILLISECONDS));
+        }
+        return percentiles;
+    }
+
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (NamespaceMeters meters : namespaceMeters.values()) {
+            bytes += meters.memoryUsage();
+        }
+        return bytes;
+    }
+
+    /**
+     * Hits, misses, L1 memory and p50, p95 and p99 lookup latency in milliseconds
+     * for one namespace; all zero for a namespace nothing was recorded for.
+     */
+    public Map<String, Object> getNamespaceStats(String namespace) {
+        NamespaceMeters meters = namespaceMeters(namespace);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", meters.l1Hits.count() + meters.l2Hits.count());
+        stats.put("l1Hits", meters.l1Hits.count());
+        stats.put("l2Hits", meters.l2Hits.count());
+        stats.put("misses", meters.misses.count());
+        stats.put("memoryUsage", meters.memoryUsage());
+        stats.put("pinnedKeys", meters.pinnedKeys());
+        stats.put("latencyMs", percentilesMillis(meters.latency));
+        return stats;
     }
 }
\ No newline at end of file
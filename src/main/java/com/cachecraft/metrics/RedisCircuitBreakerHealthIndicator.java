@@ -0,0 +1,55 @@
+package com.cachecraft.metrics;
+
+import com.cachecraft.store.CircuitBreaker;
+import com.cachecraft.store.RedisShard;
+import com.cachecraft.store.RedisShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the circuit breaker of each Redis shard under /actuator/health. Any
+ * breaker that is not closed is reported as DEGRADED rather than DOWN: the node
+ * keeps serving that shard's keys from L1 and the backing store, so it should
+ * not be taken out of rotation for it.
+ */
+@Component("redisCircuitBreaker")
+public class RedisCircuitBreakerHealthIndicator implements HealthIndicator {
+
+    static final Status DEGRADED = new Status("DEGRADED", "Redis tier bypassed, serving from L1 and the backing store");
+
+    private final RedisShards shards;
+
+    @Autowired
+    public RedisCircuitBreakerHealthIndicator(RedisShards shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public Health health() {
+        CircuitBreaker.State worst = CircuitBreaker.State.CLOSED;
+        float highestFailureRate = 0;
+        Map<String, Object> byShard = new LinkedHashMap<>();
+        for (RedisShard shard : shards.all()) {
+            CircuitBreaker.State state = shard.getBreaker().getState();
+            float failureRate = shard.getBreaker().getFailureRate();
+            if (state == CircuitBreaker.State.OPEN || worst == CircuitBreaker.State.CLOSED) {
+                worst = state;
+            }
+            highestFailureRate = Math.max(highestFailureRate, failureRate);
+            byShard.put(shard.getName(), Map.of("address", shard.getAddress(), "state", state,
+                    "failureRate", failureRate));
+        }
+        Health.Builder builder = worst == CircuitBreaker.State.CLOSED ? Health.up() : Health.status(DEGRADED);
+        return builder
+                .withDetail("state", worst)
+                .withDetail("failureRate", highestFailureRate)
+                .withDetail("shards", byShard)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.cachecraft.model;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Body of {@code PUT /api/cache/config}. Every field is optional; settings left
+ * out keep their current value.
+ */
+@Data
+public class CacheConfigUpdate {
+    // L1 memory bound, e.g. "128MB"
+    private String maxMemory;
+    // Adaptive TTL bounds, ISO-8601 durations such as "PT10M"
+    private Duration ttlBase;
+    private Duration ttlMin;
+    private Duration ttlMax;
+    // Decayed accesses per window that make a key hot or cold
+    private Double hotThreshold;
+    private Double coldThreshold;
+    // Redis TTL as a multiple of the L1 TTL
+    private Double redisMultiplier;
+    // Refresh-ahead point as a fraction of the L1 TTL, and how long expired entries may be served
+    private Double refreshAhead;
+    private Duration staleWhileRevalidate;
+    private Duration staleIfError;
+}
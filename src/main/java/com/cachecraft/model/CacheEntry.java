@@ -1,17 +1,121 @@
 package com.cachecraft.model;
 
-import lombok.Data;
-import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+/**
+ * A cached value. Entries are immutable, so those held in L1 can be shared
+ * between readers along with their encoded JSON; {@link #withFrequencyCount(int)}
+ * returns a copy. An entry without a value is a tombstone, cached for a key found
+ * in no tier.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@JsonPropertyOrder({"key", "value", "timestamp", "frequencyCount"})
 public class CacheEntry {
-    private String key;
-    private String value;
-    private LocalDateTime timestamp;
-    private int frequencyCount;
-}
\ No newline at end of file
+    private final String key;
+    private final String value;
+    // Write time in nanoseconds since the epoch; rendered as a local date-time in JSON
+    @JsonIgnore
+    private final long timestampNanos;
+    // Decayed access count at the time the entry was returned
+    private final int frequencyCount;
+
+    // JSON of everything but the frequency count, built on first use and shared by copies
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient volatile byte[] jsonPrefix;
+
+    public CacheEntry(String key, String value, long timestampNanos, int frequencyCount) {
+        this.key = key;
+        this.value = value;
+        this.timestampNanos = timestampNanos;
+        this.frequencyCount = frequencyCount;
+    }
+
+    /**
+     * Reads an entry back from the API's JSON; the rendered timestamp is not parsed.
+     */
+    @JsonCreator
+    static CacheEntry fromJson(@JsonProperty("key") String key, @JsonProperty("value") String value,
+                               @JsonProperty("frequencyCount") int frequencyCount) {
+        return new CacheEntry(key, value, 0, frequencyCount);
+    }
+
+    /**
+     * Current wall-clock time in nanoseconds since the epoch.
+     */
+    public static long now() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    /**
+     * A tombstone for a key found in no tier, written at the given time.
+     */
+    public static CacheEntry tombstone(String key, long timestampNanos) {
+        return new CacheEntry(key, null, timestampNanos, 0);
+    }
+
+    @JsonIgnore
+    public boolean isTombstone() {
+        return value == null;
+    }
+
+    @JsonProperty("timestamp")
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, timestampNanos), ZoneId.systemDefault());
+    }
+
+    public CacheEntry withFrequencyCount(int frequencyCount) {
+        if (this.frequencyCount == frequencyCount) {
+            return this;
+        }
+        CacheEntry copy = new CacheEntry(key, value, timestampNanos, frequencyCount);
+        copy.jsonPrefix = jsonPrefix;
+        return copy;
+    }
+
+    /**
+     * The entry's JSON up to and including {@code "frequencyCount":}, in the same
+     * shape Jackson produces. Encoded once per entry, so a response for a cached
+     * entry only has to append the count and the closing brace.
+     */
+    @JsonIgnore
+    public byte[] getJsonPrefix() {
+        byte[] prefix = jsonPrefix;
+        if (prefix == null) {
+            prefix = encodeJsonPrefix();
+            jsonPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    private byte[] encodeJsonPrefix() {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + value.length());
+        out.writeBytes("{\"key\":\"".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(encoder.quoteAsUTF8(key));
+        out.writeBytes("\",\"value\":\"".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(encoder.quoteAsUTF8(value));
+        out.writeBytes("\",\"timestamp\":\"".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(getTimestamp()).getBytes(StandardCharsets.UTF_8));
+        out.writeBytes("\",\"frequencyCount\":".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
@@ -1,51 +1,299 @@
 package com.cachecraft.service;
 
-import com.cachecraft.model.CacheEntry;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.RedisL2Store;
+import com.github.benmanes.caffeine.cache.Expiry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 @Service
 public class AdaptiveTTLEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(AdaptiveTTLEngine.class);
 
-    private final CacheManagerService cacheManagerService;
-    private final RedisTemplate<String, Object> redisTemplate;
+    /**
+     * Where a cached entry stands relative to its key's L1 TTL.
+     */
+    public enum Freshness {
+        // Younger than the refresh-ahead point
+        FRESH,
+        // Still within its TTL but due for a background reload
+        REFRESH,
+        // Past its TTL but within the stale-while-revalidate bound: served while it is reloaded
+        STALE,
+        // Too old to serve without reloading first
+        EXPIRED
+    }
+
+    private final RedisL2Store l2Store;
+    private final MetricsCollector metricsCollector;
+    // Replaced as a whole on reconfiguration, never modified in place
+    private volatile CacheProperties.Ttl config;
+
+    // Decayed access counts; aged by the decay factor each time a window closes
+    private final FrequencySketch frequencies;
+
+    // Keys accessed in the current window, whose Redis TTL is renewed when it closes; at most the renewal limit
+    private final Set<String> touched = ConcurrentHashMap.newKeySet();
+
+    // Keys whose Redis TTL is left alone when the window closes, such as tombstones on the negative TTL
+    private volatile Predicate<String> keepsRedisTtl = key -> false;
 
     @Autowired
-    public AdaptiveTTLEngine(CacheManagerService cacheManagerService, 
-                           RedisTemplate<String, Object> redisTemplate) {
-        this.cacheManagerService = cacheManagerService;
-        this.redisTemplate = redisTemplate;
+    public AdaptiveTTLEngine(RedisL2Store l2Store, CacheProperties properties, MetricsCollector metricsCollector) {
+        this.l2Store = l2Store;
+        this.metricsCollector = metricsCollector;
+        this.config = properties.getTtl();
+        this.frequencies = new FrequencySketch(properties.getFrequency().getSketchWidth());
+    }
+
+    /**
+     * Exempts keys from the Redis TTL renewal at the close of a window, for
+     * entries whose TTL is not the engine's to set. Tested once per key read in
+     * the window, as the window closes.
+     */
+    public void keepRedisTtl(Predicate<String> keeps) {
+        this.keepsRedisTtl = keeps;
+    }
+
+    /**
+     * Counts one access to the key in the current window. Never writes to the
+     * cache itself, so it is safe to call on every read. Once the window holds
+     * the renewal limit of keys, further keys still count towards their TTL but
+     * keep the Redis TTL they were written with.
+     */
+    public void recordAccess(String key) {
+        frequencies.increment(key);
+        if (!touched.contains(key)) {
+            if (touched.size() < config.getRenewalLimit()) {
+                touched.add(key);
+            } else {
+                metricsCollector.recordTtlRenewalSkipped();
+            }
+        }
+    }
+
+    /**
+     * Decayed access count for the key: accesses in the current window plus the
+     * earlier windows weighted by the decay factor.
+     */
+    public int frequency(String key) {
+        return frequencies.estimate(key);
+    }
+
+    /**
+     * Restores a decayed access count recorded earlier, such as in an L1 snapshot
+     * taken before a restart, so the key keeps the TTL it had earned. Never lowers
+     * the key's current count.
+     */
+    public void restoreFrequency(String key, int frequency) {
+        frequencies.raise(key, frequency);
+    }
+
+    /**
+     * Decayed accesses per window for the key, including the window in progress.
+     * A key accessed {@code n} times in every window converges to {@code n}.
+     */
+    public double accessRate(String key) {
+        return (1 - config.getDecay()) * frequencies.estimate(key);
+    }
+
+    /**
+     * L1 TTL for the key: the minimum for cold keys, otherwise the base TTL
+     * scaled by how far the key's rate is from the hot threshold.
+     */
+    public Duration l1Ttl(String key) {
+        return ttlForRate(accessRate(key));
+    }
+
+    /**
+     * How long L1 holds an entry for the key: its TTL plus the longer of the two
+     * staleness bounds, so an expired entry is still there to be served stale.
+     */
+    public Duration l1Lifetime(String key) {
+        CacheProperties.Ttl config = this.config;
+        Duration stale = config.getStaleWhileRevalidate().compareTo(config.getStaleIfError()) >= 0
+                ? config.getStaleWhileRevalidate() : config.getStaleIfError();
+        return ttlForRate(accessRate(key), config).plus(stale);
     }
 
     /**
-     * Scheduled task to adjust TTL based on frequency
-     * Runs every 5 minutes
+     * Classifies an entry for the key by its age, the time since it was loaded or written.
      */
-    @Scheduled(fixedRate = 300000) // 5 minutes
+    public Freshness freshness(String key, long ageNanos) {
+        CacheProperties.Ttl config = this.config;
+        long ttl = ttlForRate(accessRate(key), config).toNanos();
+        if (ageNanos < ttl) {
+            return config.getRefreshAhead() > 0 && ageNanos >= ttl * config.getRefreshAhead()
+                    ? Freshness.REFRESH : Freshness.FRESH;
+        }
+        return ageNanos < ttl + config.getStaleWhileRevalidate().toNanos() ? Freshness.STALE : Freshness.EXPIRED;
+    }
+
+    /**
+     * Whether an entry of this age may be served because reloading it failed.
+     */
+    public boolean servableOnError(String key, long ageNanos) {
+        CacheProperties.Ttl config = this.config;
+        return ageNanos < ttlForRate(accessRate(key), config).plus(config.getStaleIfError()).toNanos();
+    }
+
+    /**
+     * L2 TTL for the key, a fixed multiple of its L1 TTL.
+     */
+    public Duration redisTtl(String key) {
+        return scaleToRedis(l1Ttl(key));
+    }
+
+    /**
+     * Longest L2 TTL any key can be given, that of a key at the maximum L1 TTL.
+     */
+    public Duration maxRedisTtl() {
+        CacheProperties.Ttl config = this.config;
+        return scaleToRedis(config.getMax(), config);
+    }
+
+    /**
+     * Variable expiry for the L1 cache. New and updated entries get the lifetime
+     * their key has earned so far; reads can only extend it, so keys that heat up
+     * stay resident while one-hit keys keep their short TTL. Whether a resident
+     * entry may still be served is decided by {@link #freshness}.
+     */
+    public <V> Expiry<String, V> expiry() {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, V value, long currentTime) {
+                return l1Lifetime(key).toNanos();
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+                return l1Lifetime(key).toNanos();
+            }
+
+            @Override
+            public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+                return Math.max(currentDuration, l1Lifetime(key).toNanos());
+            }
+        };
+    }
+
+    /**
+     * Scheduled task that closes the current access window: the sketch is aged by
+     * the decay factor and the recomputed TTLs of the keys used in the window are
+     * pushed to Redis as pipelined PEXPIRE batches.
+     */
+    @Scheduled(fixedRateString = "${cachecraft.ttl.window:PT1M}")
     public void adjustTTL() {
-        logger.info("Starting adaptive TTL adjustment");
-        
-        // In a real implementation, we would iterate through cache entries
-        // and adjust their TTL based on frequency count
-        // For this demo, we'll just log the cache size
-        
-        long cacheSize = cacheManagerService.getCaffeineCacheSize();
-        logger.info("Current cache size: {}", cacheSize);
-        
-        // Example logic for TTL adjustment:
-        // 1. Items accessed > 10 times in the last window: increase TTL
-        // 2. Items accessed < 2 times in the last window: decrease TTL
-        // 3. Items not accessed: consider for eviction
-        
-        logger.info("Adaptive TTL adjustment completed");
-    }
-}
\ No newline at end of file
+        CacheProperties.Ttl config = this.config;
+        Predicate<String> keepsRedisTtl = this.keepsRedisTtl;
+        List<Map.Entry<String, Long>> redisUpdates = new ArrayList<>();
+        int activeKeys = 0;
+        int hotKeys = 0;
+        int coldKeys = 0;
+
+        for (Iterator<String> it = touched.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            it.remove();
+            activeKeys++;
+            double rate = accessRate(key);
+            if (rate >= config.getHotThreshold()) {
+                hotKeys++;
+            } else if (rate <= config.getColdThreshold()) {
+                coldKeys++;
+            }
+            if (!keepsRedisTtl.test(key)) {
+                redisUpdates.add(Map.entry(key, scaleToRedis(ttlForRate(rate, config), config).toMillis()));
+            }
+        }
+        frequencies.age(config.getDecay());
+
+        for (int from = 0; from < redisUpdates.size(); from += config.getRedisBatchSize()) {
+            int to = Math.min(from + config.getRedisBatchSize(), redisUpdates.size());
+            l2Store.expireAll(redisUpdates.subList(from, to));
+        }
+
+        logger.info("Adaptive TTL adjustment completed: {} keys active in window ({} hot, {} cold), {} renewed",
+                activeKeys, hotKeys, coldKeys, redisUpdates.size());
+    }
+
+    /**
+     * The TTL settings in effect. Callers that want to change them pass a modified
+     * copy to {@link #reconfigure}.
+     */
+    public CacheProperties.Ttl getConfig() {
+        return config;
+    }
+
+    /**
+     * Switches to new TTL settings for every TTL computed from now on. Entries
+     * already in L1 keep their expiry unless the caller re-applies it.
+     *
+     * @throws IllegalArgumentException if the bounds are not ordered or a setting is out of range
+     */
+    public void reconfigure(CacheProperties.Ttl ttl) {
+        validate(ttl);
+        this.config = ttl;
+        logger.info("Adaptive TTL reconfigured: base {}, min {}, max {}, hot {}, cold {}, refresh-ahead {}, "
+                        + "stale-while-revalidate {}, stale-if-error {}",
+                ttl.getBase(), ttl.getMin(), ttl.getMax(), ttl.getHotThreshold(), ttl.getColdThreshold(),
+                ttl.getRefreshAhead(), ttl.getStaleWhileRevalidate(), ttl.getStaleIfError());
+    }
+
+    public static void validate(CacheProperties.Ttl ttl) {
+        if (ttl.getMin().isNegative() || ttl.getMin().isZero()) {
+            throw new IllegalArgumentException("Minimum TTL must be positive");
+        }
+        if (ttl.getMin().compareTo(ttl.getBase()) > 0 || ttl.getBase().compareTo(ttl.getMax()) > 0) {
+            throw new IllegalArgumentException("TTLs must satisfy min <= base <= max");
+        }
+        if (ttl.getColdThreshold() < 0 || ttl.getHotThreshold() <= ttl.getColdThreshold()) {
+            throw new IllegalArgumentException("Thresholds must satisfy 0 <= cold < hot");
+        }
+        if (ttl.getRenewalLimit() < 1) {
+            throw new IllegalArgumentException("Renewal limit must be positive");
+        }
+        if (ttl.getRedisMultiplier() < 1) {
+            throw new IllegalArgumentException("Redis TTL multiplier must be at least 1");
+        }
+        if (ttl.getRefreshAhead() < 0 || ttl.getRefreshAhead() >= 1) {
+            throw new IllegalArgumentException("Refresh-ahead must be at least 0 and below 1");
+        }
+        if (ttl.getStaleWhileRevalidate().isNegative() || ttl.getStaleIfError().isNegative()) {
+            throw new IllegalArgumentException("Staleness bounds must not be negative");
+        }
+    }
+
+    private Duration ttlForRate(double rate) {
+        return ttlForRate(rate, config);
+    }
+
+    private static Duration ttlForRate(double rate, CacheProperties.Ttl config) {
+        if (rate <= config.getColdThreshold()) {
+            return config.getMin();
+        }
+        long nanos = (long) (config.getBase().toNanos() * (rate / config.getHotThreshold()));
+        return Duration.ofNanos(Math.max(config.getMin().toNanos(), Math.min(config.getMax().toNanos(), nanos)));
+    }
+
+    private Duration scaleToRedis(Duration l1Ttl) {
+        return scaleToRedis(l1Ttl, config);
+    }
+
+    private static Duration scaleToRedis(Duration l1Ttl, CacheProperties.Ttl config) {
+        return Duration.ofMillis((long) (l1Ttl.toMillis() * config.getRedisMultiplier()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.cachecraft.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of keys in fixed memory. {@link #mightContain(String)} never
+ * answers false for a key that was added, and answers true for a key that was
+ * not with about the configured probability once the expected number of keys
+ * has been added. Keys cannot be removed. Bits are set with atomic ORs, so adds
+ * and lookups need no locking.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitMask;
+    private final int hashes;
+
+    /**
+     * @param expectedInsertions number of keys the filter is sized for
+     * @param falsePositiveRate  false positive probability at that many keys (0..1)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double bitsNeeded = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        // Rounded up to a power of two so a bit index is a mask, at least one word
+        long bits = Long.highestOneBit(Math.max(64, (long) Math.ceil(bitsNeeded) - 1) << 1);
+        this.words = new AtomicLongArray((int) (bits >>> 6));
+        this.bitMask = bits - 1;
+        this.hashes = Math.max(1, (int) Math.round(bitsNeeded / n * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + (long) i * h2) & bitMask;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.accumulateAndGet(word, mask, (current, set) -> current | set);
+            }
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + (long) i * h2) & bitMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitMask + 1;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+
+    // 64-bit finalizer of MurmurHash3, so both halves of the result are well mixed
+    private static long mix(int x) {
+        long h = x;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
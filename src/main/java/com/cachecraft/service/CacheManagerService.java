@@ -1,96 +1,662 @@
 package com.cachecraft.service;
 
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
 import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheConfigUpdate;
 import com.cachecraft.model.CacheEntry;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.cachecraft.store.L1Snapshot;
+import com.cachecraft.store.L1Store;
+import com.cachecraft.store.L2UnavailableException;
+import com.cachecraft.store.OffHeapL1Store;
+import com.cachecraft.store.OnHeapL1Store;
+import com.cachecraft.store.PinningL1Store;
+import com.cachecraft.store.RedisL2Store;
+import com.cachecraft.store.SlabAllocator;
+import com.cachecraft.trace.AccessLogRecorder;
+import com.cachecraft.trace.AccessTrace;
+import com.github.benmanes.caffeine.cache.Ticker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
 import jakarta.annotation.PostConstruct;
-import java.time.LocalDateTime;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
+/**
+ * One cache namespace: an L1 with its own memory bound and TTL policy in front
+ * of its own Redis keys and the backing store. The Spring bean is the default
+ * namespace; {@link CacheNamespaces} creates the named ones.
+ *
+ * <p>Every method that reads, writes or evicts a client key throws
+ * {@link InvalidKeyException} for a key with a NUL character, which is reserved
+ * for the keys the cache stores for itself, and every put throws
+ * {@link IllegalArgumentException} for the value of a Redis tombstone.
+ */
 @Service
 public class CacheManagerService {
 
     private static final Logger logger = LoggerFactory.getLogger(CacheManagerService.class);
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private static final int REFRESH_QUEUE_CAPACITY = 10_000;
+
+    private final RedisL2Store l2Store;
     private final MetricsCollector metricsCollector;
+    private final AdaptiveTTLEngine ttlEngine;
+    private final CacheProperties properties;
+    private final NearCacheInvalidator invalidator;
+    private final ValueSerializer valueSerializer;
+    private final String namespace;
+    
+    // Current time in epoch nanos, and the L1's view of it; simulated when the simulator runs the cache
+    private final LongSupplier clock;
+    private final Ticker ticker;
+    
+    // L1 cache, on or off heap depending on cachecraft.l1.mode, with hot keys pinned in it
+    private PinningL1Store l1Cache;
+    
+    // Most accessed keys when cachecraft.hot-keys.enabled, otherwise null
+    private HotKeyTracker hotKeys;
+    
+    // Values uploaded as streams, kept as chunks in L1 and Redis
+    private ChunkedValues chunkedValues;
+    
+    // Keys this node put with tags, by tag; the tags' Redis sets hold every node's
+    private final TagIndex tagIndex = new TagIndex();
+    
+    // Pending Redis writes when cachecraft.write-behind.enabled, otherwise null
+    private WriteBehindQueue writeBehind;
+    
+    // In-flight L2/database loads, keyed by cache key
+    private final SingleFlight<String, CacheEntry> loads;
+    
+    // Runs refresh-ahead and stale-while-revalidate reloads
+    private ThreadPoolExecutor refreshExecutor;
     
-    // Caffeine cache
-    private Cache<String, CacheEntry> caffeineCache;
+    // Keys that may exist, when cachecraft.negative.bloom-filter.enabled, otherwise null
+    private BloomFilter knownKeys;
+    
+    // Keeps a scheduled snapshot and the one taken on shutdown from writing at once
+    private final Object snapshotLock = new Object();
+    
+    // Records accesses when cachecraft.access-log.enabled, otherwise null
+    private AccessLogRecorder accessLog;
     
     // Simulated database
-    private Map<String, String> database;
+    private final Map<String, String> database;
 
     @Autowired
-    public CacheManagerService(RedisTemplate<String, Object> redisTemplate, MetricsCollector metricsCollector) {
-        this.redisTemplate = redisTemplate;
+    public CacheManagerService(RedisL2Store l2Store, MetricsCollector metricsCollector,
+                               AdaptiveTTLEngine ttlEngine, CacheProperties properties,
+                               NearCacheInvalidator invalidator, ValueSerializer valueSerializer) {
+        this(CacheNamespaces.DEFAULT, l2Store, metricsCollector, ttlEngine, properties, invalidator, valueSerializer);
+    }
+
+    /**
+     * A named namespace, whose store, TTL engine and invalidator are its own and
+     * whose properties carry its L1 and TTL settings.
+     */
+    public CacheManagerService(String namespace, RedisL2Store l2Store, MetricsCollector metricsCollector,
+                               AdaptiveTTLEngine ttlEngine, CacheProperties properties,
+                               NearCacheInvalidator invalidator, ValueSerializer valueSerializer) {
+        this(namespace, l2Store, metricsCollector, ttlEngine, properties, invalidator, valueSerializer,
+                seededDatabase(), CacheEntry::now, Ticker.systemTicker());
+    }
+
+    /**
+     * A cache in front of the given database that reads the time, in epoch nanos,
+     * from {@code clock}, L1 expiry included. The simulator replays traces through
+     * it on simulated time.
+     */
+    public CacheManagerService(String namespace, RedisL2Store l2Store, MetricsCollector metricsCollector,
+                               AdaptiveTTLEngine ttlEngine, CacheProperties properties,
+                               NearCacheInvalidator invalidator, ValueSerializer valueSerializer,
+                               Map<String, String> database, LongSupplier clock) {
+        this(namespace, l2Store, metricsCollector, ttlEngine, properties, invalidator, valueSerializer,
+                database, clock, clock::getAsLong);
+    }
+
+    private CacheManagerService(String namespace, RedisL2Store l2Store, MetricsCollector metricsCollector,
+                                AdaptiveTTLEngine ttlEngine, CacheProperties properties,
+                                NearCacheInvalidator invalidator, ValueSerializer valueSerializer,
+                                Map<String, String> database, LongSupplier clock, Ticker ticker) {
+        this.namespace = namespace;
+        this.l2Store = l2Store;
         this.metricsCollector = metricsCollector;
+        this.ttlEngine = ttlEngine;
+        this.properties = properties;
+        this.invalidator = invalidator;
+        this.valueSerializer = valueSerializer;
+        this.database = database;
+        this.clock = clock;
+        this.ticker = ticker;
+        this.loads = new SingleFlight<>(metricsCollector::recordCoalescedLoad);
+    }
+
+    private static Map<String, String> seededDatabase() {
+        Map<String, String> database = new HashMap<>();
+        database.put("key1", "value1");
+        database.put("key2", "value2");
+        database.put("key3", "value3");
+        return database;
     }
 
     @PostConstruct
     public void init() {
-        // Initialize Caffeine cache
-        this.caffeineCache = Caffeine.newBuilder()
-                .initialCapacity(100)
-                .maximumSize(500)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .build();
+        // Initialize L1 with per-key TTLs from the adaptive TTL engine
+        this.l1Cache = new PinningL1Store(createL1Store(properties.getL1()));
+        metricsCollector.bindMemoryUsage(namespace, l1Cache::estimatedBytes);
+        metricsCollector.bindPinnedKeys(namespace, this::getPinnedKeyCount);
+        this.chunkedValues = new ChunkedValues(l1Cache, l2Store, invalidator, metricsCollector,
+                properties.getChunking(), clock);
+        if (properties.getHotKeys().isEnabled()) {
+            this.hotKeys = new HotKeyTracker(properties.getHotKeys().getCapacity());
+        }
+        this.refreshExecutor = createRefreshExecutor(properties.getTtl().getRefreshThreads());
+        // A tombstone expires on the negative TTL it was written with, however often it is read
+        ttlEngine.keepRedisTtl(l1Cache::isTombstone);
+        
+        if (properties.getWriteBehind().isEnabled()) {
+            this.writeBehind = new WriteBehindQueue(this::flushWriteBehind, properties.getWriteBehind(), metricsCollector);
+            logger.info("Write-behind to Redis enabled with {} backpressure", properties.getWriteBehind().getBackpressure());
+        }
         
-        // Initialize simulated database
-        this.database = new HashMap<>();
-        this.database.put("key1", "value1");
-        this.database.put("key2", "value2");
-        this.database.put("key3", "value3");
+        CacheProperties.Bloom bloom = properties.getNegative().getBloomFilter();
+        if (bloom.isEnabled()) {
+            this.knownKeys = new BloomFilter(bloom.getExpectedInsertions(), bloom.getFalsePositiveRate());
+            database.keySet().forEach(knownKeys::add);
+            logger.info("Bloom filter of {} bits and {} hashes in front of Redis",
+                    knownKeys.bitSize(), knownKeys.hashCount());
+            if (!properties.getInvalidation().isEnabled()) {
+                logger.warn("Bloom filter enabled without invalidation: keys written by other nodes will be rejected");
+            }
+        }
+        restoreSnapshot();
+        startAccessLog();
+        // Keys peers wrote may now exist, and their streamed values may have changed with them
+        invalidator.bind(l1Cache, key -> {
+            chunkedValues.invalidateLocal(key);
+            if (knownKeys != null) {
+                knownKeys.add(key);
+            }
+        }, l2Store::refreshGeneration);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshot();
+        refreshExecutor.shutdownNow();
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (accessLog != null) {
+            accessLog.close();
+        }
+    }
+
+    // A trace that cannot be created is logged; the cache runs without it
+    private void startAccessLog() {
+        CacheProperties.AccessLog config = properties.getAccessLog();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            this.accessLog = new AccessLogRecorder(config, clock, metricsCollector);
+        } catch (IOException e) {
+            logger.warn("Could not start access trace {}: {}", config.getPath(), e.getMessage());
+        }
+    }
+
+    private void recordAccess(AccessTrace.Operation operation, String key, int valueLength) {
+        if (accessLog != null) {
+            accessLog.record(operation, key, valueLength);
+        }
+    }
+
+    private void recordGet(String key, CacheEntry entry) {
+        if (accessLog != null) {
+            accessLog.record(AccessTrace.Operation.GET, key,
+                    entry == null || entry.isTombstone() ? -1 : entry.getValue().length());
+        }
+    }
+
+    /**
+     * Writes the hottest L1 entries, ranked by the decayed access frequency of
+     * their keys, to the snapshot file. Runs on the snapshot interval and once
+     * more on shutdown; a failed write is logged and leaves the previous file.
+     */
+    @Scheduled(fixedDelayString = "${cachecraft.snapshot.interval:PT5M}",
+            initialDelayString = "${cachecraft.snapshot.interval:PT5M}")
+    public void writeSnapshot() {
+        CacheProperties.Snapshot snapshot = properties.getSnapshot();
+        if (!snapshot.isEnabled()) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            List<L1Snapshot.Entry> entries = hottestEntries(snapshot.getMaxEntries());
+            try {
+                L1Snapshot.write(snapshot.getPath(), entries);
+                logger.info("Wrote {} L1 entries to snapshot {} in {} ms", entries.size(), snapshot.getPath(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException e) {
+                logger.warn("Could not write L1 snapshot {}: {}", snapshot.getPath(), e.getMessage());
+            }
+        }
+    }
+
+    private List<L1Snapshot.Entry> hottestEntries(int limit) {
+        // Min-heap on frequency holding the hottest keys seen so far
+        PriorityQueue<Map.Entry<String, Integer>> hottest = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (String key : l1Cache.keys()) {
+            // Streamed values are left out: a partial set of chunks is of no use
+            if (ChunkedValues.isChunkKey(key)) {
+                continue;
+            }
+            int frequency = ttlEngine.frequency(key);
+            if (hottest.size() < limit) {
+                hottest.add(Map.entry(key, frequency));
+            } else if (limit > 0 && frequency > hottest.peek().getValue()) {
+                hottest.poll();
+                hottest.add(Map.entry(key, frequency));
+            }
+        }
+        List<L1Snapshot.Entry> entries = new ArrayList<>(hottest.size());
+        for (Map.Entry<String, Integer> e : hottest) {
+            CacheEntry entry = l1Cache.getIfPresent(e.getKey());
+            // Tombstones are left out: cheap to rebuild, and the key may exist by the next start
+            if (entry != null && !entry.isTombstone()) {
+                entries.add(new L1Snapshot.Entry(entry, e.getValue()));
+            }
+        }
+        // Hottest first, so that if L1 fills up while loading, the coldest entries are the ones left out
+        entries.sort(Comparator.comparingInt(L1Snapshot.Entry::frequency).reversed());
+        return entries;
+    }
+
+    /**
+     * Loads the snapshot an earlier run wrote into L1. Called from {@link #init()},
+     * so it completes before the application reports itself ready. Restored
+     * entries keep their original write time and their key's frequency, so they
+     * are served, refreshed and expired exactly as they would have been without
+     * the restart; those already too old to serve even stale are skipped.
+     */
+    private void restoreSnapshot() {
+        CacheProperties.Snapshot snapshot = properties.getSnapshot();
+        Path path = snapshot.getPath();
+        if (!snapshot.isEnabled() || !Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        AtomicInteger restored = new AtomicInteger();
+        try {
+            int read = L1Snapshot.read(path, e -> {
+                CacheEntry entry = e.entry();
+                String key = entry.getKey();
+                ttlEngine.restoreFrequency(key, e.frequency());
+                if (!servableAfterMiss(key, entry) && !ttlEngine.servableOnError(key, ageOf(entry))) {
+                    return;
+                }
+                addKnownKey(key);
+                if (l1Cache.putIfAbsent(key, entry) == null) {
+                    restored.incrementAndGet();
+                }
+            });
+            logger.info("Restored {} of {} L1 entries from snapshot {} in {} ms", restored.get(), read, path,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            logger.warn("Could not read L1 snapshot {}, {} entries restored: {}", path, restored.get(), e.getMessage());
+        }
+    }
+
+    private static ThreadPoolExecutor createRefreshExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        // Each queued reload is a distinct key, so the queue only fills when reloads fall far behind
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "cachecraft-refresh-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private L1Store createL1Store(CacheProperties.L1 config) {
+        if (config.getMode() == CacheProperties.L1Mode.OFF_HEAP) {
+            CacheProperties.OffHeap offHeap = config.getOffHeap();
+            SlabAllocator allocator = new SlabAllocator(offHeap.getMaxMemory().toBytes(),
+                    (int) offHeap.getSlabSize().toBytes(), offHeap.getMappedDirectory());
+            logger.info("Using off-heap L1 with up to {} of {} slabs", offHeap.getMaxMemory(), offHeap.getSlabSize());
+            return new OffHeapL1Store(allocator, valueSerializer, config.getInitialCapacity(), ttlEngine.expiry(),
+                    metricsCollector::recordL1Eviction, ticker);
+        }
+        return new OnHeapL1Store(config.getInitialCapacity(), config.getMaxMemory().toBytes(), ttlEngine.expiry(),
+                metricsCollector::recordL1Eviction, ticker);
     }
 
     public CacheEntry get(String key) {
-        // 1. Check Caffeine cache first
-        CacheEntry entry = caffeineCache.getIfPresent(key);
-        if (entry != null) {
-            // Cache hit in Caffeine
-            metricsCollector.recordHit();
-            entry.setFrequencyCount(entry.getFrequencyCount() + 1);
-            caffeineCache.put(key, entry);
-            logger.info("Cache hit in Caffeine for key: {}", key);
-            return entry;
+        CacheEntry entry = getShared(key);
+        return entry != null ? entry.withFrequencyCount(ttlEngine.frequency(key)) : null;
+    }
+
+    /**
+     * Like {@link #get(String)} but returns the cached entry itself, whose frequency
+     * count is not the key's. An on-heap L1 hit allocates nothing; an off-heap hit
+     * still decodes a new entry from its slab. Callers that need the count use
+     * {@link #frequency(String)}.
+     */
+    public CacheEntry getShared(String key) {
+        checkKey(key);
+        long start = System.nanoTime();
+        try {
+            CacheEntry entry = lookupL1(key);
+            if (entry == null) {
+                if (rejectedByFilter(key)) {
+                    return null;
+                }
+                // 2. L1 miss - concurrent misses for the same key share a single load
+                entry = loads.load(key, this::loadFromBackingTiers);
+            }
+            recordGet(key, entry);
+            return entry == null || entry.isTombstone() ? null : entry;
+        } finally {
+            metricsCollector.recordNamespaceLatency(namespace, System.nanoTime() - start);
         }
+    }
+
+    /**
+     * Non-blocking {@link #get(String)}. An L1 hit completes at once; a miss
+     * completes when Redis or the database has answered, without a thread
+     * waiting on it. Shares in-flight loads with {@link #get(String)}.
+     */
+    public CompletableFuture<CacheEntry> getAsync(String key) {
+        checkKey(key);
+        long start = System.nanoTime();
+        CacheEntry entry = lookupL1(key);
+        if (entry != null || rejectedByFilter(key)) {
+            metricsCollector.recordNamespaceLatency(namespace, System.nanoTime() - start);
+            recordGet(key, entry);
+            return CompletableFuture.completedFuture(entry == null || entry.isTombstone() ? null
+                    : entry.withFrequencyCount(ttlEngine.frequency(key)));
+        }
+        return loads.loadAsync(key, this::loadFromBackingTiersAsync)
+                .whenComplete((loaded, failure) -> {
+                    metricsCollector.recordNamespaceLatency(namespace, System.nanoTime() - start);
+                    recordGet(key, loaded);
+                })
+                .thenApply(loaded -> loaded == null || loaded.isTombstone() ? null
+                        : loaded.withFrequencyCount(ttlEngine.frequency(key)));
+    }
+
+    private CacheEntry lookupL1(String key) {
+        recordKeyAccess(key);
+
+        // 1. Check L1 first
+        long start = System.nanoTime();
+        CacheEntry entry = l1Cache.getIfPresent(key);
+        metricsCollector.recordL1Latency(System.nanoTime() - start);
+        if (entry == null || !servable(key, entry)) {
+            return null;
+        }
+        // Cache hit in L1; access counting lives in the TTL engine so the hit never writes to L1.
+        // Not logged: this is the hot path.
+        recordL1Served(entry);
+        return entry;
+    }
+
+    private void recordKeyAccess(String key) {
+        ttlEngine.recordAccess(key);
+        if (hotKeys != null) {
+            hotKeys.record(key);
+        }
+    }
+
+    private void recordL1Served(CacheEntry entry) {
+        if (entry.isTombstone()) {
+            metricsCollector.recordNegativeL1Hit();
+        } else {
+            metricsCollector.recordL1Hit(namespace);
+        }
+    }
+
+    /**
+     * Whether the Bloom filter rules the key out, in which case it exists in no
+     * tier and neither Redis nor the database is asked.
+     */
+    private boolean rejectedByFilter(String key) {
+        if (knownKeys == null || knownKeys.mightContain(key)) {
+            return false;
+        }
+        metricsCollector.recordBloomRejection();
+        return true;
+    }
 
-        // 2. Check Redis cache
+    /**
+     * Whether a cached entry may be served, starting a background reload when it
+     * is due for one. An expired entry stays resident for stale-if-error, but is
+     * served only if reloading it fails.
+     */
+    private boolean servable(String key, CacheEntry entry) {
+        if (entry.isTombstone()) {
+            // Tombstones have their own TTL and are simply looked up again once it is over
+            return ageOf(entry) < properties.getNegative().getTtl().toNanos() || servePinned(key);
+        }
+        switch (ttlEngine.freshness(key, ageOf(entry))) {
+            case FRESH -> {
+                return true;
+            }
+            case REFRESH -> {
+                refreshInBackground(key);
+                return true;
+            }
+            case STALE -> {
+                metricsCollector.recordStaleWhileRevalidate();
+                refreshInBackground(key);
+                return true;
+            }
+            default -> {
+                return servePinned(key);
+            }
+        }
+    }
+
+    // A pinned key never misses: past its TTL it is served while it reloads in the background
+    private boolean servePinned(String key) {
+        if (!l1Cache.isPinned(key)) {
+            return false;
+        }
+        refreshInBackground(key);
+        return true;
+    }
+
+    public int frequency(String key) {
+        return ttlEngine.frequency(key);
+    }
+
+    private long ageOf(CacheEntry entry) {
+        return clock.getAsLong() - entry.getTimestampNanos();
+    }
+
+    /**
+     * Reloads the key on a refresh thread unless a load of it is already in
+     * flight. Readers keep getting the cached entry until the reload replaces it.
+     */
+    private void refreshInBackground(String key) {
+        if (loads.isLoading(key)) {
+            return;
+        }
         try {
-            String value = (String) redisTemplate.opsForValue().get(key);
-            if (value != null) {
-                // Cache hit in Redis
-                metricsCollector.recordHit();
-                entry = new CacheEntry(key, value, LocalDateTime.now(), 1);
-                // Update both caches
-                caffeineCache.put(key, entry);
-                logger.info("Cache hit in Redis for key: {}", key);
-                return entry;
+            loads.loadAsync(key, k -> {
+                metricsCollector.recordRefresh();
+                return CompletableFuture.supplyAsync(() -> reload(k, l1Cache.getIfPresent(k)), refreshExecutor);
+            }).whenComplete((entry, failure) -> {
+                if (failure != null) {
+                    logger.debug("Background refresh of key {} failed", key, failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            // A full refresh queue only means this read does not start a reload
+            logger.debug("Background refresh of key {} not started: {}", key, e.getMessage());
+        }
+    }
+
+    private CacheEntry loadFromBackingTiers(String key) {
+        // Another load may have filled L1 between our miss and taking over the flight
+        CacheEntry cached = l1Cache.getIfPresent(key);
+        if (cached != null && servableAfterMiss(key, cached)) {
+            recordL1Served(cached);
+            return cached;
+        }
+        return reload(key, cached);
+    }
+
+    // An entry that appeared or was refreshed while the caller missed; no refresh is started for it
+    private boolean servableAfterMiss(String key, CacheEntry cached) {
+        if (cached.isTombstone()) {
+            return ageOf(cached) < properties.getNegative().getTtl().toNanos();
+        }
+        return ttlEngine.freshness(key, ageOf(cached)) != AdaptiveTTLEngine.Freshness.EXPIRED;
+    }
+
+    /**
+     * Loads the key from the write-behind queue, Redis or the database and
+     * caches it in L1 in place of {@code cached}, the copy L1 still holds, if
+     * any. When Redis or the database fails and that copy is within the
+     * stale-if-error bound, the copy is served instead.
+     */
+    private CacheEntry reload(String key, CacheEntry cached) {
+        metricsCollector.recordLoad();
+
+        // 3. A write accepted by this node but not yet flushed is newer than Redis
+        WriteBehindQueue.Pending queued = writeBehind != null ? writeBehind.lookup(key) : null;
+        if (queued != null && !queued.isDelete()) {
+            return cacheQueuedWrite(key, queued.value(), cached);
+        }
+
+        // 4. Check Redis cache, unless a delete for the key is still queued
+        if (queued == null) {
+            try {
+                String value = l2Store.fetch(key);
+                if (value != null) {
+                    return cacheRedisHit(key, value, cached);
+                }
+            } catch (L2UnavailableException e) {
+                if (servableOnError(key, cached)) {
+                    return cached;
+                }
+            }
+        }
+
+        try {
+            return loadFromDatabase(key, cached, false);
+        } catch (RuntimeException e) {
+            if (servableOnError(key, cached)) {
+                return cached;
+            }
+            throw e;
+        }
+    }
+
+    private boolean servableOnError(String key, CacheEntry cached) {
+        if (cached == null || !ttlEngine.servableOnError(key, ageOf(cached))) {
+            return false;
+        }
+        metricsCollector.recordStaleOnError();
+        logger.warn("Serving stale entry for key {}: reloading it failed", key);
+        return true;
+    }
+
+    private CompletableFuture<CacheEntry> loadFromBackingTiersAsync(String key) {
+        CacheEntry cached = l1Cache.getIfPresent(key);
+        if (cached != null && servableAfterMiss(key, cached)) {
+            recordL1Served(cached);
+            return CompletableFuture.completedFuture(cached);
+        }
+        metricsCollector.recordLoad();
+
+        WriteBehindQueue.Pending queued = writeBehind != null ? writeBehind.lookup(key) : null;
+        if (queued != null && !queued.isDelete()) {
+            return CompletableFuture.completedFuture(cacheQueuedWrite(key, queued.value(), cached));
+        }
+        if (queued != null) {
+            return CompletableFuture.completedFuture(loadFromDatabase(key, cached, true));
+        }
+        // Runs on the Redis client's thread; nothing below blocks on I/O
+        return l2Store.getAsync(key)
+                .thenApply(value -> value != null ? cacheRedisHit(key, value, cached) : loadFromDatabase(key, cached, true));
+    }
+
+    private CacheEntry cacheQueuedWrite(String key, String value, CacheEntry cached) {
+        // Counted as an L2 hit: the value is on its way to Redis
+        metricsCollector.recordL2Hit(namespace);
+        return cacheLoaded(key, new CacheEntry(key, value, clock.getAsLong(), 1), cached);
+    }
+
+    private CacheEntry cacheRedisHit(String key, String value, CacheEntry cached) {
+        CacheEntry entry = cacheRedisValue(key, value, cached);
+        if (entry.isTombstone()) {
+            logger.debug("Tombstone in Redis for key: {}", key);
+        } else {
+            logger.info("Cache hit in Redis for key: {}", key);
+        }
+        return entry;
+    }
+
+    // A tombstone another lookup left in Redis answers for the key as well
+    private CacheEntry cacheRedisValue(String key, String value, CacheEntry cached) {
+        if (RedisL2Store.TOMBSTONE.equals(value)) {
+            metricsCollector.recordNegativeL2Hit();
+            if (knownKeys != null) {
+                metricsCollector.recordBloomFalsePositive();
             }
-        } catch (Exception e) {
-            logger.warn("Redis is not available, skipping Redis cache check", e);
+            return cacheLoaded(key, CacheEntry.tombstone(key, clock.getAsLong()), cached);
         }
+        // Cache hit in Redis
+        metricsCollector.recordL2Hit(namespace);
+        return cacheLoaded(key, new CacheEntry(key, value, clock.getAsLong(), 1), cached);
+    }
 
-        // 3. Cache miss - fetch from database
-        metricsCollector.recordMiss();
+    private CacheEntry loadFromDatabase(String key, CacheEntry cached, boolean async) {
+        // 5. Cache miss - fetch from database
+        metricsCollector.recordMiss(namespace);
+        long start = System.nanoTime();
         String dbValue = database.get(key);
+        metricsCollector.recordDatabaseLatency(System.nanoTime() - start);
         if (dbValue != null) {
-            entry = new CacheEntry(key, dbValue, LocalDateTime.now(), 1);
             // Store in both caches
-            caffeineCache.put(key, entry);
-            try {
-                redisTemplate.opsForValue().set(key, dbValue);
-            } catch (Exception e) {
-                logger.warn("Redis is not available, skipping Redis cache update", e);
+            CacheEntry entry = cacheLoaded(key, new CacheEntry(key, dbValue, clock.getAsLong(), 1), cached);
+            if (async) {
+                writeToRedisAsync(key, dbValue);
+            } else {
+                writeToRedis(key, dbValue);
             }
             logger.info("Cache miss, fetched from database for key: {}", key);
             return entry;
@@ -98,45 +664,594 @@ public class CacheManagerService {
 
         // Not found anywhere
         logger.info("Key not found in any data source: {}", key);
-        return null;
+        if (knownKeys != null) {
+            metricsCollector.recordBloomFalsePositive();
+        }
+        CacheProperties.Negative negative = properties.getNegative();
+        if (!negative.isEnabled()) {
+            // An outdated copy must not outlive the key
+            if (cached != null) {
+                l1Cache.invalidate(key);
+            }
+            return null;
+        }
+        // Written straight to Redis: tombstones take their own TTL, not the write-behind queue's
+        if (async) {
+            l2Store.setAsync(key, RedisL2Store.TOMBSTONE, negative.getTtl());
+        } else {
+            l2Store.set(key, RedisL2Store.TOMBSTONE, negative.getTtl());
+        }
+        return cacheLoaded(key, CacheEntry.tombstone(key, clock.getAsLong()), cached);
+    }
+
+    /**
+     * Publishes a loaded entry to L1 in place of {@code cached}, the copy the load
+     * started from, unless a put for the key landed while the load was in flight,
+     * in which case the newer entry wins.
+     */
+    private CacheEntry cacheLoaded(String key, CacheEntry loaded, CacheEntry cached) {
+        if (cached != null && l1Cache.replace(key, cached, loaded)) {
+            return loaded;
+        }
+        CacheEntry current = l1Cache.putIfAbsent(key, loaded);
+        return current != null ? current : loaded;
     }
 
     public void put(String key, String value) {
-        CacheEntry entry = new CacheEntry(key, value, LocalDateTime.now(), 0);
+        checkKey(key);
+        checkValue(value);
+        addKnownKey(key);
+        CacheEntry entry = new CacheEntry(key, value, clock.getAsLong(), 0);
         // Store in both caches
-        caffeineCache.put(key, entry);
-        try {
-            redisTemplate.opsForValue().set(key, value);
-        } catch (Exception e) {
-            logger.warn("Redis is not available, skipping Redis cache update", e);
+        l1Cache.put(key, entry);
+        recordAccess(AccessTrace.Operation.PUT, key, value.length());
+        writeToRedis(key, value);
+        if (writeBehind == null) {
+            // With write-behind, peers are told once the flush has reached Redis
+            invalidator.invalidate(key);
+        }
+        logger.info("Stored value in cache for key: {}", key);
+    }
+
+    /**
+     * {@link #put(String, String)} that also indexes the key under each tag, in
+     * this node's L1 index and in Redis, so that {@link #evictByTag(String)}
+     * reaches it. The tags add to those the key already has.
+     *
+     * @throws IllegalArgumentException if a tag is blank
+     */
+    public void put(String key, String value, Collection<String> tags) {
+        checkKey(key);
+        checkValue(value);
+        for (String tag : tags) {
+            if (tag.isBlank()) {
+                throw new IllegalArgumentException("Tags must not be blank");
+            }
         }
+        if (tags.isEmpty()) {
+            put(key, value);
+            return;
+        }
+        // Indexed before the L1 write, so an eviction of the tag never misses the entry
+        tagIndex.tag(key, tags);
+        put(key, value);
+        if (writeBehind == null) {
+            // Tagged in Redis once written; with write-behind, the flush tags what it writes
+            l2Store.tag(Map.of(key, tags), tagTtl());
+        }
+    }
+
+    /**
+     * Non-blocking {@link #put(String, String)}: completes once Redis has taken
+     * the write, or at once when writes go through the write-behind queue.
+     */
+    public CompletableFuture<Void> putAsync(String key, String value) {
+        checkKey(key);
+        checkValue(value);
+        addKnownKey(key);
+        l1Cache.put(key, new CacheEntry(key, value, clock.getAsLong(), 0));
+        recordAccess(AccessTrace.Operation.PUT, key, value.length());
         logger.info("Stored value in cache for key: {}", key);
+        if (writeBehind != null) {
+            writeBehind.write(key, value);
+            return CompletableFuture.completedFuture(null);
+        }
+        return l2Store.setAsync(key, value, ttlEngine.redisTtl(key))
+                .thenRun(() -> invalidator.invalidate(key));
+    }
+
+    /**
+     * Stores everything the stream holds as the key's value, in chunks of
+     * {@code cachecraft.chunking.chunk-size}, reading one chunk at a time. The
+     * value is read back with {@link #getStream(String)}; it replaces an earlier
+     * streamed value of the key, but not a regular one, and is not written to
+     * the database.
+     *
+     * @throws IllegalArgumentException if the stream holds more than {@code cachecraft.chunking.max-value}
+     * @throws L2UnavailableException if Redis could not take the value
+     */
+    public ChunkedValue putStream(String key, InputStream in) throws IOException {
+        checkKey(key);
+        return chunkedValues.write(key, in);
+    }
+
+    /**
+     * The key's streamed value, or else its regular value as UTF-8, or
+     * {@code null} if it has neither. A streamed value's chunks are fetched as
+     * it is written out.
+     */
+    public ChunkedValue getStream(String key) {
+        checkKey(key);
+        // An eviction still queued for Redis has not dropped the manifest there yet
+        WriteBehindQueue.Pending queued = writeBehind != null ? writeBehind.lookup(key) : null;
+        ChunkedValue streamed = queued != null && queued.isDelete() ? null : chunkedValues.read(key);
+        if (streamed != null) {
+            return streamed;
+        }
+        CacheEntry entry = getShared(key);
+        return entry != null ? ChunkedValue.of(entry.getValue().getBytes(StandardCharsets.UTF_8),
+                entry.getTimestampNanos()) : null;
+    }
+
+    /**
+     * Resolves a batch of keys tier by tier: one L1 lookup, one Redis MGET for the
+     * L1 misses and one bulk database read for whatever Redis did not have.
+     * Keys found nowhere are absent from the returned map. Throws
+     * {@link IllegalArgumentException} for more keys than {@code cachecraft.batch.max-keys}.
+     */
+    public Map<String, CacheEntry> getAll(Collection<String> keys) {
+        checkBatchSize(keys.size());
+        keys.forEach(CacheManagerService::checkKey);
+        long batchStart = System.nanoTime();
+        Set<String> pending = new LinkedHashSet<>(keys);
+        Map<String, CacheEntry> found = new HashMap<>();
+        pending.forEach(this::recordKeyAccess);
+
+        // 1. L1; expired copies are loaded like misses and replaced
+        long start = System.nanoTime();
+        Map<String, CacheEntry> present = l1Cache.getAllPresent(pending);
+        metricsCollector.recordL1Latency(System.nanoTime() - start);
+        Map<String, CacheEntry> l1Hits = new HashMap<>();
+        Map<String, CacheEntry> expired = new HashMap<>();
+        present.forEach((key, entry) -> (servable(key, entry) ? l1Hits : expired).put(key, entry));
+        l1Hits.forEach((key, entry) -> recordL1Served(entry));
+        found.putAll(l1Hits);
+        pending.removeAll(l1Hits.keySet());
+        pending.removeIf(this::rejectedByFilter);
+
+        // 2. Writes still queued for Redis; queued deletes skip Redis and go to the database
+        Set<String> skipRedis = new HashSet<>();
+        if (writeBehind != null) {
+            for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                String key = it.next();
+                WriteBehindQueue.Pending queued = writeBehind.lookup(key);
+                if (queued != null && queued.isDelete()) {
+                    skipRedis.add(key);
+                } else if (queued != null) {
+                    metricsCollector.recordL2Hit(namespace);
+                    found.put(key, cacheLoaded(key, new CacheEntry(key, queued.value(), clock.getAsLong(), 1), expired.get(key)));
+                    it.remove();
+                }
+            }
+        }
+
+        // 3. Redis, one MGET for all L1 misses
+        pending.removeAll(skipRedis);
+        if (!pending.isEmpty()) {
+            List<String> redisKeys = new ArrayList<>(pending);
+            List<String> values = l2Store.multiGet(redisKeys);
+            for (int i = 0; i < redisKeys.size(); i++) {
+                String value = values.get(i);
+                if (value != null) {
+                    String key = redisKeys.get(i);
+                    found.put(key, cacheRedisValue(key, value, expired.get(key)));
+                    pending.remove(key);
+                }
+            }
+        }
+
+        // 4. Database, one bulk read for the rest
+        pending.addAll(skipRedis);
+        if (!pending.isEmpty()) {
+            pending.forEach(key -> metricsCollector.recordMiss(namespace));
+            Map<String, String> dbValues = loadFromDatabase(pending);
+            for (Map.Entry<String, String> e : dbValues.entrySet()) {
+                String key = e.getKey();
+                found.put(key, cacheLoaded(key, new CacheEntry(key, e.getValue(), clock.getAsLong(), 1), expired.get(key)));
+            }
+            if (writeBehind != null) {
+                dbValues.forEach(writeBehind::write);
+            } else {
+                l2Store.setAll(dbValues, ttlEngine::redisTtl);
+            }
+            pending.removeAll(dbValues.keySet());
+            cacheAbsent(pending, expired);
+        }
+
+        Map<String, CacheEntry> ordered = new LinkedHashMap<>();
+        for (String key : keys) {
+            CacheEntry entry = found.get(key);
+            recordGet(key, entry);
+            if (entry != null && !entry.isTombstone()) {
+                ordered.put(key, entry.withFrequencyCount(ttlEngine.frequency(key)));
+            }
+        }
+        metricsCollector.recordNamespaceLatency(namespace, System.nanoTime() - batchStart);
+        logger.info("Batch lookup for {} keys: {} from L1, {} found in total", keys.size(), l1Hits.size(), ordered.size());
+        return ordered;
+    }
+
+    // Tombstones for keys a batch lookup found nowhere, in L1 and in one Redis pipeline
+    private void cacheAbsent(Collection<String> keys, Map<String, CacheEntry> expired) {
+        if (knownKeys != null) {
+            keys.forEach(key -> metricsCollector.recordBloomFalsePositive());
+        }
+        CacheProperties.Negative negative = properties.getNegative();
+        if (!negative.isEnabled() || keys.isEmpty()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Map<String, String> tombstones = new HashMap<>();
+        for (String key : keys) {
+            cacheLoaded(key, CacheEntry.tombstone(key, now), expired.get(key));
+            tombstones.put(key, RedisL2Store.TOMBSTONE);
+        }
+        l2Store.setAll(tombstones, key -> negative.getTtl());
+    }
+
+    /**
+     * Stores a batch of values in L1 and writes them to Redis in one pipeline.
+     * Throws {@link IllegalArgumentException} for more keys than {@code cachecraft.batch.max-keys}.
+     */
+    public void putAll(Map<String, String> values) {
+        checkBatchSize(values.size());
+        values.keySet().forEach(CacheManagerService::checkKey);
+        values.values().forEach(CacheManagerService::checkValue);
+        values.keySet().forEach(this::addKnownKey);
+        long now = clock.getAsLong();
+        Map<String, CacheEntry> entries = new HashMap<>();
+        values.forEach((key, value) -> entries.put(key, new CacheEntry(key, value, now, 0)));
+        l1Cache.putAll(entries);
+        values.forEach((key, value) -> recordAccess(AccessTrace.Operation.PUT, key, value.length()));
+        if (writeBehind != null) {
+            values.forEach(writeBehind::write);
+        } else {
+            l2Store.setAll(values, ttlEngine::redisTtl);
+            values.keySet().forEach(invalidator::invalidate);
+        }
+        logger.info("Stored {} values in cache", values.size());
+    }
+
+    /**
+     * Rejects a key with a NUL, the mark of the keys the cache keeps for itself
+     * among the client's: manifests and chunks of streamed values, and tag index sets.
+     */
+    private static void checkKey(String key) {
+        if (key.indexOf('\u0000') >= 0) {
+            throw new InvalidKeyException("Cache keys must not contain NUL characters");
+        }
+    }
+
+    /**
+     * Rejects the value Redis holds for a key found nowhere, which every node
+     * would read back as a tombstone.
+     */
+    private static void checkValue(String value) {
+        if (RedisL2Store.TOMBSTONE.equals(value)) {
+            throw new IllegalArgumentException("Value is reserved for keys the cache found nowhere");
+        }
+    }
+
+    /**
+     * Bounds one batch call, whose keys are all held in memory and sent to Redis
+     * in a single MGET or pipeline.
+     */
+    private void checkBatchSize(int keys) {
+        int maxKeys = properties.getBatch().getMaxKeys();
+        if (keys > maxKeys) {
+            throw new IllegalArgumentException("Batch of " + keys + " keys exceeds the limit of " + maxKeys);
+        }
+    }
+
+    private void addKnownKey(String key) {
+        if (knownKeys != null) {
+            knownKeys.add(key);
+        }
+    }
+
+    private Map<String, String> loadFromDatabase(Collection<String> keys) {
+        long start = System.nanoTime();
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            String value = database.get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        metricsCollector.recordDatabaseLatency(System.nanoTime() - start);
+        return values;
+    }
+
+    private void writeToRedis(String key, String value) {
+        if (writeBehind != null) {
+            writeBehind.write(key, value);
+            return;
+        }
+        l2Store.set(key, value, ttlEngine.redisTtl(key));
+    }
+
+    // Does not wait for Redis; a failed write only costs the next node a database load
+    private void writeToRedisAsync(String key, String value) {
+        if (writeBehind != null) {
+            writeBehind.write(key, value);
+            return;
+        }
+        l2Store.setAsync(key, value, ttlEngine.redisTtl(key));
+    }
+
+    /**
+     * Flushes a write-behind batch and then tells peers, so they never reload a
+     * key from Redis before the new value has reached it. Failures, including an
+     * open circuit breaker, propagate so the queue keeps the batch and retries.
+     */
+    private void flushWriteBehind(Map<String, String> writes, List<String> deletes) {
+        // A deleted key loses its streamed value too, whose chunks expire once the manifest is gone
+        List<String> unlinked = new ArrayList<>(deletes.size() * 2);
+        for (String key : deletes) {
+            unlinked.add(key);
+            unlinked.add(ChunkedValues.manifestKey(key));
+        }
+        l2Store.applyBatch(writes, unlinked, ttlEngine::redisTtl);
+        tagWritten(writes.keySet());
+        writes.keySet().forEach(invalidator::invalidate);
+        deletes.forEach(invalidator::invalidate);
+    }
+
+    // The tags of flushed keys go to Redis only now that the keys are there
+    private void tagWritten(Collection<String> keys) {
+        Map<String, Set<String>> tagged = new HashMap<>();
+        for (String key : keys) {
+            Set<String> tags = tagIndex.tagsOf(key);
+            if (!tags.isEmpty()) {
+                tagged.put(key, tags);
+            }
+        }
+        if (!tagged.isEmpty()) {
+            l2Store.tag(tagged, tagTtl());
+        }
+    }
+
+    // Outlasts the Redis TTL of every key, and the cleanup renews it before it runs out
+    private Duration tagTtl() {
+        return ttlEngine.maxRedisTtl().plus(properties.getTags().getCleanupInterval());
     }
 
     public void evict(String key) {
+        checkKey(key);
         // Remove from both caches
-        caffeineCache.invalidate(key);
-        try {
-            redisTemplate.delete(key);
-        } catch (Exception e) {
-            logger.warn("Redis is not available, skipping Redis cache eviction", e);
+        l1Cache.invalidate(key);
+        tagIndex.untag(key);
+        chunkedValues.invalidateLocal(key);
+        recordAccess(AccessTrace.Operation.EVICT, key, -1);
+        if (writeBehind != null) {
+            // Queued behind any pending write so the delete always lands last; the flush drops the manifest too
+            writeBehind.delete(key);
+        } else {
+            // The key and its streamed value's manifest, if any, in one pipeline per shard
+            l2Store.deleteAll(List.of(key, ChunkedValues.manifestKey(key)));
+            invalidator.invalidate(key);
         }
         metricsCollector.recordEviction();
         logger.info("Evicted key from cache: {}", key);
     }
 
+    /**
+     * Evicts every key put with the tag, by this node or any other, from both
+     * tiers at once: the keys in this node's index and in the tag's Redis set
+     * are invalidated in L1, unlinked from Redis in batches and dropped by peers
+     * through batched invalidations. Evicting a tag also drops its index.
+     *
+     * @return the number of keys evicted
+     */
+    public int evictByTag(String tag) {
+        int batchSize = properties.getTags().getBatchSize();
+        Set<String> local = tagIndex.removeTag(tag);
+        List<String> unlinked = l2Store.evictTag(tag, batchSize);
+        Set<String> keys = new LinkedHashSet<>(unlinked);
+        keys.addAll(local);
+        for (String key : keys) {
+            l1Cache.invalidate(key);
+            tagIndex.untag(key);
+            recordAccess(AccessTrace.Operation.EVICT, key, -1);
+        }
+        if (writeBehind != null) {
+            // Queued behind any pending write of the key, which would otherwise land after the UNLINK
+            keys.forEach(writeBehind::delete);
+        } else {
+            // Keys whose tagging never reached Redis are not in its set
+            Set<String> inRedisSet = new HashSet<>(unlinked);
+            List<String> untracked = local.stream().filter(key -> !inRedisSet.contains(key)).toList();
+            if (!untracked.isEmpty()) {
+                l2Store.deleteAll(untracked);
+            }
+            keys.forEach(invalidator::invalidate);
+        }
+        metricsCollector.recordTagEviction(keys.size());
+        logger.info("Evicted {} keys tagged {} from cache", keys.size(), tag);
+        return keys.size();
+    }
+
+    /**
+     * Keeps the tag indexes to the keys that still exist: drops from this node's
+     * index the keys that have left L1, and from the tags' Redis sets the keys
+     * that have left Redis.
+     */
+    @Scheduled(fixedDelayString = "${cachecraft.tags.cleanup-interval:PT5M}",
+            initialDelayString = "${cachecraft.tags.cleanup-interval:PT5M}")
+    public void cleanUpTags() {
+        Set<String> cached = l1Cache.keys();
+        int dropped = tagIndex.retainAll(cached::contains);
+        logger.debug("Dropped {} keys no longer in L1 from the tag index", dropped);
+        l2Store.cleanUpTags(tagTtl(), properties.getTags().getBatchSize());
+    }
+
+    public int getTagCount() {
+        return tagIndex.tagCount();
+    }
+
+    /**
+     * Clears both tiers. Redis moves to a new key generation, so the clear is one
+     * command however many keys there are and never touches other data on the
+     * server; the old keys are unlinked in the background.
+     */
     public void clearAll() {
-        // Clear both caches
-        caffeineCache.invalidateAll();
-        try {
-            redisTemplate.getConnectionFactory().getConnection().flushAll();
-        } catch (Exception e) {
-            logger.warn("Redis is not available, skipping Redis cache clear", e);
+        // Queued writes predate the clear and must not land in the new generation
+        if (writeBehind != null) {
+            writeBehind.clear();
         }
+        l2Store.clear();
+        l1Cache.invalidateAll();
+        tagIndex.clear();
+        invalidator.invalidateAll();
+        recordAccess(AccessTrace.Operation.CLEAR, "", -1);
         logger.info("Cleared all cache entries");
     }
 
+    /**
+     * Applies new L1 and TTL settings to the running cache without dropping it.
+     * A lower memory bound evicts down to it; changed TTLs restart the expiry of
+     * every cached entry with the TTL its key now earns. Nothing is applied if
+     * any setting is invalid.
+     *
+     * @throws IllegalArgumentException if a setting is invalid
+     */
+    public synchronized void reconfigure(CacheConfigUpdate update) {
+        Long maxBytes = null;
+        if (update.getMaxMemory() != null) {
+            maxBytes = DataSize.parse(update.getMaxMemory()).toBytes();
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("L1 memory bound must be positive");
+            }
+        }
+
+        CacheProperties.Ttl ttl = new CacheProperties.Ttl();
+        BeanUtils.copyProperties(ttlEngine.getConfig(), ttl);
+        if (update.getTtlBase() != null) {
+            ttl.setBase(update.getTtlBase());
+        }
+        if (update.getTtlMin() != null) {
+            ttl.setMin(update.getTtlMin());
+        }
+        if (update.getTtlMax() != null) {
+            ttl.setMax(update.getTtlMax());
+        }
+        if (update.getHotThreshold() != null) {
+            ttl.setHotThreshold(update.getHotThreshold());
+        }
+        if (update.getColdThreshold() != null) {
+            ttl.setColdThreshold(update.getColdThreshold());
+        }
+        if (update.getRedisMultiplier() != null) {
+            ttl.setRedisMultiplier(update.getRedisMultiplier());
+        }
+        if (update.getRefreshAhead() != null) {
+            ttl.setRefreshAhead(update.getRefreshAhead());
+        }
+        if (update.getStaleWhileRevalidate() != null) {
+            ttl.setStaleWhileRevalidate(update.getStaleWhileRevalidate());
+        }
+        if (update.getStaleIfError() != null) {
+            ttl.setStaleIfError(update.getStaleIfError());
+        }
+        AdaptiveTTLEngine.validate(ttl);
+
+        if (maxBytes != null) {
+            l1Cache.setMaximumBytes(maxBytes);
+            logger.info("L1 memory bound set to {} bytes", maxBytes);
+        }
+        if (!ttl.equals(ttlEngine.getConfig())) {
+            ttlEngine.reconfigure(ttl);
+            l1Cache.resetExpiries(ttlEngine::l1Lifetime);
+        }
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public long getL1MaximumBytes() {
+        return l1Cache.maximumBytes();
+    }
+
     public long getCaffeineCacheSize() {
-        return caffeineCache.estimatedSize();
+        return l1Cache.estimatedSize();
+    }
+
+    /**
+     * Closes a hot-key interval: pins the tracked keys whose guaranteed access
+     * rate reached the pin rate, unpins those that fell below it, then decays
+     * the counts.
+     */
+    @Scheduled(fixedRateString = "${cachecraft.hot-keys.interval:PT10S}",
+            initialDelayString = "${cachecraft.hot-keys.interval:PT10S}")
+    public void updateHotKeys() {
+        if (hotKeys == null) {
+            return;
+        }
+        CacheProperties.HotKeys config = properties.getHotKeys();
+        Set<String> hot = new HashSet<>();
+        if (config.getPinRate() > 0) {
+            for (HotKeyTracker.HotKey hotKey : hotKeys.top()) {
+                if (ratePerSecond(hotKey.guaranteedCount()) >= config.getPinRate()) {
+                    hot.add(hotKey.key());
+                }
+            }
+        }
+        for (String key : l1Cache.pinnedKeys()) {
+            if (!hot.contains(key) && l1Cache.unpin(key)) {
+                logger.info("Unpinned key {} from L1", key);
+            }
+        }
+        for (String key : hot) {
+            if (l1Cache.pin(key)) {
+                logger.info("Pinned hot key {} in L1", key);
+            }
+        }
+        hotKeys.age(config.getDecay());
+    }
+
+    /**
+     * The tracked hot keys, most accessed first, with their decayed counts, the
+     * access rate per second those stand for and whether they are pinned.
+     */
+    public List<Map<String, Object>> getHotKeys() {
+        List<Map<String, Object>> top = new ArrayList<>();
+        if (hotKeys == null) {
+            return top;
+        }
+        for (HotKeyTracker.HotKey hotKey : hotKeys.top()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("key", hotKey.key());
+            stats.put("count", hotKey.count());
+            stats.put("error", hotKey.error());
+            stats.put("ratePerSecond", ratePerSecond(hotKey.count()));
+            stats.put("pinned", l1Cache.isPinned(hotKey.key()));
+            top.add(stats);
+        }
+        return top;
+    }
+
+    public boolean isPinned(String key) {
+        return l1Cache.isPinned(key);
+    }
+
+    public int getPinnedKeyCount() {
+        return l1Cache.pinnedKeys().size();
+    }
+
+    // A key accessed r times a second settles at a decayed count of r * interval / (1 - decay)
+    private double ratePerSecond(long count) {
+        CacheProperties.HotKeys config = properties.getHotKeys();
+        return count * (1 - config.getDecay()) / (config.getInterval().toNanos() / 1e9);
     }
 }
\ No newline at end of file
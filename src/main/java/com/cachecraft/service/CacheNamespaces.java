@@ -0,0 +1,246 @@
+package com.cachecraft.service;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.RedisL2Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.regex.Pattern;
+
+/**
+ * The cache namespaces, by name. The default namespace is the
+ * {@link CacheManagerService} bean, configured by the top-level
+ * {@code cachecraft.*} settings; each entry of {@code cachecraft.namespaces}
+ * adds one with its own L1, TTL policy, frequency sketch, Redis key prefix and
+ * generation, so a high-churn namespace evicts and clears only its own entries.
+ * Namespaces share the Redis shards and their circuit breakers, the invalidation
+ * channel and the value codec.
+ *
+ * <p>Named namespaces are not Spring beans, so the periodic work Spring
+ * schedules for the default one (TTL windows, invalidation flushes, generation
+ * checks, snapshots, hot-key pinning and tag index cleanup) is scheduled here
+ * for them.
+ */
+@Service
+public class CacheNamespaces {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheNamespaces.class);
+
+    public static final String DEFAULT = "default";
+
+    // Names appear in URLs and Redis keys, and never start with a digit so they cannot pass for a generation
+    private static final Pattern NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_-]*");
+    // /api/async/data/{key} would otherwise be read as a namespace lookup
+    private static final Set<String> RESERVED = Set.of(DEFAULT, "async");
+    // What follows a prefix and ':' in its own keys: a generation number, then ':' and the rest of the key
+    private static final Pattern GENERATION_KEYS = Pattern.compile("\\d+(:.*)?", Pattern.DOTALL);
+    // Glob characters in a prefix would widen the SCAN patterns that reclaim its old generations
+    private static final Pattern GLOB = Pattern.compile("[*?\\[\\]\\\\]");
+
+    private final CacheManagerService defaultNamespace;
+    private final RedisL2Store l2Store;
+    private final NearCacheInvalidator invalidator;
+    private final CacheProperties properties;
+    private final MetricsCollector metricsCollector;
+    private final ValueSerializer valueSerializer;
+    private final TaskScheduler scheduler;
+
+    private Map<String, CacheManagerService> namespaces = Map.of();
+    private final List<Named> named = new ArrayList<>();
+
+    private record Named(CacheManagerService service, RedisL2Store l2Store, NearCacheInvalidator invalidator,
+                         List<ScheduledFuture<?>> tasks) {
+    }
+
+    @Autowired
+    public CacheNamespaces(CacheManagerService defaultNamespace, RedisL2Store l2Store,
+                           NearCacheInvalidator invalidator, CacheProperties properties,
+                           MetricsCollector metricsCollector, ValueSerializer valueSerializer,
+                           TaskScheduler scheduler) {
+        this.defaultNamespace = defaultNamespace;
+        this.l2Store = l2Store;
+        this.invalidator = invalidator;
+        this.properties = properties;
+        this.metricsCollector = metricsCollector;
+        this.valueSerializer = valueSerializer;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a namespace's name, key prefix or TTL policy is invalid
+     */
+    @PostConstruct
+    public void init() {
+        // Everything is checked before anything starts, so a bad entry leaves nothing running
+        Map<String, CacheProperties> configured = new LinkedHashMap<>();
+        Map<String, String> owners = new HashMap<>();
+        owners.put(properties.getKeyspace().getPrefix(), DEFAULT);
+        properties.getNamespaces().forEach((name, config) -> {
+            if (!NAME.matcher(name).matches() || RESERVED.contains(name)) {
+                throw new IllegalArgumentException("Invalid cache namespace name " + name
+                        + ": use letters, digits, '-' and '_', starting with a letter, and not one of " + RESERVED);
+            }
+            CacheProperties namespaceProperties = propertiesFor(name, config);
+            AdaptiveTTLEngine.validate(namespaceProperties.getTtl());
+            String prefix = namespaceProperties.getKeyspace().getPrefix();
+            if (prefix.isEmpty() || GLOB.matcher(prefix).find()) {
+                throw new IllegalArgumentException("Invalid Redis key prefix " + prefix + " for cache namespace "
+                        + name + ": it must not be empty or contain *, ?, [, ] or \\");
+            }
+            owners.forEach((other, owner) -> {
+                if (prefix.equals(other)) {
+                    throw new IllegalArgumentException("Cache namespaces " + owner + " and " + name
+                            + " share the Redis key prefix " + prefix);
+                }
+                if (withinGenerations(prefix, other) || withinGenerations(other, prefix)) {
+                    throw new IllegalArgumentException("Cache namespaces " + owner + " and " + name
+                            + " have overlapping Redis key prefixes " + other + " and " + prefix);
+                }
+            });
+            owners.put(prefix, name);
+            configured.put(name, namespaceProperties);
+        });
+
+        Map<String, CacheManagerService> all = new LinkedHashMap<>();
+        all.put(DEFAULT, defaultNamespace);
+        configured.forEach((name, namespaceProperties) -> all.put(name, start(name, namespaceProperties)));
+        this.namespaces = Collections.unmodifiableMap(all);
+    }
+
+    /**
+     * Whether keys under the inner prefix fall among the outer prefix's generations,
+     * as those of {@code cachecraft:0} do among {@code cachecraft}'s, where the
+     * outer store would read them as its own and unlink them with its old generations.
+     */
+    private static boolean withinGenerations(String inner, String outer) {
+        return inner.startsWith(outer + ':')
+                && GENERATION_KEYS.matcher(inner.substring(outer.length() + 1)).matches();
+    }
+
+    private CacheManagerService start(String name, CacheProperties namespaceProperties) {
+        String prefix = namespaceProperties.getKeyspace().getPrefix();
+        RedisL2Store store = l2Store.forNamespace(prefix);
+        AdaptiveTTLEngine ttlEngine = new AdaptiveTTLEngine(store, namespaceProperties, metricsCollector);
+        NearCacheInvalidator namespaceInvalidator = invalidator.forNamespace(name);
+        CacheManagerService service = new CacheManagerService(name, store, metricsCollector, ttlEngine,
+                namespaceProperties, namespaceInvalidator, valueSerializer);
+        service.init();
+
+        List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        CacheProperties.Ttl ttl = namespaceProperties.getTtl();
+        tasks.add(scheduler.scheduleAtFixedRate(ttlEngine::adjustTTL, Instant.now().plus(ttl.getWindow()), ttl.getWindow()));
+        tasks.add(scheduler.scheduleWithFixedDelay(store::refreshGeneration,
+                properties.getKeyspace().getGenerationCheckInterval()));
+        if (properties.getInvalidation().isEnabled()) {
+            tasks.add(scheduler.scheduleWithFixedDelay(namespaceInvalidator::flush,
+                    properties.getInvalidation().getFlushInterval()));
+        }
+        CacheProperties.Snapshot snapshot = namespaceProperties.getSnapshot();
+        if (snapshot.isEnabled()) {
+            tasks.add(scheduler.scheduleWithFixedDelay(service::writeSnapshot,
+                    Instant.now().plus(snapshot.getInterval()), snapshot.getInterval()));
+        }
+        CacheProperties.HotKeys hotKeys = namespaceProperties.getHotKeys();
+        if (hotKeys.isEnabled()) {
+            tasks.add(scheduler.scheduleAtFixedRate(service::updateHotKeys,
+                    Instant.now().plus(hotKeys.getInterval()), hotKeys.getInterval()));
+        }
+        Duration tagCleanup = properties.getTags().getCleanupInterval();
+        tasks.add(scheduler.scheduleWithFixedDelay(service::cleanUpTags, Instant.now().plus(tagCleanup), tagCleanup));
+        named.add(new Named(service, store, namespaceInvalidator, tasks));
+        logger.info("Cache namespace {} started with L1 bound {} bytes and Redis keys under {}",
+                name, service.getL1MaximumBytes(), prefix);
+        return service;
+    }
+
+    /**
+     * The top-level settings with the namespace's own L1 bound, TTL policy, key
+     * prefix, snapshot file and access trace. Nested settings it changes are copied, never
+     * modified in place.
+     */
+    private CacheProperties propertiesFor(String name, CacheProperties.Namespace config) {
+        CacheProperties copy = new CacheProperties();
+        BeanUtils.copyProperties(properties, copy);
+        copy.setNamespaces(Map.of());
+
+        CacheProperties.L1 l1 = new CacheProperties.L1();
+        BeanUtils.copyProperties(properties.getL1(), l1);
+        if (config.getMaxMemory() != null) {
+            if (l1.getMode() == CacheProperties.L1Mode.OFF_HEAP) {
+                CacheProperties.OffHeap offHeap = new CacheProperties.OffHeap();
+                BeanUtils.copyProperties(l1.getOffHeap(), offHeap);
+                offHeap.setMaxMemory(config.getMaxMemory());
+                l1.setOffHeap(offHeap);
+            } else {
+                l1.setMaxMemory(config.getMaxMemory());
+            }
+        }
+        copy.setL1(l1);
+
+        if (config.getTtl() != null) {
+            copy.setTtl(config.getTtl());
+        }
+
+        CacheProperties.Keyspace keyspace = new CacheProperties.Keyspace();
+        BeanUtils.copyProperties(properties.getKeyspace(), keyspace);
+        keyspace.setPrefix(config.getKeyPrefix() != null ? config.getKeyPrefix() : keyspace.getPrefix() + ':' + name);
+        copy.setKeyspace(keyspace);
+
+        CacheProperties.Snapshot snapshot = new CacheProperties.Snapshot();
+        BeanUtils.copyProperties(properties.getSnapshot(), snapshot);
+        Path path = snapshot.getPath();
+        snapshot.setPath(path.resolveSibling(name + "-" + path.getFileName()));
+        copy.setSnapshot(snapshot);
+
+        CacheProperties.AccessLog accessLog = new CacheProperties.AccessLog();
+        BeanUtils.copyProperties(properties.getAccessLog(), accessLog);
+        Path trace = accessLog.getPath();
+        accessLog.setPath(trace.resolveSibling(name + "-" + trace.getFileName()));
+        copy.setAccessLog(accessLog);
+        return copy;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Named namespace : named) {
+            namespace.tasks().forEach(task -> task.cancel(false));
+            namespace.service().shutdown();
+            namespace.invalidator().shutdown();
+            namespace.l2Store().shutdown();
+        }
+    }
+
+    /**
+     * The namespace with the given name, or {@code null} if there is none.
+     */
+    public CacheManagerService get(String name) {
+        return namespaces.get(name);
+    }
+
+    /**
+     * Every namespace by name, the default one first.
+     */
+    public Map<String, CacheManagerService> all() {
+        return namespaces;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cachecraft.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A value that can be written out whole or by byte range, one chunk at a time,
+ * so a reader never holds more than one chunk of it. Chunks are fetched as the
+ * value is written; one that is no longer cached anywhere fails the write with
+ * an {@link IOException}, which truncates whatever was already sent.
+ */
+public class ChunkedValue {
+
+    /**
+     * Reads chunk {@code index} of a value; every chunk but the last is full.
+     */
+    @FunctionalInterface
+    public interface ChunkReader {
+        byte[] read(int index) throws IOException;
+    }
+
+    private final long length;
+    private final int chunkSize;
+    private final long timestampNanos;
+    private final ChunkReader chunks;
+
+    public ChunkedValue(long length, int chunkSize, long timestampNanos, ChunkReader chunks) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.timestampNanos = timestampNanos;
+        this.chunks = chunks;
+    }
+
+    /**
+     * A value already held in memory, as a single chunk.
+     */
+    public static ChunkedValue of(byte[] bytes, long timestampNanos) {
+        return new ChunkedValue(bytes.length, Math.max(1, bytes.length), timestampNanos, index -> bytes);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return (int) ((length + chunkSize - 1) / chunkSize);
+    }
+
+    // Write time in nanoseconds since the epoch
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Writes the bytes from {@code from} up to, not including, {@code to}.
+     */
+    public void writeTo(OutputStream out, long from, long to) throws IOException {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + "-" + to + " of a " + length + " byte value");
+        }
+        if (from == to) {
+            return;
+        }
+        int first = (int) (from / chunkSize);
+        int last = (int) ((to - 1) / chunkSize);
+        for (int index = first; index <= last; index++) {
+            byte[] chunk = chunks.read(index);
+            long start = (long) index * chunkSize;
+            int offset = (int) Math.max(0, from - start);
+            int end = (int) Math.min(chunk.length, to - start);
+            out.write(chunk, offset, end - offset);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.cachecraft.service;
+
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheEntry;
+import com.cachecraft.store.L1Store;
+import com.cachecraft.store.L2UnavailableException;
+import com.cachecraft.store.RedisL2Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Values stored as fixed-size chunks, so uploading or reading one holds a
+ * single chunk in memory however large the value is. Each value is a small
+ * manifest under {@code <key>\0chunks} and its chunks under
+ * {@code <key>\0<version>:<index>}, in L1 and Redis alike; the NUL keeps them
+ * apart from every key a client can use for a regular value, since
+ * {@link CacheManagerService} rejects client keys that contain one. A manifest
+ * slot that holds anything else reads as no value. Chunks go to Redis
+ * as raw bytes and, for values up to {@code cachecraft.chunking.max-l1-value},
+ * to L1 as Latin-1 strings, one byte per char on heap.
+ *
+ * <p>An upload writes its chunks under a fresh version before the manifest that
+ * points to them, so a reader sees the old value or the new one, never a mix;
+ * the replaced version's chunks are deleted afterwards. Chunks and manifest
+ * share one Redis TTL, {@code cachecraft.chunking.ttl}, which reads do not
+ * extend; in L1 they expire like any cold key. A chunk that has
+ * nonetheless gone, such as one Redis evicted under memory pressure, fails the
+ * read and drops the manifest, so later reads miss instead of failing midway.
+ *
+ * <p>Peers are told of a new or dropped value through an invalidation of its
+ * key, on which they drop the key's manifest with {@link #invalidateLocal}.
+ */
+class ChunkedValues {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedValues.class);
+
+    private static final char SEPARATOR = '\u0000';
+
+    private record Manifest(String version, long length, int chunkSize, long timestampNanos) {
+
+        /**
+         * The manifest stored as the string, or {@code null} if the string is not one.
+         */
+        static Manifest parse(String stored) {
+            String[] fields = stored.split(":");
+            if (fields.length != 4) {
+                return null;
+            }
+            try {
+                Manifest manifest = new Manifest(fields[0], Long.parseLong(fields[1]), Integer.parseInt(fields[2]),
+                        Long.parseLong(fields[3]));
+                return manifest.length() >= 0 && manifest.chunkSize() > 0 ? manifest : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String encode() {
+            return version + ':' + length + ':' + chunkSize + ':' + timestampNanos;
+        }
+
+        int chunkCount() {
+            return (int) ((length + chunkSize - 1) / chunkSize);
+        }
+    }
+
+    private final L1Store l1Cache;
+    private final RedisL2Store l2Store;
+    private final NearCacheInvalidator invalidator;
+    private final MetricsCollector metricsCollector;
+    private final CacheProperties.Chunking config;
+    private final LongSupplier clock;
+
+    ChunkedValues(L1Store l1Cache, RedisL2Store l2Store, NearCacheInvalidator invalidator,
+                  MetricsCollector metricsCollector, CacheProperties.Chunking config, LongSupplier clock) {
+        this.l1Cache = l1Cache;
+        this.l2Store = l2Store;
+        this.invalidator = invalidator;
+        this.metricsCollector = metricsCollector;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /**
+     * Whether the key is a manifest or chunk rather than a regular cache key.
+     */
+    static boolean isChunkKey(String key) {
+        return key.indexOf(SEPARATOR) >= 0;
+    }
+
+    static String manifestKey(String key) {
+        return key + SEPARATOR + "chunks";
+    }
+
+    private static String chunkKey(String key, String version, int index) {
+        return key + SEPARATOR + version + ':' + index;
+    }
+
+    /**
+     * Stores everything the stream holds as the key's chunked value.
+     *
+     * @throws IllegalArgumentException if the stream holds more than {@code cachecraft.chunking.max-value}
+     * @throws L2UnavailableException if Redis did not take a chunk
+     */
+    ChunkedValue write(String key, InputStream in) throws IOException {
+        int chunkSize = (int) config.getChunkSize().toBytes();
+        long maxValue = config.getMaxValue().toBytes();
+        long maxL1Value = config.getMaxL1Value().toBytes();
+        String manifestKey = manifestKey(key);
+        Duration ttl = config.getTtl();
+        long timestamp = clock.getAsLong();
+        String version = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+        List<String> written = new ArrayList<>();
+        long length = 0;
+        try {
+            while (true) {
+                // A fresh buffer per chunk, so no client library ever sees one refilled
+                byte[] buffer = new byte[chunkSize];
+                int read = in.readNBytes(buffer, 0, chunkSize);
+                if (read == 0) {
+                    break;
+                }
+                length += read;
+                if (length > maxValue) {
+                    throw new IllegalArgumentException("Value for key " + key + " is larger than "
+                            + config.getMaxValue());
+                }
+                String chunkKey = chunkKey(key, version, written.size());
+                byte[] chunk = read == chunkSize ? buffer : Arrays.copyOf(buffer, read);
+                written.add(chunkKey);
+                if (!l2Store.setBytes(chunkKey, chunk, ttl)) {
+                    throw new L2UnavailableException("Redis did not take chunk " + (written.size() - 1)
+                            + " of key " + key);
+                }
+                if (length <= maxL1Value) {
+                    l1Cache.put(chunkKey, new CacheEntry(chunkKey, latin1(chunk, read), timestamp, 0));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(written);
+            throw e;
+        }
+        if (length > maxL1Value) {
+            // Cached while the value still looked small enough
+            written.forEach(l1Cache::invalidate);
+        }
+
+        Manifest previous = manifest(key);
+        Manifest manifest = new Manifest(version, length, chunkSize, timestamp);
+        if (!l2Store.setBytes(manifestKey, manifest.encode().getBytes(StandardCharsets.UTF_8), ttl)) {
+            discard(written);
+            throw new L2UnavailableException("Redis did not take the manifest of key " + key);
+        }
+        l1Cache.put(manifestKey, new CacheEntry(manifestKey, manifest.encode(), timestamp, 0));
+        invalidator.invalidate(key);
+        if (previous != null && !previous.version().equals(version)) {
+            discard(chunkKeys(key, previous));
+        }
+        logger.info("Stored {} bytes in {} chunks for key: {}", length, manifest.chunkCount(), key);
+        return open(key, manifest);
+    }
+
+    /**
+     * The key's chunked value, or {@code null} if it has none.
+     */
+    ChunkedValue read(String key) {
+        Manifest manifest = manifest(key);
+        return manifest != null ? open(key, manifest) : null;
+    }
+
+    /**
+     * Drops the key's chunked value, if any, from L1 and Redis; the caller tells
+     * peers, as it does for the key's regular value. Callers that delete the key
+     * from Redis as well drop the manifest with it and use {@link #invalidateLocal}.
+     */
+    void evict(String key) {
+        invalidateLocal(key);
+        // The chunks are unreachable without the manifest and expire with their TTL
+        l2Store.delete(manifestKey(key));
+    }
+
+    /**
+     * Drops the key's manifest and the chunks it points to from this node's L1.
+     */
+    void invalidateLocal(String key) {
+        String manifestKey = manifestKey(key);
+        CacheEntry cached = l1Cache.getIfPresent(manifestKey);
+        if (cached != null) {
+            Manifest manifest = Manifest.parse(cached.getValue());
+            if (manifest != null) {
+                chunkKeys(key, manifest).forEach(l1Cache::invalidate);
+            }
+            l1Cache.invalidate(manifestKey);
+        }
+    }
+
+    private Manifest manifest(String key) {
+        String manifestKey = manifestKey(key);
+        CacheEntry cached = l1Cache.getIfPresent(manifestKey);
+        if (cached != null) {
+            Manifest manifest = Manifest.parse(cached.getValue());
+            if (manifest != null) {
+                return manifest;
+            }
+            l1Cache.invalidate(manifestKey);
+        }
+        Manifest manifest = storedManifest(manifestKey);
+        if (manifest != null) {
+            l1Cache.put(manifestKey, new CacheEntry(manifestKey, manifest.encode(), manifest.timestampNanos(), 0));
+        }
+        return manifest;
+    }
+
+    // An unavailable Redis reads as a miss, as for regular values
+    private Manifest storedManifest(String manifestKey) {
+        try {
+            byte[] stored = l2Store.fetchBytes(manifestKey);
+            return stored != null ? Manifest.parse(new String(stored, StandardCharsets.UTF_8)) : null;
+        } catch (L2UnavailableException e) {
+            return null;
+        }
+    }
+
+    // Leaves the manifest alone if an upload has replaced it since it was read
+    private void dropIfCurrent(String key, Manifest manifest) {
+        String manifestKey = manifestKey(key);
+        CacheEntry cached = l1Cache.getIfPresent(manifestKey);
+        Manifest current = cached != null ? Manifest.parse(cached.getValue()) : null;
+        if (current != null && !current.version().equals(manifest.version())) {
+            return;
+        }
+        Manifest stored = storedManifest(manifestKey);
+        if (stored == null || stored.version().equals(manifest.version())) {
+            evict(key);
+            invalidator.invalidate(key);
+        }
+    }
+
+    private ChunkedValue open(String key, Manifest manifest) {
+        boolean cacheInL1 = manifest.length() <= config.getMaxL1Value().toBytes();
+        return new ChunkedValue(manifest.length(), manifest.chunkSize(), manifest.timestampNanos(),
+                index -> readChunk(key, manifest, index, cacheInL1));
+    }
+
+    private byte[] readChunk(String key, Manifest manifest, int index, boolean cacheInL1) throws IOException {
+        String chunkKey = chunkKey(key, manifest.version(), index);
+        CacheEntry cached = l1Cache.getIfPresent(chunkKey);
+        if (cached != null) {
+            metricsCollector.recordChunkRead("l1");
+            return cached.getValue().getBytes(StandardCharsets.ISO_8859_1);
+        }
+        byte[] chunk;
+        try {
+            chunk = l2Store.fetchBytes(chunkKey);
+        } catch (L2UnavailableException e) {
+            throw new IOException("Chunk " + index + " of key " + key + " could not be read: " + e.getMessage(), e);
+        }
+        if (chunk == null) {
+            metricsCollector.recordChunkRead("missing");
+            logger.warn("Chunk {} of key {} is gone, dropping its value", index, key);
+            dropIfCurrent(key, manifest);
+            throw new IOException("Chunk " + index + " of key " + key + " is no longer cached");
+        }
+        metricsCollector.recordChunkRead("redis");
+        if (cacheInL1) {
+            l1Cache.put(chunkKey, new CacheEntry(chunkKey, latin1(chunk, chunk.length), manifest.timestampNanos(), 0));
+        }
+        return chunk;
+    }
+
+    private static List<String> chunkKeys(String key, Manifest manifest) {
+        List<String> keys = new ArrayList<>(manifest.chunkCount());
+        for (int index = 0; index < manifest.chunkCount(); index++) {
+            keys.add(chunkKey(key, manifest.version(), index));
+        }
+        return keys;
+    }
+
+    private void discard(List<String> chunkKeys) {
+        chunkKeys.forEach(l1Cache::invalidate);
+        l2Store.deleteAll(chunkKeys);
+    }
+
+    private static String latin1(byte[] bytes, int length) {
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+}
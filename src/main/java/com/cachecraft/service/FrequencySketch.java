@@ -0,0 +1,96 @@
+package com.cachecraft.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-min sketch of key access frequencies in fixed memory. Each key maps to
+ * one counter in each of {@link #DEPTH} rows and its estimate is the smallest
+ * of those counters. Increments are single-cell atomic adds spread over the
+ * whole table, so concurrent readers of different keys rarely touch the same
+ * cache line. {@link #age(double)} scales every counter down, which turns the
+ * counts into exponentially decayed frequencies.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final AtomicIntegerArray table;
+    private final int rowMask;
+    private final int rowShift;
+
+    /**
+     * @param width counters per row, rounded up to a power of two; should be
+     *              comfortably larger than the number of distinct hot keys
+     */
+    public FrequencySketch(int width) {
+        int rowWidth = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.rowMask = rowWidth - 1;
+        this.rowShift = Integer.numberOfTrailingZeros(rowWidth);
+        this.table = new AtomicIntegerArray(rowWidth * DEPTH);
+    }
+
+    public void increment(String key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            int count = table.get(index);
+            // Saturate instead of wrapping around
+            if (count < Integer.MAX_VALUE) {
+                table.incrementAndGet(index);
+            }
+        }
+    }
+
+    /**
+     * Raises the key's counters to at least {@code count}, so its estimate is at
+     * least that; counters already higher are left alone.
+     */
+    public void raise(String key, int count) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            table.accumulateAndGet(indexOf(hash, row), count, Math::max);
+        }
+    }
+
+    public int estimate(String key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table.get(indexOf(hash, row)));
+        }
+        return min;
+    }
+
+    /**
+     * Multiplies every counter by the given factor (0..1). Increments racing with
+     * the pass may be lost, which only ever under-counts by a few accesses.
+     */
+    public void age(double factor) {
+        for (int i = 0; i < table.length(); i++) {
+            int count = table.get(i);
+            if (count != 0) {
+                table.set(i, (int) (count * factor));
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (row << rowShift) + ((int) h & rowMask);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,153 @@
+package com.cachecraft.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streaming top-K of the most accessed keys with the Space-Saving algorithm, in
+ * memory bounded by its capacity however many keys pass through. A key outside
+ * the top-K that is accessed takes over the least counted slot and inherits its
+ * count as the possible overcount, so a key's count less its error is a lower
+ * bound on its accesses and any key accessed more often than the smallest
+ * count is guaranteed to be tracked. {@link #age(double)} scales the counts
+ * down, which turns them into exponentially decayed frequencies.
+ *
+ * <p>Recording never waits: an access that finds another one being counted is
+ * skipped, the way Caffeine's read buffer drops reads under contention. The
+ * heaviest keys are the ones most often recorded, so skips leave the ranking
+ * intact while the counts become a sample under heavy concurrency.
+ */
+public class HotKeyTracker {
+
+    /**
+     * A tracked key, its count and how much of the count may belong to keys it displaced.
+     */
+    public record HotKey(String key, long count, long error) {
+
+        /**
+         * Accesses the key is known to have had.
+         */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter {
+        private final String key;
+        private long count;
+        private long error;
+
+        private Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Counter> counters = new HashMap<>();
+    // Counters by count, so the least counted one is found in O(log k)
+    private final TreeMap<Long, Set<Counter>> byCount = new TreeMap<>();
+
+    /**
+     * @param capacity number of keys tracked
+     */
+    public HotKeyTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hot key capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void record(String key) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            Counter counter = counters.get(key);
+            if (counter != null) {
+                move(counter, counter.count + 1);
+            } else if (counters.size() < capacity) {
+                add(new Counter(key, 1, 0));
+            } else {
+                Map.Entry<Long, Set<Counter>> least = byCount.firstEntry();
+                Counter displaced = least.getValue().iterator().next();
+                remove(displaced);
+                add(new Counter(key, least.getKey() + 1, least.getKey()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Multiplies every count and error by {@code decay}; keys whose count
+     * reaches zero stop being tracked.
+     */
+    public void age(double decay) {
+        lock.lock();
+        try {
+            List<Counter> all = new ArrayList<>(counters.values());
+            counters.clear();
+            byCount.clear();
+            for (Counter counter : all) {
+                counter.count = (long) (counter.count * decay);
+                counter.error = (long) (counter.error * decay);
+                if (counter.count > 0) {
+                    add(counter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The tracked keys, most counted first.
+     */
+    public List<HotKey> top() {
+        List<HotKey> top = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Counter counter : counters.values()) {
+                top.add(new HotKey(counter.key, counter.count, counter.error));
+            }
+        } finally {
+            lock.unlock();
+        }
+        top.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return top;
+    }
+
+    private void add(Counter counter) {
+        counters.put(counter.key, counter);
+        byCount.computeIfAbsent(counter.count, count -> new LinkedHashSet<>()).add(counter);
+    }
+
+    private void remove(Counter counter) {
+        counters.remove(counter.key);
+        detach(counter);
+    }
+
+    private void move(Counter counter, long count) {
+        detach(counter);
+        counter.count = count;
+        byCount.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(counter);
+    }
+
+    private void detach(Counter counter) {
+        Set<Counter> same = byCount.get(counter.count);
+        same.remove(counter);
+        if (same.isEmpty()) {
+            byCount.remove(counter.count);
+        }
+    }
+}
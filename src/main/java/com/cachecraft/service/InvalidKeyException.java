@@ -0,0 +1,12 @@
+package com.cachecraft.service;
+
+/**
+ * Thrown for a client key the cache cannot store or look up, such as one that
+ * would collide with the keys the cache keeps for itself.
+ */
+public class InvalidKeyException extends IllegalArgumentException {
+
+    public InvalidKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,103 @@
+package com.cachecraft.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader
+ * and every caller that arrives while it is in flight waits on the same future
+ * instead of starting a load of its own.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Runnable onCoalesced;
+
+    public SingleFlight(Runnable onCoalesced) {
+        this.onCoalesced = onCoalesced;
+    }
+
+    public V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> call = inFlight.get(key);
+        if (call == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            call = inFlight.putIfAbsent(key, created);
+            if (call == null) {
+                return runLoader(key, loader, created);
+            }
+        }
+        onCoalesced.run();
+        return await(call);
+    }
+
+    /**
+     * Non-blocking {@link #load}: returns the future of the load in flight for the
+     * key, starting one with the loader if there is none. Sync and async callers
+     * of the same key share one load.
+     */
+    public CompletableFuture<V> loadAsync(K key, Function<? super K, ? extends CompletableFuture<V>> loader) {
+        CompletableFuture<V> call = inFlight.get(key);
+        if (call == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            call = inFlight.putIfAbsent(key, created);
+            if (call == null) {
+                startLoader(key, loader, created);
+                return created;
+            }
+        }
+        onCoalesced.run();
+        return call;
+    }
+
+    public boolean isLoading(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V runLoader(K key, Function<? super K, ? extends V> loader, CompletableFuture<V> call) {
+        try {
+            V value = loader.apply(key);
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private void startLoader(K key, Function<? super K, ? extends CompletableFuture<V>> loader, CompletableFuture<V> call) {
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((value, failure) -> {
+            inFlight.remove(key, call);
+            if (failure != null) {
+                call.completeExceptionally(failure);
+            } else {
+                call.complete(value);
+            }
+        });
+    }
+
+    private V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.cachecraft.service;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * This node's inverted index from tags to the keys put with them, so evicting
+ * a tag reaches the keys in L1 without asking Redis. Tags only accumulate: a
+ * key keeps every tag it was put with until it is evicted or leaves L1, which
+ * at worst evicts a key more than needed. Keys that leave L1 by expiry or the
+ * memory bound are dropped by {@link #retainAll}, run periodically, rather
+ * than from L1's eviction path.
+ */
+class TagIndex {
+
+    private final ConcurrentHashMap<String, Set<String>> keysByTag = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+
+    void tag(String key, Collection<String> tags) {
+        tagsByKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).addAll(tags);
+        for (String tag : tags) {
+            // Under the map's lock for the tag, so an add never lands in a set being dropped as empty
+            keysByTag.compute(tag, (t, keys) -> {
+                Set<String> tagged = keys != null ? keys : ConcurrentHashMap.<String>newKeySet();
+                tagged.add(key);
+                return tagged;
+            });
+        }
+    }
+
+    /**
+     * The key's tags; empty if it has none.
+     */
+    Set<String> tagsOf(String key) {
+        return tagsByKey.getOrDefault(key, Set.of());
+    }
+
+    /**
+     * Drops the key from the index.
+     */
+    void untag(String key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            keysByTag.computeIfPresent(tag, (t, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * Drops the tag and the keys it indexed.
+     *
+     * @return the keys that had the tag
+     */
+    Set<String> removeTag(String tag) {
+        Set<String> keys = keysByTag.remove(tag);
+        if (keys == null) {
+            return Set.of();
+        }
+        keys.forEach(this::untag);
+        return keys;
+    }
+
+    /**
+     * Drops the keys that fail the test, such as those no longer in L1.
+     *
+     * @return the number of keys dropped
+     */
+    int retainAll(Predicate<String> keep) {
+        int dropped = 0;
+        for (String key : tagsByKey.keySet()) {
+            if (!keep.test(key)) {
+                untag(key);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    void clear() {
+        tagsByKey.clear();
+        keysByTag.clear();
+    }
+
+    int tagCount() {
+        return keysByTag.size();
+    }
+
+    int keyCount() {
+        return tagsByKey.size();
+    }
+}
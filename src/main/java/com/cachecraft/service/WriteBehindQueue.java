@@ -0,0 +1,312 @@
+package com.cachecraft.service;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of pending Redis writes and deletes, drained by a background
+ * flusher in pipelined batches. A key has at most one pending operation: a newer
+ * write or delete replaces the queued one, so a hot key written many times
+ * between flushes reaches Redis once.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /**
+     * Applies one batch to Redis. Writes map keys to values; deletes list keys to remove.
+     */
+    @FunctionalInterface
+    public interface Flusher {
+        void flush(Map<String, String> writes, List<String> deletes);
+    }
+
+    /**
+     * The operation queued for a key; a {@code null} value is a delete.
+     */
+    public record Pending(String value) {
+        public boolean isDelete() {
+            return value == null;
+        }
+    }
+
+    private final Flusher flusher;
+    private final CacheProperties.WriteBehind config;
+    private final MetricsCollector metricsCollector;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition batchReady = lock.newCondition();
+    // Insertion ordered so the oldest changes are flushed first
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final Thread flusherThread;
+    private volatile boolean closed;
+    // This queue's share of the depth gauge, which sums every namespace's queue; guarded by lock
+    private long reportedDepth;
+
+    public WriteBehindQueue(Flusher flusher, CacheProperties.WriteBehind config, MetricsCollector metricsCollector) {
+        this.flusher = flusher;
+        this.config = config;
+        this.metricsCollector = metricsCollector;
+        this.flusherThread = new Thread(this::runFlusher, "cachecraft-write-behind");
+        this.flusherThread.setDaemon(true);
+        this.flusherThread.start();
+    }
+
+    public void write(String key, String value) {
+        enqueue(key, new Pending(value));
+    }
+
+    public void delete(String key) {
+        enqueue(key, new Pending(null));
+    }
+
+    /**
+     * Returns the operation still waiting to reach Redis for the key, or {@code null}.
+     * Reads consult this before Redis so they never see a value older than one
+     * already accepted by this node.
+     */
+    public Pending lookup(String key) {
+        lock.lock();
+        try {
+            return pending.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every queued operation, for a full cache clear.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            pending.clear();
+            reportDepth();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting operations and flushes everything still queued.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        lock.lock();
+        try {
+            batchReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusherThread.join(config.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = depth();
+        if (left > 0) {
+            logger.warn("Write-behind queue closed with {} operations not flushed to Redis", left);
+        }
+    }
+
+    private void enqueue(String key, Pending operation) {
+        if (closed) {
+            flushDirectly(key, operation);
+            return;
+        }
+        boolean accepted;
+        lock.lock();
+        try {
+            if (pending.containsKey(key)) {
+                // Re-insert so the key moves behind the operations queued before this one
+                pending.remove(key);
+                pending.put(key, operation);
+                metricsCollector.recordWriteBehindCoalesced();
+                return;
+            }
+            accepted = pending.size() < config.getCapacity() || makeRoom();
+            if (accepted) {
+                pending.put(key, operation);
+                reportDepth();
+                if (pending.size() >= config.getBatchSize()) {
+                    batchReady.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!accepted) {
+            applyBackpressureFallback(key, operation);
+        }
+    }
+
+    /**
+     * Called with the lock held and the queue full. Returns true once there is room.
+     */
+    private boolean makeRoom() {
+        if (config.getBackpressure() != CacheProperties.Backpressure.BLOCK) {
+            return false;
+        }
+        batchReady.signal();
+        long remaining = config.getBlockTimeout().toNanos();
+        try {
+            while (pending.size() >= config.getCapacity() && remaining > 0 && !closed) {
+                remaining = notFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return pending.size() < config.getCapacity();
+    }
+
+    private void applyBackpressureFallback(String key, Pending operation) {
+        if (config.getBackpressure() == CacheProperties.Backpressure.DISCARD) {
+            metricsCollector.recordWriteBehindDropped(1);
+            logger.debug("Write-behind queue full, dropping Redis update for key: {}", key);
+            return;
+        }
+        // CALLER_RUNS, or BLOCK after its timeout: write through on the caller's thread
+        metricsCollector.recordWriteBehindOverflow();
+        flushDirectly(key, operation);
+    }
+
+    /**
+     * Writes one operation through on the caller's thread. The caller has already
+     * applied it to L1, so a Redis that cannot take it costs the update, not the
+     * request: the failure is logged and counted as a drop.
+     */
+    private void flushDirectly(String key, Pending operation) {
+        try {
+            if (operation.isDelete()) {
+                flusher.flush(Map.of(), List.of(key));
+            } else {
+                flusher.flush(Map.of(key, operation.value()), List.of());
+            }
+        } catch (RuntimeException e) {
+            metricsCollector.recordWriteBehindDropped(1);
+            logger.warn("Write-through of key {} failed, dropping its Redis update: {}", key, e.getMessage());
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = config.getFlushInterval().toNanos();
+        while (true) {
+            Map<String, String> writes = new LinkedHashMap<>();
+            List<String> deletes = new ArrayList<>();
+            lock.lock();
+            try {
+                long remaining = intervalNanos;
+                while (!closed && pending.size() < config.getBatchSize() && remaining > 0) {
+                    remaining = batchReady.awaitNanos(remaining);
+                }
+                if (closed && pending.isEmpty()) {
+                    return;
+                }
+                drainBatch(writes, deletes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!writes.isEmpty() || !deletes.isEmpty()) {
+                flushBatch(writes, deletes);
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void reportDepth() {
+        metricsCollector.addWriteBehindQueueDepth(pending.size() - reportedDepth);
+        reportedDepth = pending.size();
+    }
+
+    private void drainBatch(Map<String, String> writes, List<String> deletes) {
+        Iterator<Map.Entry<String, Pending>> it = pending.entrySet().iterator();
+        while (it.hasNext() && writes.size() + deletes.size() < config.getBatchSize()) {
+            Map.Entry<String, Pending> e = it.next();
+            if (e.getValue().isDelete()) {
+                deletes.add(e.getKey());
+            } else {
+                writes.put(e.getKey(), e.getValue().value());
+            }
+            it.remove();
+        }
+        reportDepth();
+        notFull.signalAll();
+    }
+
+    private void flushBatch(Map<String, String> writes, List<String> deletes) {
+        long start = System.nanoTime();
+        try {
+            flusher.flush(writes, deletes);
+        } catch (Exception e) {
+            int failed = writes.size() + deletes.size();
+            if (closed) {
+                // Shutting down: do not keep retrying against an unavailable Redis
+                logger.warn("Write-behind flush of {} operations failed during shutdown: {}", failed, e.getMessage());
+                metricsCollector.recordWriteBehindDropped(failed);
+                return;
+            }
+            logger.warn("Write-behind flush of {} operations failed, requeueing: {}", failed, e.getMessage());
+            requeue(writes, deletes);
+            pauseAfterFailure();
+        } finally {
+            metricsCollector.recordWriteBehindFlush(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Puts a failed batch back, unless a newer operation for the key arrived meanwhile.
+     */
+    private void requeue(Map<String, String> writes, List<String> deletes) {
+        lock.lock();
+        try {
+            writes.forEach((key, value) -> requeueOne(key, new Pending(value)));
+            deletes.forEach(key -> requeueOne(key, new Pending(null)));
+            reportDepth();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requeueOne(String key, Pending operation) {
+        if (pending.size() < config.getCapacity()) {
+            pending.putIfAbsent(key, operation);
+        } else if (!pending.containsKey(key)) {
+            metricsCollector.recordWriteBehindDropped(1);
+        }
+    }
+
+    private void pauseAfterFailure() {
+        try {
+            TimeUnit.NANOSECONDS.sleep(config.getFlushInterval().toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
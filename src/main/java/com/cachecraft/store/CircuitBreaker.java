@@ -0,0 +1,149 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. While CLOSED it keeps the outcome of the last
+ * {@code slidingWindowSize} calls, where a call slower than the slow-call
+ * threshold counts as a failure, and opens when the failure rate crosses the
+ * threshold. While OPEN every call is rejected without touching the remote side.
+ * After the wait duration it lets a few probe calls through (HALF_OPEN): all of
+ * them succeeding closes the breaker, any failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final CacheProperties.CircuitBreaker config;
+    private final Consumer<State> onTransition;
+    private final LongSupplier nanoClock;
+
+    private volatile State state = State.CLOSED;
+
+    // Outcomes of the most recent calls while closed, as a ring buffer
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int recordedCalls;
+    private int failedCalls;
+
+    private long openedAt;
+    private int probesLeft;
+    private int probeSuccesses;
+
+    public CircuitBreaker(CacheProperties.CircuitBreaker config, Consumer<State> onTransition) {
+        this(config, onTransition, System::nanoTime);
+    }
+
+    CircuitBreaker(CacheProperties.CircuitBreaker config, Consumer<State> onTransition, LongSupplier nanoClock) {
+        this.config = config;
+        this.onTransition = onTransition;
+        this.nanoClock = nanoClock;
+        this.outcomes = new boolean[Math.max(1, config.getSlidingWindowSize())];
+    }
+
+    /**
+     * Returns whether a call may go ahead. Every permitted call must be followed by
+     * {@link #onSuccess(long)} or {@link #onError()}.
+     */
+    public boolean tryAcquirePermission() {
+        if (!config.isEnabled() || state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAt < config.getWaitInOpenState().toNanos()) {
+                    return false;
+                }
+                probesLeft = config.getPermittedCallsInHalfOpen();
+                probeSuccesses = 0;
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesLeft == 0) {
+                    return false;
+                }
+                probesLeft--;
+            }
+            return true;
+        }
+    }
+
+    public void onSuccess(long durationNanos) {
+        record(durationNanos >= config.getSlowCallThreshold().toNanos());
+    }
+
+    public void onError() {
+        record(true);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Failure rate over the current window, in percent; 0 until the window has any calls.
+     */
+    public synchronized float getFailureRate() {
+        return recordedCalls == 0 ? 0 : failedCalls * 100f / recordedCalls;
+    }
+
+    private void record(boolean failed) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            switch (state) {
+                case CLOSED -> {
+                    if (recordedCalls == outcomes.length && outcomes[nextOutcome]) {
+                        failedCalls--;
+                    }
+                    outcomes[nextOutcome] = failed;
+                    nextOutcome = (nextOutcome + 1) % outcomes.length;
+                    recordedCalls = Math.min(recordedCalls + 1, outcomes.length);
+                    if (failed) {
+                        failedCalls++;
+                    }
+                    if (recordedCalls >= config.getMinimumCalls() && getFailureRate() >= config.getFailureRateThreshold()) {
+                        open();
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failed) {
+                        open();
+                    } else if (++probeSuccesses >= config.getPermittedCallsInHalfOpen()) {
+                        close();
+                    }
+                }
+                case OPEN -> {
+                    // Late result of a call started before the breaker opened
+                }
+            }
+        }
+    }
+
+    private void open() {
+        openedAt = nanoClock.getAsLong();
+        transitionTo(State.OPEN);
+    }
+
+    private void close() {
+        Arrays.fill(outcomes, false);
+        nextOutcome = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+        transitionTo(State.CLOSED);
+    }
+
+    private void transitionTo(State next) {
+        if (state != next) {
+            state = next;
+            onTransition.accept(next);
+        }
+    }
+}
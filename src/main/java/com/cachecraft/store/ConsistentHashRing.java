@@ -0,0 +1,81 @@
+package com.cachecraft.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consistent hashing of string keys onto named nodes. Each node takes
+ * {@code virtualNodes} points on a 64-bit ring and a key belongs to the node
+ * owning the first point at or after the key's hash, so adding or removing a
+ * node only moves the keys nearest to its points, about 1/N of them.
+ *
+ * <p>The ring depends only on the node names and the number of virtual nodes,
+ * so every application node configured with the same names routes a key to
+ * the same node. Instances are immutable; a change of membership builds a new ring.
+ */
+public final class ConsistentHashRing<T> {
+
+    private final long[] points;
+    private final Object[] owners;
+
+    /**
+     * @throws IllegalArgumentException if there are no nodes or fewer than one virtual node per node
+     */
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A hash ring needs at least one node and one virtual node per node");
+        }
+        record Point(long hash, String name, Object owner) {
+        }
+        List<Point> ring = new ArrayList<>(nodes.size() * virtualNodes);
+        nodes.forEach((name, node) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.add(new Point(hash(name + '#' + i), name, node));
+            }
+        });
+        // Names break ties, so that collisions resolve the same way on every application node
+        ring.sort(Comparator.comparingLong(Point::hash).thenComparing(Point::name));
+        this.points = new long[ring.size()];
+        this.owners = new Object[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i).hash();
+            owners[i] = ring.get(i).owner();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T nodeFor(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        } else {
+            // Step back over equal points, so the tie-break order above decides
+            while (index > 0 && points[index - 1] == points[index]) {
+                index--;
+            }
+        }
+        return (T) owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * FNV-1a over the key's chars, finished with MurmurHash3's 64-bit mix so
+     * that similar keys land far apart. Allocation-free and stable across JVMs,
+     * which is why access traces identify keys by it too.
+     */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,106 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Binary file of L1 entries for a warm restart. The layout is a header of magic,
+ * version and entry count, then per entry the UTF-8 key and value, each prefixed
+ * by its length, the write time in epoch nanos and the key's access frequency.
+ * Files are written to a temporary file and moved into place, so a reader never
+ * sees a partial snapshot; they are read through a memory mapping.
+ */
+public final class L1Snapshot {
+
+    private static final int MAGIC = 0x43434C31; // "CCL1"
+    private static final int VERSION = 1;
+
+    /**
+     * A snapshot entry: the cached entry and its key's decayed access frequency.
+     */
+    public record Entry(CacheEntry entry, int frequency) {
+    }
+
+    private L1Snapshot() {
+    }
+
+    /**
+     * Replaces the snapshot at {@code file} with the given entries.
+     */
+    public static void write(Path file, List<Entry> entries) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Entry e : entries) {
+                    writeString(out, e.entry().getKey());
+                    writeString(out, e.entry().getValue());
+                    out.writeLong(e.entry().getTimestampNanos());
+                    out.writeInt(e.frequency());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Passes every entry of the snapshot at {@code file} to the consumer, in the
+     * order they were written.
+     *
+     * @return the number of entries read
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public static int read(Path file, Consumer<Entry> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an L1 snapshot of version " + VERSION + ": " + file);
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(buffer);
+                String value = readString(buffer);
+                long timestampNanos = buffer.getLong();
+                int frequency = buffer.getInt();
+                consumer.accept(new Entry(new CacheEntry(key, value, timestampNanos, 0), frequency));
+            }
+            return count;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated L1 snapshot: " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The in-process (L1) tier. Implementations decide where entry data lives; all of
+ * them are bounded by bytes, expire entries through the adaptive TTL engine and
+ * report each size or TTL eviction to the listener they were built with.
+ */
+public interface L1Store {
+
+    CacheEntry getIfPresent(String key);
+
+    /**
+     * Whether the key's entry is a tombstone. Unlike a read, this leaves the
+     * entry's expiry and the store's access statistics alone and decodes no value.
+     */
+    boolean isTombstone(String key);
+
+    /**
+     * Returns the entries present for the given keys; absent keys are left out.
+     */
+    Map<String, CacheEntry> getAllPresent(Iterable<String> keys);
+
+    void put(String key, CacheEntry entry);
+
+    void putAll(Map<String, CacheEntry> entries);
+
+    /**
+     * Stores the entry unless the key is already present.
+     *
+     * @return the entry already cached for the key, or {@code null} if the given one was stored
+     */
+    CacheEntry putIfAbsent(String key, CacheEntry entry);
+
+    /**
+     * Stores the entry only if the key still maps to {@code expected}, so a reload
+     * never overwrites a newer put. An entry that cannot be stored removes
+     * {@code expected} all the same.
+     *
+     * @return whether {@code expected} was still cached
+     */
+    boolean replace(String key, CacheEntry expected, CacheEntry entry);
+
+    void invalidate(String key);
+
+    void invalidateAll();
+
+    long estimatedSize();
+
+    /**
+     * Live view of the cached keys; iteration is weakly consistent and never throws
+     * for entries added or removed meanwhile.
+     */
+    Set<String> keys();
+
+    /**
+     * Memory held by the cached entries, in bytes, as counted against the store's bound.
+     */
+    long estimatedBytes();
+
+    long maximumBytes();
+
+    /**
+     * Changes the byte bound of the running store; entries over a lower bound are evicted.
+     *
+     * @throws IllegalArgumentException if the store cannot hold that many bytes
+     */
+    void setMaximumBytes(long bytes);
+
+    /**
+     * Restarts the expiry of every cached entry with the TTL the function gives its key.
+     */
+    void resetExpiries(Function<String, Duration> ttl);
+}
@@ -0,0 +1,15 @@
+package com.cachecraft.store;
+
+/**
+ * Thrown when an operation that must not be silently skipped could not reach Redis.
+ */
+public class L2UnavailableException extends RuntimeException {
+
+    public L2UnavailableException(String message) {
+        super(message);
+    }
+
+    public L2UnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
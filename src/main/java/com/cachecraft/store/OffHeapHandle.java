@@ -0,0 +1,11 @@
+package com.cachecraft.store;
+
+/**
+ * Location of an entry stored by {@link SlabAllocator}.
+ *
+ * @param address    slab index in the high 32 bits, byte offset in the slab in the low 32 bits
+ * @param stamp      allocation stamp, checked on every read to detect a released chunk
+ * @param chunkBytes off-heap bytes reserved for the entry, used as its cache weight
+ */
+public record OffHeapHandle(long address, long stamp, int chunkBytes) {
+}
@@ -0,0 +1,296 @@
+package com.cachecraft.store;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.model.CacheEntry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * L1 whose entry data lives in off-heap slabs. Caffeine still does admission,
+ * eviction and expiry, but it only holds a small {@link OffHeapHandle} per key and
+ * is bounded by the off-heap bytes those handles reserve rather than by count.
+ * Values are stored in the form the {@link ValueSerializer} gives them, so a
+ * compressing codec lets the same slabs hold more entries.
+ *
+ * <p>The weight bound is the slab capacity, so Caffeine rarely evicts before the
+ * slabs run out. When an entry finds no chunk of its size, the store makes room
+ * itself: it evicts the coldest entry if that frees a chunk of the right size,
+ * and otherwise every entry in the coldest entry's slab, which the allocator
+ * then hands to the size that ran out.
+ */
+public class OffHeapL1Store implements L1Store {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapL1Store.class);
+
+    // epoch nanos, frequency count, then the serialized value
+    private static final int ENTRY_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    // Frequency count written for a tombstone, which has no value
+    private static final int TOMBSTONE_MARKER = -1;
+
+    private final SlabAllocator allocator;
+    private final ValueSerializer values;
+    private final Cache<String, OffHeapHandle> handles;
+    private final Policy.Eviction<String, OffHeapHandle> eviction;
+    private final Policy.VarExpiration<String, OffHeapHandle> expiration;
+    private final Consumer<RemovalCause> onEviction;
+
+    public OffHeapL1Store(SlabAllocator allocator, ValueSerializer values, int initialCapacity,
+                          Expiry<String, OffHeapHandle> expiry, Consumer<RemovalCause> onEviction) {
+        this(allocator, values, initialCapacity, expiry, onEviction, Ticker.systemTicker());
+    }
+
+    /**
+     * An L1 whose expiry follows the given clock rather than the system's, such as a simulated one.
+     */
+    public OffHeapL1Store(SlabAllocator allocator, ValueSerializer values, int initialCapacity,
+                          Expiry<String, OffHeapHandle> expiry, Consumer<RemovalCause> onEviction, Ticker ticker) {
+        this.allocator = allocator;
+        this.values = values;
+        this.onEviction = onEviction;
+        this.handles = Caffeine.newBuilder()
+                .ticker(ticker)
+                .initialCapacity(initialCapacity)
+                .maximumWeight(allocator.capacityBytes())
+                .weigher((String key, OffHeapHandle handle) -> handle.chunkBytes())
+                .expireAfter(expiry)
+                // Free chunks during maintenance so a full size class can be retried right away
+                .executor(Runnable::run)
+                .removalListener((String key, OffHeapHandle handle, RemovalCause cause) -> {
+                    if (handle != null) {
+                        allocator.release(handle);
+                    }
+                    if (cause.wasEvicted()) {
+                        onEviction.accept(cause);
+                    }
+                })
+                .build();
+        this.eviction = handles.policy().eviction().orElseThrow();
+        this.expiration = handles.policy().expireVariably().orElseThrow();
+    }
+
+    @Override
+    public CacheEntry getIfPresent(String key) {
+        OffHeapHandle handle = handles.getIfPresent(key);
+        return handle != null ? read(key, handle) : null;
+    }
+
+    /**
+     * Reads only the entry's frequency field, where a tombstone is marked.
+     */
+    @Override
+    public boolean isTombstone(String key) {
+        OffHeapHandle handle = handles.policy().getIfPresentQuietly(key);
+        if (handle == null) {
+            return false;
+        }
+        Integer marker = allocator.loadInt(handle, Long.BYTES);
+        return marker != null && marker == TOMBSTONE_MARKER;
+    }
+
+    @Override
+    public Map<String, CacheEntry> getAllPresent(Iterable<String> keys) {
+        Map<String, CacheEntry> found = new HashMap<>();
+        for (Map.Entry<String, OffHeapHandle> e : handles.getAllPresent(keys).entrySet()) {
+            CacheEntry entry = read(e.getKey(), e.getValue());
+            if (entry != null) {
+                found.put(e.getKey(), entry);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        OffHeapHandle handle = write(entry);
+        if (handle != null) {
+            handles.put(key, handle);
+        } else {
+            // Never leave an older value behind when the new one could not be stored
+            handles.invalidate(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, CacheEntry> entries) {
+        entries.forEach(this::put);
+    }
+
+    @Override
+    public CacheEntry putIfAbsent(String key, CacheEntry entry) {
+        OffHeapHandle existing = handles.getIfPresent(key);
+        if (existing == null) {
+            OffHeapHandle handle = write(entry);
+            if (handle == null) {
+                return null;
+            }
+            existing = handles.asMap().putIfAbsent(key, handle);
+            if (existing == null) {
+                return null;
+            }
+            allocator.release(handle);
+        }
+        return read(key, existing);
+    }
+
+    @Override
+    public boolean replace(String key, CacheEntry expected, CacheEntry entry) {
+        OffHeapHandle current = handles.getIfPresent(key);
+        if (current == null || !expected.equals(read(key, current))) {
+            return false;
+        }
+        OffHeapHandle handle = write(entry);
+        if (handle == null) {
+            handles.asMap().remove(key, current);
+            return true;
+        }
+        if (handles.asMap().replace(key, current, handle)) {
+            return true;
+        }
+        allocator.release(handle);
+        return false;
+    }
+
+    @Override
+    public void invalidate(String key) {
+        handles.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        handles.invalidateAll();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return handles.estimatedSize();
+    }
+
+    @Override
+    public Set<String> keys() {
+        return handles.asMap().keySet();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return allocator.reservedBytes();
+    }
+
+    @Override
+    public long maximumBytes() {
+        return eviction.getMaximum();
+    }
+
+    /**
+     * Lowers or restores the bound within the slab capacity fixed at startup.
+     */
+    @Override
+    public void setMaximumBytes(long bytes) {
+        if (bytes <= 0 || bytes > allocator.capacityBytes()) {
+            throw new IllegalArgumentException("Off-heap L1 memory bound must be between 1 and "
+                    + allocator.capacityBytes() + " bytes, its slab capacity");
+        }
+        eviction.setMaximum(bytes);
+    }
+
+    @Override
+    public void resetExpiries(Function<String, Duration> ttl) {
+        for (String key : handles.asMap().keySet()) {
+            expiration.setExpiresAfter(key, ttl.apply(key));
+        }
+    }
+
+    private OffHeapHandle write(CacheEntry entry) {
+        byte[] payload = encode(entry);
+        OffHeapHandle handle = allocator.store(payload);
+        if (handle == null && payload.length <= allocator.maxPayloadBytes()) {
+            // The size class may only look full because removals are still pending
+            handles.cleanUp();
+            handle = allocator.store(payload);
+            if (handle == null) {
+                makeRoom(allocator.chunkBytesFor(payload.length));
+                handle = allocator.store(payload);
+            }
+        }
+        if (handle == null) {
+            logger.debug("No off-heap space for entry {} ({} bytes), leaving it to Redis", entry.getKey(), payload.length);
+        }
+        return handle;
+    }
+
+    /**
+     * Frees a chunk of the given size by evicting the coldest entry, or, when that
+     * entry is of another size, every entry in its slab. Scans all handles in the
+     * second case, which only happens once all slabs are taken and value sizes shift.
+     */
+    private void makeRoom(int chunkBytes) {
+        for (Map.Entry<String, OffHeapHandle> coldest : eviction.coldest(1).entrySet()) {
+            if (coldest.getValue().chunkBytes() == chunkBytes) {
+                evict(coldest.getKey(), coldest.getValue());
+                return;
+            }
+            int slab = SlabAllocator.slabOf(coldest.getValue());
+            int evicted = 0;
+            for (Map.Entry<String, OffHeapHandle> e : handles.asMap().entrySet()) {
+                if (SlabAllocator.slabOf(e.getValue()) == slab && evict(e.getKey(), e.getValue())) {
+                    evicted++;
+                }
+            }
+            logger.debug("Evicted {} entries of slab {} to make room for {}-byte chunks", evicted, slab, chunkBytes);
+        }
+    }
+
+    private boolean evict(String key, OffHeapHandle handle) {
+        if (!handles.asMap().remove(key, handle)) {
+            return false;
+        }
+        onEviction.accept(RemovalCause.SIZE);
+        return true;
+    }
+
+    private CacheEntry read(String key, OffHeapHandle handle) {
+        byte[] payload = allocator.load(handle);
+        // A null payload means the chunk was evicted and reused while we were reading it
+        return payload != null ? decode(key, payload) : null;
+    }
+
+    private byte[] encode(CacheEntry entry) {
+        if (entry.isTombstone()) {
+            return ByteBuffer.allocate(ENTRY_HEADER_BYTES)
+                    .putLong(entry.getTimestampNanos())
+                    .putInt(TOMBSTONE_MARKER)
+                    .array();
+        }
+        ByteBuffer value = values.encode(entry.getValue());
+        return ByteBuffer.allocate(ENTRY_HEADER_BYTES + value.remaining())
+                .putLong(entry.getTimestampNanos())
+                .putInt(entry.getFrequencyCount())
+                .put(value)
+                .array();
+    }
+
+    private CacheEntry decode(String key, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long timestampNanos = buffer.getLong();
+        int frequencyCount = buffer.getInt();
+        if (frequencyCount == TOMBSTONE_MARKER) {
+            return CacheEntry.tombstone(key, timestampNanos);
+        }
+        // The payload copied out of the slab is decoded in place
+        String value = values.decode(buffer.slice());
+        return new CacheEntry(key, value, timestampNanos, frequencyCount);
+    }
+}
@@ -0,0 +1,153 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * L1 backed by a Caffeine cache of {@link CacheEntry} objects on the Java heap,
+ * bounded by the estimated heap footprint of its entries.
+ */
+public class OnHeapL1Store implements L1Store {
+
+    // Caffeine node, CacheEntry object and the headers of two Strings and their arrays
+    private static final int ENTRY_OVERHEAD_BYTES = 176;
+
+    private final Cache<String, CacheEntry> cache;
+    private final Policy.Eviction<String, CacheEntry> eviction;
+    private final Policy.VarExpiration<String, CacheEntry> expiration;
+
+    public OnHeapL1Store(int initialCapacity, long maximumBytes, Expiry<String, CacheEntry> expiry,
+                         Consumer<RemovalCause> onEviction) {
+        this(initialCapacity, maximumBytes, expiry, onEviction, Ticker.systemTicker());
+    }
+
+    /**
+     * An L1 whose expiry follows the given clock rather than the system's, such as a simulated one.
+     */
+    public OnHeapL1Store(int initialCapacity, long maximumBytes, Expiry<String, CacheEntry> expiry,
+                         Consumer<RemovalCause> onEviction, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .initialCapacity(initialCapacity)
+                .maximumWeight(maximumBytes)
+                .weigher(OnHeapL1Store::weigh)
+                .expireAfter(expiry)
+                .evictionListener((String key, CacheEntry entry, RemovalCause cause) -> onEviction.accept(cause))
+                .build();
+        this.eviction = cache.policy().eviction().orElseThrow();
+        this.expiration = cache.policy().expireVariably().orElseThrow();
+    }
+
+    /**
+     * Estimated heap bytes of a cached entry: the key and value strings, the fixed
+     * object overhead and the entry's JSON prefix. The prefix is counted up front
+     * because it is built the first time the entry is served and lives as long as it.
+     */
+    static int weigh(String key, CacheEntry entry) {
+        String value = entry.isTombstone() ? "" : entry.getValue();
+        long bytes = ENTRY_OVERHEAD_BYTES + stringBytes(key) + stringBytes(value) + key.length() + value.length();
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    // Compact strings take one byte per char unless they hold a char above Latin-1
+    private static long stringBytes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return 2L * s.length();
+            }
+        }
+        return s.length();
+    }
+
+    @Override
+    public CacheEntry getIfPresent(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public boolean isTombstone(String key) {
+        CacheEntry entry = cache.policy().getIfPresentQuietly(key);
+        return entry != null && entry.isTombstone();
+    }
+
+    @Override
+    public Map<String, CacheEntry> getAllPresent(Iterable<String> keys) {
+        return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        cache.put(key, entry);
+    }
+
+    @Override
+    public void putAll(Map<String, CacheEntry> entries) {
+        cache.putAll(entries);
+    }
+
+    @Override
+    public CacheEntry putIfAbsent(String key, CacheEntry entry) {
+        return cache.asMap().putIfAbsent(key, entry);
+    }
+
+    @Override
+    public boolean replace(String key, CacheEntry expected, CacheEntry entry) {
+        return cache.asMap().replace(key, expected, entry);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public Set<String> keys() {
+        return cache.asMap().keySet();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return eviction.weightedSize().orElse(0);
+    }
+
+    @Override
+    public long maximumBytes() {
+        return eviction.getMaximum();
+    }
+
+    @Override
+    public void setMaximumBytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("L1 memory bound must be positive");
+        }
+        eviction.setMaximum(bytes);
+    }
+
+    @Override
+    public void resetExpiries(Function<String, Duration> ttl) {
+        for (String key : cache.asMap().keySet()) {
+            expiration.setExpiresAfter(key, ttl.apply(key));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An L1 in which single keys can be pinned. A pinned key's entry is moved out
+ * of the underlying store into a map of its own, where neither the memory
+ * bound nor TTL expiry can evict it; writes and invalidations for the key reach
+ * it there as they would the store. Pinned entries live on the heap whatever
+ * the store, and are counted in {@link #estimatedBytes()} but not against
+ * {@link #maximumBytes()}; pin only a bounded number of keys.
+ *
+ * <p>A key stays pinned when its entry is invalidated, so the entry loaded next
+ * is pinned as well, until {@link #unpin(String)} hands it back to the store.
+ */
+public class PinningL1Store implements L1Store {
+
+    // A pinned key and its entry, null until one is loaded
+    private record Slot(CacheEntry entry) {
+    }
+
+    private static final Slot VACANT = new Slot(null);
+
+    private final L1Store store;
+    // Every write of a key goes through this map's lock for the key, so a write and a pin never interleave
+    private final ConcurrentHashMap<String, Slot> pinned = new ConcurrentHashMap<>();
+    private final AtomicLong pinnedBytes = new AtomicLong();
+
+    public PinningL1Store(L1Store store) {
+        this.store = store;
+    }
+
+    /**
+     * Pins the key, moving its entry, if any, out of the store.
+     *
+     * @return whether the key was not pinned before
+     */
+    public boolean pin(String key) {
+        boolean[] added = {false};
+        pinned.computeIfAbsent(key, k -> {
+            added[0] = true;
+            CacheEntry entry = store.getIfPresent(k);
+            if (entry == null) {
+                return VACANT;
+            }
+            store.invalidate(k);
+            return occupied(k, null, entry);
+        });
+        return added[0];
+    }
+
+    /**
+     * Hands the key's entry back to the store, where it expires and is evicted
+     * like any other.
+     *
+     * @return whether the key was pinned
+     */
+    public boolean unpin(String key) {
+        boolean[] removed = {false};
+        pinned.computeIfPresent(key, (k, slot) -> {
+            removed[0] = true;
+            if (slot.entry() != null) {
+                store.put(k, slot.entry());
+                pinnedBytes.addAndGet(-weigh(k, slot.entry()));
+            }
+            return null;
+        });
+        return removed[0];
+    }
+
+    public boolean isPinned(String key) {
+        return pinned.containsKey(key);
+    }
+
+    public Set<String> pinnedKeys() {
+        return pinned.keySet();
+    }
+
+    @Override
+    public CacheEntry getIfPresent(String key) {
+        Slot slot = pinned.get(key);
+        return slot != null ? slot.entry() : store.getIfPresent(key);
+    }
+
+    @Override
+    public boolean isTombstone(String key) {
+        Slot slot = pinned.get(key);
+        if (slot == null) {
+            return store.isTombstone(key);
+        }
+        return slot.entry() != null && slot.entry().isTombstone();
+    }
+
+    @Override
+    public Map<String, CacheEntry> getAllPresent(Iterable<String> keys) {
+        if (pinned.isEmpty()) {
+            return store.getAllPresent(keys);
+        }
+        Map<String, CacheEntry> present = new HashMap<>(store.getAllPresent(keys));
+        for (String key : keys) {
+            Slot slot = pinned.get(key);
+            if (slot != null && slot.entry() != null) {
+                present.put(key, slot.entry());
+            }
+        }
+        return present;
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        pinned.compute(key, (k, slot) -> {
+            if (slot == null) {
+                store.put(k, entry);
+                return null;
+            }
+            return occupied(k, slot.entry(), entry);
+        });
+    }
+
+    @Override
+    public void putAll(Map<String, CacheEntry> entries) {
+        entries.forEach(this::put);
+    }
+
+    @Override
+    public CacheEntry putIfAbsent(String key, CacheEntry entry) {
+        CacheEntry[] current = {null};
+        pinned.compute(key, (k, slot) -> {
+            if (slot == null) {
+                current[0] = store.putIfAbsent(k, entry);
+                return null;
+            }
+            if (slot.entry() != null) {
+                current[0] = slot.entry();
+                return slot;
+            }
+            return occupied(k, null, entry);
+        });
+        return current[0];
+    }
+
+    @Override
+    public boolean replace(String key, CacheEntry expected, CacheEntry entry) {
+        boolean[] replaced = {false};
+        pinned.compute(key, (k, slot) -> {
+            if (slot == null) {
+                replaced[0] = store.replace(k, expected, entry);
+                return null;
+            }
+            if (!Objects.equals(slot.entry(), expected)) {
+                return slot;
+            }
+            replaced[0] = true;
+            return occupied(k, expected, entry);
+        });
+        return replaced[0];
+    }
+
+    @Override
+    public void invalidate(String key) {
+        pinned.compute(key, (k, slot) -> {
+            if (slot == null) {
+                store.invalidate(k);
+                return null;
+            }
+            return occupied(k, slot.entry(), null);
+        });
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (String key : pinned.keySet()) {
+            invalidate(key);
+        }
+        store.invalidateAll();
+    }
+
+    @Override
+    public long estimatedSize() {
+        long occupied = pinned.values().stream().filter(slot -> slot.entry() != null).count();
+        return store.estimatedSize() + occupied;
+    }
+
+    /**
+     * The store's keys followed by the pinned keys that hold an entry.
+     */
+    @Override
+    public Set<String> keys() {
+        Set<String> stored = store.keys();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<String> pinnedKeys = pinned.entrySet().stream()
+                        .filter(e -> e.getValue().entry() != null)
+                        .map(Map.Entry::getKey)
+                        .iterator();
+                Iterator<String> storedKeys = stored.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return storedKeys.hasNext() || pinnedKeys.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return storedKeys.hasNext() ? storedKeys.next() : pinnedKeys.next();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                if (stored.contains(key)) {
+                    return true;
+                }
+                Slot slot = pinned.get(key);
+                return slot != null && slot.entry() != null;
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, estimatedSize());
+            }
+        };
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return store.estimatedBytes() + pinnedBytes.get();
+    }
+
+    @Override
+    public long maximumBytes() {
+        return store.maximumBytes();
+    }
+
+    @Override
+    public void setMaximumBytes(long bytes) {
+        store.setMaximumBytes(bytes);
+    }
+
+    /**
+     * Restarts the expiry of the store's entries; pinned ones have none.
+     */
+    @Override
+    public void resetExpiries(Function<String, Duration> ttl) {
+        store.resetExpiries(ttl);
+    }
+
+    // The slot for the new entry, or a vacant one for none, keeping the pinned byte count in step
+    private Slot occupied(String key, CacheEntry previous, CacheEntry entry) {
+        pinnedBytes.addAndGet(weigh(key, entry) - weigh(key, previous));
+        return entry != null ? new Slot(entry) : VACANT;
+    }
+
+    private static long weigh(String key, CacheEntry entry) {
+        return entry != null ? OnHeapL1Store.weigh(key, entry) : 0;
+    }
+}
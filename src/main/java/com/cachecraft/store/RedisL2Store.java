@@ -0,0 +1,809 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The Redis (L2) tier. Every Redis command the cache issues goes through here and
+ * through the {@link CircuitBreaker} of the {@link RedisShard} that owns the key,
+ * so an unavailable or slow Redis node costs each request for its keys at most a
+ * rejected permission check instead of a connection timeout. Commands for many
+ * keys are split by shard and run one shard after another.
+ *
+ * <p>Apart from {@link #fetch} and {@link #applyBatch}, operations never throw: a failure or an
+ * open breaker reads as a miss and skips the write, and the caller carries on
+ * with L1 and the backing store. The {@code *Async} operations go through the
+ * reactive client and complete without blocking the calling thread; they share
+ * the same breakers.
+ *
+ * <p>Cache keys live in Redis as {@code <prefix>:<generation>:<key>}, with a
+ * generation per shard. {@link #clear()} moves every shard to its next
+ * generation, which hides every earlier key at once, and unlinks the old keys
+ * in the background instead of flushing the database. The keys of each tag
+ * are indexed in a Redis set among them, {@code <prefix>:<generation>:\0tag:<tag>},
+ * which a clear hides and reclaims along with the keys.
+ *
+ * <p>Values are stored in the form the templates' value serializer gives them.
+ * A value that cannot be read back, such as one encoded by a codec this node
+ * does not have, is logged and read as a miss without counting against Redis.
+ * The {@code *Bytes} operations bypass the serializer and store raw bytes, for
+ * the chunks of streamed values.
+ */
+@Component
+public class RedisL2Store {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisL2Store.class);
+
+    /**
+     * Value stored for a key found in no tier, so other nodes' lookups of it stop at Redis.
+     */
+    public static final String TOMBSTONE = "\u0000cachecraft:absent";
+
+    // Start of the index set of each tag, among the cache keys; client keys never hold a NUL, the service rejects them
+    private static final String TAG_PREFIX = "\u0000tag:";
+
+    private final RedisShards shards;
+    private final MetricsCollector metricsCollector;
+    private final CacheProperties.Keyspace keyspace;
+    // Start of every key this store owns, and of its generation counters
+    private final String prefix;
+    private final byte[] generationKey;
+
+    // Generation of the keys this node reads and writes on each shard; absent until read from Redis
+    private final Map<RedisShard, Long> generations = new ConcurrentHashMap<>();
+
+    // Unlinks the keys of old generations, one generation at a time
+    private final ExecutorService reclaimer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cachecraft-reclaim");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public RedisL2Store(RedisShards shards, CacheProperties properties, MetricsCollector metricsCollector) {
+        this(shards, metricsCollector, properties.getKeyspace(), properties.getKeyspace().getPrefix());
+    }
+
+    /**
+     * A store on a single Redis node.
+     */
+    public RedisL2Store(RedisTemplate<String, Object> redisTemplate, ReactiveStringRedisTemplate reactiveTemplate,
+                        CacheProperties properties, MetricsCollector metricsCollector) {
+        this(RedisShards.single(redisTemplate, reactiveTemplate, properties, metricsCollector), properties,
+                metricsCollector);
+    }
+
+    private RedisL2Store(RedisShards shards, MetricsCollector metricsCollector, CacheProperties.Keyspace keyspace,
+                         String prefix) {
+        this.shards = shards;
+        this.metricsCollector = metricsCollector;
+        this.keyspace = keyspace;
+        this.prefix = prefix;
+        this.generationKey = (prefix + ":generation").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A store for the keys of another cache namespace: the same Redis shards and
+     * circuit breakers, but its own key prefix and generations, so clearing one
+     * namespace leaves the others alone. It is not a Spring bean; whoever creates
+     * it runs its {@link #refreshGeneration()} checks and shuts it down.
+     */
+    public RedisL2Store forNamespace(String prefix) {
+        return new RedisL2Store(shards, metricsCollector, keyspace, prefix);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reclaimer.shutdownNow();
+    }
+
+    public String get(String key) {
+        try {
+            return fetch(key);
+        } catch (L2UnavailableException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #get(String)}, but throws {@link L2UnavailableException} when
+     * Redis could not be asked, so a caller can tell a miss from an outage.
+     */
+    public String fetch(String key) {
+        RedisShard shard = shards.shardFor(key);
+        CircuitBreaker breaker = shard.getBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            metricsCollector.recordRedisRejected();
+            throw new L2UnavailableException("Redis circuit breaker of shard " + shard.getName() + " is open");
+        }
+        long start = System.nanoTime();
+        try {
+            String value = (String) shard.getRedisTemplate().opsForValue().get(keyPrefix(shard) + key);
+            breaker.onSuccess(elapsedSince(start));
+            return value;
+        } catch (SerializationException e) {
+            return onUnreadable(shard, "read", start, e, null);
+        } catch (RuntimeException e) {
+            onFailure(shard, "read", start, e, null);
+            throw new L2UnavailableException("Redis read failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The raw bytes stored under the key, or {@code null} if it is absent.
+     *
+     * @throws L2UnavailableException if Redis could not be asked
+     */
+    public byte[] fetchBytes(String key) {
+        RedisShard shard = shards.shardFor(key);
+        CircuitBreaker breaker = shard.getBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            metricsCollector.recordRedisRejected();
+            throw new L2UnavailableException("Redis circuit breaker of shard " + shard.getName() + " is open");
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] redisKey = bytes(keyPrefix(shard) + key);
+            byte[] value = shard.getRedisTemplate().execute(
+                    (RedisCallback<byte[]>) connection -> connection.stringCommands().get(redisKey));
+            breaker.onSuccess(elapsedSince(start));
+            return value;
+        } catch (RuntimeException e) {
+            onFailure(shard, "read", start, e, null);
+            throw new L2UnavailableException("Redis read failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stores raw bytes under the key.
+     *
+     * @return whether Redis took the write
+     */
+    public boolean setBytes(String key, byte[] value, Duration ttl) {
+        RedisShard shard = shards.shardFor(key);
+        Boolean stored = call(shard, "update", () -> {
+            byte[] redisKey = bytes(keyPrefix(shard) + key);
+            shard.getRedisTemplate().execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                    .set(redisKey, value, Expiration.from(ttl), RedisStringCommands.SetOption.upsert()));
+            return true;
+        }, false);
+        return Boolean.TRUE.equals(stored);
+    }
+
+    /**
+     * Values for the keys in one MGET per shard, aligned with the keys; absent or unreadable keys are null.
+     */
+    public List<String> multiGet(List<String> keys) {
+        List<String> aligned = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        byShard(keys.size(), keys::get).forEach((shard, indexes) -> {
+            List<Object> values = call(shard, "read", () -> {
+                String prefix = keyPrefix(shard);
+                List<String> redisKeys = new ArrayList<>(indexes.size());
+                for (int index : indexes) {
+                    redisKeys.add(prefix + keys.get(index));
+                }
+                return shard.getRedisTemplate().opsForValue().multiGet(redisKeys);
+            }, null);
+            if (values != null) {
+                for (int i = 0; i < Math.min(values.size(), indexes.size()); i++) {
+                    aligned.set(indexes.get(i), (String) values.get(i));
+                }
+            }
+        });
+        return aligned;
+    }
+
+    /**
+     * Non-blocking {@link #get(String)}; completes with {@code null} on a miss or failure.
+     */
+    public CompletableFuture<String> getAsync(String key) {
+        RedisShard shard = shards.shardFor(key);
+        return callAsync(shard, "read", () -> shard.getReactiveTemplate().opsForValue().get(keyPrefix(shard) + key), null);
+    }
+
+    public void set(String key, String value, Duration ttl) {
+        RedisShard shard = shards.shardFor(key);
+        call(shard, "update", () -> {
+            shard.getRedisTemplate().opsForValue().set(keyPrefix(shard) + key, value, ttl);
+            return null;
+        }, null);
+    }
+
+    /**
+     * Non-blocking {@link #set}; completes once Redis has answered or the write was skipped.
+     */
+    public CompletableFuture<Void> setAsync(String key, String value, Duration ttl) {
+        RedisShard shard = shards.shardFor(key);
+        return callAsync(shard, "update",
+                () -> shard.getReactiveTemplate().opsForValue().set(keyPrefix(shard) + key, value, ttl), null)
+                .thenAccept(stored -> { });
+    }
+
+    /**
+     * Writes every value in one pipeline per shard, each with its own TTL.
+     */
+    public void setAll(Map<String, String> values, Function<String, Duration> ttl) {
+        if (values.isEmpty()) {
+            return;
+        }
+        splitByShard(values).forEach((shard, shardValues) -> call(shard, "update", () -> {
+            pipeline(shard, shardValues, List.of(), ttl);
+            return null;
+        }, null));
+    }
+
+    /**
+     * Applies a batch of writes and deletes in one pipeline per shard. Unlike the
+     * other operations this throws {@link L2UnavailableException} when part of the
+     * batch could not be applied, so queued writes can be retried instead of lost;
+     * the shards that did apply their part are written again by the retry.
+     */
+    public void applyBatch(Map<String, String> writes, List<String> deletes, Function<String, Duration> ttl) {
+        Map<RedisShard, Map<String, String>> writesByShard = splitByShard(writes);
+        Map<RedisShard, List<String>> deletesByShard = new LinkedHashMap<>();
+        for (String key : deletes) {
+            deletesByShard.computeIfAbsent(shards.shardFor(key), shard -> new ArrayList<>()).add(key);
+        }
+        Set<RedisShard> involved = new LinkedHashSet<>(writesByShard.keySet());
+        involved.addAll(deletesByShard.keySet());
+
+        List<String> failed = new ArrayList<>();
+        RuntimeException cause = null;
+        for (RedisShard shard : involved) {
+            CircuitBreaker breaker = shard.getBreaker();
+            if (!breaker.tryAcquirePermission()) {
+                metricsCollector.recordRedisRejected();
+                failed.add(shard.getName() + " (circuit breaker open)");
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                pipeline(shard, writesByShard.getOrDefault(shard, Map.of()),
+                        deletesByShard.getOrDefault(shard, List.of()), ttl);
+                breaker.onSuccess(elapsedSince(start));
+            } catch (RuntimeException e) {
+                elapsedSince(start);
+                breaker.onError();
+                failed.add(shard.getName() + " (" + e.getMessage() + ")");
+                cause = e;
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new L2UnavailableException("Redis batch failed on shards " + String.join(", ", failed), cause);
+        }
+    }
+
+    public void delete(String key) {
+        RedisShard shard = shards.shardFor(key);
+        call(shard, "eviction", () -> shard.getRedisTemplate().delete(keyPrefix(shard) + key), null);
+    }
+
+    /**
+     * Deletes the keys in one pipeline of DEL commands per shard.
+     */
+    public void deleteAll(List<String> keys) {
+        byShard(keys.size(), keys::get).forEach((shard, indexes) -> call(shard, "eviction", () -> {
+            String prefix = keyPrefix(shard);
+            return shard.getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                for (int index : indexes) {
+                    connection.keyCommands().del(bytes(prefix + keys.get(index)));
+                }
+                return null;
+            });
+        }, null));
+    }
+
+    /**
+     * Sets the TTL of every key in one pipeline of PEXPIRE commands per shard.
+     */
+    public void expireAll(List<Map.Entry<String, Long>> ttlMillis) {
+        byShard(ttlMillis.size(), index -> ttlMillis.get(index).getKey()).forEach((shard, indexes) ->
+                call(shard, "TTL update", () -> {
+                    String prefix = keyPrefix(shard);
+                    return shard.getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                        for (int index : indexes) {
+                            Map.Entry<String, Long> update = ttlMillis.get(index);
+                            connection.keyCommands().pExpire(bytes(prefix + update.getKey()), update.getValue());
+                        }
+                        return null;
+                    });
+                }, null));
+    }
+
+    /**
+     * Adds each key to the index sets of its tags, in one pipeline of SADD and
+     * PEXPIRE per shard. A set that expires takes its keys' tag with it, so the
+     * TTL has to outlast theirs; {@link #cleanUpTags} renews it while the set has
+     * keys. Tag a key only once it has been written, which is what lets the
+     * cleanup tell a key that is gone from one that is being written again.
+     */
+    public void tag(Map<String, ? extends Collection<String>> tagsByKey, Duration ttl) {
+        // Tag set and key of every membership
+        List<Map.Entry<String, String>> memberships = new ArrayList<>();
+        tagsByKey.forEach((key, tags) -> tags.forEach(tag -> memberships.add(Map.entry(TAG_PREFIX + tag, key))));
+        byShard(memberships.size(), index -> memberships.get(index).getKey()).forEach((shard, indexes) ->
+                call(shard, "tagging", () -> {
+                    String prefix = keyPrefix(shard);
+                    return shard.getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                        for (int index : indexes) {
+                            Map.Entry<String, String> membership = memberships.get(index);
+                            byte[] setKey = bytes(prefix + membership.getKey());
+                            connection.setCommands().sAdd(setKey, bytes(membership.getValue()));
+                            connection.keyCommands().pExpire(setKey, ttl.toMillis());
+                        }
+                        return null;
+                    });
+                }, null));
+    }
+
+    /**
+     * Unlinks every key in the tag's index set, {@code batchSize} keys at a time
+     * with one UNLINK per shard, and then the set itself. If a shard fails, the
+     * set is kept, so evicting the tag again reaches the keys left behind.
+     *
+     * @return the keys the set held; none if it could not be read
+     */
+    public List<String> evictTag(String tag, int batchSize) {
+        String tagKey = TAG_PREFIX + tag;
+        RedisShard shard = shards.shardFor(tagKey);
+        List<String> keys = call(shard, "tag eviction", () -> members(shard, keyPrefix(shard) + tagKey, batchSize), null);
+        if (keys == null) {
+            return List.of();
+        }
+        boolean complete = true;
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            complete &= unlinkAll(keys.subList(from, Math.min(from + batchSize, keys.size())));
+        }
+        if (complete) {
+            call(shard, "tag eviction", () -> shard.getRedisTemplate().unlink(List.of(keyPrefix(shard) + tagKey)), null);
+        }
+        return keys;
+    }
+
+    /**
+     * Removes the keys that no longer exist, expired or evicted since they were
+     * tagged, from every tag index set, and renews the TTL of the sets. Sets are
+     * found with SCAN and their keys checked with pipelined EXISTS, a batch at a
+     * time. Removed keys are checked once more after the SREM and added back if
+     * they exist by then, so a key written and tagged again meanwhile keeps its
+     * tag. A shard whose breaker is open, or that fails, waits for the next run.
+     */
+    public void cleanUpTags(Duration ttl, int batchSize) {
+        for (RedisShard shard : shards.all()) {
+            if (shard.getBreaker().getState() == CircuitBreaker.State.OPEN) {
+                continue;
+            }
+            long start = System.nanoTime();
+            int sets = 0;
+            long removed = 0;
+            try {
+                ScanOptions options = ScanOptions.scanOptions()
+                        .match(keyPrefix(shard) + TAG_PREFIX + "*")
+                        .count(batchSize)
+                        .build();
+                try (Cursor<String> cursor = shard.getRedisTemplate().scan(options)) {
+                    while (cursor.hasNext()) {
+                        removed += cleanUpTag(shard, cursor.next(), ttl, batchSize);
+                        sets++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Stopped cleaning up tag indexes {} on shard {} after {} sets: {}", prefix,
+                        shard.getName(), sets, e.getMessage());
+                continue;
+            }
+            if (removed > 0) {
+                logger.info("Removed {} keys that are gone from {} tag indexes {} on shard {} in {} ms", removed, sets,
+                        prefix, shard.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+    }
+
+    // Number of keys removed from the set
+    private long cleanUpTag(RedisShard shard, String setKey, Duration ttl, int batchSize) {
+        List<String> keys = call(shard, "tag cleanup", () -> members(shard, setKey, batchSize), null);
+        if (keys == null) {
+            return 0;
+        }
+        long removed = 0;
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> gone = missing(keys.subList(from, Math.min(from + batchSize, keys.size())));
+            if (gone.isEmpty()) {
+                continue;
+            }
+            updateMembers(shard, setKey, gone, false);
+            // Keys that could not be checked count as back, since a lost tag is worse than an extra one
+            List<String> back = new ArrayList<>(gone);
+            back.removeAll(missing(gone));
+            if (!back.isEmpty()) {
+                updateMembers(shard, setKey, back, true);
+            }
+            removed += gone.size() - back.size();
+        }
+        // A set the SREM emptied is gone, and stays gone
+        call(shard, "tag cleanup", () -> shard.getRedisTemplate().execute(
+                (RedisCallback<Boolean>) connection -> connection.keyCommands().pExpire(bytes(setKey), ttl.toMillis())),
+                null);
+        return removed;
+    }
+
+    // Every member of a set, read with SSCAN so Redis answers in batches instead of one long SMEMBERS
+    private static List<String> members(RedisShard shard, String setKey, int batchSize) {
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        return shard.getRedisTemplate().execute((RedisCallback<List<String>>) connection -> {
+            List<String> members = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.setCommands().sScan(bytes(setKey), options)) {
+                while (cursor.hasNext()) {
+                    members.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                }
+            }
+            return members;
+        });
+    }
+
+    private void updateMembers(RedisShard shard, String setKey, List<String> keys, boolean add) {
+        byte[][] members = new byte[keys.size()][];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = bytes(keys.get(i));
+        }
+        call(shard, "tag cleanup", () -> shard.getRedisTemplate().execute((RedisCallback<Long>) connection -> add
+                ? connection.setCommands().sAdd(bytes(setKey), members)
+                : connection.setCommands().sRem(bytes(setKey), members)), null);
+    }
+
+    // The keys Redis reports absent, from one pipeline of EXISTS per shard; keys on a shard that failed are left out
+    private List<String> missing(List<String> keys) {
+        List<String> missing = new ArrayList<>();
+        byShard(keys.size(), keys::get).forEach((shard, indexes) -> {
+            List<Object> exists = call(shard, "tag cleanup", () -> {
+                String prefix = keyPrefix(shard);
+                return shard.getRedisTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                    for (int index : indexes) {
+                        connection.keyCommands().exists(bytes(prefix + keys.get(index)));
+                    }
+                    return null;
+                });
+            }, null);
+            if (exists != null) {
+                for (int i = 0; i < Math.min(exists.size(), indexes.size()); i++) {
+                    if (Boolean.FALSE.equals(exists.get(i))) {
+                        missing.add(keys.get(indexes.get(i)));
+                    }
+                }
+            }
+        });
+        return missing;
+    }
+
+    // One UNLINK per shard; whether every shard took its part
+    private boolean unlinkAll(List<String> keys) {
+        boolean complete = true;
+        for (Map.Entry<RedisShard, List<Integer>> e : byShard(keys.size(), keys::get).entrySet()) {
+            RedisShard shard = e.getKey();
+            Long unlinked = call(shard, "tag eviction", () -> {
+                String prefix = keyPrefix(shard);
+                List<String> redisKeys = new ArrayList<>(e.getValue().size());
+                for (int index : e.getValue()) {
+                    redisKeys.add(prefix + keys.get(index));
+                }
+                return shard.getRedisTemplate().unlink(redisKeys);
+            }, null);
+            complete &= unlinked != null;
+        }
+        return complete;
+    }
+
+    /**
+     * Hides every key cached so far by moving each shard to its next generation,
+     * one INCR per shard, then unlinks the previous generation's keys in the
+     * background. Keys of generations before that were reclaimed by their own
+     * clear or expire with their TTL. A shard that cannot be reached keeps its
+     * generation and is left to its TTLs. Peers move over when told of the clear
+     * or at their next generation check.
+     */
+    public void clear() {
+        for (RedisShard shard : shards.all()) {
+            Long next = call(shard, "clear", () -> shard.getRedisTemplate().execute(
+                    (RedisCallback<Long>) connection -> connection.stringCommands().incr(generationKey)), null);
+            if (next == null) {
+                continue;
+            }
+            advanceGeneration(shard, next);
+            try {
+                reclaimer.execute(() -> reclaim(shard, next - 1));
+            } catch (RejectedExecutionException e) {
+                logger.debug("Not reclaiming generation {}:{} on shard {}: shutting down", prefix, next - 1,
+                        shard.getName());
+            }
+        }
+    }
+
+    /**
+     * Re-reads the current generation on every shard, so a node that missed a
+     * clear stops reading the keys it hid.
+     */
+    @Scheduled(fixedDelayString = "${cachecraft.keyspace.generation-check-interval:PT10S}")
+    public void refreshGeneration() {
+        List<RedisShard> current = shards.all();
+        generations.keySet().retainAll(current);
+        for (RedisShard shard : current) {
+            call(shard, "generation check", () -> loadGeneration(shard), null);
+        }
+    }
+
+    /**
+     * Publishes the message as plain UTF-8, bypassing the value serializer's codec.
+     */
+    public void publish(String channel, String message) {
+        RedisShard shard = shards.pubSub();
+        call(shard, "publish", () -> shard.getRedisTemplate().execute((RedisCallback<Long>) connection -> connection.publish(
+                channel.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8))), null);
+    }
+
+    /**
+     * The generation this node uses on each shard, by shard name; -1 until read from Redis.
+     */
+    public Map<String, Long> getGenerations() {
+        Map<String, Long> byName = new LinkedHashMap<>();
+        for (RedisShard shard : shards.all()) {
+            byName.put(shard.getName(), generations.getOrDefault(shard, -1L));
+        }
+        return byName;
+    }
+
+    /**
+     * The worst breaker state of any shard: open over half-open over closed.
+     */
+    public CircuitBreaker.State getBreakerState() {
+        CircuitBreaker.State worst = CircuitBreaker.State.CLOSED;
+        for (RedisShard shard : shards.all()) {
+            CircuitBreaker.State state = shard.getBreaker().getState();
+            if (state == CircuitBreaker.State.OPEN || worst == CircuitBreaker.State.CLOSED) {
+                worst = state;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * The highest failure rate of any shard.
+     */
+    public float getBreakerFailureRate() {
+        float highest = 0;
+        for (RedisShard shard : shards.all()) {
+            highest = Math.max(highest, shard.getBreaker().getFailureRate());
+        }
+        return highest;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pipeline(RedisShard shard, Map<String, String> writes, List<String> deletes,
+                          Function<String, Duration> ttl) {
+        RedisTemplate<String, Object> redisTemplate = shard.getRedisTemplate();
+        RedisSerializer<Object> values = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        String prefix = keyPrefix(shard);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, String> e : writes.entrySet()) {
+                connection.stringCommands().set(
+                        bytes(prefix + e.getKey()),
+                        values.serialize(e.getValue()),
+                        Expiration.from(ttl.apply(e.getKey())),
+                        RedisStringCommands.SetOption.upsert());
+            }
+            for (String key : deletes) {
+                connection.keyCommands().del(bytes(prefix + key));
+            }
+            return null;
+        });
+    }
+
+    // Indexes of the keys each shard owns, in key order
+    private Map<RedisShard, List<Integer>> byShard(int size, IntFunction<String> key) {
+        Map<RedisShard, List<Integer>> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            indexes.computeIfAbsent(shards.shardFor(key.apply(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return indexes;
+    }
+
+    private Map<RedisShard, Map<String, String>> splitByShard(Map<String, String> values) {
+        Map<RedisShard, Map<String, String>> split = new LinkedHashMap<>();
+        values.forEach((key, value) ->
+                split.computeIfAbsent(shards.shardFor(key), shard -> new LinkedHashMap<>()).put(key, value));
+        return split;
+    }
+
+    /**
+     * The prefix of every key in the shard's current generation. Until the
+     * generation has been read, this reads it first, as part of the command that
+     * needs it.
+     */
+    private String keyPrefix(RedisShard shard) {
+        Long current = generations.get(shard);
+        return prefix + ':' + (current != null ? current : loadGeneration(shard)) + ':';
+    }
+
+    private long loadGeneration(RedisShard shard) {
+        byte[] stored = shard.getRedisTemplate().execute(
+                (RedisCallback<byte[]>) connection -> connection.stringCommands().get(generationKey));
+        return advanceGeneration(shard, stored != null ? Long.parseLong(new String(stored, StandardCharsets.UTF_8)) : 0);
+    }
+
+    // Generations only move forward, whatever order a clear and a check complete in
+    private long advanceGeneration(RedisShard shard, long next) {
+        return generations.merge(shard, next, (previous, candidate) -> {
+            if (candidate > previous) {
+                logger.info("Redis keyspace {} on shard {} moved from generation {} to {}", prefix, shard.getName(),
+                        previous, candidate);
+                return candidate;
+            }
+            return previous;
+        });
+    }
+
+    /**
+     * Unlinks every key of an old generation on one shard with SCAN and batched
+     * UNLINK, pausing between batches to stay under the reclaim rate. Stops when
+     * the shard fails; whatever is left expires with its TTL.
+     */
+    private void reclaim(RedisShard shard, long oldGeneration) {
+        int batchSize = Math.max(1, keyspace.getReclaimBatchSize());
+        long pauseNanos = TimeUnit.SECONDS.toNanos(1) * batchSize / Math.max(1, keyspace.getReclaimRate());
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(prefix + ':' + oldGeneration + ":*")
+                .count(batchSize)
+                .build();
+        long start = System.nanoTime();
+        long reclaimed = 0;
+        try (Cursor<String> cursor = shard.getRedisTemplate().scan(options)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext() && !Thread.currentThread().isInterrupted()) {
+                batch.add(cursor.next());
+                if (batch.size() == batchSize) {
+                    reclaimed += unlink(shard, batch);
+                    batch.clear();
+                    LockSupport.parkNanos(pauseNanos);
+                }
+            }
+            reclaimed += unlink(shard, batch);
+            logger.info("Reclaimed {} keys of Redis generation {}:{} on shard {} in {} ms", reclaimed, prefix,
+                    oldGeneration, shard.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            logger.warn("Stopped reclaiming Redis generation {}:{} on shard {} after {} keys, the rest expire with their TTL: {}",
+                    prefix, oldGeneration, shard.getName(), reclaimed, e.getMessage());
+        }
+    }
+
+    private long unlink(RedisShard shard, List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        CircuitBreaker breaker = shard.getBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            metricsCollector.recordRedisRejected();
+            throw new L2UnavailableException("Redis circuit breaker of shard " + shard.getName() + " is open");
+        }
+        long start = System.nanoTime();
+        try {
+            Long unlinked = shard.getRedisTemplate().unlink(keys);
+            breaker.onSuccess(elapsedSince(start));
+            long count = unlinked != null ? unlinked : 0;
+            metricsCollector.recordReclaimedKeys(count);
+            return count;
+        } catch (RuntimeException e) {
+            elapsedSince(start);
+            breaker.onError();
+            throw e;
+        }
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private <T> T call(RedisShard shard, String operation, Supplier<T> redisCall, T fallback) {
+        CircuitBreaker breaker = shard.getBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            metricsCollector.recordRedisRejected();
+            return fallback;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = redisCall.get();
+            breaker.onSuccess(elapsedSince(start));
+            return result;
+        } catch (SerializationException e) {
+            return onUnreadable(shard, operation, start, e, fallback);
+        } catch (RuntimeException e) {
+            return onFailure(shard, operation, start, e, fallback);
+        }
+    }
+
+    private <T> CompletableFuture<T> callAsync(RedisShard shard, String operation, Supplier<Mono<T>> redisCall,
+                                               T fallback) {
+        CircuitBreaker breaker = shard.getBreaker();
+        if (!breaker.tryAcquirePermission()) {
+            metricsCollector.recordRedisRejected();
+            return CompletableFuture.completedFuture(fallback);
+        }
+        long start = System.nanoTime();
+        Mono<T> reply;
+        try {
+            reply = redisCall.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(onFailure(shard, operation, start, e, fallback));
+        }
+        // An empty reply, such as GET of a missing key, completes with null
+        return reply.toFuture().handle((result, failure) -> {
+            if (failure instanceof SerializationException) {
+                return onUnreadable(shard, operation, start, failure, fallback);
+            }
+            if (failure != null) {
+                return onFailure(shard, operation, start, failure, fallback);
+            }
+            breaker.onSuccess(elapsedSince(start));
+            return result;
+        });
+    }
+
+    private <T> T onFailure(RedisShard shard, String operation, long start, Throwable failure, T fallback) {
+        elapsedSince(start);
+        shard.getBreaker().onError();
+        // One line per failure; the breaker keeps a sustained outage from flooding the log
+        logger.warn("Redis shard {} is not available, skipping Redis {}: {}", shard.getName(), operation,
+                failure.getMessage());
+        logger.debug("Redis {} on shard {} failed", operation, shard.getName(), failure);
+        return fallback;
+    }
+
+    // Redis answered; only the value could not be decoded
+    private <T> T onUnreadable(RedisShard shard, String operation, long start, Throwable failure, T fallback) {
+        shard.getBreaker().onSuccess(elapsedSince(start));
+        logger.warn("Skipping unreadable value in Redis {}: {}", operation, failure.getMessage());
+        return fallback;
+    }
+
+    // Failed calls are timed too, so a Redis that times out shows up in the latency percentiles
+    private long elapsedSince(long start) {
+        long nanos = System.nanoTime() - start;
+        metricsCollector.recordRedisLatency(nanos);
+        return nanos;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * One Redis node of the L2 tier: its templates, its own circuit breaker, so one
+ * failing node only bypasses the keys it owns, and the connection it was
+ * opened with, if the shard opened one itself.
+ */
+public class RedisShard {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisShard.class);
+
+    private final String name;
+    private final String address;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveTemplate;
+    private final CircuitBreaker breaker;
+    // Closes the connection this shard opened; null when the connection is someone else's to close
+    private final AutoCloseable connection;
+
+    public RedisShard(String name, String address, RedisTemplate<String, Object> redisTemplate,
+                      ReactiveStringRedisTemplate reactiveTemplate, CacheProperties.CircuitBreaker circuitBreaker,
+                      MetricsCollector metricsCollector, AutoCloseable connection) {
+        this.name = name;
+        this.address = address;
+        this.redisTemplate = redisTemplate;
+        this.reactiveTemplate = reactiveTemplate;
+        this.connection = connection;
+        this.breaker = new CircuitBreaker(circuitBreaker, state -> {
+            metricsCollector.setRedisCircuitState(name, state);
+            if (state == CircuitBreaker.State.OPEN) {
+                logger.warn("Redis circuit breaker of shard {} opened, bypassing it", name);
+            } else {
+                logger.info("Redis circuit breaker of shard {} is now {}", name, state);
+            }
+        });
+        metricsCollector.setRedisCircuitState(name, CircuitBreaker.State.CLOSED);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public RedisTemplate<String, Object> getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    public ReactiveStringRedisTemplate getReactiveTemplate() {
+        return reactiveTemplate;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close the connection to Redis shard {}: {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + address + ")";
+    }
+}
@@ -0,0 +1,205 @@
+package com.cachecraft.store;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.config.CacheConfig;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Redis nodes the L2 tier is spread over. Each key belongs to one shard,
+ * picked on a {@link ConsistentHashRing}, and each shard has its own connection
+ * and circuit breaker: a failing node bypasses only its own keys, which fall
+ * through to L1 and the backing store instead of moving to the other nodes.
+ *
+ * <p>Without {@code cachecraft.sharding.nodes} there is one shard, the
+ * {@code spring.data.redis} node. With them, {@code spring.data.redis} only
+ * carries invalidation pub/sub. Shards can be added and removed at runtime;
+ * about 1/N of the keys change owner and read as misses until written again.
+ * Membership is per application node, so a change has to be made on every node,
+ * and a node that rejoins under an earlier name serves what it held before
+ * until those keys expire.
+ */
+@Component
+public class RedisShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisShards.class);
+
+    public static final String DEFAULT = "default";
+
+    private final CacheProperties properties;
+    private final MetricsCollector metricsCollector;
+    // Opens connections to shards added by address; null when shards are only added ready-made
+    private final ValueSerializer valueSerializer;
+    private final RedisShard pubSub;
+
+    private record Membership(Map<String, RedisShard> shards, ConsistentHashRing<RedisShard> ring) {
+    }
+
+    // Replaced as a whole on every change, so lookups never lock
+    private volatile Membership membership;
+
+    @Autowired
+    public RedisShards(RedisTemplate<String, Object> redisTemplate, ReactiveStringRedisTemplate reactiveTemplate,
+                       ValueSerializer valueSerializer, CacheProperties properties, MetricsCollector metricsCollector) {
+        this.properties = properties;
+        this.metricsCollector = metricsCollector;
+        this.valueSerializer = valueSerializer;
+        List<CacheProperties.ShardNode> nodes = properties.getSharding().getNodes();
+        this.pubSub = new RedisShard(nodes.isEmpty() ? DEFAULT : "pubsub", "spring.data.redis", redisTemplate,
+                reactiveTemplate, properties.getCircuitBreaker(), metricsCollector, null);
+        if (nodes.isEmpty()) {
+            this.membership = membership(Map.of(DEFAULT, pubSub));
+            return;
+        }
+        Map<String, RedisShard> shards = new LinkedHashMap<>();
+        for (CacheProperties.ShardNode node : nodes) {
+            validate(node, shards);
+            shards.put(node.getName(), connect(node));
+        }
+        this.membership = membership(shards);
+        logger.info("Redis L2 tier sharded over {}", shards.values());
+    }
+
+    /**
+     * Shards over ready-made connections, such as local stand-ins for Redis;
+     * {@code pubSub} carries the invalidation messages.
+     */
+    public RedisShards(List<RedisShard> shards, RedisShard pubSub, CacheProperties properties,
+                       MetricsCollector metricsCollector) {
+        this.properties = properties;
+        this.metricsCollector = metricsCollector;
+        this.valueSerializer = null;
+        this.pubSub = pubSub;
+        Map<String, RedisShard> byName = new LinkedHashMap<>();
+        shards.forEach(shard -> byName.put(shard.getName(), shard));
+        this.membership = membership(byName);
+    }
+
+    /**
+     * A single shard, the given node, which also carries pub/sub.
+     */
+    public static RedisShards single(RedisTemplate<String, Object> redisTemplate,
+                                     ReactiveStringRedisTemplate reactiveTemplate, CacheProperties properties,
+                                     MetricsCollector metricsCollector) {
+        RedisShard shard = new RedisShard(DEFAULT, "spring.data.redis", redisTemplate, reactiveTemplate,
+                properties.getCircuitBreaker(), metricsCollector, null);
+        return new RedisShards(List.of(shard), shard, properties, metricsCollector);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        membership.shards().values().forEach(RedisShard::close);
+        pubSub.close();
+    }
+
+    public RedisShard shardFor(String key) {
+        return membership.ring().nodeFor(key);
+    }
+
+    /**
+     * Every shard on the ring, in the order they were added.
+     */
+    public List<RedisShard> all() {
+        return List.copyOf(membership.shards().values());
+    }
+
+    public RedisShard pubSub() {
+        return pubSub;
+    }
+
+    /**
+     * Connects to a Redis node and puts it on the ring.
+     *
+     * @throws IllegalArgumentException if the node has no name or its name is taken
+     */
+    public RedisShard add(CacheProperties.ShardNode node) {
+        if (valueSerializer == null) {
+            throw new IllegalStateException("These shards were built from ready-made connections");
+        }
+        synchronized (this) {
+            validate(node, membership.shards());
+            RedisShard shard = connect(node);
+            add(shard);
+            return shard;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a shard of that name is already on the ring
+     */
+    public synchronized void add(RedisShard shard) {
+        Map<String, RedisShard> shards = new LinkedHashMap<>(membership.shards());
+        if (shards.putIfAbsent(shard.getName(), shard) != null) {
+            throw new IllegalArgumentException("Redis shard " + shard.getName() + " is already on the ring");
+        }
+        this.membership = membership(shards);
+        logger.info("Added Redis shard {}, now sharding over {}", shard, shards.keySet());
+    }
+
+    /**
+     * Takes a shard off the ring and closes its connection; its keys move to the
+     * remaining shards.
+     *
+     * @return false if there is no shard of that name
+     * @throws IllegalArgumentException if it is the last shard
+     */
+    public synchronized boolean remove(String name) {
+        Map<String, RedisShard> shards = new LinkedHashMap<>(membership.shards());
+        RedisShard removed = shards.remove(name);
+        if (removed == null) {
+            return false;
+        }
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Cannot remove " + name + ", the last Redis shard");
+        }
+        this.membership = membership(shards);
+        if (removed != pubSub) {
+            removed.close();
+            metricsCollector.removeRedisShard(name);
+        }
+        logger.info("Removed Redis shard {}, now sharding over {}", removed, shards.keySet());
+        return true;
+    }
+
+    private Membership membership(Map<String, RedisShard> shards) {
+        Map<String, RedisShard> copy = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        return new Membership(copy, new ConsistentHashRing<>(copy, properties.getSharding().getVirtualNodes()));
+    }
+
+    private static void validate(CacheProperties.ShardNode node, Map<String, RedisShard> shards) {
+        if (node.getName() == null || node.getName().isBlank()) {
+            throw new IllegalArgumentException("Every Redis shard needs a name");
+        }
+        if (shards.containsKey(node.getName())) {
+            throw new IllegalArgumentException("Redis shard " + node.getName() + " is already on the ring");
+        }
+    }
+
+    // The connection opens lazily, so a node that is down at startup only trips its breaker
+    private RedisShard connect(CacheProperties.ShardNode node) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(node.getHost(), node.getPort()),
+                LettuceClientConfiguration.builder().commandTimeout(node.getTimeout()).build());
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, Object> redisTemplate = CacheConfig.createRedisTemplate(connectionFactory, valueSerializer);
+        redisTemplate.afterPropertiesSet();
+        ReactiveStringRedisTemplate reactiveTemplate = CacheConfig.createReactiveTemplate(connectionFactory, valueSerializer);
+        return new RedisShard(node.getName(), node.getHost() + ":" + node.getPort(), redisTemplate, reactiveTemplate,
+                properties.getCircuitBreaker(), metricsCollector, connectionFactory::destroy);
+    }
+}
@@ -0,0 +1,309 @@
+package com.cachecraft.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out fixed-size chunks of large off-heap buffers (slabs). Every slab serves
+ * a single power-of-two chunk size and freed chunks go back to that size class,
+ * so the heap only ever holds the slab array and a few free lists. Once every
+ * slab is taken, a size class that runs out reclaims the slabs other classes
+ * hold without a live chunk, so a shift in value sizes is not locked out by the
+ * sizes that came first.
+ *
+ * <p>Each chunk starts with a stamp and the payload length. The stamp is
+ * unique per allocation and cleared on release, which lets {@link #load} detect a
+ * chunk that was freed and reused while it was being copied (a seqlock) without
+ * taking a lock on the read path.
+ */
+public class SlabAllocator {
+
+    static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private static final int MIN_CHUNK_BYTES = 64;
+    private static final VarHandle STAMP =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int slabBytes;
+    private final Path mappedDirectory;
+    private final AtomicReferenceArray<Slab> slabs;
+    private final SizeClass[] sizeClasses;
+    // Chunks in use per slab, guarded by the size class the slab serves
+    private final int[] liveChunks;
+    // Slabs reclaimed from their size class, ready to serve any other
+    private final ArrayDeque<Integer> freeSlabs = new ArrayDeque<>();
+    private final AtomicLong stamps = new AtomicLong();
+    private int slabCount;
+
+    /**
+     * @param maxBytes        total off-heap memory the allocator may reserve
+     * @param slabBytes       size of one slab, rounded up to a power of two; also the largest chunk
+     * @param mappedDirectory directory for memory-mapped slab files, or {@code null} for direct buffers
+     */
+    public SlabAllocator(long maxBytes, int slabBytes, Path mappedDirectory) {
+        this.slabBytes = Integer.highestOneBit(Math.max(MIN_CHUNK_BYTES, slabBytes - 1) << 1);
+        this.mappedDirectory = mappedDirectory;
+        this.slabs = new AtomicReferenceArray<>((int) Math.max(1, maxBytes / this.slabBytes));
+        this.liveChunks = new int[slabs.length()];
+
+        int classCount = Integer.numberOfTrailingZeros(this.slabBytes) - Integer.numberOfTrailingZeros(MIN_CHUNK_BYTES) + 1;
+        this.sizeClasses = new SizeClass[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new SizeClass(MIN_CHUNK_BYTES << i);
+        }
+    }
+
+    /**
+     * Copies the payload into a free chunk.
+     *
+     * @return a handle to the stored payload, or {@code null} if it is larger than a
+     *         slab or no chunk of its size class is left
+     */
+    public OffHeapHandle store(byte[] payload) {
+        SizeClass sizeClass = sizeClassFor(payload.length + HEADER_BYTES);
+        if (sizeClass == null) {
+            return null;
+        }
+        long address = sizeClass.take();
+        if (address < 0 && reclaimEmptySlabs()) {
+            address = sizeClass.take();
+        }
+        if (address < 0) {
+            return null;
+        }
+        ByteBuffer buffer = slabs.get(slabIndex(address)).buffer;
+        int offset = offset(address);
+        buffer.putInt(offset + Long.BYTES, payload.length);
+        buffer.put(offset + HEADER_BYTES, payload);
+        long stamp = stamps.incrementAndGet();
+        STAMP.setRelease(buffer, offset, stamp);
+        return new OffHeapHandle(address, stamp, sizeClass.chunkBytes);
+    }
+
+    /**
+     * Copies the payload out of the chunk.
+     *
+     * @return the payload, or {@code null} if the chunk was released since the handle was issued
+     */
+    public byte[] load(OffHeapHandle handle) {
+        Slab slab = slabs.get(slabIndex(handle.address()));
+        ByteBuffer buffer = slab.buffer;
+        int offset = offset(handle.address());
+        // A slab reclaimed since the handle was issued may now be cut into chunks of another size
+        if (slab.chunkBytes != handle.chunkBytes() || (long) STAMP.getAcquire(buffer, offset) != handle.stamp()) {
+            return null;
+        }
+        int length = buffer.getInt(offset + Long.BYTES);
+        if (length < 0 || length > slab.chunkBytes - HEADER_BYTES) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_BYTES, payload);
+        VarHandle.loadLoadFence();
+        if ((long) STAMP.getVolatile(buffer, offset) != handle.stamp()) {
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * Reads one big-endian int of the payload, at the given byte position, without copying the rest.
+     *
+     * @return the int, or {@code null} if the chunk was released since the handle was
+     *         issued or the payload is too short
+     */
+    Integer loadInt(OffHeapHandle handle, int position) {
+        Slab slab = slabs.get(slabIndex(handle.address()));
+        ByteBuffer buffer = slab.buffer;
+        int offset = offset(handle.address());
+        if (slab.chunkBytes != handle.chunkBytes() || (long) STAMP.getAcquire(buffer, offset) != handle.stamp()) {
+            return null;
+        }
+        int length = buffer.getInt(offset + Long.BYTES);
+        if (position < 0 || position + Integer.BYTES > length || length > slab.chunkBytes - HEADER_BYTES) {
+            return null;
+        }
+        // Big-endian, as a heap ByteBuffer writes it; the slab itself is in native order
+        int value = buffer.getInt(offset + HEADER_BYTES + position);
+        if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+            value = Integer.reverseBytes(value);
+        }
+        VarHandle.loadLoadFence();
+        return (long) STAMP.getVolatile(buffer, offset) == handle.stamp() ? value : null;
+    }
+
+    /**
+     * Returns the chunk to its free list. Releasing the same handle twice is a no-op.
+     */
+    public void release(OffHeapHandle handle) {
+        Slab slab = slabs.get(slabIndex(handle.address()));
+        if (slab.chunkBytes == handle.chunkBytes()
+                && STAMP.compareAndSet(slab.buffer, offset(handle.address()), handle.stamp(), 0L)) {
+            sizeClassFor(slab.chunkBytes).give(handle.address());
+        }
+    }
+
+    /**
+     * Upper bound on the memory this allocator may reserve.
+     */
+    public long capacityBytes() {
+        return (long) slabs.length() * slabBytes;
+    }
+
+    public synchronized long reservedBytes() {
+        return (long) slabCount * slabBytes;
+    }
+
+    public int maxPayloadBytes() {
+        return slabBytes - HEADER_BYTES;
+    }
+
+    /**
+     * Size of the chunk a payload of this length is stored in, or -1 if it is larger than a slab.
+     */
+    int chunkBytesFor(int payloadLength) {
+        SizeClass sizeClass = sizeClassFor(payloadLength + HEADER_BYTES);
+        return sizeClass != null ? sizeClass.chunkBytes : -1;
+    }
+
+    /**
+     * Index of the slab holding the handle's chunk.
+     */
+    static int slabOf(OffHeapHandle handle) {
+        return slabIndex(handle.address());
+    }
+
+    private SizeClass sizeClassFor(int bytes) {
+        if (bytes > slabBytes) {
+            return null;
+        }
+        int chunk = Math.max(MIN_CHUNK_BYTES, Integer.highestOneBit(bytes - 1) << 1);
+        return sizeClasses[Integer.numberOfTrailingZeros(chunk) - Integer.numberOfTrailingZeros(MIN_CHUNK_BYTES)];
+    }
+
+    private synchronized int newSlab(int chunkBytes) {
+        Integer reclaimed = freeSlabs.poll();
+        if (reclaimed != null) {
+            slabs.set(reclaimed, new Slab(slabs.get(reclaimed).buffer, chunkBytes));
+            return reclaimed;
+        }
+        if (slabCount == slabs.length()) {
+            return -1;
+        }
+        slabs.set(slabCount, new Slab(allocateBuffer(), chunkBytes));
+        return slabCount++;
+    }
+
+    /**
+     * Takes the slabs without a live chunk away from their size classes.
+     *
+     * @return whether any slab was reclaimed
+     */
+    private boolean reclaimEmptySlabs() {
+        boolean reclaimed = false;
+        // One size class at a time, so a class never waits on another while holding its own lock
+        for (SizeClass sizeClass : sizeClasses) {
+            reclaimed |= sizeClass.surrenderEmptySlabs();
+        }
+        return reclaimed;
+    }
+
+    private synchronized void freeSlab(int index) {
+        // Chunk size 0 matches no handle, so reads and releases of old handles fail until it is reused
+        slabs.set(index, new Slab(slabs.get(index).buffer, 0));
+        freeSlabs.push(index);
+    }
+
+    private ByteBuffer allocateBuffer() {
+        if (mappedDirectory == null) {
+            return ByteBuffer.allocateDirect(slabBytes).order(ByteOrder.nativeOrder());
+        }
+        try {
+            Files.createDirectories(mappedDirectory);
+            Path file = Files.createTempFile(mappedDirectory, "slab-", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, slabBytes);
+                // The mapping outlives both the channel and the directory entry
+                Files.delete(file);
+                return buffer.order(ByteOrder.nativeOrder());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map off-heap slab in " + mappedDirectory, e);
+        }
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private record Slab(ByteBuffer buffer, int chunkBytes) {
+    }
+
+    private final class SizeClass {
+        final int chunkBytes;
+        final ArrayDeque<Long> free = new ArrayDeque<>();
+        int currentSlab = -1;
+        int nextOffset;
+
+        SizeClass(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        synchronized long take() {
+            Long address = free.poll();
+            if (address != null) {
+                liveChunks[slabIndex(address)]++;
+                return address;
+            }
+            if (currentSlab < 0 || nextOffset + chunkBytes > slabBytes) {
+                currentSlab = newSlab(chunkBytes);
+                nextOffset = 0;
+                if (currentSlab < 0) {
+                    return -1;
+                }
+            }
+            long carved = ((long) currentSlab << 32) | nextOffset;
+            nextOffset += chunkBytes;
+            liveChunks[currentSlab]++;
+            return carved;
+        }
+
+        synchronized void give(long address) {
+            liveChunks[slabIndex(address)]--;
+            free.push(address);
+        }
+
+        synchronized boolean surrenderEmptySlabs() {
+            boolean surrendered = false;
+            for (int i = 0; i < slabs.length(); i++) {
+                Slab slab = slabs.get(i);
+                if (slab == null || slab.chunkBytes != chunkBytes || liveChunks[i] > 0) {
+                    continue;
+                }
+                int index = i;
+                free.removeIf(chunk -> slabIndex(chunk) == index);
+                if (currentSlab == index) {
+                    currentSlab = -1;
+                }
+                freeSlab(index);
+                surrendered = true;
+            }
+            return surrendered;
+        }
+    }
+}
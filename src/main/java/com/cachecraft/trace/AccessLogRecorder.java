@@ -0,0 +1,166 @@
+package com.cachecraft.trace;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Records cache accesses to an {@link AccessTrace} file. Request threads only
+ * hash the key and copy four longs into a ring buffer; a background thread
+ * encodes and writes them. When the writer falls behind, accesses that find the
+ * buffer full are dropped and counted rather than waited for.
+ *
+ * <p>Keys are sampled by hash, so a sampled key keeps every one of its accesses
+ * and a replay at the same fraction of the L1 size shows the hit ratio of the
+ * whole key space. Recording stops once the file reaches its size limit.
+ */
+public class AccessLogRecorder implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogRecorder.class);
+
+    private static final int SLOT_LONGS = 4;
+    private static final AccessTrace.Operation[] OPERATIONS = AccessTrace.Operation.values();
+
+    private final CacheProperties.AccessLog config;
+    private final LongSupplier clock;
+    private final MetricsCollector metricsCollector;
+    private final AccessTrace.Writer writer;
+    private final Thread writerThread;
+
+    // Keys whose hash falls below this are recorded
+    private final long sampleBelow;
+
+    // Slot i holds time, key hash, operation and the key and value lengths of one access
+    private final long[] slots;
+    private final int mask;
+    // Sequence number each slot was last published with; the writer reads a slot once it is published
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    private volatile boolean recording = true;
+    private volatile boolean closed;
+
+    /**
+     * Starts a new trace at the configured path, replacing any earlier one.
+     *
+     * @param clock current time in epoch nanos
+     * @throws IOException if the trace file cannot be created
+     */
+    public AccessLogRecorder(CacheProperties.AccessLog config, LongSupplier clock, MetricsCollector metricsCollector)
+            throws IOException {
+        this.config = config;
+        this.clock = clock;
+        this.metricsCollector = metricsCollector;
+        double rate = Math.max(0, Math.min(1, config.getSampleRate()));
+        this.sampleBelow = rate >= 1 ? Long.MAX_VALUE : (long) (rate * Long.MAX_VALUE);
+        int capacity = Integer.highestOneBit(Math.max(2, config.getBufferSize() - 1)) << 1;
+        this.slots = new long[capacity * SLOT_LONGS];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.writer = new AccessTrace.Writer(config.getPath(), new AccessTrace.Header(rate, clock.getAsLong()));
+        this.writerThread = new Thread(this::drain, "cachecraft-access-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Recording {} of cache keys to access trace {}", rate, config.getPath());
+    }
+
+    /**
+     * @param valueLength length of the value read or written, -1 for none
+     */
+    public void record(AccessTrace.Operation operation, String key, int valueLength) {
+        if (!recording) {
+            return;
+        }
+        long hash = ConsistentHashRing.hash(key);
+        // The hash's top bit is dropped, so the sampled range is [0, sampleBelow)
+        if ((hash >>> 1) >= sampleBelow && operation != AccessTrace.Operation.CLEAR) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                metricsCollector.recordAccessLogDropped();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence & mask);
+        int base = slot * SLOT_LONGS;
+        slots[base] = clock.getAsLong();
+        slots[base + 1] = hash;
+        slots[base + 2] = operation.ordinal();
+        slots[base + 3] = ((long) key.length() << 32) | (valueLength & 0xFFFFFFFFL);
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * Stops recording and writes out whatever is buffered.
+     */
+    @Override
+    public void close() {
+        recording = false;
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        long next = 0;
+        long unflushed = 0;
+        boolean full = false;
+        try (writer) {
+            while (true) {
+                int slot = (int) (next & mask);
+                if (published.get(slot) == next) {
+                    int base = slot * SLOT_LONGS;
+                    long lengths = slots[base + 3];
+                    if (full) {
+                        // Buffered before recording stopped; the file is at its limit
+                        metricsCollector.recordAccessLogDropped();
+                    } else {
+                        writer.write(slots[base], OPERATIONS[(int) slots[base + 2]], slots[base + 1],
+                                (int) (lengths >>> 32), (int) lengths);
+                        unflushed++;
+                    }
+                    consumed = ++next;
+                    if (!full && writer.size() >= config.getMaxSize().toBytes()) {
+                        full = true;
+                        recording = false;
+                        logger.warn("Access trace {} reached {}, recording stopped", config.getPath(), config.getMaxSize());
+                    }
+                    continue;
+                }
+                if (unflushed > 0) {
+                    writer.flush();
+                    metricsCollector.recordAccessLogWritten(unflushed);
+                    unflushed = 0;
+                }
+                // Claimed slots still being filled in are waited for; unclaimed ones end the drain on close
+                if (closed && claimed.get() == next) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        } catch (IOException e) {
+            recording = false;
+            logger.warn("Stopped recording access trace {}: {}", config.getPath(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.cachecraft.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Binary file of cache accesses, written by {@link AccessLogRecorder} and
+ * replayed by the simulator. The layout is a header of magic, version, key
+ * sample rate and start time in epoch nanos, then one record per access until
+ * the end of the file: the operation, the time since the previous record in
+ * microseconds as a zigzag varint, the 64-bit hash of the key, and the key and
+ * value lengths as varints. Keys themselves are not recorded, so a trace never
+ * holds application data; the lengths are enough to size entries.
+ */
+public final class AccessTrace {
+
+    private static final int MAGIC = 0x43435452; // "CCTR"
+    private static final int VERSION = 1;
+
+    public enum Operation {
+        // A lookup; the value length is that of the value returned, or -1 if the key was found nowhere
+        GET,
+        PUT,
+        EVICT,
+        // Every key at once; recorded whatever the sample rate, with no key
+        CLEAR
+    }
+
+    /**
+     * One access. {@code valueLength} is -1 when there is no value.
+     */
+    public record Event(long timeNanos, Operation operation, long keyHash, int keyLength, int valueLength) {
+    }
+
+    /**
+     * The trace's key sample rate, between 0 and 1, and its start time in epoch nanos.
+     */
+    public record Header(double sampleRate, long startNanos) {
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private AccessTrace() {
+    }
+
+    /**
+     * Writes records one after another. Not thread-safe; {@link AccessLogRecorder}
+     * feeds it from a single thread.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private long previousMicros;
+        private long bytes;
+
+        public Writer(Path file, Header header) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(header.sampleRate());
+            out.writeLong(header.startNanos());
+            this.previousMicros = header.startNanos() / 1_000;
+            this.bytes = 24;
+        }
+
+        public void write(long timeNanos, Operation operation, long keyHash, int keyLength, int valueLength)
+                throws IOException {
+            long micros = timeNanos / 1_000;
+            long delta = micros - previousMicros;
+            previousMicros = micros;
+            out.writeByte(operation.ordinal());
+            writeVarLong((delta << 1) ^ (delta >> 63));
+            out.writeLong(keyHash);
+            writeVarLong(keyLength);
+            // Shifted by one so the absent value, -1, takes a single byte
+            writeVarLong(valueLength + 1L);
+            bytes += 9;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Bytes written so far, header included.
+         */
+        public long size() {
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+                bytes++;
+            }
+            out.writeByte((int) value);
+            bytes++;
+        }
+    }
+
+    /**
+     * Passes every record of the trace at {@code file} to the consumer, in the
+     * order they were written. A record cut short at the end of the file, as
+     * left by a process that stopped while recording, is ignored.
+     *
+     * @return the trace's header
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static Header read(Path file, Consumer<Event> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            Header header;
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not an access trace of version " + VERSION + ": " + file);
+                }
+                header = new Header(in.readDouble(), in.readLong());
+            } catch (EOFException e) {
+                throw new IOException("Truncated access trace header: " + file, e);
+            }
+            long micros = header.startNanos() / 1_000;
+            while (true) {
+                int operation = in.read();
+                if (operation < 0) {
+                    return header;
+                }
+                if (operation >= OPERATIONS.length) {
+                    throw new IOException("Unknown operation " + operation + " in access trace " + file);
+                }
+                try {
+                    long zigzag = readVarLong(in);
+                    micros += (zigzag >>> 1) ^ -(zigzag & 1);
+                    long keyHash = in.readLong();
+                    int keyLength = (int) readVarLong(in);
+                    int valueLength = (int) (readVarLong(in) - 1);
+                    consumer.accept(new Event(micros * 1_000, OPERATIONS[operation], keyHash, keyLength, valueLength));
+                } catch (EOFException e) {
+                    return header;
+                }
+            }
+        }
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in access trace");
+    }
+}
@@ -0,0 +1,261 @@
+package com.cachecraft.simulation;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.InvalidationMessage;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.service.AdaptiveTTLEngine;
+import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.service.CacheNamespaces;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replays a trace through {@link CacheManagerService} offline, once per
+ * scenario, to show what an L1 size, TTL or admission setting would do before
+ * it is deployed. Each scenario runs the real L1, adaptive TTL and L2 code on
+ * its own simulated clock, which advances with the trace's timestamps, so hours
+ * of traffic replay in seconds and entries expire when they would have. Redis
+ * is the in-memory stand-in, expiring on the same clock, and the database is
+ * the trace's own. Scenarios run in parallel, one per core.
+ *
+ * <p>Settings a scenario does not sweep keep their defaults; invalidation,
+ * snapshots, the access log and hot-key pinning are off.
+ */
+public class CacheSimulator {
+
+    /**
+     * One point of a sweep. {@code ttl} is the base L1 TTL; the minimum and
+     * maximum keep their default ratio to it. {@code negativeCaching} decides
+     * whether keys found nowhere are admitted to L1 and Redis as tombstones.
+     */
+    public record Scenario(DataSize l1MaxMemory, Duration ttl, boolean negativeCaching) {
+    }
+
+    /**
+     * What a scenario served. The L2 hit ratio is over L1 misses; database loads
+     * include background refreshes, as the database sees them. Memory peaks are
+     * scaled to the whole key space when the trace was sampled.
+     */
+    public record Result(Scenario scenario, long gets, double l1HitRatio, double l2HitRatio, double hitRatio,
+                         long databaseLoads, long peakL1Bytes, long peakL2Bytes) {
+    }
+
+    // How many accesses pass between samples of the L1 size
+    private static final int MEMORY_SAMPLE_INTERVAL = 1024;
+
+    private static final InvalidationBus NO_PEERS = new InvalidationBus() {
+        @Override
+        public void publish(InvalidationMessage message) {
+        }
+
+        @Override
+        public void subscribe(Consumer<InvalidationMessage> listener) {
+        }
+    };
+
+    private final SimulationTrace trace;
+
+    public CacheSimulator(SimulationTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Every combination of the given settings.
+     */
+    public static List<Scenario> sweep(List<DataSize> l1Sizes, List<Duration> ttls, List<Boolean> negativeCaching) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (DataSize l1 : l1Sizes) {
+            for (Duration ttl : ttls) {
+                for (boolean negative : negativeCaching) {
+                    scenarios.add(new Scenario(l1, ttl, negative));
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * Runs the scenarios in parallel and returns their results in the same order.
+     */
+    public List<Result> run(List<Scenario> scenarios) {
+        int threads = Math.max(1, Math.min(scenarios.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cachecraft-simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Result>> runs = new ArrayList<>();
+            for (Scenario scenario : scenarios) {
+                runs.add(CompletableFuture.supplyAsync(() -> run(scenario), executor));
+            }
+            return runs.stream().map(CompletableFuture::join).toList();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public Result run(Scenario scenario) {
+        CacheProperties properties = propertiesFor(scenario);
+        AtomicLong now = new AtomicLong(trace.size() > 0 ? trace.getTimeNanos(0) : 0);
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate(now::get);
+        MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        RedisL2Store l2Store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        AdaptiveTTLEngine ttlEngine = new AdaptiveTTLEngine(l2Store, properties, metricsCollector);
+        NearCacheInvalidator invalidator = new NearCacheInvalidator(NO_PEERS, properties, metricsCollector);
+        CacheManagerService service = new CacheManagerService(CacheNamespaces.DEFAULT, l2Store, metricsCollector,
+                ttlEngine, properties, invalidator, ValueSerializer.raw(metricsCollector), trace.getDatabase(),
+                now::get);
+        service.init();
+        try {
+            long window = properties.getTtl().getWindow().toNanos();
+            long nextWindow = now.get() + window;
+            long gets = 0;
+            long peakL1 = 0;
+            long peakL2 = 0;
+            for (int i = 0; i < trace.size(); i++) {
+                long time = trace.getTimeNanos(i);
+                // The windows the adaptive TTL engine closes on a schedule in the service
+                while (time >= nextWindow) {
+                    now.set(nextWindow);
+                    ttlEngine.adjustTTL();
+                    peakL2 = Math.max(peakL2, redis.storedBytes());
+                    nextWindow += window;
+                }
+                // Accesses recorded by concurrent threads may be slightly out of order; the clock never goes back
+                now.set(Math.max(now.get(), time));
+                String key = trace.getKey(i);
+                switch (trace.getOperation(i)) {
+                    case GET -> {
+                        service.getShared(key);
+                        gets++;
+                    }
+                    case PUT -> service.put(key, trace.getValue(i));
+                    case EVICT -> service.evict(key);
+                    case CLEAR -> service.clearAll();
+                }
+                if (i % MEMORY_SAMPLE_INTERVAL == 0) {
+                    peakL1 = Math.max(peakL1, metricsCollector.getMemoryUsage());
+                }
+            }
+            peakL1 = Math.max(peakL1, metricsCollector.getMemoryUsage());
+            peakL2 = Math.max(peakL2, redis.storedBytes());
+
+            double l1Hits = metricsCollector.getL1HitCount();
+            double l2Hits = metricsCollector.getL2HitCount();
+            double sampleRate = trace.getSampleRate();
+            return new Result(scenario, gets, ratio(l1Hits, gets), ratio(l2Hits, gets - l1Hits),
+                    ratio(l1Hits + l2Hits, gets), (long) metricsCollector.getCacheMissCount(),
+                    (long) (peakL1 / sampleRate), (long) (peakL2 / sampleRate));
+        } finally {
+            service.shutdown();
+            invalidator.shutdown();
+            l2Store.shutdown();
+        }
+    }
+
+    private CacheProperties propertiesFor(Scenario scenario) {
+        CacheProperties properties = new CacheProperties();
+        // A sampled trace holds that fraction of the keys, so it gets that fraction of the memory
+        long l1Bytes = (long) (scenario.l1MaxMemory().toBytes() * trace.getSampleRate());
+        properties.getL1().setMaxMemory(DataSize.ofBytes(Math.max(1, l1Bytes)));
+
+        CacheProperties.Ttl ttl = properties.getTtl();
+        double scale = (double) scenario.ttl().toNanos() / ttl.getBase().toNanos();
+        ttl.setMin(Duration.ofNanos(Math.max(1, (long) (ttl.getMin().toNanos() * scale))));
+        ttl.setMax(Duration.ofNanos((long) (ttl.getMax().toNanos() * scale)));
+        ttl.setBase(scenario.ttl());
+        AdaptiveTTLEngine.validate(ttl);
+
+        properties.getNegative().setEnabled(scenario.negativeCaching());
+        properties.getInvalidation().setEnabled(false);
+        properties.getSnapshot().setEnabled(false);
+        properties.getAccessLog().setEnabled(false);
+        properties.getHotKeys().setEnabled(false);
+        return properties;
+    }
+
+    private static double ratio(double part, double whole) {
+        return whole > 0 ? part / whole : 0;
+    }
+
+    /**
+     * Replays a recorded trace ({@code --trace=<file>}) or a synthetic Zipf one
+     * ({@code --keys}, {@code --events}, {@code --scan}, {@code --missing},
+     * {@code --rate}, {@code --value-length}, {@code --seed}) over every
+     * combination of {@code --l1}, {@code --ttl} and {@code --negative}, each a
+     * comma-separated list, and prints a table of the results.
+     */
+    public static void main(String[] args) throws IOException {
+        // Per-miss INFO logging would dominate the replay
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.cachecraft"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        SimulationTrace trace = options.containsKey("trace")
+                ? SimulationTrace.load(Path.of(options.get("trace")))
+                : SimulationTrace.synthetic(
+                        Integer.parseInt(options.getOrDefault("keys", "100000")),
+                        Integer.parseInt(options.getOrDefault("events", "1000000")),
+                        Double.parseDouble(options.getOrDefault("scan", "0.05")),
+                        Double.parseDouble(options.getOrDefault("missing", "0.02")),
+                        Integer.parseInt(options.getOrDefault("rate", "1000")),
+                        Integer.parseInt(options.getOrDefault("value-length", "100")),
+                        Long.parseLong(options.getOrDefault("seed", "1")));
+        List<Scenario> scenarios = sweep(
+                list(options.getOrDefault("l1", "2MB,8MB,32MB"), DataSize::parse),
+                list(options.getOrDefault("ttl", "1m,10m"), DurationStyle::detectAndParse),
+                list(options.getOrDefault("negative", "true,false"), Boolean::parseBoolean));
+
+        System.out.printf("Replaying %,d accesses (%.0f%% of keys) over %d scenarios%n",
+                trace.size(), trace.getSampleRate() * 100, scenarios.size());
+        long start = System.nanoTime();
+        List<Result> results = new CacheSimulator(trace).run(scenarios);
+        System.out.printf("%-8s %-8s %-8s %8s %8s %8s %12s %10s %10s%n",
+                "L1", "TTL", "Negative", "L1 hit", "L2 hit", "Hit", "DB loads", "Peak L1", "Peak L2");
+        for (Result result : results) {
+            Scenario scenario = result.scenario();
+            System.out.printf("%-8s %-8s %-8s %7.2f%% %7.2f%% %7.2f%% %,12d %10s %10s%n",
+                    megabytes(scenario.l1MaxMemory().toBytes()), scenario.ttl(), scenario.negativeCaching(),
+                    result.l1HitRatio() * 100, result.l2HitRatio() * 100, result.hitRatio() * 100,
+                    result.databaseLoads(), megabytes(result.peakL1Bytes()), megabytes(result.peakL2Bytes()));
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private static <T> List<T> list(String values, Function<String, T> parse) {
+        return Arrays.stream(values.split(",")).map(String::trim).map(parse).toList();
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+}
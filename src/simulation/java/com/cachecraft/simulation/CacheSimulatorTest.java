@@ -0,0 +1,96 @@
+package com.cachecraft.simulation;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.trace.AccessLogRecorder;
+import com.cachecraft.trace.AccessTrace;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSimulatorTest {
+
+    @BeforeAll
+    static void quietLogging() {
+        // Per-miss INFO logging would dominate the replay
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.cachecraft"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+    }
+
+    @Test
+    void testLargerL1ServesMoreFromL1() {
+        SimulationTrace trace = SimulationTrace.synthetic(5_000, 30_000, 0.05, 0, 100, 100, 1);
+        List<CacheSimulator.Result> results = new CacheSimulator(trace).run(CacheSimulator.sweep(
+                List.of(DataSize.ofKilobytes(64), DataSize.ofMegabytes(8)), List.of(Duration.ofMinutes(10)),
+                List.of(true)));
+
+        CacheSimulator.Result small = results.get(0);
+        CacheSimulator.Result large = results.get(1);
+        assertEquals(DataSize.ofKilobytes(64), small.scenario().l1MaxMemory());
+        assertEquals(30_000, small.gets());
+        assertTrue(large.l1HitRatio() > small.l1HitRatio() + 0.1,
+                "L1 hit ratio " + small.l1HitRatio() + " with 64KB, " + large.l1HitRatio() + " with 8MB");
+        assertTrue(small.peakL1Bytes() <= DataSize.ofKilobytes(64).toBytes());
+        // What the small L1 misses, Redis still has
+        assertTrue(small.l2HitRatio() > large.l2HitRatio());
+        assertEquals(small.databaseLoads(), large.databaseLoads(), small.databaseLoads() * 0.1);
+    }
+
+    @Test
+    void testEntriesExpireOnSimulatedTime() {
+        // Five hours of traffic at two accesses a second
+        SimulationTrace trace = SimulationTrace.synthetic(1_000, 36_000, 0, 0, 2, 100, 1);
+        long start = System.nanoTime();
+        List<CacheSimulator.Result> results = new CacheSimulator(trace).run(CacheSimulator.sweep(
+                List.of(DataSize.ofMegabytes(8)), List.of(Duration.ofSeconds(10), Duration.ofHours(1)),
+                List.of(true)));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMinutes(1)) < 0);
+        CacheSimulator.Result shortTtl = results.get(0);
+        CacheSimulator.Result longTtl = results.get(1);
+        assertTrue(shortTtl.databaseLoads() > 2 * longTtl.databaseLoads(),
+                shortTtl.databaseLoads() + " database loads with a 10s TTL, " + longTtl.databaseLoads() + " with 1h");
+        assertTrue(shortTtl.hitRatio() < longTtl.hitRatio());
+    }
+
+    @Test
+    void testRecordedTraceReplays(@TempDir Path dir) throws IOException {
+        CacheProperties.AccessLog config = new CacheProperties.AccessLog();
+        config.setPath(dir.resolve("access.trace"));
+        AtomicLong clock = new AtomicLong();
+        try (AccessLogRecorder recorder = new AccessLogRecorder(config, clock::get,
+                new MetricsCollector(new SimpleMeterRegistry()))) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 100; i++) {
+                    clock.addAndGet(1_000_000);
+                    recorder.record(AccessTrace.Operation.GET, "k" + i, i % 10 == 0 ? -1 : 50);
+                }
+            }
+        }
+
+        SimulationTrace trace = SimulationTrace.load(dir.resolve("access.trace"));
+        assertEquals(1_000, trace.size());
+        assertEquals(90, trace.getDatabase().size());
+        CacheSimulator simulator = new CacheSimulator(trace);
+        CacheSimulator.Result negative = simulator.run(
+                new CacheSimulator.Scenario(DataSize.ofMegabytes(1), Duration.ofMinutes(10), true));
+        CacheSimulator.Result noNegative = simulator.run(
+                new CacheSimulator.Scenario(DataSize.ofMegabytes(1), Duration.ofMinutes(10), false));
+
+        // Every present key loads once; absent keys load once as tombstones, or on every lookup without them
+        assertEquals(100, negative.databaseLoads());
+        assertEquals(90 + 100, noNegative.databaseLoads());
+        assertEquals(0.81, negative.hitRatio(), 0.001);
+    }
+}
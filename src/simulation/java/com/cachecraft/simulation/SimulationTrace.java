@@ -0,0 +1,178 @@
+package com.cachecraft.simulation;
+
+import com.cachecraft.trace.AccessTrace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A sequence of cache accesses held in memory for replay, together with the
+ * database the keys are loaded from. Read-only once built, so every scenario of
+ * a sweep replays the same instance.
+ *
+ * <p>Recorded traces hold key hashes, not keys; each hash is given a stand-in
+ * key of the recorded length, and each key read or written with a value is given
+ * a stand-in value of the length last seen for it. Keys looked up without a value stay
+ * absent from the database.
+ */
+public final class SimulationTrace {
+
+    private final double sampleRate;
+    private final long[] timesNanos;
+    private final AccessTrace.Operation[] operations;
+    private final String[] keys;
+    private final String[] values;
+    private final Map<String, String> database;
+
+    private SimulationTrace(double sampleRate, long[] timesNanos, AccessTrace.Operation[] operations, String[] keys,
+                            String[] values, Map<String, String> database) {
+        this.sampleRate = sampleRate;
+        this.timesNanos = timesNanos;
+        this.operations = operations;
+        this.keys = keys;
+        this.values = values;
+        this.database = Collections.unmodifiableMap(database);
+    }
+
+    /**
+     * Loads a trace written by the access log.
+     *
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static SimulationTrace load(Path file) throws IOException {
+        Builder builder = new Builder();
+        AccessTrace.Header header = AccessTrace.read(file, event ->
+                builder.add(event.timeNanos(), event.operation(), event.keyHash(), event.keyLength(),
+                        event.valueLength()));
+        return builder.build(header.sampleRate());
+    }
+
+    /**
+     * A read-only trace over {@code keyCount} keys whose popularity follows Zipf
+     * with exponent 0.99, the skew YCSB uses. A {@code scanFraction} of the
+     * reads instead walk once through a separate range of keys, the way a batch
+     * job or crawler does, and a {@code missingFraction} of the keys are absent
+     * from the database.
+     *
+     * @param perSecond accesses per second of simulated time
+     */
+    public static SimulationTrace synthetic(int keyCount, int events, double scanFraction, double missingFraction,
+                                            int perSecond, int valueLength, long seed) {
+        double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int rank = 0; rank < keyCount; rank++) {
+            sum += 1 / Math.pow(rank + 1, 0.99);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(seed);
+        boolean[] missing = new boolean[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            missing[i] = random.nextDouble() < missingFraction;
+        }
+        Builder builder = new Builder();
+        long interval = 1_000_000_000L / Math.max(1, perSecond);
+        long scanned = 0;
+        for (int i = 0; i < events; i++) {
+            long key;
+            boolean absent;
+            if (random.nextDouble() < scanFraction) {
+                // Scanned keys follow the popular ones and never repeat
+                key = keyCount + scanned++;
+                absent = false;
+            } else {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                key = rank >= 0 ? rank : Math.min(-rank - 1, keyCount - 1);
+                absent = missing[(int) key];
+            }
+            builder.add(i * interval, AccessTrace.Operation.GET, key, 16, absent ? -1 : valueLength);
+        }
+        return builder.build(1.0);
+    }
+
+    /**
+     * Fraction of the key space the trace covers. Scenarios scale the L1 size by
+     * it, so a sampled trace sees the hit ratio of the whole key space.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public long getTimeNanos(int index) {
+        return timesNanos[index];
+    }
+
+    public AccessTrace.Operation getOperation(int index) {
+        return operations[index];
+    }
+
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * The value written by a PUT, otherwise null.
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Every key read or written with a value, and that value.
+     */
+    public Map<String, String> getDatabase() {
+        return database;
+    }
+
+    private static final class Builder {
+
+        private long[] times = new long[1024];
+        private final List<AccessTrace.Operation> operations = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final Map<Long, String> keysByHash = new HashMap<>();
+        // Values are never modified, so one string per length serves every key
+        private final Map<Integer, String> valuesByLength = new HashMap<>();
+        private final Map<String, String> database = new HashMap<>();
+
+        void add(long timeNanos, AccessTrace.Operation operation, long keyHash, int keyLength, int valueLength) {
+            String key = operation == AccessTrace.Operation.CLEAR ? null
+                    : keysByHash.computeIfAbsent(keyHash, hash -> keyFor(hash, keyLength));
+            String value = valueLength < 0 ? null
+                    : valuesByLength.computeIfAbsent(valueLength, length -> "v".repeat(length));
+            if (keys.size() == times.length) {
+                times = Arrays.copyOf(times, times.length * 2);
+            }
+            times[keys.size()] = timeNanos;
+            operations.add(operation);
+            keys.add(key);
+            values.add(operation == AccessTrace.Operation.PUT ? value : null);
+            // The application writes a value through to the database as well as the cache
+            if (operation != AccessTrace.Operation.EVICT && value != null) {
+                database.put(key, value);
+            }
+        }
+
+        SimulationTrace build(double sampleRate) {
+            return new SimulationTrace(sampleRate, Arrays.copyOf(times, keys.size()),
+                    operations.toArray(new AccessTrace.Operation[0]), keys.toArray(new String[0]),
+                    values.toArray(new String[0]), database);
+        }
+
+        // The hash in hex, padded to the recorded length so entries weigh what the real ones did
+        private static String keyFor(long hash, int keyLength) {
+            String hex = Long.toHexString(hash);
+            return hex.length() >= keyLength ? hex : hex + "-".repeat(keyLength - hex.length());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.cachecraft.codec;
+
+import com.cachecraft.metrics.MetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueSerializerTest {
+
+    private final MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+
+    private final ValueSerializer deflate = new ValueSerializer(List.of(new DeflateCodec()), DeflateCodec.NAME,
+            DataSize.ofBytes(256), metricsCollector);
+
+    @Test
+    void testLargeValuesAreCompressedAndSmallOnesStayUtf8() {
+        String json = "{\"id\":42,\"name\":\"välue\",\"tags\":[\"a\",\"b\"]},".repeat(200);
+        byte[] stored = deflate.serialize(json);
+        assertTrue(stored.length < json.length() / 10);
+        assertEquals(json, deflate.deserialize(stored));
+
+        String small = "{\"id\":1}";
+        assertArrayEquals(small.getBytes(StandardCharsets.UTF_8), deflate.serialize(small));
+        assertEquals(small, deflate.deserialize(deflate.serialize(small)));
+
+        assertTrue(metricsCollector.getCodecCompressionRatios().get(DeflateCodec.NAME) < 0.2);
+    }
+
+    @Test
+    void testRoundTripAroundBufferBoundaries() {
+        Random random = new Random(7);
+        for (int length : new int[]{256, 257, 1000, 4096, 65_537}) {
+            StringBuilder value = new StringBuilder();
+            while (value.length() < length) {
+                value.append(random.nextInt(10) < 8 ? "abc" : Integer.toString(random.nextInt()));
+            }
+            String expected = value.substring(0, length);
+            assertEquals(expected, deflate.deserialize(deflate.serialize(expected)), "length " + length);
+        }
+    }
+
+    @Test
+    void testValueIsStoredAsIsWhenEncodingDoesNotShrinkIt() {
+        // A codec whose output is never smaller than its input
+        ValueCodec expanding = new ValueCodec() {
+            @Override
+            public String name() {
+                return "expanding";
+            }
+
+            @Override
+            public int id() {
+                return 2;
+            }
+
+            @Override
+            public ByteBuffer encode(ByteBuffer utf8) {
+                return ByteBuffer.allocate(utf8.remaining() + 1).put(utf8).put((byte) 0).flip();
+            }
+
+            @Override
+            public ByteBuffer decode(ByteBuffer encoded) {
+                return encoded.limit(encoded.limit() - 1);
+            }
+        };
+        ValueSerializer serializer = new ValueSerializer(List.of(expanding), "expanding", DataSize.ofBytes(0), metricsCollector);
+
+        String value = "z".repeat(500);
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), serializer.serialize(value));
+        assertEquals(1.0, metricsCollector.getCodecCompressionRatios().get("expanding"));
+    }
+
+    @Test
+    void testEveryRegisteredCodecStaysReadable() {
+        String value = "x".repeat(1000);
+        byte[] compressed = deflate.serialize(value);
+        ValueSerializer raw = new ValueSerializer(List.of(new DeflateCodec()), ValueSerializer.RAW,
+                DataSize.ofBytes(256), metricsCollector);
+
+        // Switching back to raw writes UTF-8 but still reads compressed values
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), raw.serialize(value));
+        assertEquals(value, raw.deserialize(compressed));
+        // A node without the codec reports the value instead of misreading it
+        assertThrows(SerializationException.class, () -> ValueSerializer.raw(metricsCollector).deserialize(compressed));
+    }
+
+    @Test
+    void testDecodesFromSliceOfDirectBuffer() {
+        String value = "ümlaut ".repeat(100);
+        byte[] stored = deflate.serialize(value);
+        ByteBuffer direct = ByteBuffer.allocateDirect(stored.length + 8);
+        direct.putInt(1).put(stored).putInt(2).flip();
+        direct.position(4).limit(4 + stored.length);
+
+        assertEquals(value, deflate.decode(direct.slice()));
+        assertEquals("plain", deflate.decode(ByteBuffer.allocateDirect(5).put("plain".getBytes(StandardCharsets.UTF_8)).flip()));
+    }
+
+    @Test
+    void testCorruptOrUnknownValuesAreRejected() {
+        byte[] stored = deflate.serialize("y".repeat(1000));
+        stored[stored.length - 3] ^= 0x5A;
+        assertThrows(SerializationException.class, () -> deflate.deserialize(stored));
+        assertThrows(SerializationException.class, () -> deflate.deserialize(new byte[]{(byte) 0xFF, 9, 1, 2}));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValueSerializer(List.of(new DeflateCodec()), "lz4", DataSize.ofBytes(0), metricsCollector));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValueSerializer(List.of(new DeflateCodec(), new DeflateCodec()), "raw", DataSize.ofBytes(0), metricsCollector));
+    }
+}
@@ -0,0 +1,30 @@
+package com.cachecraft.coherence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Stand-in for Redis pub/sub that delivers every message synchronously to all
+ * subscribers in the same JVM.
+ */
+public class InMemoryInvalidationBus implements InvalidationBus {
+
+    private final List<Consumer<InvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final List<InvalidationMessage> published = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        published.add(message);
+        listeners.forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationMessage> listener) {
+        listeners.add(listener);
+    }
+
+    public List<InvalidationMessage> getPublished() {
+        return published;
+    }
+}
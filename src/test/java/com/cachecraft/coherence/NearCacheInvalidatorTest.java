@@ -0,0 +1,143 @@
+package com.cachecraft.coherence;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.service.AdaptiveTTLEngine;
+import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.store.RedisL2Store;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NearCacheInvalidatorTest {
+
+    // Shared Redis stand-in for every node
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ReactiveStringRedisTemplate reactiveTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private InMemoryInvalidationBus bus;
+
+    private final List<CacheManagerService> nodes = new ArrayList<>();
+
+    private final List<NearCacheInvalidator> invalidators = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        bus = new InMemoryInvalidationBus();
+        for (int i = 0; i < 3; i++) {
+            CacheProperties properties = new CacheProperties();
+            properties.getInvalidation().setEnabled(true);
+            properties.getInvalidation().setMaxBatchSize(2);
+            MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+            NearCacheInvalidator invalidator = new NearCacheInvalidator(bus, properties, metricsCollector);
+            RedisL2Store l2Store = new RedisL2Store(redisTemplate, reactiveTemplate, properties, metricsCollector);
+            CacheManagerService node = new CacheManagerService(l2Store, metricsCollector,
+                    new AdaptiveTTLEngine(l2Store, properties, metricsCollector), properties, invalidator, ValueSerializer.raw(metricsCollector));
+            node.init();
+            nodes.add(node);
+            invalidators.add(invalidator);
+        }
+    }
+
+    @Test
+    void testPutOnOneNodeInvalidatesPeers() {
+        // Every node warms its L1 from the database
+        nodes.forEach(node -> assertEquals("value1", node.get("key1").getValue()));
+
+        nodes.get(0).put("key1", "updated");
+        when(valueOperations.get(redisKey("key1"))).thenReturn("updated");
+
+        // Peers still serve their L1 copy until the batch is published
+        assertEquals("value1", nodes.get(1).get("key1").getValue());
+        invalidators.get(0).flush();
+
+        for (CacheManagerService node : nodes) {
+            assertEquals("updated", node.get("key1").getValue());
+        }
+    }
+
+    @Test
+    void testInvalidationsAreDeduplicatedAndBatched() {
+        CacheManagerService writer = nodes.get(0);
+        for (int i = 0; i < 3; i++) {
+            writer.put("a", "1");
+            writer.put("b", "2");
+            writer.evict("c");
+        }
+        invalidators.get(0).flush();
+
+        // Three distinct keys in batches of at most two
+        assertEquals(2, bus.getPublished().size());
+        assertEquals(3, bus.getPublished().stream().mapToInt(m -> m.keys().size()).sum());
+
+        invalidators.get(0).flush();
+        assertEquals(2, bus.getPublished().size());
+    }
+
+    @Test
+    void testClearAllSupersedesQueuedKeys() {
+        nodes.forEach(node -> node.get("key2"));
+        nodes.get(1).put("x", "1");
+        nodes.get(1).clearAll();
+        invalidators.get(1).flush();
+
+        assertEquals(1, bus.getPublished().size());
+        assertTrue(bus.getPublished().get(0).all());
+        assertEquals(0, nodes.get(0).getCaffeineCacheSize());
+        assertEquals(0, nodes.get(2).getCaffeineCacheSize());
+    }
+
+    @Test
+    void testNamespacesOnlyInvalidateTheirOwnKeys() {
+        nodes.forEach(node -> node.get("key1"));
+        NearCacheInvalidator sessions = invalidators.get(0).forNamespace("sessions");
+        sessions.invalidate("key1");
+        sessions.invalidateAll();
+        sessions.flush();
+
+        assertEquals("sessions", bus.getPublished().get(0).namespace());
+        // The default namespace of every peer keeps its entry
+        nodes.subList(1, 3).forEach(node -> assertEquals(1, node.getCaffeineCacheSize()));
+    }
+
+    @Test
+    void testDefaultNamespaceMessagesKeepTheirFormat() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(new InvalidationMessage("n1", false, List.of("k")));
+        assertFalse(json.contains("namespace"));
+
+        // As published by a node that predates namespaces
+        InvalidationMessage old = objectMapper.readValue("{\"origin\":\"n1\",\"all\":true,\"keys\":[]}",
+                InvalidationMessage.class);
+        assertNull(old.namespace());
+        assertTrue(old.all());
+        InvalidationMessage named = new InvalidationMessage("n1", false, List.of("k"), "sessions");
+        assertEquals(named, objectMapper.readValue(objectMapper.writeValueAsString(named), InvalidationMessage.class));
+    }
+
+    // Where the cache keeps a key in Redis before any clear
+    private static String redisKey(String key) {
+        return "cachecraft:0:" + key;
+    }
+}
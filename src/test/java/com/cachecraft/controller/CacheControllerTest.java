@@ -1,8 +1,15 @@
 package com.cachecraft.controller;
 
 import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheConfigUpdate;
 import com.cachecraft.model.CacheEntry;
 import com.cachecraft.service.CacheManagerService;
+import com.cachecraft.service.CacheNamespaces;
+import com.cachecraft.service.ChunkedValue;
+import com.cachecraft.service.InvalidKeyException;
+import com.cachecraft.store.RedisShards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,8 +17,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,34 +37,75 @@ class CacheControllerTest {
     @Mock
     private CacheManagerService cacheManagerService;
 
+    @Mock
+    private CacheNamespaces cacheNamespaces;
+
+    @Mock
+    private RedisShards redisShards;
+
     private MetricsCollector metricsCollector;
 
+    // Configured like Spring Boot's ObjectMapper, which writes dates as ISO strings
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
-        cacheController = new CacheController(cacheManagerService, metricsCollector);
+        cacheController = new CacheController(cacheManagerService, cacheNamespaces, redisShards, metricsCollector);
     }
 
     @Test
-    void testGetDataFound() {
+    void testGetDataFound() throws Exception {
         // Test getting data that exists
-        CacheEntry entry = new CacheEntry("testKey", "testValue", java.time.LocalDateTime.now(), 1);
-        when(cacheManagerService.get("testKey")).thenReturn(entry);
+        CacheEntry entry = new CacheEntry("testKey", "testValue", CacheEntry.now(), 1);
+        when(cacheManagerService.getShared("testKey")).thenReturn(entry);
+        when(cacheManagerService.frequency("testKey")).thenReturn(1);
         
-        ResponseEntity<CacheEntry> response = cacheController.getData("testKey");
-        assertEquals(200, response.getStatusCodeValue());
-        assertNotNull(response.getBody());
-        assertEquals("testKey", response.getBody().getKey());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cacheController.getData("testKey", response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        CacheEntry body = objectMapper.readValue(response.getContentAsByteArray(), CacheEntry.class);
+        assertEquals("testKey", body.getKey());
     }
 
     @Test
-    void testGetDataNotFound() {
+    void testGetDataMatchesJacksonEncoding() throws Exception {
+        // The pre-encoded body must be exactly what Jackson would have written
+        CacheEntry entry = new CacheEntry("quoted \"key\"", "välue\n", CacheEntry.now(), 0);
+        when(cacheManagerService.getShared("k")).thenReturn(entry);
+        when(cacheManagerService.frequency("k")).thenReturn(1205);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cacheController.getData("k", response);
+        assertEquals(objectMapper.writeValueAsString(entry.withFrequencyCount(1205)),
+                response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+    }
+
+    @Test
+    void testGetDataNotFound() throws Exception {
         // Test getting data that doesn't exist
-        when(cacheManagerService.get("nonexistent")).thenReturn(null);
+        when(cacheManagerService.getShared("nonexistent")).thenReturn(null);
         
-        ResponseEntity<CacheEntry> response = cacheController.getData("nonexistent");
-        assertEquals(404, response.getStatusCodeValue());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cacheController.getData("nonexistent", response);
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    void testGetDataAsync() {
+        CacheEntry entry = new CacheEntry("testKey", "testValue", CacheEntry.now(), 1);
+        when(cacheManagerService.getAsync("testKey")).thenReturn(CompletableFuture.completedFuture(entry));
+        when(cacheManagerService.getAsync("nonexistent")).thenReturn(CompletableFuture.completedFuture(null));
+
+        ResponseEntity<CacheEntry> found = cacheController.getDataAsync("testKey").join();
+        assertEquals(200, found.getStatusCode().value());
+        assertEquals("testValue", found.getBody().getValue());
+        assertEquals(404, cacheController.getDataAsync("nonexistent").join().getStatusCode().value());
     }
 
     @Test
@@ -73,4 +128,158 @@ class CacheControllerTest {
         assertEquals("All cache cleared successfully", response.getBody());
         verify(cacheManagerService, times(1)).clearAll();
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetDataBatch() {
+        // Test fetching several keys in one call
+        CacheEntry entry = new CacheEntry("testKey", "testValue", CacheEntry.now(), 1);
+        when(cacheManagerService.getAll(List.of("testKey", "nonexistent"))).thenReturn(Map.of("testKey", entry));
+        
+        ResponseEntity<Map<String, CacheEntry>> response = cacheController.getDataBatch(List.of("testKey", "nonexistent"));
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().size());
+        assertEquals("testValue", response.getBody().get("testKey").getValue());
+    }
+
+    @Test
+    void testAddDataBatchRequiresValues() {
+        // Test that an empty batch is rejected
+        ResponseEntity<String> response = cacheController.addDataBatch(Map.of());
+        assertEquals(400, response.getStatusCodeValue());
+        verify(cacheManagerService, never()).putAll(any());
+    }
+
+    @Test
+    void testUpdateConfigRejectsInvalidSettings() {
+        CacheConfigUpdate update = new CacheConfigUpdate();
+        update.setMaxMemory("lots");
+        doThrow(new IllegalArgumentException("'lots' is not a valid data size"))
+                .when(cacheManagerService).reconfigure(update);
+
+        ResponseEntity<String> response = cacheController.updateConfig(update);
+        assertEquals(400, response.getStatusCodeValue());
+        assertEquals("'lots' is not a valid data size", response.getBody());
+    }
+
+    @Test
+    void testNamespaceRoutes() throws Exception {
+        CacheManagerService sessions = mock(CacheManagerService.class);
+        when(cacheNamespaces.get("sessions")).thenReturn(sessions);
+        when(sessions.getShared("k")).thenReturn(new CacheEntry("k", "session", CacheEntry.now(), 1));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cacheController.getNamespaceData("sessions", "k", response);
+        assertEquals(200, response.getStatus());
+        assertEquals("session", objectMapper.readValue(response.getContentAsByteArray(), CacheEntry.class).getValue());
+
+        assertEquals(200, cacheController.addNamespaceData("sessions", Map.of("key", "k", "value", "v")).getStatusCodeValue());
+        verify(sessions).put("k", "v");
+        assertEquals(200, cacheController.clearNamespace("sessions").getStatusCodeValue());
+        verify(sessions).clearAll();
+        verifyNoInteractions(cacheManagerService);
+
+        // Unknown namespaces are not created on the fly
+        MockHttpServletResponse unknown = new MockHttpServletResponse();
+        cacheController.getNamespaceData("other", "k", unknown);
+        assertEquals(404, unknown.getStatus());
+        assertEquals(404, cacheController.addNamespaceData("other", Map.of("key", "k", "value", "v")).getStatusCodeValue());
+        assertEquals(404, cacheController.getNamespaceStats("other").getStatusCodeValue());
+        assertEquals(404, cacheController.getNamespaceHotKeys("other").getStatusCodeValue());
+    }
+
+    @Test
+    void testHotKeyRoutes() {
+        List<Map<String, Object>> hotKeys = List.of(Map.of("key", "k", "count", 40L, "pinned", true));
+        when(cacheManagerService.getHotKeys()).thenReturn(hotKeys);
+        CacheManagerService sessions = mock(CacheManagerService.class);
+        when(cacheNamespaces.get("sessions")).thenReturn(sessions);
+
+        assertEquals(hotKeys, cacheController.getHotKeys().getBody());
+        assertEquals(List.of(), cacheController.getNamespaceHotKeys("sessions").getBody());
+        verify(sessions).getHotKeys();
+    }
+
+    @Test
+    void testTagRoutes() {
+        cacheController.addData(Map.of("key", "k", "value", "v", "tags", "user:1, orders,"));
+        verify(cacheManagerService).put("k", "v", List.of("user:1", "orders"));
+        cacheController.addData(Map.of("key", "plain", "value", "v"));
+        verify(cacheManagerService).put("plain", "v");
+
+        when(cacheManagerService.evictByTag("user:1")).thenReturn(2);
+        ResponseEntity<String> evicted = cacheController.evictTag("user:1");
+        assertEquals(200, evicted.getStatusCode().value());
+        assertEquals("Evicted 2 keys tagged user:1", evicted.getBody());
+
+        CacheManagerService sessions = mock(CacheManagerService.class);
+        when(cacheNamespaces.get("sessions")).thenReturn(sessions);
+        cacheController.evictNamespaceTag("sessions", "user:1");
+        verify(sessions).evictByTag("user:1");
+        assertEquals(404, cacheController.evictNamespaceTag("unknown", "user:1").getStatusCode().value());
+    }
+
+    @Test
+    void testStreamRanges() throws Exception {
+        byte[] bytes = "0123456789".repeat(10).getBytes(StandardCharsets.UTF_8);
+        when(cacheManagerService.getStream("k")).thenReturn(new ChunkedValue(bytes.length, 16, CacheEntry.now(),
+                index -> Arrays.copyOfRange(bytes, index * 16, Math.min(bytes.length, index * 16 + 16))));
+
+        MockHttpServletResponse whole = new MockHttpServletResponse();
+        cacheController.getStream("k", null, whole);
+        assertEquals(200, whole.getStatus());
+        assertEquals("bytes", whole.getHeader("Accept-Ranges"));
+        assertArrayEquals(bytes, whole.getContentAsByteArray());
+
+        MockHttpServletResponse partial = new MockHttpServletResponse();
+        cacheController.getStream("k", "bytes=10-39", partial);
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 10-39/100", partial.getHeader("Content-Range"));
+        assertEquals(30, partial.getContentLength());
+        assertEquals("012345678901234567890123456789", partial.getContentAsString());
+
+        MockHttpServletResponse suffix = new MockHttpServletResponse();
+        cacheController.getStream("k", "bytes=-5", suffix);
+        assertEquals("bytes 95-99/100", suffix.getHeader("Content-Range"));
+        assertEquals("56789", suffix.getContentAsString());
+
+        MockHttpServletResponse unsatisfiable = new MockHttpServletResponse();
+        cacheController.getStream("k", "bytes=100-", unsatisfiable);
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */100", unsatisfiable.getHeader("Content-Range"));
+
+        // Malformed or multiple ranges get the whole value
+        MockHttpServletResponse malformed = new MockHttpServletResponse();
+        cacheController.getStream("k", "lines=1-2", malformed);
+        assertEquals(200, malformed.getStatus());
+        assertEquals(100, malformed.getContentAsByteArray().length);
+
+        MockHttpServletResponse absent = new MockHttpServletResponse();
+        cacheController.getStream("other", null, absent);
+        assertEquals(404, absent.getStatus());
+    }
+
+    @Test
+    void testPutStreamRejectsOversizedValue() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/data/k/stream");
+        request.setContent("payload".getBytes(StandardCharsets.UTF_8));
+        when(cacheManagerService.putStream(eq("k"), any())).thenReturn(ChunkedValue.of(new byte[7], 0));
+        assertEquals(200, cacheController.putStream("k", request).getStatusCodeValue());
+
+        when(cacheManagerService.putStream(eq("k"), any())).thenThrow(new IllegalArgumentException("too large"));
+        assertEquals(413, cacheController.putStream("k", request).getStatusCodeValue());
+        when(cacheManagerService.putStream(eq("k"), any())).thenThrow(new InvalidKeyException("NUL"));
+        assertEquals(400, cacheController.putStream("k", request).getStatusCodeValue());
+        assertEquals(400, cacheController.invalidInput(new InvalidKeyException("NUL")).getStatusCodeValue());
+        assertEquals(404, cacheController.putNamespaceStream("other", "k", request).getStatusCodeValue());
+    }
+
+    @Test
+    void testShardRoutes() {
+        when(redisShards.remove("redis-a")).thenReturn(true);
+        when(redisShards.remove("redis-b")).thenThrow(new IllegalArgumentException("Cannot remove redis-b, the last Redis shard"));
+
+        assertEquals(200, cacheController.removeShard("redis-a").getStatusCodeValue());
+        assertEquals(400, cacheController.removeShard("redis-b").getStatusCodeValue());
+        assertEquals(404, cacheController.removeShard("redis-c").getStatusCodeValue());
+    }
+}
@@ -0,0 +1,156 @@
+package com.cachecraft.service;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AdaptiveTTLEngineTest {
+
+    private AdaptiveTTLEngine ttlEngine;
+
+    private CacheProperties.Ttl config;
+
+    private MetricsCollector metricsCollector;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ReactiveStringRedisTemplate reactiveTemplate;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        CacheProperties properties = new CacheProperties();
+        config = properties.getTtl();
+        metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        ttlEngine = new AdaptiveTTLEngine(new RedisL2Store(redisTemplate, reactiveTemplate, properties, metricsCollector), properties, metricsCollector);
+    }
+
+    @Test
+    void testColdKeyGetsMinimumTTL() {
+        // A key seen once should not hold L1 memory for the base TTL
+        ttlEngine.recordAccess("oneHit");
+        assertEquals(config.getMin(), ttlEngine.l1Ttl("oneHit"));
+        assertEquals(config.getMin(), ttlEngine.l1Ttl("unknown"));
+    }
+
+    @Test
+    void testFreshnessFollowsEntryAge() {
+        config.setStaleWhileRevalidate(Duration.ofSeconds(30));
+        config.setStaleIfError(Duration.ofMinutes(5));
+        long ttl = config.getMin().toNanos();
+
+        assertEquals(AdaptiveTTLEngine.Freshness.FRESH, ttlEngine.freshness("k", 0));
+        assertEquals(AdaptiveTTLEngine.Freshness.REFRESH, ttlEngine.freshness("k", (long) (ttl * 0.9)));
+        assertEquals(AdaptiveTTLEngine.Freshness.STALE, ttlEngine.freshness("k", ttl + 1));
+        assertEquals(AdaptiveTTLEngine.Freshness.EXPIRED, ttlEngine.freshness("k", ttl + Duration.ofSeconds(30).toNanos()));
+        assertTrue(ttlEngine.servableOnError("k", ttl + Duration.ofMinutes(4).toNanos()));
+        assertFalse(ttlEngine.servableOnError("k", ttl + Duration.ofMinutes(5).toNanos()));
+        // Entries stay in L1 as long as the longer staleness bound allows
+        assertEquals(config.getMin().plus(config.getStaleIfError()), ttlEngine.l1Lifetime("k"));
+    }
+
+    @Test
+    void testHotKeyTTLGrowsUpToMaximum() {
+        for (int i = 0; i < 20; i++) {
+            ttlEngine.recordAccess("warm");
+        }
+        Duration warmTtl = ttlEngine.l1Ttl("warm");
+        assertEquals(config.getBase(), warmTtl);
+
+        for (int i = 0; i < 10_000; i++) {
+            ttlEngine.recordAccess("hot");
+        }
+        assertEquals(config.getMax(), ttlEngine.l1Ttl("hot"));
+        assertEquals(Duration.ofMillis((long) (config.getMax().toMillis() * config.getRedisMultiplier())),
+                ttlEngine.redisTtl("hot"));
+    }
+
+    @Test
+    void testRateDecaysAcrossWindows() {
+        for (int i = 0; i < 40; i++) {
+            ttlEngine.recordAccess("fading");
+        }
+        assertEquals(20.0, ttlEngine.accessRate("fading"), 0.001);
+        ttlEngine.adjustTTL();
+        assertEquals(10.0, ttlEngine.accessRate("fading"), 0.001);
+        ttlEngine.adjustTTL();
+        assertEquals(5.0, ttlEngine.accessRate("fading"), 0.001);
+
+        // Enough idle windows and the key is forgotten entirely
+        for (int i = 0; i < 10; i++) {
+            ttlEngine.adjustTTL();
+        }
+        assertEquals(0, ttlEngine.frequency("fading"));
+    }
+
+    @Test
+    void testConcurrentAccessesAreNotLost() throws Exception {
+        int threads = 8;
+        int accessesPerThread = 10_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < accessesPerThread; i++) {
+                    ttlEngine.recordAccess("contended");
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * accessesPerThread, ttlEngine.frequency("contended"));
+    }
+
+    @Test
+    void testAdjustTTLBatchesRedisUpdates() {
+        config.setRedisBatchSize(2);
+        for (int i = 0; i < 5; i++) {
+            ttlEngine.recordAccess("key" + i);
+        }
+        ttlEngine.adjustTTL();
+        verify(redisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+
+        // Keys with no activity in the window are left alone
+        ttlEngine.adjustTTL();
+        verify(redisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testRenewalStopsAtLimitOfKeysPerWindow() {
+        config.setRedisBatchSize(2);
+        config.setRenewalLimit(3);
+        for (int i = 0; i < 5; i++) {
+            ttlEngine.recordAccess("key" + i);
+        }
+        ttlEngine.recordAccess("key0");
+        ttlEngine.recordAccess("key4");
+
+        // Keys past the limit are still counted, but only the first three are renewed
+        assertEquals(2, ttlEngine.frequency("key4"));
+        assertEquals(3, metricsCollector.getTtlRenewalsSkippedCount());
+        ttlEngine.adjustTTL();
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+
+        // The next window starts empty
+        ttlEngine.recordAccess("key4");
+        ttlEngine.adjustTTL();
+        verify(redisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+    }
+}
@@ -1,17 +1,51 @@
 package com.cachecraft.service;
 
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
 import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheConfigUpdate;
 import com.cachecraft.model.CacheEntry;
+import com.cachecraft.simulation.InMemoryRedisTemplate;
+import com.cachecraft.store.CircuitBreaker;
+import com.cachecraft.store.ConsistentHashRing;
+import com.cachecraft.store.RedisL2Store;
+import com.cachecraft.trace.AccessTrace;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,18 +57,39 @@ class CacheManagerServiceTest {
     @Mock
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Mock
+    private ReactiveStringRedisTemplate reactiveTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> reactiveValueOperations;
+
     @Mock
     private ValueOperations<String, Object> valueOperations;
 
     private MetricsCollector metricsCollector;
 
+    private CacheProperties properties;
+
+    private RedisL2Store l2Store;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(reactiveTemplate.opsForValue()).thenReturn(reactiveValueOperations);
         metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
-        cacheManagerService = new CacheManagerService(redisTemplate, metricsCollector);
-        cacheManagerService.init();
+        properties = new CacheProperties();
+        cacheManagerService = createService();
+    }
+
+    private CacheManagerService createService() {
+        l2Store = new RedisL2Store(redisTemplate, reactiveTemplate, properties, metricsCollector);
+        AdaptiveTTLEngine ttlEngine = new AdaptiveTTLEngine(l2Store, properties, metricsCollector);
+        NearCacheInvalidator invalidator = new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector);
+        CacheManagerService service = new CacheManagerService(l2Store, metricsCollector, ttlEngine, properties, invalidator,
+                ValueSerializer.raw(metricsCollector));
+        service.init();
+        return service;
     }
 
     @Test
@@ -67,6 +122,74 @@ class CacheManagerServiceTest {
         assertEquals(1, entry.getFrequencyCount());
     }
 
+    @Test
+    void testRepeatedHitsAreCounted() {
+        cacheManagerService.put("testKey", "testValue");
+        cacheManagerService.get("testKey");
+        cacheManagerService.get("testKey");
+
+        CacheEntry entry = cacheManagerService.get("testKey");
+        assertEquals(3, entry.getFrequencyCount());
+    }
+
+    @Test
+    void testOffHeapModeServesFromL1() {
+        properties.getL1().setMode(CacheProperties.L1Mode.OFF_HEAP);
+        properties.getL1().getOffHeap().setMaxMemory(DataSize.ofMegabytes(1));
+        properties.getL1().getOffHeap().setSlabSize(DataSize.ofKilobytes(64));
+        cacheManagerService = createService();
+
+        cacheManagerService.put("testKey", "testValue");
+        CacheEntry entry = cacheManagerService.get("testKey");
+        assertEquals("testValue", entry.getValue());
+        assertEquals(1, cacheManagerService.getCaffeineCacheSize());
+        verify(valueOperations, never()).get(redisKey("testKey"));
+    }
+
+    @Test
+    void testWriteBehindServesQueuedWritesAndDeletes() {
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        cacheManagerService = createService();
+        try {
+            cacheManagerService.put("testKey", "testValue");
+            verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+            verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+
+            assertEquals("testValue", cacheManagerService.get("testKey").getValue());
+
+            // A queued delete keeps reads away from the stale Redis copy
+            cacheManagerService.evict("testKey");
+            assertNull(cacheManagerService.get("testKey"));
+            verify(valueOperations, never()).get(redisKey("testKey"));
+        } finally {
+            cacheManagerService.shutdown();
+        }
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testPutSucceedsWhenRedisIsDownAndWriteBehindQueueIsFull() {
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setCapacity(1);
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        properties.getWriteBehind().setBackpressure(CacheProperties.Backpressure.CALLER_RUNS);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+        cacheManagerService = createService();
+        try {
+            cacheManagerService.put("queued", "1");
+            // The queue is full, so this one is written through on the caller's thread and fails
+            cacheManagerService.put("through", "2");
+            cacheManagerService.evict("other");
+
+            assertEquals("2", cacheManagerService.get("through").getValue());
+            assertEquals(2, metricsCollector.getWriteBehindDroppedCount());
+        } finally {
+            cacheManagerService.shutdown();
+        }
+    }
+
     @Test
     void testEvict() {
         // Test putting data and then evicting it
@@ -83,4 +206,622 @@ class CacheManagerServiceTest {
         // but our current implementation doesn't have a direct way to check
         // that the entry is gone from both caches without more complex mocking
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        // Hold the Redis lookup open until every other caller has joined it
+        int callers = 8;
+        when(valueOperations.get(redisKey("key1"))).thenAnswer(invocation -> {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (metricsCollector.getCoalescedLoadCount() < callers - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            return null;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CacheEntry>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cacheManagerService.get("key1")));
+            }
+            for (Future<CacheEntry> result : results) {
+                assertEquals("value1", result.get(10, TimeUnit.SECONDS).getValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(valueOperations, times(1)).get(redisKey("key1"));
+        assertEquals(1, metricsCollector.getLoadCount());
+        assertEquals(callers - 1, metricsCollector.getCoalescedLoadCount());
+    }
+
+    @Test
+    void testGetAllResolvesEachTierInOneCall() {
+        cacheManagerService.put("l1Key", "l1Value");
+        when(valueOperations.multiGet(List.of(redisKey("redisKey"), redisKey("key1"), redisKey("missing"))))
+                .thenReturn(Arrays.asList("redisValue", null, null));
+
+        Map<String, CacheEntry> entries = cacheManagerService.getAll(List.of("l1Key", "redisKey", "key1", "missing"));
+
+        assertEquals(List.of("l1Key", "redisKey", "key1"), new ArrayList<>(entries.keySet()));
+        assertEquals("l1Value", entries.get("l1Key").getValue());
+        assertEquals("redisValue", entries.get("redisKey").getValue());
+        assertEquals("value1", entries.get("key1").getValue());
+        verify(valueOperations, times(1)).multiGet(anyCollection());
+        verify(valueOperations, never()).get(anyString());
+
+        // The Redis and database results are now served from L1
+        cacheManagerService.getAll(List.of("redisKey", "key1"));
+        verify(valueOperations, times(1)).multiGet(anyCollection());
+    }
+
+    @Test
+    void testBatchesAboveTheLimitAreRejected() {
+        properties.getBatch().setMaxKeys(2);
+
+        assertThrows(IllegalArgumentException.class, () -> cacheManagerService.getAll(List.of("a", "b", "c")));
+        assertThrows(IllegalArgumentException.class, () -> cacheManagerService.putAll(Map.of("a", "1", "b", "2", "c", "3")));
+        verify(valueOperations, never()).multiGet(anyCollection());
+        assertEquals(0, cacheManagerService.getCaffeineCacheSize());
+
+        cacheManagerService.putAll(Map.of("a", "1", "b", "2"));
+        assertEquals(2, cacheManagerService.getAll(List.of("a", "b")).size());
+    }
+
+    @Test
+    void testPutAllStoresEveryValue() {
+        Map<String, String> values = new HashMap<>();
+        values.put("a", "1");
+        values.put("b", "2");
+        cacheManagerService.putAll(values);
+
+        assertEquals("1", cacheManagerService.get("a").getValue());
+        assertEquals("2", cacheManagerService.get("b").getValue());
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testGetAsyncResolvesEachTier() {
+        when(reactiveValueOperations.get(anyString())).thenReturn(Mono.empty());
+        when(reactiveValueOperations.get(redisKey("remote"))).thenReturn(Mono.just("fromRedis"));
+        when(reactiveValueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        CacheEntry remote = cacheManagerService.getAsync("remote").join();
+        assertEquals("fromRedis", remote.getValue());
+        assertEquals(1, metricsCollector.getL2HitCount());
+
+        // Now in L1
+        assertEquals(2, cacheManagerService.getAsync("remote").join().getFrequencyCount());
+        assertEquals(1, metricsCollector.getL1HitCount());
+
+        // Database values are written back through the reactive client
+        assertEquals("value1", cacheManagerService.getAsync("key1").join().getValue());
+        verify(reactiveValueOperations).set(eq(redisKey("key1")), eq("value1"), any(Duration.class));
+
+        assertNull(cacheManagerService.getAsync("missing").join());
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    void testAsyncRedisFailureFallsBackToDatabase() {
+        when(reactiveValueOperations.get(anyString())).thenReturn(Mono.error(new RuntimeException("connection reset")));
+        when(reactiveValueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        assertEquals("value2", cacheManagerService.getAsync("key2").join().getValue());
+        assertEquals(1, metricsCollector.getCacheMissCount());
+    }
+
+    @Test
+    void testPutAsyncWritesThroughReactiveClient() {
+        when(reactiveValueOperations.set(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        cacheManagerService.putAsync("testKey", "testValue").join();
+
+        verify(reactiveValueOperations).set(eq(redisKey("testKey")), eq("testValue"), any(Duration.class));
+        assertEquals("testValue", cacheManagerService.get("testKey").getValue());
+    }
+
+    @Test
+    void testOpenCircuitBreakerSkipsRedis() {
+        properties.getCircuitBreaker().setMinimumCalls(2);
+        properties.getCircuitBreaker().setSlidingWindowSize(2);
+        cacheManagerService = createService();
+        when(valueOperations.get(anyString())).thenThrow(new RuntimeException("connection refused"));
+        doThrow(new RuntimeException("connection refused"))
+                .when(valueOperations).set(anyString(), any(), any(Duration.class));
+
+        // The failed read and the failed write-back of the database value open the breaker
+        assertEquals("value1", cacheManagerService.get("key1").getValue());
+        assertEquals(CircuitBreaker.State.OPEN, l2Store.getBreakerState());
+
+        // While open, misses go straight to the database without touching Redis
+        assertEquals("value2", cacheManagerService.get("key2").getValue());
+        assertEquals("value3", cacheManagerService.get("key3").getValue());
+        verify(valueOperations, times(1)).get(anyString());
+        verify(valueOperations, times(1)).set(anyString(), any(), any(Duration.class));
+        assertTrue(metricsCollector.getRedisRejectedCount() > 0);
+    }
+
+    @Test
+    void testHitsAndMemoryAreCountedPerTier() throws InterruptedException {
+        when(valueOperations.get(redisKey("redisKey"))).thenReturn("redisValue");
+        assertEquals(0, metricsCollector.getMemoryUsage());
+
+        cacheManagerService.get("redisKey");
+        cacheManagerService.get("redisKey");
+        cacheManagerService.get("key1");
+
+        assertEquals(1, metricsCollector.getL1HitCount());
+        assertEquals(1, metricsCollector.getL2HitCount());
+        assertEquals(2, metricsCollector.getCacheHitCount());
+        assertEquals(1, metricsCollector.getCacheMissCount());
+        // Two entries of a few bytes each, plus per-entry overhead; Caffeine weighs them asynchronously
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metricsCollector.getMemoryUsage() <= 2 * "redisValue".length()) {
+            assertTrue(System.nanoTime() < deadline, "memory usage not updated in time");
+            Thread.sleep(10);
+        }
+        assertEquals(3, metricsCollector.getTierLatencyMillis().get("l1").size());
+    }
+
+    @Test
+    void testReconfigureKeepsWarmEntries() {
+        cacheManagerService.put("a", "1");
+        cacheManagerService.put("b", "2");
+
+        CacheConfigUpdate update = new CacheConfigUpdate();
+        update.setMaxMemory("32MB");
+        update.setTtlMax(Duration.ofHours(2));
+        cacheManagerService.reconfigure(update);
+
+        assertEquals(DataSize.ofMegabytes(32).toBytes(), cacheManagerService.getL1MaximumBytes());
+        assertEquals("1", cacheManagerService.get("a").getValue());
+        assertEquals("2", cacheManagerService.get("b").getValue());
+        verify(valueOperations, never()).get(anyString());
+        assertEquals(2, metricsCollector.getL1HitCount());
+    }
+
+    @Test
+    void testReconfiguredTtlAppliesToCachedEntries() throws InterruptedException {
+        cacheManagerService.put("a", "1");
+
+        CacheConfigUpdate update = new CacheConfigUpdate();
+        update.setTtlMin(Duration.ofMillis(1));
+        update.setTtlBase(Duration.ofMillis(1));
+        cacheManagerService.reconfigure(update);
+        Thread.sleep(20);
+
+        // The cold entry was re-timed to the new 1ms minimum and is gone from L1
+        cacheManagerService.get("a");
+        verify(valueOperations, times(1)).get(redisKey("a"));
+    }
+
+    @Test
+    void testRefreshAheadReloadsBeforeExpiry() throws InterruptedException {
+        properties.getTtl().setMin(Duration.ofSeconds(2));
+        properties.getTtl().setBase(Duration.ofSeconds(2));
+        properties.getTtl().setRefreshAhead(0.05);
+        cacheManagerService = createService();
+        cacheManagerService.put("a", "1");
+        when(valueOperations.get(redisKey("a"))).thenReturn("2");
+
+        Thread.sleep(150);
+        // Past the refresh-ahead point: served from L1 while it is reloaded
+        assertEquals("1", cacheManagerService.get("a").getValue());
+        verify(valueOperations, timeout(2000)).get(redisKey("a"));
+        awaitValue("a", "2");
+        assertTrue(metricsCollector.getRefreshCount() >= 1);
+        assertEquals(0, metricsCollector.getCacheMissCount());
+    }
+
+    @Test
+    void testStaleWhileRevalidateServesExpiredEntry() throws InterruptedException {
+        properties.getTtl().setMin(Duration.ofMillis(20));
+        properties.getTtl().setBase(Duration.ofMillis(20));
+        properties.getTtl().setRefreshAhead(0);
+        properties.getTtl().setStaleWhileRevalidate(Duration.ofSeconds(30));
+        cacheManagerService = createService();
+        cacheManagerService.put("a", "1");
+        when(valueOperations.get(redisKey("a"))).thenReturn("2");
+
+        Thread.sleep(50);
+        assertEquals("1", cacheManagerService.get("a").getValue());
+        assertEquals(1, metricsCollector.getStaleWhileRevalidateCount());
+        awaitValue("a", "2");
+    }
+
+    @Test
+    void testStaleIfErrorServesExpiredEntryWhileRedisFails() throws InterruptedException {
+        properties.getTtl().setMin(Duration.ofMillis(20));
+        properties.getTtl().setBase(Duration.ofMillis(20));
+        properties.getTtl().setStaleIfError(Duration.ofSeconds(30));
+        cacheManagerService = createService();
+        cacheManagerService.put("key1", "cached");
+        when(valueOperations.get(anyString())).thenThrow(new RuntimeException("connection refused"));
+
+        Thread.sleep(50);
+        // Served stale instead of reading through to the database
+        assertEquals("cached", cacheManagerService.get("key1").getValue());
+        assertEquals(1, metricsCollector.getStaleOnErrorCount());
+        assertEquals(0, metricsCollector.getCacheMissCount());
+    }
+
+    @Test
+    void testExpiredEntryIsReloadedWithoutStaleServing() throws InterruptedException {
+        properties.getTtl().setMin(Duration.ofMillis(20));
+        properties.getTtl().setBase(Duration.ofMillis(20));
+        properties.getTtl().setRefreshAhead(0);
+        cacheManagerService = createService();
+        cacheManagerService.put("a", "1");
+        when(valueOperations.get(redisKey("a"))).thenReturn("2");
+
+        Thread.sleep(50);
+        assertEquals("2", cacheManagerService.get("a").getValue());
+        assertEquals(0, metricsCollector.getStaleWhileRevalidateCount());
+    }
+
+    private void awaitValue(String key, String value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!value.equals(cacheManagerService.get(key).getValue())) {
+            assertTrue(System.nanoTime() < deadline, "value not refreshed in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testAbsentKeyIsCachedAsTombstone() {
+        assertNull(cacheManagerService.get("missing"));
+        assertNull(cacheManagerService.get("missing"));
+
+        // The second lookup stops at the L1 tombstone
+        verify(valueOperations, times(1)).get(redisKey("missing"));
+        verify(valueOperations).set(redisKey("missing"), RedisL2Store.TOMBSTONE, properties.getNegative().getTtl());
+        assertEquals(1, metricsCollector.getCacheMissCount());
+        assertEquals(1, metricsCollector.getNegativeHitCount());
+        assertTrue(cacheManagerService.getAll(List.of("missing")).isEmpty());
+
+        // A put replaces the tombstone, but cannot write one
+        assertThrows(IllegalArgumentException.class, () -> cacheManagerService.put("missing", RedisL2Store.TOMBSTONE));
+        cacheManagerService.put("missing", "found");
+        assertEquals("found", cacheManagerService.get("missing").getValue());
+    }
+
+    @Test
+    void testRedisTombstoneAnswersWithoutDatabase() {
+        when(valueOperations.get(redisKey("gone"))).thenReturn(RedisL2Store.TOMBSTONE);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(RedisL2Store.TOMBSTONE, "v"));
+
+        assertNull(cacheManagerService.get("gone"));
+        Map<String, CacheEntry> found = cacheManagerService.getAll(List.of("alsoGone", "present"));
+        assertEquals(Set.of("present"), found.keySet());
+
+        assertEquals(0, metricsCollector.getCacheMissCount());
+        assertEquals(2, metricsCollector.getNegativeHitCount());
+    }
+
+    @Test
+    void testNegativeCachingCanBeDisabled() {
+        properties.getNegative().setEnabled(false);
+        cacheManagerService = createService();
+
+        assertNull(cacheManagerService.get("missing"));
+        assertNull(cacheManagerService.get("missing"));
+        verify(valueOperations, times(2)).get(redisKey("missing"));
+        verify(valueOperations, never()).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void testTombstoneKeepsNegativeTtlWhenWindowCloses() {
+        AtomicLong now = new AtomicLong();
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate(now::get);
+        RedisL2Store store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        AdaptiveTTLEngine engine = new AdaptiveTTLEngine(store, properties, metricsCollector);
+        CacheManagerService service = new CacheManagerService(store, metricsCollector, engine, properties,
+                new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector),
+                ValueSerializer.raw(metricsCollector));
+        service.init();
+        assertNull(service.get("missing"));
+        assertEquals("value1", service.get("key1").getValue());
+
+        // Renewal covers the value read in the window but leaves the tombstone on the negative TTL
+        engine.adjustTTL();
+        now.addAndGet(properties.getNegative().getTtl().plusSeconds(1).toNanos());
+        assertNull(redis.opsForValue().get(redisKey("missing")));
+        assertEquals("value1", redis.opsForValue().get(redisKey("key1")));
+    }
+
+    @Test
+    void testBloomFilterRejectsUnknownKeys() {
+        properties.getNegative().getBloomFilter().setEnabled(true);
+        cacheManagerService = createService();
+
+        assertNull(cacheManagerService.get("random"));
+        assertTrue(cacheManagerService.getAll(List.of("random2", "random3")).isEmpty());
+        verify(valueOperations, never()).get(anyString());
+        verify(valueOperations, never()).multiGet(anyList());
+        assertEquals(3, metricsCollector.getBloomRejectionCount());
+
+        // Keys from the backing store and from puts pass
+        assertEquals("value1", cacheManagerService.get("key1").getValue());
+        cacheManagerService.put("new", "v");
+        cacheManagerService.evict("new");
+        when(valueOperations.get(redisKey("new"))).thenReturn("v");
+        assertEquals("v", cacheManagerService.get("new").getValue());
+        assertEquals(0, metricsCollector.getBloomFalsePositiveCount());
+    }
+
+    @Test
+    void testSnapshotRestoresHottestEntriesOnRestart(@TempDir Path dir) {
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setPath(dir.resolve("l1.snapshot"));
+        properties.getSnapshot().setMaxEntries(2);
+        cacheManagerService = createService();
+        cacheManagerService.put("hot", "h");
+        cacheManagerService.put("warm", "w");
+        cacheManagerService.put("cold", "c");
+        for (int i = 0; i < 5; i++) {
+            cacheManagerService.get("hot");
+            cacheManagerService.get("warm");
+        }
+        cacheManagerService.get("missing");
+        cacheManagerService.shutdown();
+
+        // A new node over the same file serves the hottest entries from L1 straight away
+        CacheManagerService restarted = createService();
+        clearInvocations((Object) valueOperations);
+        assertEquals("h", restarted.get("hot").getValue());
+        assertEquals("w", restarted.get("warm").getValue());
+        verify(valueOperations, never()).get(anyString());
+        assertTrue(restarted.get("hot").getFrequencyCount() > 5);
+
+        // Only the two hottest were kept
+        restarted.get("cold");
+        verify(valueOperations).get(redisKey("cold"));
+        restarted.shutdown();
+    }
+
+    @Test
+    void testAccessLogRecordsEveryOperation(@TempDir Path dir) throws IOException {
+        properties.getAccessLog().setEnabled(true);
+        properties.getAccessLog().setPath(dir.resolve("access.trace"));
+        cacheManagerService = createService();
+        cacheManagerService.get("key1");
+        cacheManagerService.get("key1");
+        cacheManagerService.get("missing");
+        cacheManagerService.put("k", "four");
+        cacheManagerService.evict("k");
+        cacheManagerService.clearAll();
+        cacheManagerService.shutdown();
+
+        List<AccessTrace.Event> events = new ArrayList<>();
+        AccessTrace.read(dir.resolve("access.trace"), events::add);
+        assertEquals(List.of(AccessTrace.Operation.GET, AccessTrace.Operation.GET, AccessTrace.Operation.GET,
+                        AccessTrace.Operation.PUT, AccessTrace.Operation.EVICT, AccessTrace.Operation.CLEAR),
+                events.stream().map(AccessTrace.Event::operation).toList());
+        assertEquals(ConsistentHashRing.hash("key1"), events.get(0).keyHash());
+        assertEquals(List.of(6, 6, -1, 4), events.stream().limit(4).map(AccessTrace.Event::valueLength).toList());
+        assertEquals(6, metricsCollector.getAccessLogWrittenCount());
+    }
+
+    @Test
+    void testHotKeyIsPinnedAndServedPastItsTtl() {
+        // 20 accesses in an interval of 10s decayed by half settle at a rate of 1/s
+        properties.getHotKeys().setPinRate(1);
+        AtomicLong clock = new AtomicLong(CacheEntry.now());
+        l2Store = new RedisL2Store(redisTemplate, reactiveTemplate, properties, metricsCollector);
+        AdaptiveTTLEngine ttlEngine = new AdaptiveTTLEngine(l2Store, properties, metricsCollector);
+        NearCacheInvalidator invalidator = new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector);
+        cacheManagerService = new CacheManagerService(CacheNamespaces.DEFAULT, l2Store, metricsCollector, ttlEngine,
+                properties, invalidator, ValueSerializer.raw(metricsCollector),
+                new HashMap<>(Map.of("hot", "h", "cold", "c")), clock::get);
+        cacheManagerService.init();
+        for (int i = 0; i < 30; i++) {
+            cacheManagerService.get("hot");
+        }
+        cacheManagerService.get("cold");
+
+        cacheManagerService.updateHotKeys();
+        assertTrue(cacheManagerService.isPinned("hot"));
+        assertFalse(cacheManagerService.isPinned("cold"));
+        assertEquals(1, cacheManagerService.getPinnedKeyCount());
+        Map<String, Object> hottest = cacheManagerService.getHotKeys().get(0);
+        assertEquals("hot", hottest.get("key"));
+        assertEquals(true, hottest.get("pinned"));
+
+        // A day later the pinned key is still answered from L1 while it reloads in the background;
+        // the unpinned one expired and is looked up again
+        clock.addAndGet(TimeUnit.DAYS.toNanos(1));
+        double l1Hits = metricsCollector.getL1HitCount();
+        assertEquals("h", cacheManagerService.get("hot").getValue());
+        assertEquals("c", cacheManagerService.get("cold").getValue());
+        assertEquals(l1Hits + 1, metricsCollector.getL1HitCount());
+
+        // Once the key cools down it is handed back to the bounded, expiring L1
+        for (int i = 0; i < 5; i++) {
+            cacheManagerService.updateHotKeys();
+        }
+        assertFalse(cacheManagerService.isPinned("hot"));
+    }
+
+    @Test
+    void testStreamedValueIsServedUntilEvicted() throws IOException {
+        byte[] bytes = "streamed ".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+        ChunkedValue stored = cacheManagerService.putStream("key1", new ByteArrayInputStream(bytes));
+        assertEquals(bytes.length, stored.getLength());
+        assertEquals(4, stored.getChunkCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedValue value = cacheManagerService.getStream("key1");
+        value.writeTo(out, 0, value.getLength());
+        assertArrayEquals(bytes, out.toByteArray());
+
+        // Evicting the key drops the streamed value; the regular one is served as bytes again
+        cacheManagerService.evict("key1");
+        out.reset();
+        value = cacheManagerService.getStream("key1");
+        value.writeTo(out, 0, value.getLength());
+        assertEquals("value1", out.toString(StandardCharsets.UTF_8));
+        assertNull(cacheManagerService.getStream("nonexistent"));
+    }
+
+    @Test
+    void testEvictByTagEvictsTaggedKeysFromBothTiersOnAnyNode() {
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        CacheManagerService writer = createService(redis);
+        CacheManagerService reader = createService(redis);
+        writer.put("user:1:profile", "p", List.of("user:1"));
+        writer.put("user:1:orders", "o", List.of("user:1", "orders"));
+        writer.put("user:2:profile", "q", List.of("user:2"));
+        assertEquals("p", reader.get("user:1:profile").getValue());
+        assertEquals(3, writer.getTagCount());
+
+        // The reader never saw the tags, Redis did
+        assertEquals(2, reader.evictByTag("user:1"));
+        assertNull(redis.opsForValue().get(redisKey("user:1:profile")));
+        assertNull(redis.opsForValue().get(redisKey("user:1:orders")));
+        assertEquals("q", redis.opsForValue().get(redisKey("user:2:profile")));
+        assertEquals(List.of(redisKey("\u0000tag:orders"), redisKey("\u0000tag:user:2")), tagSets(redis));
+        assertNull(reader.get("user:1:profile"));
+        assertEquals(2, metricsCollector.getCacheEvictionCount());
+        assertEquals(1, metricsCollector.getTagEvictionCount());
+
+        // Other tags of the evicted keys list them until a cleanup finds them gone
+        reader.cleanUpTags();
+        assertEquals(List.of(redisKey("\u0000tag:user:2")), tagSets(redis));
+        assertEquals(0, reader.evictByTag("orders"));
+        assertThrows(IllegalArgumentException.class, () -> writer.put("k", "v", List.of(" ")));
+    }
+
+    @Test
+    void testClientKeysCannotReachTagIndexSets() {
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        CacheManagerService service = createService(redis);
+        service.put("a", "1", List.of("orders"));
+        String tagSet = "\u0000tag:orders";
+
+        assertThrows(InvalidKeyException.class, () -> service.put(tagSet, "x"));
+        assertThrows(InvalidKeyException.class, () -> service.putAll(Map.of(tagSet, "x")));
+        assertThrows(InvalidKeyException.class, () -> service.putAsync(tagSet, "x"));
+        assertThrows(InvalidKeyException.class, () -> service.get(tagSet));
+        assertThrows(InvalidKeyException.class, () -> service.getAll(List.of("a", tagSet)));
+        assertThrows(InvalidKeyException.class, () -> service.evict(tagSet));
+
+        // The set is still one, so the tag still evicts its key
+        assertEquals(List.of(redisKey(tagSet)), tagSets(redis));
+        assertEquals(1, service.evictByTag("orders"));
+        assertNull(redis.opsForValue().get(redisKey("a")));
+    }
+
+    @Test
+    void testTagIndexesDropKeysThatAreGone() {
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        CacheManagerService service = createService(redis);
+        service.put("a", "1", List.of("t"));
+        service.put("b", "2", List.of("t"));
+        redis.delete(redisKey("a"));
+
+        // Cleanup keeps the tag for the key still in Redis and renews the set's TTL
+        service.cleanUpTags();
+        assertEquals(List.of(redisKey("\u0000tag:t")), tagSets(redis));
+        service.evict("b");
+        service.cleanUpTags();
+        assertEquals(List.of(), tagSets(redis));
+        assertEquals(1, service.getTagCount());
+
+        // A key that has left L1 leaves the local index
+        service.clearAll();
+        service.put("c", "3", List.of("u"));
+        assertEquals(1, service.getTagCount());
+        service.reconfigure(configUpdate("1B"));
+        service.cleanUpTags();
+        assertEquals(0, service.getTagCount());
+    }
+
+    @Test
+    void testWriteBehindTagsKeysOnceFlushed() {
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        CacheManagerService service = createService(redis);
+        try {
+            service.put("a", "1", List.of("t"));
+            assertEquals(List.of(), tagSets(redis));
+        } finally {
+            service.shutdown();
+        }
+        assertEquals("1", redis.opsForValue().get(redisKey("a")));
+        assertEquals(List.of(redisKey("\u0000tag:t")), tagSets(redis));
+    }
+
+    @Test
+    void testEvictDropsStreamedValueWithTheKey() throws IOException {
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        CacheManagerService service = createService(redis);
+        service.putStream("a", new ByteArrayInputStream(new byte[10]));
+        service.evict("a");
+        assertNull(redis.opsForValue().get(redisKey(ChunkedValues.manifestKey("a"))));
+        assertNull(service.getStream("a"));
+
+        // With write-behind, the manifest is deleted by the flush rather than on the caller's thread
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        CacheManagerService queued = createService(redis);
+        try {
+            queued.putStream("b", new ByteArrayInputStream(new byte[10]));
+            queued.evict("b");
+            assertNotNull(redis.opsForValue().get(redisKey(ChunkedValues.manifestKey("b"))));
+            assertNull(queued.getStream("b"));
+        } finally {
+            queued.shutdown();
+        }
+        assertNull(redis.opsForValue().get(redisKey(ChunkedValues.manifestKey("b"))));
+    }
+
+    @Test
+    void testInvalidReconfigurationChangesNothing() {
+        long maxBytes = cacheManagerService.getL1MaximumBytes();
+        CacheConfigUpdate update = new CacheConfigUpdate();
+        update.setMaxMemory("1MB");
+        update.setTtlMin(Duration.ofHours(2));
+
+        // min above the 1h max
+        assertThrows(IllegalArgumentException.class, () -> cacheManagerService.reconfigure(update));
+        assertEquals(maxBytes, cacheManagerService.getL1MaximumBytes());
+    }
+
+    private CacheManagerService createService(InMemoryRedisTemplate redis) {
+        RedisL2Store store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        CacheManagerService service = new CacheManagerService(store, metricsCollector,
+                new AdaptiveTTLEngine(store, properties, metricsCollector), properties,
+                new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector),
+                ValueSerializer.raw(metricsCollector));
+        service.init();
+        return service;
+    }
+
+    private static CacheConfigUpdate configUpdate(String maxMemory) {
+        CacheConfigUpdate update = new CacheConfigUpdate();
+        update.setMaxMemory(maxMemory);
+        return update;
+    }
+
+    // Redis keys of the tag index sets
+    private static List<String> tagSets(InMemoryRedisTemplate redis) {
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redis.scan(ScanOptions.scanOptions().match(redisKey("\u0000tag:*")).build())) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        }
+        keys.sort(null);
+        return keys;
+    }
+
+    // Where the cache keeps a key in Redis before any clear
+    private static String redisKey(String key) {
+        return "cachecraft:0:" + key;
+    }
+}
@@ -0,0 +1,185 @@
+package com.cachecraft.service;
+
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheNamespacesTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+    private MetricsCollector metricsCollector;
+
+    private CacheProperties properties;
+
+    private CacheNamespaces namespaces;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        scheduler.initialize();
+        metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        properties = new CacheProperties();
+
+        CacheProperties.Namespace sessions = new CacheProperties.Namespace();
+        sessions.setMaxMemory(DataSize.ofMegabytes(1));
+        CacheProperties.Ttl ttl = new CacheProperties.Ttl();
+        ttl.setBase(Duration.ofMinutes(2));
+        ttl.setMin(Duration.ofSeconds(30));
+        ttl.setMax(Duration.ofMinutes(10));
+        sessions.setTtl(ttl);
+        properties.getNamespaces().put("sessions", sessions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (namespaces != null) {
+            namespaces.shutdown();
+        }
+        scheduler.shutdown();
+    }
+
+    private CacheNamespaces createNamespaces() {
+        RedisL2Store l2Store = new RedisL2Store(redisTemplate, mock(ReactiveStringRedisTemplate.class), properties,
+                metricsCollector);
+        NearCacheInvalidator invalidator = new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector);
+        ValueSerializer valueSerializer = ValueSerializer.raw(metricsCollector);
+        CacheManagerService defaultNamespace = new CacheManagerService(l2Store, metricsCollector,
+                new AdaptiveTTLEngine(l2Store, properties, metricsCollector), properties, invalidator, valueSerializer);
+        defaultNamespace.init();
+        CacheNamespaces created = new CacheNamespaces(defaultNamespace, l2Store, invalidator, properties,
+                metricsCollector, valueSerializer, scheduler);
+        created.init();
+        return created;
+    }
+
+    @Test
+    void testNamespacesHaveTheirOwnEntriesSizingAndMetrics() {
+        namespaces = createNamespaces();
+        CacheManagerService defaultNamespace = namespaces.get(CacheNamespaces.DEFAULT);
+        CacheManagerService sessions = namespaces.get("sessions");
+
+        defaultNamespace.put("k", "shared");
+        sessions.put("k", "session");
+        verify(valueOperations).set(eq("cachecraft:0:k"), eq("shared"), any(Duration.class));
+        verify(valueOperations).set(eq("cachecraft:sessions:0:k"), eq("session"), any(Duration.class));
+
+        assertEquals("shared", defaultNamespace.get("k").getValue());
+        assertEquals("session", sessions.get("k").getValue());
+        assertEquals(DataSize.ofMegabytes(64).toBytes(), defaultNamespace.getL1MaximumBytes());
+        assertEquals(DataSize.ofMegabytes(1).toBytes(), sessions.getL1MaximumBytes());
+
+        // A cold key gets each namespace's own minimum TTL in Redis
+        verify(valueOperations).set("cachecraft:0:k", "shared", Duration.ofMinutes(3));
+        verify(valueOperations).set("cachecraft:sessions:0:k", "session", Duration.ofSeconds(90));
+
+        sessions.get("missing");
+        assertEquals(1.0, metricsCollector.getNamespaceStats("sessions").get("l1Hits"));
+        assertEquals(1.0, metricsCollector.getNamespaceStats("sessions").get("misses"));
+        assertEquals(0.0, metricsCollector.getNamespaceStats(CacheNamespaces.DEFAULT).get("misses"));
+        assertEquals(2.0, metricsCollector.getL1HitCount());
+        assertEquals(metricsCollector.getMemoryUsage(),
+                (long) metricsCollector.getNamespaceStats(CacheNamespaces.DEFAULT).get("memoryUsage")
+                        + (long) metricsCollector.getNamespaceStats("sessions").get("memoryUsage"));
+    }
+
+    @Test
+    void testClearingOneNamespaceLeavesTheOthers() {
+        byte[] sessionsGeneration = "cachecraft:sessions:generation".getBytes(StandardCharsets.UTF_8);
+        when(stringCommands.incr(sessionsGeneration)).thenReturn(1L);
+        namespaces = createNamespaces();
+        CacheManagerService defaultNamespace = namespaces.get(CacheNamespaces.DEFAULT);
+        CacheManagerService sessions = namespaces.get("sessions");
+        defaultNamespace.put("k", "shared");
+        sessions.put("k", "session");
+
+        sessions.clearAll();
+
+        verify(stringCommands).incr(sessionsGeneration);
+        verify(stringCommands, never()).incr("cachecraft:generation".getBytes(StandardCharsets.UTF_8));
+        assertNull(sessions.get("k"));
+        verify(valueOperations).get("cachecraft:sessions:1:k");
+        assertEquals("shared", defaultNamespace.get("k").getValue());
+        verify(valueOperations, never()).get("cachecraft:0:k");
+    }
+
+    @Test
+    void testInvalidNamespacesAreRejected() {
+        properties.getNamespaces().put("async", new CacheProperties.Namespace());
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+
+        properties.getNamespaces().remove("async");
+        properties.getNamespaces().put("2fa", new CacheProperties.Namespace());
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+
+        properties.getNamespaces().remove("2fa");
+        CacheProperties.Namespace clash = new CacheProperties.Namespace();
+        clash.setKeyPrefix("cachecraft");
+        properties.getNamespaces().put("orders", clash);
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+    }
+
+    @Test
+    void testPrefixesWithinAnotherKeyspaceAreRejected() {
+        // Keys under cachecraft:0 would be unlinked with the default namespace's generation 0
+        CacheProperties.Namespace orders = new CacheProperties.Namespace();
+        orders.setKeyPrefix("cachecraft:0");
+        properties.getNamespaces().put("orders", orders);
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+
+        // Nor may a namespace's prefix hold another's generations
+        orders.setKeyPrefix("tenant");
+        CacheProperties.Namespace nested = new CacheProperties.Namespace();
+        nested.setKeyPrefix("tenant:12:orders");
+        properties.getNamespaces().put("nested", nested);
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+
+        nested.setKeyPrefix("cachecraft*");
+        assertThrows(IllegalArgumentException.class, this::createNamespaces);
+
+        // A prefix under another's that cannot pass for a generation is its own keyspace
+        nested.setKeyPrefix("tenant:orders");
+        namespaces = createNamespaces();
+        assertNotNull(namespaces.get("nested"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.cachecraft.service;
+
+import com.cachecraft.coherence.InvalidationBus;
+import com.cachecraft.coherence.NearCacheInvalidator;
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheEntry;
+import com.cachecraft.simulation.InMemoryRedisTemplate;
+import com.cachecraft.store.OnHeapL1Store;
+import com.cachecraft.store.RedisL2Store;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ChunkedValuesTest {
+
+    private final InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+
+    private final MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+
+    private final CacheProperties properties = new CacheProperties();
+
+    private OnHeapL1Store l1;
+
+    private ChunkedValues chunkedValues;
+
+    @BeforeEach
+    void setUp() {
+        properties.getChunking().setChunkSize(DataSize.ofKilobytes(64));
+        properties.getChunking().setMaxL1Value(DataSize.ofMegabytes(1));
+        properties.getChunking().setMaxValue(DataSize.ofMegabytes(4));
+        RedisL2Store l2Store = new RedisL2Store(redis, redis.reactive(), properties, metricsCollector);
+        AdaptiveTTLEngine ttlEngine = new AdaptiveTTLEngine(l2Store, properties, metricsCollector);
+        l1 = new OnHeapL1Store(16, DataSize.ofMegabytes(16).toBytes(), ttlEngine.expiry(), cause -> { });
+        NearCacheInvalidator invalidator = new NearCacheInvalidator(mock(InvalidationBus.class), properties, metricsCollector);
+        chunkedValues = new ChunkedValues(l1, l2Store, invalidator, metricsCollector, properties.getChunking(),
+                CacheEntry::now);
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] read(ChunkedValue value, long from, long to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        value.writeTo(out, from, to);
+        return out.toByteArray();
+    }
+
+    // Redis keys of the key's chunks and manifest
+    private List<String> storedKeys(String key) {
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redis.scan(ScanOptions.scanOptions().match("cachecraft:0:" + key + "\u0000*").build())) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void testValueRoundTripsWholeAndByRange() throws IOException {
+        // Every byte value, including ones that are not valid UTF-8
+        byte[] bytes = randomBytes(300_000, 1);
+        ChunkedValue written = chunkedValues.write("blob", new ByteArrayInputStream(bytes));
+        assertEquals(300_000, written.getLength());
+        assertEquals(5, written.getChunkCount());
+        assertEquals(6, storedKeys("blob").size());
+
+        ChunkedValue value = chunkedValues.read("blob");
+        assertArrayEquals(bytes, read(value, 0, bytes.length));
+        // Across a chunk boundary, and the tail of the last chunk
+        assertArrayEquals(Arrays.copyOfRange(bytes, 65_000, 140_000), read(value, 65_000, 140_000));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 299_990, 300_000), read(value, 299_990, 300_000));
+        assertEquals(0, read(value, 10, 10).length);
+        assertEquals(0, metricsCollector.getChunkReadCounts().get("redis"));
+
+        // With L1 gone the chunks come from Redis and are cached again
+        l1.invalidateAll();
+        assertArrayEquals(bytes, read(chunkedValues.read("blob"), 0, bytes.length));
+        assertEquals(5, metricsCollector.getChunkReadCounts().get("redis"));
+        assertArrayEquals(bytes, read(chunkedValues.read("blob"), 0, bytes.length));
+        assertEquals(5, metricsCollector.getChunkReadCounts().get("redis"));
+
+        assertNull(chunkedValues.read("absent"));
+        assertEquals(0, chunkedValues.write("empty", new ByteArrayInputStream(new byte[0])).getLength());
+        assertEquals(0, read(chunkedValues.read("empty"), 0, 0).length);
+    }
+
+    @Test
+    void testLargeValueStaysOutOfL1AndOverwriteDropsOldChunks() throws IOException {
+        byte[] first = randomBytes(2_000_000, 1);
+        chunkedValues.write("big", new ByteArrayInputStream(first));
+        // Only the manifest is in L1
+        assertEquals(1, l1.estimatedSize());
+        assertArrayEquals(first, read(chunkedValues.read("big"), 0, first.length));
+        assertEquals(31, metricsCollector.getChunkReadCounts().get("redis"));
+
+        byte[] second = randomBytes(100_000, 2);
+        chunkedValues.write("big", new ByteArrayInputStream(second));
+        assertEquals(3, storedKeys("big").size());
+        assertArrayEquals(second, read(chunkedValues.read("big"), 0, second.length));
+
+        chunkedValues.evict("big");
+        assertNull(chunkedValues.read("big"));
+    }
+
+    @Test
+    void testOversizedUploadLeavesNothingBehind() {
+        byte[] bytes = randomBytes(5_000_000, 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> chunkedValues.write("huge", new ByteArrayInputStream(bytes)));
+        assertTrue(storedKeys("huge").isEmpty());
+        assertEquals(0, l1.estimatedSize());
+        assertNull(chunkedValues.read("huge"));
+    }
+
+    @Test
+    void testMissingChunkFailsReadAndDropsValue() throws IOException {
+        byte[] bytes = randomBytes(200_000, 1);
+        chunkedValues.write("blob", new ByteArrayInputStream(bytes));
+        l1.invalidateAll();
+        // As if Redis had evicted one chunk under memory pressure
+        String chunk = storedKeys("blob").stream().filter(key -> key.endsWith(":2")).findFirst().orElseThrow();
+        redis.delete(chunk);
+
+        ChunkedValue value = chunkedValues.read("blob");
+        assertArrayEquals(Arrays.copyOf(bytes, 1000), read(value, 0, 1000));
+        assertThrows(IOException.class, () -> read(value, 0, bytes.length));
+        assertEquals(1, metricsCollector.getChunkReadCounts().get("missing"));
+        assertNull(chunkedValues.read("blob"));
+    }
+
+    @Test
+    void testUnreadableManifestReadsAsNoValue() {
+        String manifestKey = ChunkedValues.manifestKey("a");
+        l1.put(manifestKey, new CacheEntry(manifestKey, "x", 0, 0));
+        redis.opsForValue().set("cachecraft:0:" + manifestKey, "1:2");
+
+        assertNull(chunkedValues.read("a"));
+        assertNull(l1.getIfPresent(manifestKey));
+        chunkedValues.invalidateLocal("a");
+        redis.opsForValue().set("cachecraft:0:" + manifestKey, "v:10:0:0");
+        assertNull(chunkedValues.read("a"));
+    }
+}
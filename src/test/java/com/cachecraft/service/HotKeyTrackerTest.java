@@ -0,0 +1,44 @@
+package com.cachecraft.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest {
+
+    @Test
+    void testHeavyHittersAreFoundAmongManyKeys() {
+        // Any key with more than 100,000 / 100 accesses is guaranteed a counter
+        HotKeyTracker tracker = new HotKeyTracker(100);
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            // One access in five goes to one of three hot keys, the rest spread over 50,000 keys
+            tracker.record(random.nextInt(5) == 0 ? "hot" + random.nextInt(3) : "cold" + random.nextInt(50_000));
+        }
+
+        List<HotKeyTracker.HotKey> top = tracker.top();
+        assertEquals(100, top.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(top.get(i).key().startsWith("hot"), top.toString());
+            // Counts never undercount, and the guaranteed part bounds the true count from below
+            assertTrue(top.get(i).count() >= 6_000 && top.get(i).guaranteedCount() <= 7_300, top.get(i).toString());
+        }
+        assertTrue(top.get(3).count() < 2_000, top.get(3).toString());
+    }
+
+    @Test
+    void testAgingDecaysCountsAndDropsCooledKeys() {
+        HotKeyTracker tracker = new HotKeyTracker(4);
+        for (int i = 0; i < 100; i++) {
+            tracker.record("a");
+        }
+        tracker.record("b");
+
+        tracker.age(0.5);
+        assertEquals(List.of(new HotKeyTracker.HotKey("a", 50, 0)), tracker.top());
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(0));
+    }
+}
@@ -0,0 +1,43 @@
+package com.cachecraft.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagIndexTest {
+
+    @Test
+    void testRemovingTagDropsItsKeysFromEveryTag() {
+        TagIndex index = new TagIndex();
+        index.tag("a", List.of("t1", "t2"));
+        index.tag("b", List.of("t1"));
+        index.tag("c", List.of("t2"));
+        // Tags accumulate
+        index.tag("b", List.of("t3"));
+        assertEquals(Set.of("t1", "t3"), index.tagsOf("b"));
+
+        assertEquals(Set.of("a", "b"), index.removeTag("t1"));
+        assertEquals(Set.of(), index.tagsOf("a"));
+        assertEquals(Set.of(), index.removeTag("t3"));
+        assertEquals(Set.of("c"), index.removeTag("t2"));
+        assertEquals(0, index.tagCount());
+        assertEquals(0, index.keyCount());
+    }
+
+    @Test
+    void testUntagAndRetainDropEmptyTags() {
+        TagIndex index = new TagIndex();
+        index.tag("a", List.of("t1"));
+        index.tag("b", List.of("t1", "t2"));
+        index.untag("a");
+        assertEquals(Set.of("t1", "t2"), index.tagsOf("b"));
+        assertEquals(2, index.tagCount());
+
+        assertEquals(1, index.retainAll(key -> !key.equals("b")));
+        assertEquals(0, index.tagCount());
+        assertEquals(0, index.keyCount());
+    }
+}
@@ -0,0 +1,164 @@
+package com.cachecraft.service;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    private CacheProperties.WriteBehind config;
+
+    private MetricsCollector metricsCollector;
+
+    // Stand-in for Redis: the latest value per key plus every batch flushed
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        config = new CacheProperties.WriteBehind();
+        config.setFlushInterval(Duration.ofMillis(20));
+        metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    private WriteBehindQueue.Flusher recordingFlusher() {
+        return (writes, deletes) -> {
+            batchSizes.add(writes.size() + deletes.size());
+            redis.putAll(writes);
+            deletes.forEach(redis::remove);
+        };
+    }
+
+    @Test
+    void testRepeatedWritesAreCoalesced() {
+        config.setFlushInterval(Duration.ofSeconds(10));
+        queue = new WriteBehindQueue(recordingFlusher(), config, metricsCollector);
+        for (int i = 0; i < 100; i++) {
+            queue.write("hot", "v" + i);
+        }
+        assertEquals(1, queue.depth());
+        assertEquals("v99", queue.lookup("hot").value());
+        assertEquals(99, metricsCollector.getWriteBehindCoalescedCount());
+
+        queue.close();
+        assertEquals("v99", redis.get("hot"));
+        assertEquals(List.of(1), batchSizes);
+    }
+
+    @Test
+    void testFlushesInBatchesAndOnClose() {
+        config.setBatchSize(10);
+        config.setFlushInterval(Duration.ofSeconds(10));
+        queue = new WriteBehindQueue(recordingFlusher(), config, metricsCollector);
+        for (int i = 0; i < 25; i++) {
+            queue.write("key" + i, "value" + i);
+        }
+        queue.delete("key0");
+        queue.close();
+
+        assertEquals(24, redis.size());
+        assertFalse(redis.containsKey("key0"));
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    void testDiscardPolicyDropsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        config.setCapacity(2);
+        config.setBatchSize(1);
+        config.setBackpressure(CacheProperties.Backpressure.DISCARD);
+        queue = new WriteBehindQueue((writes, deletes) -> await(release), config, metricsCollector);
+
+        // The first write is taken by the (stuck) flusher, the next two fill the queue
+        queue.write("a", "1");
+        waitUntil(() -> queue.depth() == 0);
+        queue.write("b", "2");
+        queue.write("c", "3");
+        queue.write("d", "4");
+
+        assertEquals(1, metricsCollector.getWriteBehindDroppedCount());
+        assertNull(queue.lookup("d"));
+        release.countDown();
+    }
+
+    @Test
+    void testCallerRunsPolicyWritesThroughWhenFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger callerWrites = new AtomicInteger();
+        config.setCapacity(1);
+        config.setBatchSize(1);
+        config.setBackpressure(CacheProperties.Backpressure.CALLER_RUNS);
+        String flusherThread = "cachecraft-write-behind";
+        queue = new WriteBehindQueue((writes, deletes) -> {
+            if (Thread.currentThread().getName().equals(flusherThread)) {
+                await(release);
+            } else {
+                callerWrites.incrementAndGet();
+            }
+        }, config, metricsCollector);
+
+        queue.write("a", "1");
+        waitUntil(() -> queue.depth() == 0);
+        queue.write("b", "2");
+        queue.write("c", "3");
+
+        assertEquals(1, callerWrites.get());
+        release.countDown();
+    }
+
+    @Test
+    void testFailedBatchIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        queue = new WriteBehindQueue((writes, deletes) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Redis down");
+            }
+            redis.putAll(writes);
+        }, config, metricsCollector);
+
+        queue.write("key", "value");
+        waitUntil(() -> redis.containsKey("key"));
+        assertTrue(attempts.get() >= 2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for condition");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.cachecraft.simulation;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisSetCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-process stand-in for Redis, so the benchmarks and the simulator run
+ * offline and measure the cache's own behaviour rather than the network.
+ * Supports exactly the commands {@code RedisL2Store} issues (GET, SET, MGET,
+ * DEL, INCR, EXISTS, SADD, SREM, SSCAN, pipelined SET/DEL/PEXPIRE/EXISTS/SADD,
+ * SCAN, UNLINK and PUBLISH). Values are kept as bytes, so raw values read back
+ * exactly as written. TTLs expire
+ * keys on the clock the template was created with, so a simulation on simulated
+ * time sees Redis expire keys when a real one would. {@link #reactive()} serves
+ * GET and SET from the same data for the non-blocking path.
+ *
+ * <p>A simulated round-trip latency can be set: blocking GET and SET park the
+ * calling thread for it, reactive ones complete after it on a timer, the way a
+ * reply arriving on the Redis client's event loop would.
+ */
+public class InMemoryRedisTemplate extends RedisTemplate<String, Object> {
+
+    // Where RedisL2Store keeps a cache key with the default prefix, in generation 0
+    private static final String KEY_PREFIX = "cachecraft:0:";
+
+    // A value is the bytes of a string or the members of a set
+    private record Stored(Object value, long expiresAtNanos) {
+    }
+
+    private final Map<String, Stored> data = new ConcurrentHashMap<>();
+
+    // Current time in nanos, only ever compared with itself
+    private final LongSupplier clock;
+
+    private volatile Duration latency = Duration.ZERO;
+
+    private final ValueOperations<String, Object> valueOperations = proxy(ValueOperations.class, (method, args) -> switch (method) {
+        case "get" -> {
+            roundTrip();
+            yield readString((String) args[0]);
+        }
+        case "set" -> {
+            roundTrip();
+            writeString((String) args[0], (String) args[1], args.length > 2 ? (Duration) args[2] : null);
+            yield null;
+        }
+        case "multiGet" -> {
+            List<Object> values = new ArrayList<>();
+            for (Object key : (Collection<?>) args[0]) {
+                values.add(readString((String) key));
+            }
+            yield values;
+        }
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    private final RedisStringCommands stringCommands = proxy(RedisStringCommands.class, (method, args) -> switch (method) {
+        case "get" -> read(string(args[0]));
+        case "set" -> {
+            Expiration expiration = args.length > 2 ? (Expiration) args[2] : null;
+            write(string(args[0]), ((byte[]) args[1]).clone(), expiration == null || expiration.isPersistent() ? null
+                    : Duration.ofMillis(expiration.getExpirationTimeInMilliseconds()));
+            yield true;
+        }
+        case "incr" -> {
+            String key = string(args[0]);
+            String current = readString(key);
+            long next = current != null ? Long.parseLong(current) + 1 : 1;
+            writeString(key, Long.toString(next), null);
+            yield next;
+        }
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    private final RedisKeyCommands keyCommands = proxy(RedisKeyCommands.class, (method, args) -> switch (method) {
+        case "del" -> {
+            long removed = 0;
+            for (Object key : (Object[]) args[0]) {
+                removed += data.remove(string(key)) != null ? 1 : 0;
+            }
+            yield removed;
+        }
+        case "pExpire" -> {
+            String key = string(args[0]);
+            Stored stored = lookup(key);
+            if (stored != null) {
+                write(key, stored.value(), Duration.ofMillis((Long) args[1]));
+            }
+            yield stored != null;
+        }
+        case "exists" -> lookup(string(args[0])) != null;
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    private final RedisSetCommands setCommands = proxy(RedisSetCommands.class, (method, args) -> switch (method) {
+        case "sAdd" -> {
+            long added = 0;
+            synchronized (data) {
+                String key = string(args[0]);
+                Stored stored = lookup(key);
+                Set<String> members = stored != null ? members(stored) : ConcurrentHashMap.newKeySet();
+                for (Object member : (Object[]) args[1]) {
+                    added += members.add(string(member)) ? 1 : 0;
+                }
+                if (stored == null) {
+                    data.put(key, new Stored(members, Long.MAX_VALUE));
+                }
+            }
+            yield added;
+        }
+        case "sRem" -> {
+            long removed = 0;
+            synchronized (data) {
+                String key = string(args[0]);
+                Stored stored = lookup(key);
+                if (stored != null) {
+                    Set<String> members = members(stored);
+                    for (Object member : (Object[]) args[1]) {
+                        removed += members.remove(string(member)) ? 1 : 0;
+                    }
+                    // Redis deletes a set with its last member
+                    if (members.isEmpty()) {
+                        data.remove(key, stored);
+                    }
+                }
+            }
+            yield removed;
+        }
+        case "sScan" -> {
+            Stored stored = lookup(string(args[0]));
+            List<byte[]> members = new ArrayList<>();
+            if (stored != null) {
+                members(stored).forEach(member -> members.add(member.getBytes(StandardCharsets.UTF_8)));
+            }
+            yield cursor(members.iterator());
+        }
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    private final ReactiveValueOperations<String, String> reactiveValueOperations =
+            proxy(ReactiveValueOperations.class, (method, args) -> switch (method) {
+                case "get" -> reply(() -> readString((String) args[0]));
+                case "set" -> reply(() -> {
+                    writeString((String) args[0], (String) args[1], args.length > 2 ? (Duration) args[2] : null);
+                    return true;
+                });
+                default -> throw new UnsupportedOperationException(method);
+            });
+
+    private final RedisConnection connection = proxy(RedisConnection.class, (method, args) -> switch (method) {
+        case "stringCommands" -> stringCommands;
+        case "keyCommands" -> keyCommands;
+        case "setCommands" -> setCommands;
+        default -> throw new UnsupportedOperationException(method);
+    });
+
+    /**
+     * Expires keys on {@link System#nanoTime()}.
+     */
+    public InMemoryRedisTemplate() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock time in nanos that TTLs are counted on
+     */
+    public InMemoryRedisTemplate(LongSupplier clock) {
+        this.clock = clock;
+        setKeySerializer(RedisSerializer.string());
+        setValueSerializer(RedisSerializer.string());
+    }
+
+    /**
+     * Writes a value directly, as if another node had put it before any clear.
+     */
+    public void seed(String key, String value) {
+        writeString(KEY_PREFIX + key, value, null);
+    }
+
+    public void remove(String key) {
+        data.remove(KEY_PREFIX + key);
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Bytes of the keys and values held and not yet expired, counting a key
+     * character as a byte, the way Redis stores ASCII keys.
+     */
+    public long storedBytes() {
+        long now = clock.getAsLong();
+        long bytes = 0;
+        for (Map.Entry<String, Stored> e : data.entrySet()) {
+            Stored stored = e.getValue();
+            if (stored.expiresAtNanos() > now) {
+                bytes += e.getKey().length();
+                if (stored.value() instanceof byte[] value) {
+                    bytes += value.length;
+                } else {
+                    bytes += members(stored).stream().mapToLong(String::length).sum();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A reactive template over the same data.
+     */
+    public ReactiveStringRedisTemplate reactive() {
+        ReactiveRedisConnectionFactory unused = proxy(ReactiveRedisConnectionFactory.class, (method, args) -> {
+            throw new UnsupportedOperationException(method);
+        });
+        return new ReactiveStringRedisTemplate(unused) {
+            @Override
+            public ReactiveValueOperations<String, String> opsForValue() {
+                return reactiveValueOperations;
+            }
+        };
+    }
+
+    @Override
+    public ValueOperations<String, Object> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        return data.remove(key) != null;
+    }
+
+    @Override
+    public Long unlink(Collection<String> keys) {
+        long removed = 0;
+        for (String key : keys) {
+            removed += data.remove(key) != null ? 1 : 0;
+        }
+        return removed;
+    }
+
+    /**
+     * Iterates over a copy of the keys matching a pattern of the form
+     * {@code prefix*}, the only kind {@code RedisL2Store} scans for.
+     */
+    @Override
+    public Cursor<String> scan(ScanOptions options) {
+        String pattern = options.getPattern() != null ? options.getPattern() : "*";
+        String prefix = pattern.endsWith("*") ? pattern.substring(0, pattern.length() - 1) : pattern;
+        List<String> matching = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (pattern.endsWith("*") ? key.startsWith(prefix) : key.equals(prefix)) {
+                matching.add(key);
+            }
+        }
+        return cursor(matching.iterator());
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action) {
+        return action.doInRedis(connection);
+    }
+
+    /**
+     * Runs the commands at once and returns their replies, which the commands
+     * themselves return as {@code null}, as they do in a real pipeline.
+     */
+    @Override
+    public List<Object> executePipelined(RedisCallback<?> action) {
+        List<Object> replies = new ArrayList<>();
+        RedisConnection pipelined = proxy(RedisConnection.class, (method, args) -> switch (method) {
+            case "stringCommands" -> pipelined(RedisStringCommands.class, stringCommands, replies);
+            case "keyCommands" -> pipelined(RedisKeyCommands.class, keyCommands, replies);
+            case "setCommands" -> pipelined(RedisSetCommands.class, setCommands, replies);
+            default -> throw new UnsupportedOperationException(method);
+        });
+        action.doInRedis(pipelined);
+        return replies;
+    }
+
+    @Override
+    public Long convertAndSend(String channel, Object message) {
+        return 0L;
+    }
+
+    // An expired key is dropped when next read, as Redis does lazily
+    private Stored lookup(String key) {
+        Stored stored = data.get(key);
+        if (stored == null) {
+            return null;
+        }
+        if (stored.expiresAtNanos() <= clock.getAsLong()) {
+            data.remove(key, stored);
+            return null;
+        }
+        return stored;
+    }
+
+    private byte[] read(String key) {
+        Stored stored = lookup(key);
+        if (stored != null && !(stored.value() instanceof byte[])) {
+            throw new IllegalStateException("WRONGTYPE " + key + " holds a set");
+        }
+        return stored != null ? (byte[]) stored.value() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> members(Stored stored) {
+        if (!(stored.value() instanceof Set<?>)) {
+            throw new IllegalStateException("WRONGTYPE not a set");
+        }
+        return (Set<String>) stored.value();
+    }
+
+    private void write(String key, Object value, Duration ttl) {
+        long expiresAt = ttl == null ? Long.MAX_VALUE : clock.getAsLong() + ttl.toNanos();
+        data.put(key, new Stored(value, expiresAt));
+    }
+
+    private String readString(String key) {
+        byte[] value = read(key);
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private void writeString(String key, String value, Duration ttl) {
+        write(key, value.getBytes(StandardCharsets.UTF_8), ttl);
+    }
+
+    private void roundTrip() {
+        if (!latency.isZero()) {
+            LockSupport.parkNanos(latency.toNanos());
+        }
+    }
+
+    private Mono<Object> reply(Supplier<Object> command) {
+        Mono<Object> reply = Mono.fromSupplier(command);
+        return latency.isZero() ? reply : Mono.delay(latency).then(reply);
+    }
+
+    private static String string(Object bytes) {
+        return new String((byte[]) bytes, StandardCharsets.UTF_8);
+    }
+
+    private static <T> Cursor<T> cursor(Iterator<T> items) {
+        return proxy(Cursor.class, (method, args) -> switch (method) {
+            case "hasNext" -> items.hasNext();
+            case "next" -> items.next();
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    // Commands that run at once but hand their reply to the pipeline instead of the caller
+    private static <T> T pipelined(Class<T> type, T commands, List<Object> replies) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            try {
+                replies.add(method.invoke(commands, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return null;
+        }));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> type.getSimpleName() + " stand-in";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.handle(method.getName(), args);
+                });
+    }
+}
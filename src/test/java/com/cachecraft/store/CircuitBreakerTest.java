@@ -0,0 +1,114 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+
+    private CacheProperties.CircuitBreaker config;
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        config = new CacheProperties.CircuitBreaker();
+        config.setSlidingWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallThreshold(Duration.ofMillis(100));
+        config.setWaitInOpenState(Duration.ofSeconds(10));
+        config.setPermittedCallsInHalfOpen(2);
+        breaker = new CircuitBreaker(config, transitions::add, clock::get);
+    }
+
+    @Test
+    void testOpensAtFailureRateThreshold() {
+        succeed();
+        succeed();
+        fail();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // Fourth call reaches the minimum with 2 of 4 failed
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testSlowCallsCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onSuccess(Duration.ofMillis(200).toNanos());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbesCloseTheBreaker() {
+        tripOpen();
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // Only the permitted probes go through
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+    }
+
+    @Test
+    void testFailedProbeReopensTheBreaker() {
+        tripOpen();
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // The wait starts over from the failed probe
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testDisabledBreakerNeverOpens() {
+        config.setEnabled(false);
+        tripOpen();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+    }
+
+    private void succeed() {
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess(0);
+    }
+
+    private void fail() {
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError();
+    }
+}
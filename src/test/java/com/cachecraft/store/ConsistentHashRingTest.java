@@ -0,0 +1,78 @@
+package com.cachecraft.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    private static Map<String, String> nodes(int count) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            nodes.put("redis-" + i, "redis-" + i);
+        }
+        return nodes;
+    }
+
+    @Test
+    void testKeysSpreadEvenlyOverNodes() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(4), 160);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.nodeFor("user:" + i), 1, Integer::sum);
+        }
+
+        assertEquals(4, owned.size());
+        // Within 20% of an even share with 160 points per node
+        owned.values().forEach(count -> assertEquals(KEYS / 4.0, count, KEYS / 4.0 * 0.2));
+    }
+
+    @Test
+    void testMembershipChangesMoveOnlyTheAffectedKeys() {
+        ConsistentHashRing<String> four = new ConsistentHashRing<>(nodes(4), 160);
+        ConsistentHashRing<String> five = new ConsistentHashRing<>(nodes(5), 160);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user:" + i;
+            String before = four.nodeFor(key);
+            String after = five.nodeFor(key);
+            if (!before.equals(after)) {
+                // Keys only ever move to the new node
+                assertEquals("redis-4", after);
+                moved++;
+            }
+        }
+        // About 1/5 of the keys, where modulo hashing would move 4/5
+        assertEquals(KEYS / 5.0, moved, KEYS / 5.0 * 0.2);
+
+        Map<String, String> withoutOne = nodes(4);
+        withoutOne.remove("redis-1");
+        ConsistentHashRing<String> three = new ConsistentHashRing<>(withoutOne, 160);
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user:" + i;
+            if (!"redis-1".equals(four.nodeFor(key))) {
+                assertEquals(four.nodeFor(key), three.nodeFor(key));
+            }
+        }
+    }
+
+    @Test
+    void testRingDependsOnlyOnNodeNames() {
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("redis-1", "redis-1");
+        reversed.put("redis-0", "redis-0");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(2), 16);
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(reversed, 16);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(ring.nodeFor("k" + i), other.nodeFor("k" + i));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(Map.of(), 16));
+    }
+}
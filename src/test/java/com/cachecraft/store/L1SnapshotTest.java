@@ -0,0 +1,59 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class L1SnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testEntriesRoundTrip() throws IOException {
+        Path file = dir.resolve("nested").resolve("l1.snapshot");
+        List<L1Snapshot.Entry> written = List.of(
+                new L1Snapshot.Entry(new CacheEntry("a", "x".repeat(1000), 123_456_789L, 0), 42),
+                new L1Snapshot.Entry(new CacheEntry("ключ", "€ and ✓", CacheEntry.now(), 0), 7),
+                new L1Snapshot.Entry(new CacheEntry("empty", "", 1L, 0), 0));
+        L1Snapshot.write(file, written);
+
+        List<L1Snapshot.Entry> read = new ArrayList<>();
+        assertEquals(3, L1Snapshot.read(file, read::add));
+        assertEquals(written, read);
+        // Only the snapshot itself is left behind
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void testRewriteReplacesSnapshot() throws IOException {
+        Path file = dir.resolve("l1.snapshot");
+        L1Snapshot.write(file, List.of(new L1Snapshot.Entry(new CacheEntry("a", "1", 1L, 0), 1)));
+        L1Snapshot.write(file, List.of());
+
+        assertEquals(0, L1Snapshot.read(file, entry -> fail("unexpected entry " + entry)));
+    }
+
+    @Test
+    void testTruncatedOrForeignFileIsRejected() throws IOException {
+        Path file = dir.resolve("l1.snapshot");
+        L1Snapshot.write(file, List.of(new L1Snapshot.Entry(new CacheEntry("a", "value", 1L, 0), 1)));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> L1Snapshot.read(file, entry -> { }));
+
+        Files.writeString(file, "not a snapshot");
+        assertThrows(IOException.class, () -> L1Snapshot.read(file, entry -> { }));
+    }
+}
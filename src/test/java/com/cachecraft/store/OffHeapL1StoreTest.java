@@ -0,0 +1,182 @@
+package com.cachecraft.store;
+
+import com.cachecraft.codec.DeflateCodec;
+import com.cachecraft.codec.ValueSerializer;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.model.CacheEntry;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapL1StoreTest {
+
+    private final MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+
+    private SlabAllocator allocator;
+
+    private OffHeapL1Store store;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new SlabAllocator(64 * 1024, 16 * 1024, null);
+        store = new OffHeapL1Store(allocator, ValueSerializer.raw(metricsCollector), 16, fixedExpiry(), cause -> { });
+    }
+
+    @Test
+    void testCompressedValuesRoundTrip() {
+        ValueSerializer deflate = new ValueSerializer(List.of(new DeflateCodec()), DeflateCodec.NAME,
+                DataSize.ofBytes(64), metricsCollector);
+        store = new OffHeapL1Store(allocator, deflate, 16, fixedExpiry(), cause -> { });
+        String value = "{\"field\":\"välue\"}".repeat(2000);
+        store.put("large", new CacheEntry("large", value, 1, 3));
+        store.put("small", new CacheEntry("small", "x", 1, 3));
+
+        assertEquals(value, store.getIfPresent("large").getValue());
+        assertEquals("x", store.getIfPresent("small").getValue());
+        // Over 40KB of JSON fits the 16KB slab once compressed
+        assertTrue(value.length() > allocator.maxPayloadBytes());
+    }
+
+    @Test
+    void testRoundTrip() {
+        long timestamp = CacheEntry.now();
+        store.put("key", new CacheEntry("key", "välue", timestamp, 7));
+
+        CacheEntry entry = store.getIfPresent("key");
+        assertEquals("key", entry.getKey());
+        assertEquals("välue", entry.getValue());
+        assertEquals(timestamp, entry.getTimestampNanos());
+        assertEquals(7, entry.getFrequencyCount());
+        assertNull(store.getIfPresent("missing"));
+    }
+
+    @Test
+    void testTombstoneAndReplace() {
+        long timestamp = CacheEntry.now();
+        store.put("gone", CacheEntry.tombstone("gone", timestamp));
+        CacheEntry tombstone = store.getIfPresent("gone");
+        assertTrue(tombstone.isTombstone());
+        assertEquals(timestamp, tombstone.getTimestampNanos());
+
+        // Replaced only while the expected entry is still cached
+        assertTrue(store.replace("gone", tombstone, new CacheEntry("gone", "back", timestamp, 0)));
+        assertFalse(store.replace("gone", tombstone, new CacheEntry("gone", "other", timestamp, 0)));
+        assertEquals("back", store.getIfPresent("gone").getValue());
+    }
+
+    @Test
+    void testTombstoneProbeReadsOnlyTheMarker() {
+        store.put("gone", CacheEntry.tombstone("gone", CacheEntry.now()));
+        store.put("kept", new CacheEntry("kept", "x", 0, -2));
+        store.put("counted", new CacheEntry("counted", "", 0, 0xFFFF));
+
+        assertTrue(store.isTombstone("gone"));
+        assertFalse(store.isTombstone("kept"));
+        assertFalse(store.isTombstone("counted"));
+        assertFalse(store.isTombstone("missing"));
+    }
+
+    @Test
+    void testGetAllPresentAndPutIfAbsent() {
+        store.put("a", new CacheEntry("a", "1", 0, 0));
+        assertNull(store.putIfAbsent("b", new CacheEntry("b", "2", 0, 0)));
+        assertEquals("1", store.putIfAbsent("a", new CacheEntry("a", "other", 0, 0)).getValue());
+
+        Map<String, CacheEntry> entries = store.getAllPresent(List.of("a", "b", "c"));
+        assertEquals(2, entries.size());
+        assertEquals("2", entries.get("b").getValue());
+    }
+
+    @Test
+    void testReleasedChunkIsReusedAndStaleHandleRejected() {
+        OffHeapHandle first = allocator.store(new byte[100]);
+        allocator.release(first);
+        OffHeapHandle second = allocator.store(new byte[100]);
+
+        assertEquals(first.address(), second.address());
+        assertNull(allocator.load(first));
+        assertNotNull(allocator.load(second));
+    }
+
+    @Test
+    void testOverwriteAndEvictionStayWithinMemoryBound() {
+        String value = "x".repeat(1000);
+        for (int i = 0; i < 1000; i++) {
+            store.put("key" + (i % 200), new CacheEntry("key", value + i, 0, 0));
+        }
+        assertTrue(allocator.reservedBytes() <= allocator.capacityBytes());
+        assertEquals(allocator.reservedBytes(), store.estimatedBytes());
+        assertTrue(store.estimatedSize() > 0);
+    }
+
+    @Test
+    void testEmptySlabsAreReclaimedForAnotherSize() {
+        List<OffHeapHandle> small = new ArrayList<>();
+        for (OffHeapHandle handle; (handle = allocator.store(new byte[10])) != null; ) {
+            small.add(handle);
+        }
+        assertNull(allocator.store(new byte[1000]));
+
+        small.forEach(allocator::release);
+        OffHeapHandle large = allocator.store(new byte[1000]);
+        assertNotNull(large);
+        assertNotNull(allocator.load(large));
+        assertNull(allocator.load(small.get(0)));
+    }
+
+    @Test
+    void testValueOfNewSizeIsCachedOnceSlabsAreTaken() {
+        int[] evictions = {0};
+        store = new OffHeapL1Store(allocator, ValueSerializer.raw(metricsCollector), 16, fixedExpiry(),
+                cause -> evictions[0]++);
+        // Small entries claim every slab
+        for (int i = 0; i < 2000; i++) {
+            store.put("small" + i, new CacheEntry("small" + i, "x", 0, 0));
+        }
+        assertEquals(allocator.capacityBytes(), allocator.reservedBytes());
+
+        String value = "y".repeat(1000);
+        store.put("large", new CacheEntry("large", value, 0, 0));
+        assertEquals(value, store.getIfPresent("large").getValue());
+        store.put("small", new CacheEntry("small", "x", 0, 0));
+        assertEquals("x", store.getIfPresent("small").getValue());
+        assertTrue(evictions[0] > 0);
+        assertEquals(allocator.capacityBytes(), allocator.reservedBytes());
+    }
+
+    @Test
+    void testValueLargerThanSlabIsNotCached() {
+        store.put("big", new CacheEntry("big", "small", 0, 0));
+        store.put("big", new CacheEntry("big", "x".repeat(32 * 1024), 0, 0));
+        assertNull(store.getIfPresent("big"));
+    }
+
+    private static Expiry<String, OffHeapHandle> fixedExpiry() {
+        long ttl = TimeUnit.MINUTES.toNanos(10);
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, OffHeapHandle value, long currentTime) {
+                return ttl;
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, OffHeapHandle value, long currentTime, long currentDuration) {
+                return ttl;
+            }
+
+            @Override
+            public long expireAfterRead(String key, OffHeapHandle value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
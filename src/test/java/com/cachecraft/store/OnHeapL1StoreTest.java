@@ -0,0 +1,113 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OnHeapL1StoreTest {
+
+    private final List<RemovalCause> evictions = new CopyOnWriteArrayList<>();
+
+    @Test
+    void testWeightTracksEntryBytes() throws InterruptedException {
+        OnHeapL1Store store = new OnHeapL1Store(16, 1024 * 1024, expiry(TimeUnit.MINUTES.toNanos(1)), evictions::add);
+        CacheEntry small = new CacheEntry("a", "x", 0, 0);
+        CacheEntry large = new CacheEntry("b", "x".repeat(1000), 0, 0);
+        store.put("a", small);
+        store.put("b", large);
+
+        // Weights are applied in Caffeine's asynchronous maintenance
+        await(() -> store.estimatedBytes() == OnHeapL1Store.weigh("a", small) + OnHeapL1Store.weigh("b", large));
+        assertTrue(OnHeapL1Store.weigh("b", large) > 2000);
+        // Non-Latin-1 text takes two bytes per char
+        assertTrue(OnHeapL1Store.weigh("c", new CacheEntry("c", "€".repeat(1000), 0, 0))
+                > OnHeapL1Store.weigh("b", large));
+
+        store.invalidate("b");
+        await(() -> store.estimatedBytes() == OnHeapL1Store.weigh("a", small));
+        // Explicit removals are not evictions
+        assertTrue(evictions.isEmpty());
+    }
+
+    @Test
+    void testSizeAndExpiryEvictionsAreReported() throws InterruptedException {
+        OnHeapL1Store store = new OnHeapL1Store(16, 16 * 1024, expiry(TimeUnit.MINUTES.toNanos(1)), evictions::add);
+        String value = "x".repeat(1000);
+        for (int i = 0; i < 50; i++) {
+            store.put("key" + i, new CacheEntry("key" + i, value, 0, 0));
+        }
+        await(() -> evictions.contains(RemovalCause.SIZE) && store.estimatedBytes() <= 16 * 1024);
+
+        OnHeapL1Store expiring = new OnHeapL1Store(16, 16 * 1024, expiry(0), evictions::add);
+        expiring.put("gone", new CacheEntry("gone", "x", 0, 0));
+        assertNull(expiring.getIfPresent("gone"));
+        await(() -> evictions.contains(RemovalCause.EXPIRED));
+    }
+
+    @Test
+    void testTombstoneProbeLeavesExpiryAlone() {
+        AtomicLong now = new AtomicLong();
+        // Reads would keep entries for an hour
+        Expiry<String, CacheEntry> extendedByReads = new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, CacheEntry value, long currentTime) {
+                return TimeUnit.MINUTES.toNanos(1);
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+
+            @Override
+            public long expireAfterRead(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return TimeUnit.HOURS.toNanos(1);
+            }
+        };
+        OnHeapL1Store store = new OnHeapL1Store(16, 1024 * 1024, extendedByReads, evictions::add, now::get);
+        store.put("gone", CacheEntry.tombstone("gone", 0));
+        store.put("kept", new CacheEntry("kept", "x", 0, 0));
+
+        assertTrue(store.isTombstone("gone"));
+        assertFalse(store.isTombstone("kept"));
+        assertFalse(store.isTombstone("missing"));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertNull(store.getIfPresent("gone"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Expiry<String, CacheEntry> expiry(long nanos) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, CacheEntry value, long currentTime) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterRead(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.cachecraft.store;
+
+import com.cachecraft.model.CacheEntry;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinningL1StoreTest {
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    private final PinningL1Store store = new PinningL1Store(new OnHeapL1Store(16, 16 * 1024,
+            expiry(TimeUnit.MINUTES.toNanos(1)), cause -> { }, ticker::get));
+
+    private static CacheEntry entry(String key, String value) {
+        return new CacheEntry(key, value, 0, 0);
+    }
+
+    @Test
+    void testPinnedEntryOutlivesTtlAndSizeEviction() {
+        CacheEntry hot = entry("hot", "h");
+        store.put("hot", hot);
+        assertTrue(store.pin("hot"));
+        assertFalse(store.pin("hot"));
+        assertSame(hot, store.getIfPresent("hot"));
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        String value = "x".repeat(1000);
+        for (int i = 0; i < 100; i++) {
+            store.put("key" + i, entry("key" + i, value));
+        }
+        assertSame(hot, store.getIfPresent("hot"));
+        assertEquals(hot, store.getAllPresent(List.of("hot", "absent")).get("hot"));
+        assertTrue(store.keys().contains("hot"));
+        assertTrue(store.estimatedBytes() >= OnHeapL1Store.weigh("hot", hot));
+
+        // Unpinned, the entry is the store's again and expires with it
+        assertTrue(store.unpin("hot"));
+        assertFalse(store.isPinned("hot"));
+        assertSame(hot, store.getIfPresent("hot"));
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertNull(store.getIfPresent("hot"));
+    }
+
+    @Test
+    void testWritesReachPinnedSlot() {
+        assertTrue(store.pin("k"));
+        assertNull(store.getIfPresent("k"));
+        assertEquals(0, store.estimatedSize());
+
+        CacheEntry first = entry("k", "1");
+        assertNull(store.putIfAbsent("k", first));
+        assertSame(first, store.putIfAbsent("k", entry("k", "other")));
+        CacheEntry second = entry("k", "2");
+        assertFalse(store.replace("k", entry("k", "stale"), second));
+        assertTrue(store.replace("k", first, second));
+        assertSame(second, store.getIfPresent("k"));
+        assertEquals(1, store.estimatedSize());
+        assertEquals(OnHeapL1Store.weigh("k", second), store.estimatedBytes());
+
+        // An invalidated key stays pinned, so its next entry is pinned too
+        store.invalidateAll();
+        assertNull(store.getIfPresent("k"));
+        assertEquals(Set.of("k"), store.pinnedKeys());
+        assertEquals(0, store.estimatedBytes());
+        store.put("k", first);
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertSame(first, store.getIfPresent("k"));
+    }
+
+    private static Expiry<String, CacheEntry> expiry(long nanos) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, CacheEntry value, long currentTime) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return nanos;
+            }
+
+            @Override
+            public long expireAfterRead(String key, CacheEntry value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RedisL2StoreTest {
+
+    private static final byte[] GENERATION_KEY = "cachecraft:generation".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    private MetricsCollector metricsCollector;
+
+    private RedisL2Store store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        when(stringCommands.get(GENERATION_KEY)).thenReturn("4".getBytes(StandardCharsets.UTF_8));
+        when(stringCommands.incr(GENERATION_KEY)).thenReturn(5L);
+        metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        store = new RedisL2Store(redisTemplate, mock(ReactiveStringRedisTemplate.class), new CacheProperties(), metricsCollector);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void testKeysCarryTheCurrentGeneration() {
+        when(valueOperations.get("cachecraft:4:k")).thenReturn("v");
+
+        assertEquals("v", store.get("k"));
+        store.set("k", "w", Duration.ofMinutes(1));
+        verify(valueOperations).set("cachecraft:4:k", "w", Duration.ofMinutes(1));
+        assertEquals(4L, store.getGenerations().get(RedisShards.DEFAULT));
+        // Read once, not per command
+        verify(stringCommands, times(1)).get(GENERATION_KEY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testClearMovesToNextGenerationAndReclaimsOldKeys() {
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn("cachecraft:4:a", "cachecraft:4:b");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(redisTemplate.unlink(anyCollection())).thenReturn(2L);
+        store.get("k");
+
+        store.clear();
+
+        // Old keys are out of sight at once, without touching the rest of the server
+        assertNull(store.get("k"));
+        verify(valueOperations).get("cachecraft:5:k");
+        verify(redisTemplate, timeout(2000)).unlink(List.of("cachecraft:4:a", "cachecraft:4:b"));
+        verify(redisTemplate).scan(argThat(options -> "cachecraft:4:*".equals(options.getPattern())));
+        verify(cursor, timeout(2000)).close();
+        verify(redisTemplate, never()).getConnectionFactory();
+        assertEquals(2, metricsCollector.getReclaimedKeyCount());
+    }
+
+    @Test
+    void testGenerationCheckPicksUpPeerClear() {
+        store.get("k");
+        when(stringCommands.get(GENERATION_KEY)).thenReturn("7".getBytes(StandardCharsets.UTF_8));
+
+        store.refreshGeneration();
+        store.get("k");
+        verify(valueOperations).get("cachecraft:7:k");
+
+        // Generations never move back
+        when(stringCommands.get(GENERATION_KEY)).thenReturn("6".getBytes(StandardCharsets.UTF_8));
+        store.refreshGeneration();
+        assertEquals(7L, store.getGenerations().get(RedisShards.DEFAULT));
+    }
+
+    @Test
+    void testUnknownGenerationReadsAsOutage() {
+        when(stringCommands.get(GENERATION_KEY)).thenThrow(new RuntimeException("connection refused"));
+
+        assertThrows(L2UnavailableException.class, () -> store.fetch("k"));
+        verify(valueOperations, never()).get(anyString());
+
+        doReturn(null).when(stringCommands).get(GENERATION_KEY);
+        assertNull(store.fetch("k"));
+        verify(valueOperations).get("cachecraft:0:k");
+    }
+}
@@ -0,0 +1,148 @@
+package com.cachecraft.store;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RedisShardsTest {
+
+    private final CacheProperties properties = new CacheProperties();
+
+    private final MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+
+    // Stand-in Redis nodes, by shard name
+    private final Map<String, ValueOperations<String, Object>> nodes = new HashMap<>();
+
+    private RedisShards shards;
+
+    private RedisL2Store store;
+
+    @BeforeEach
+    void setUp() {
+        shards = new RedisShards(List.of(shard("a"), shard("b"), shard("c")), shard("pubsub"), properties,
+                metricsCollector);
+        store = new RedisL2Store(shards, properties, metricsCollector);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisShard shard(String name) {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(connection.stringCommands()).thenReturn(mock(RedisStringCommands.class));
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        nodes.put(name, valueOperations);
+        return new RedisShard(name, name + ":6379", redisTemplate, mock(ReactiveStringRedisTemplate.class),
+                properties.getCircuitBreaker(), metricsCollector, null);
+    }
+
+    // The first key owned by the shard, so tests do not depend on where the ring puts keys
+    private String keyOn(String shard) {
+        for (int i = 0; ; i++) {
+            if (shards.shardFor("k" + i).getName().equals(shard)) {
+                return "k" + i;
+            }
+        }
+    }
+
+    @Test
+    void testEachKeyGoesToTheShardThatOwnsIt() {
+        String a = keyOn("a");
+        String b = keyOn("b");
+        String c = keyOn("c");
+        when(nodes.get("a").multiGet(List.of("cachecraft:0:" + a))).thenReturn(new ArrayList<>(List.of("va")));
+        when(nodes.get("c").multiGet(List.of("cachecraft:0:" + c))).thenReturn(new ArrayList<>(List.of("vc")));
+
+        store.set(b, "vb", Duration.ofMinutes(1));
+        verify(nodes.get("b")).set("cachecraft:0:" + b, "vb", Duration.ofMinutes(1));
+        verifyNoInteractions(nodes.get("a"), nodes.get("c"));
+
+        // One MGET per shard, answers back in key order
+        assertEquals(Arrays.asList("vc", null, "va"), store.multiGet(List.of(c, b, a)));
+        verify(nodes.get("b")).multiGet(List.of("cachecraft:0:" + b));
+        verifyNoInteractions(nodes.get("pubsub"));
+        assertEquals(Map.of("a", 0L, "b", 0L, "c", 0L), store.getGenerations());
+    }
+
+    @Test
+    void testFailingShardOnlyBypassesItsOwnKeys() {
+        String a = keyOn("a");
+        String b = keyOn("b");
+        when(nodes.get("a").get("cachecraft:0:" + a)).thenReturn("va");
+        when(nodes.get("b").get(anyString())).thenThrow(new RuntimeException("connection refused"));
+
+        for (int i = 0; i < properties.getCircuitBreaker().getSlidingWindowSize(); i++) {
+            assertNull(store.get(b));
+        }
+        clearInvocations((Object) nodes.get("b"));
+
+        // b is bypassed without a round trip; its keys are not moved to the healthy shards
+        assertThrows(L2UnavailableException.class, () -> store.fetch(b));
+        verifyNoInteractions(nodes.get("b"));
+        verify(nodes.get("a"), never()).get("cachecraft:0:" + b);
+        assertEquals("va", store.fetch(a));
+
+        assertEquals(CircuitBreaker.State.OPEN, store.getBreakerState());
+        assertEquals(2L, metricsCollector.getRedisShardCircuitStates().get("b"));
+        assertEquals(0L, metricsCollector.getRedisShardCircuitStates().get("a"));
+        assertEquals(2L, metricsCollector.getRedisCircuitState());
+    }
+
+    @Test
+    void testShardsAreAddedAndRemovedLive() {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            owners.put("k" + i, shards.shardFor("k" + i).getName());
+        }
+
+        shards.add(shard("d"));
+        int moved = 0;
+        for (Map.Entry<String, String> owner : owners.entrySet()) {
+            String now = shards.shardFor(owner.getKey()).getName();
+            if (!now.equals(owner.getValue())) {
+                assertEquals("d", now);
+                moved++;
+            }
+        }
+        assertTrue(moved > 150 && moved < 350, "moved " + moved + " of 1000 keys");
+        String d = keyOn("d");
+        store.set(d, "vd", Duration.ofMinutes(1));
+        verify(nodes.get("d")).set("cachecraft:0:" + d, "vd", Duration.ofMinutes(1));
+
+        assertTrue(shards.remove("d"));
+        owners.forEach((key, owner) -> assertEquals(owner, shards.shardFor(key).getName()));
+        assertFalse(metricsCollector.getRedisShardCircuitStates().containsKey("d"));
+
+        assertFalse(shards.remove("d"));
+        assertThrows(IllegalArgumentException.class, () -> shards.add(shard("a")));
+        shards.remove("a");
+        shards.remove("b");
+        assertThrows(IllegalArgumentException.class, () -> shards.remove("c"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.cachecraft.trace;
+
+import com.cachecraft.config.CacheProperties;
+import com.cachecraft.metrics.MetricsCollector;
+import com.cachecraft.store.ConsistentHashRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogRecorderTest {
+
+    @TempDir
+    Path dir;
+
+    private final MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000_000_000L);
+
+    private CacheProperties.AccessLog config(double sampleRate) {
+        CacheProperties.AccessLog config = new CacheProperties.AccessLog();
+        config.setEnabled(true);
+        config.setPath(dir.resolve("access.trace"));
+        config.setSampleRate(sampleRate);
+        return config;
+    }
+
+    private static long hash(String key) {
+        return ConsistentHashRing.hash(key);
+    }
+
+    private List<AccessTrace.Event> read(List<AccessTrace.Header> header) throws IOException {
+        List<AccessTrace.Event> events = new ArrayList<>();
+        header.add(AccessTrace.read(dir.resolve("access.trace"), events::add));
+        return events;
+    }
+
+    @Test
+    void testAccessesRoundTrip() throws IOException {
+        long start = clock.get();
+        try (AccessLogRecorder recorder = new AccessLogRecorder(config(1.0), clock::get, metricsCollector)) {
+            recorder.record(AccessTrace.Operation.GET, "user:1", 120);
+            clock.addAndGet(2_500_000);
+            recorder.record(AccessTrace.Operation.GET, "absent", -1);
+            // Out of order by a few microseconds, as concurrent requests may be
+            clock.addAndGet(-3_000);
+            recorder.record(AccessTrace.Operation.PUT, "user:1", 0);
+            recorder.record(AccessTrace.Operation.CLEAR, "", -1);
+        }
+
+        List<AccessTrace.Header> header = new ArrayList<>();
+        List<AccessTrace.Event> events = read(header);
+        assertEquals(new AccessTrace.Header(1.0, start), header.get(0));
+        assertEquals(List.of(
+                new AccessTrace.Event(start, AccessTrace.Operation.GET, hash("user:1"), 6, 120),
+                new AccessTrace.Event(start + 2_500_000, AccessTrace.Operation.GET, hash("absent"), 6, -1),
+                new AccessTrace.Event(start + 2_497_000, AccessTrace.Operation.PUT, hash("user:1"), 6, 0),
+                new AccessTrace.Event(start + 2_497_000, AccessTrace.Operation.CLEAR, hash(""), 0, -1)),
+                events);
+        assertEquals(4, metricsCollector.getAccessLogWrittenCount());
+        assertEquals(0, metricsCollector.getAccessLogDroppedCount());
+    }
+
+    @Test
+    void testSampledKeysKeepEveryAccess() throws IOException {
+        try (AccessLogRecorder recorder = new AccessLogRecorder(config(0.25), clock::get, metricsCollector)) {
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 4_000; i++) {
+                    recorder.record(AccessTrace.Operation.GET, "k" + i, 10);
+                }
+            }
+            recorder.record(AccessTrace.Operation.CLEAR, "", -1);
+        }
+
+        List<AccessTrace.Header> header = new ArrayList<>();
+        Map<Long, Integer> accesses = new HashMap<>();
+        List<AccessTrace.Event> events = read(header);
+        events.stream()
+                .filter(event -> event.operation() == AccessTrace.Operation.GET)
+                .forEach(event -> accesses.merge(event.keyHash(), 1, Integer::sum));
+        assertEquals(0.25, header.get(0).sampleRate());
+        assertEquals(1_000, accesses.size(), 100);
+        accesses.values().forEach(count -> assertEquals(3, count));
+        // A clear concerns every key, sampled or not
+        assertEquals(AccessTrace.Operation.CLEAR, events.get(events.size() - 1).operation());
+    }
+
+    @Test
+    void testRecordingStopsAtSizeLimit() throws IOException {
+        CacheProperties.AccessLog config = config(1.0);
+        config.setMaxSize(DataSize.ofKilobytes(1));
+        try (AccessLogRecorder recorder = new AccessLogRecorder(config, clock::get, metricsCollector)) {
+            for (int i = 0; i < 10_000; i++) {
+                recorder.record(AccessTrace.Operation.GET, "k" + i, 10);
+            }
+        }
+
+        long written = (long) metricsCollector.getAccessLogWrittenCount();
+        assertTrue(written > 0 && written < 10_000, "wrote " + written);
+        assertEquals(written, read(new ArrayList<>()).size());
+        // The record that reached the limit is the last one; whatever was still buffered is dropped
+        assertTrue(Files.size(dir.resolve("access.trace")) < DataSize.ofKilobytes(1).toBytes() + 32);
+    }
+
+    @Test
+    void testTruncatedRecordIsIgnoredAndForeignFileRejected() throws IOException {
+        Path file = dir.resolve("access.trace");
+        try (AccessTrace.Writer writer = new AccessTrace.Writer(file, new AccessTrace.Header(1.0, 0))) {
+            writer.write(1_000, AccessTrace.Operation.GET, 42, 3, 7);
+            writer.write(2_000, AccessTrace.Operation.EVICT, 43, 3, -1);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+
+        List<AccessTrace.Event> events = new ArrayList<>();
+        AccessTrace.read(file, events::add);
+        assertEquals(List.of(new AccessTrace.Event(1_000, AccessTrace.Operation.GET, 42, 3, 7)), events);
+
+        Files.writeString(file, "not a trace");
+        assertThrows(IOException.class, () -> AccessTrace.read(file, event -> { }));
+    }
+}